@@ -16,6 +16,8 @@ public final class PoolStatus {
 	private int free;
 	private long pollCount;
 	private long offerCount;
+	private long statementHits;
+	private long statementMisses;
 	
 	public PoolStatus(int max,int min,int current,int used,int free){
 		this.maxSize=max;
@@ -85,6 +87,32 @@ public final class PoolStatus {
 		this.offerCount = offerCount;
 	}
 
+	/**
+	 * 得到PreparedStatement缓存的命中次数
+	 * 
+	 * @return
+	 */
+	public long getStatementHits() {
+		return statementHits;
+	}
+
+	public void setStatementHits(long statementHits) {
+		this.statementHits = statementHits;
+	}
+
+	/**
+	 * 得到PreparedStatement缓存的未命中次数
+	 * 
+	 * @return
+	 */
+	public long getStatementMisses() {
+		return statementMisses;
+	}
+
+	public void setStatementMisses(long statementMisses) {
+		this.statementMisses = statementMisses;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb=new StringBuilder(64);
@@ -94,7 +122,12 @@ public final class PoolStatus {
 		sb.append("used=").append(used).append(',');
 		sb.append("free=").append(free).append(',');
 		sb.append("poll=").append(pollCount).append(',');
-		sb.append("offer=").append(offerCount).append('}');
+		sb.append("offer=").append(offerCount);
+		if (statementHits > 0 || statementMisses > 0) {
+			sb.append(",stmtHit=").append(statementHits).append(',');
+			sb.append("stmtMiss=").append(statementMisses);
+		}
+		sb.append('}');
 		return sb.toString();
 	}
 }
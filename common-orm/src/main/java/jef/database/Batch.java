@@ -21,31 +21,42 @@ import java.sql.SQLException;
 import java.sql.SQLIntegrityConstraintViolationException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import jef.common.PairSS;
 import jef.common.log.LogUtil;
 import jef.database.cache.Cache;
+import jef.database.dialect.DatabaseDialect;
 import jef.database.dialect.type.ColumnMapping;
+import jef.database.dialect.type.VersionSupportColumn;
 import jef.database.meta.AbstractMetadata;
+import jef.database.meta.DbProperty;
+import jef.database.meta.Feature;
 import jef.database.meta.ITableMetadata;
 import jef.database.meta.MetaHolder;
 import jef.database.routing.PartitionResult;
+import jef.database.support.AsyncSqlLog;
 import jef.database.support.DbOperatorListener;
 import jef.database.support.SqlLog;
 import jef.database.wrapper.clause.BindSql;
 import jef.database.wrapper.clause.InsertSqlClause;
 import jef.database.wrapper.clause.UpdateClause;
+import jef.database.wrapper.executor.DbTask;
 import jef.database.wrapper.variable.BindVariableContext;
 import jef.database.wrapper.variable.Variable;
+import jef.tools.JefConfiguration;
 import jef.tools.StringUtils;
 
 /**
  * 批操作工具。由一个已经编译好的SQL语句构成。<br>
  * Batch对象一旦建立，其对应的SQL语句是固定不变的，传入不同批次的数据，可以作为该SQL语句的参数，使用JDBC的批量执行接口执行。
  * <p>
- * 可以使用{@link #execute(List)}方法执行批量插入、更新或删除操作。
+ * 可以使用{@link #execute(List)}方法执行批量插入、更新或删除操作。数据量很大时可以使用{@link #execute(Iterator)}分段提交。
  * <p>
  * 可以使用{@link #setGroupForPartitionTable(boolean)}
  * 方法指定是否要对每条参数进行路由计算，根据路由结果重新分组后再执行插入、更新或删除操作。(仅当分库分表后才需要)
@@ -56,6 +67,10 @@ import jef.tools.StringUtils;
  * @param <T>
  */
 public abstract class Batch<T extends IQueryableEntity> {
+	/**
+	 * 流式提交时，未设置chunkSize的情况下每段的记录数
+	 */
+	public static final int DEFAULT_STREAM_CHUNK = 1000;
 	/**
 	 * 操作执行数据库对象
 	 */
@@ -76,9 +91,25 @@ public abstract class Batch<T extends IQueryableEntity> {
 	 */
 	private boolean groupForPartitionTable;
 	/**
-	 * 执行影响的总记录行数
+	 * 并行模式 开启后，分组后的各个批在不同线程上同时执行。仅在非事务的Session上有效，事务中各组共用连接，仍依次执行。
+	 */
+	private boolean parallel = JefConfiguration.getBoolean(DbCfg.DB_BATCH_PARALLEL, false);
+	/**
+	 * 并行模式下，同一个数据源上最多同时执行的批数
+	 */
+	private int maxParallelPerDatasource = JefConfiguration.getInt(DbCfg.DB_BATCH_PARALLEL_PER_DATASOURCE, 4);
+	/**
+	 * 每次executeBatch()提交的最大记录数，0表示不分段
+	 */
+	private int chunkSize = JefConfiguration.getInt(DbCfg.DB_BATCH_CHUNK_SIZE, 0);
+	/**
+	 * 批量插入时，在支持的数据库上改写为一条insert语句带多行values
 	 */
-	private int executeResult;
+	private boolean multiRowValues = JefConfiguration.getBoolean(DbCfg.DB_BATCH_MULTI_ROW_VALUES, false);
+	/**
+	 * 改写为多行values时，一条insert语句中的最大行数
+	 */
+	private int multiRowSize = JefConfiguration.getInt(DbCfg.DB_BATCH_MULTI_ROW_SIZE, 500);
 	/**
 	 * 极限模式，极限模式下，会使用数据库本地特性来尽可能加速操作。 极限模式下，禁用数据回写功能。
 	 */
@@ -195,6 +226,103 @@ public abstract class Batch<T extends IQueryableEntity> {
 		this.groupForPartitionTable = regroupForPartitionTable;
 	}
 
+	/**
+	 * 是否并行执行分组后的各个批
+	 * 
+	 * @return
+	 */
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * 设置是否并行执行分组后的各个批。<br>
+	 * 开启后，重新分组得到的各个批(不同的表或数据库)提交到线程池中同时执行，每个数据源上同时执行的批数不超过{@link #setMaxParallelPerDatasource(int)}。
+	 * 各批在各自的连接上提交，因此仅对非事务的操作生效；在事务中各批共用事务的连接，仍然依次执行。<br>
+	 * 某一批失败时，其余各批仍会执行完毕，之后抛出的异常中通过{@link SQLException#getNextException()}依次列出各个失败批的异常。
+	 * 
+	 * @param parallel
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * 获得并行模式下每个数据源上最多同时执行的批数
+	 * 
+	 * @return
+	 */
+	public int getMaxParallelPerDatasource() {
+		return maxParallelPerDatasource;
+	}
+
+	/**
+	 * 设置并行模式下每个数据源上最多同时执行的批数
+	 * 
+	 * @param maxParallelPerDatasource
+	 */
+	public void setMaxParallelPerDatasource(int maxParallelPerDatasource) {
+		this.maxParallelPerDatasource = maxParallelPerDatasource;
+	}
+
+	/**
+	 * 获得每次executeBatch()提交的最大记录数
+	 * 
+	 * @return 0表示不分段
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * 设置每次executeBatch()提交的最大记录数。<br>
+	 * 数据量很大时，一次性绑定全部参数会在JDBC驱动中积累大量数据，分段提交可以控制内存占用。设置为0表示不分段。
+	 * 
+	 * @param chunkSize
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * 批量插入时是否改写为多行values的insert语句
+	 * 
+	 * @return
+	 */
+	public boolean isMultiRowValues() {
+		return multiRowValues;
+	}
+
+	/**
+	 * 设置批量插入时是否改写为多行values的insert语句。仅对批量插入有效。<br>
+	 * 在支持的数据库上(如MySQL、PostgreSQL)，将每{@link #setMultiRowSize(int)}个对象合并为一条
+	 * <code>insert into t (...) values (...),(...)</code>语句执行，大大减少网络往返和服务端的语句解析次数。此模式下chunkSize设置不生效。<br>
+	 * 默认关闭，可通过{@link DbCfg#DB_BATCH_MULTI_ROW_VALUES}全局开启。
+	 * 
+	 * @param multiRowValues
+	 */
+	public void setMultiRowValues(boolean multiRowValues) {
+		this.multiRowValues = multiRowValues;
+	}
+
+	/**
+	 * 获得多行values的insert语句中的最大行数
+	 * 
+	 * @return
+	 */
+	public int getMultiRowSize() {
+		return multiRowSize;
+	}
+
+	/**
+	 * 设置多行values的insert语句中的最大行数。实际行数还受数据库单条语句绑定变量个数上限的限制。
+	 * 
+	 * @param multiRowSize
+	 */
+	public void setMultiRowSize(int multiRowSize) {
+		this.multiRowSize = multiRowSize;
+	}
+
 	/**
 	 * 提交并执行批数据。 注意Batch对应的SQL语句是固定的。因此此处传入的对象只会影响参数中的绑定变量和SQL语句中的表名。对where条件、
 	 * Update中的set子句不会构成影响。
@@ -205,55 +333,164 @@ public abstract class Batch<T extends IQueryableEntity> {
 		if (objs.isEmpty()) {
 			return 0;
 		}
-		boolean debugMode = ORMConfig.getInstance().isDebugMode();
-		String tablename = null;
-
+		// 一次批操作中会创建多个日志对象，共用一次抽样结果
+		boolean sampled = AsyncSqlLog.beginOperation();
 		try {
-			if (this.groupForPartitionTable && forceTableName == null) {// 需要分组
-				callVeryBefore(objs);
-				int total = 0;
-				Map<PairSS, List<T>> data = doGroup(objs);
+			return doExecute(objs, sampled);
+		} finally {
+			AsyncSqlLog.endOperation();
+		}
+	}
+
+	private int doExecute(List<T> objs, boolean sampled) throws SQLException {
+		SqlLog log = ORMConfig.getInstance().newLogger();
+		int total = 0;
+		if (this.groupForPartitionTable && forceTableName == null) {// 需要分组
+			callVeryBefore(objs);
+			Map<PairSS, List<T>> data = doGroup(objs);
+			// 事务中各组共用同一个连接，只能依次执行
+			if (parallel && data.size() > 1 && parent instanceof DbClient) {
+				total = parallelCommit(data, sampled);
+			} else {
 				for (Map.Entry<PairSS, List<T>> entry : data.entrySet()) {
-					long start = System.currentTimeMillis();
-					PairSS target = entry.getKey();
-					String dbName = parent.getTransactionId(target.first);
-					tablename = target.second;
-					List<T> groupObj = entry.getValue();
-					long dbAccess = innerCommit(groupObj, target.first, tablename, dbName);
-					total += executeResult;
-					if (debugMode) {
-						LogUtil.info(StringUtils.concat(this.getClass().getSimpleName(), " Group executed:", String.valueOf(groupObj.size()), ". affect ", String.valueOf(executeResult), " record(s) on [" + entry.getKey() + "]\t Time cost([ParseSQL]:",
-								String.valueOf(parseTime / 1000), "us, [DbAccess]:", String.valueOf(dbAccess - start), "ms) |", dbName));
-					}
-				}
-				if (debugMode) {
-					LogUtil.info(StringUtils.concat(this.getClass().getSimpleName(), " Batch executed:", String.valueOf(objs.size()), ". affect ", String.valueOf(total), " record(s) and ", String.valueOf(data.size()), " tables. |  @",
-							String.valueOf(Thread.currentThread().getId())));
-				}
-			} else {// 不分组
-				long start = System.currentTimeMillis();
-				T obj = objs.get(0);
-				String site = null;
-				callVeryBefore(objs);
-				if (forceTableName != null) {
-					tablename = forceTableName;
-				} else {
-					PartitionResult pr = getTableName(obj);
-					site = forcrSite != null ? forcrSite : pr.getDatabase();
-					tablename = pr.getAsOneTable();
-				}
-				String dbName = parent.getTransactionId(null);
-				long dbAccess = innerCommit(objs, site, tablename, dbName);
-				if (debugMode) {
-					LogUtil.info(StringUtils.concat(this.getClass().getSimpleName(), " Batch executed total:", String.valueOf(objs.size()), ". affect ", String.valueOf(executeResult), " record(s)\t Time cost([ParseSQL]:", String.valueOf(parseTime / 1000), "us, [DbAccess]:",
-							String.valueOf(dbAccess - start), "ms) |", dbName));
+					total += commitGroup(entry.getKey(), entry.getValue(), log);
 				}
 			}
+			if (log.isDebug()) {
+				log.append(this.getClass().getSimpleName(), " Batch executed:").append(objs.size()).append(". affect ", total).append(" record(s) and ", data.size()).append(" tables. |  @", Thread.currentThread().getId());
+				log.output();
+			}
+		} else {// 不分组
+			long start = System.currentTimeMillis();
+			T obj = objs.get(0);
+			String site = null;
+			String tablename;
+			callVeryBefore(objs);
+			if (forceTableName != null) {
+				tablename = forceTableName;
+			} else {
+				PartitionResult pr = getTableName(obj);
+				site = forcrSite != null ? forcrSite : pr.getDatabase();
+				tablename = pr.getAsOneTable();
+			}
+			String dbName = parent.getTransactionId(null);
+			try {
+				total = innerCommit(objs, site, tablename, dbName);
+			} catch (SQLException e) {
+				DebugUtil.setSqlState(e, tablename);
+				throw e;
+			}
+			if (log.isDebug()) {
+				log.append(this.getClass().getSimpleName(), " Batch executed total:").append(objs.size()).append(". affect ", total).append(" record(s)\t Time cost([ParseSQL]:", parseTime / 1000)
+						.append("us, [DbAccess]:", System.currentTimeMillis() - start).append("ms) |", dbName);
+				log.output();
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * 以流的方式提交批数据。每读取chunkSize(未设置时为{@value #DEFAULT_STREAM_CHUNK})个对象执行一次，内存中只保留当前这一段数据。
+	 * 
+	 * @param objs
+	 * @return 影响的记录数
+	 * @throws SQLException
+	 * @see #execute(List)
+	 */
+	public int execute(Iterator<? extends T> objs) throws SQLException {
+		int size = chunkSize > 0 ? chunkSize : DEFAULT_STREAM_CHUNK;
+		List<T> chunk = new ArrayList<T>(size);
+		int total = 0;
+		while (objs.hasNext()) {
+			chunk.add(objs.next());
+			if (chunk.size() >= size) {
+				total = addCount(total, execute(chunk));
+				chunk = new ArrayList<T>(size);
+			}
+		}
+		if (!chunk.isEmpty()) {
+			total = addCount(total, execute(chunk));
+		}
+		return total;
+	}
+
+	/*
+	 * 驱动返回SUCCESS_NO_INFO等负值时，总数无法计算，此后一直返回该负值
+	 */
+	static int addCount(int total, int count) {
+		if (total < 0) {
+			return total;
+		}
+		return count < 0 ? count : total + count;
+	}
+
+	/*
+	 * 执行一个分组，返回影响的记录数
+	 */
+	private int commitGroup(PairSS target, List<T> groupObj, SqlLog log) throws SQLException {
+		long start = System.currentTimeMillis();
+		String dbName = parent.getTransactionId(target.first);
+		int count;
+		try {
+			count = innerCommit(groupObj, target.first, target.second, dbName);
 		} catch (SQLException e) {
-			DebugUtil.setSqlState(e, tablename);
+			DebugUtil.setSqlState(e, target.second);
 			throw e;
 		}
-		return executeResult;
+		if (log.isDebug()) {
+			log.append(this.getClass().getSimpleName(), " Group executed:").append(groupObj.size()).append(". affect ", count).append(" record(s) on [", target.first).append(':').append(target.second)
+					.append("]\t Time cost([ParseSQL]:", parseTime / 1000).append("us, [DbAccess]:", System.currentTimeMillis() - start).append("ms) |", dbName);
+			log.output();
+		}
+		return count;
+	}
+
+	/*
+	 * 并行执行各个分组。同一数据源上的分组放入一个队列，由不超过maxParallelPerDatasource个任务依次取出执行。
+	 * 各组在各自的连接上独立提交，某一组失败不影响其他组继续执行，全部执行完后再抛出失败各组的异常。
+	 */
+	private int parallelCommit(Map<PairSS, List<T>> data, final boolean sampled) throws SQLException {
+		Map<String, Queue<Map.Entry<PairSS, List<T>>>> bySite = new HashMap<String, Queue<Map.Entry<PairSS, List<T>>>>();
+		for (Map.Entry<PairSS, List<T>> entry : data.entrySet()) {
+			Queue<Map.Entry<PairSS, List<T>>> queue = bySite.get(entry.getKey().first);
+			if (queue == null) {
+				queue = new ConcurrentLinkedQueue<Map.Entry<PairSS, List<T>>>();
+				bySite.put(entry.getKey().first, queue);
+			}
+			queue.add(entry);
+		}
+		final AtomicInteger total = new AtomicInteger();
+		final Queue<SQLException> failures = new ConcurrentLinkedQueue<SQLException>();
+		List<DbTask> tasks = new ArrayList<DbTask>();
+		for (final Queue<Map.Entry<PairSS, List<T>>> queue : bySite.values()) {
+			int workers = Math.min(queue.size(), Math.max(1, maxParallelPerDatasource));
+			for (int i = 0; i < workers; i++) {
+				tasks.add(new DbTask() {
+					@Override
+					public void execute() throws SQLException {
+						AsyncSqlLog.beginOperation(sampled);
+						try {
+							SqlLog log = ORMConfig.getInstance().newLogger();
+							Map.Entry<PairSS, List<T>> entry;
+							while ((entry = queue.poll()) != null) {
+								try {
+									total.addAndGet(commitGroup(entry.getKey(), entry.getValue(), log));
+								} catch (SQLException e) {
+									failures.add(e);
+								}
+							}
+						} finally {
+							AsyncSqlLog.endOperation();
+						}
+					}
+				});
+			}
+		}
+		DbUtils.parallelExecute(tasks);
+		if (!failures.isEmpty()) {
+			throw DbUtils.wrapExceptions(failures);
+		}
+		return total.get();
 	}
 
 	protected PartitionResult getTableName(T obj) {
@@ -261,11 +498,14 @@ public abstract class Batch<T extends IQueryableEntity> {
 		return meta.getBaseTable(parent.getPartitionSupport().getProfile(meta.getBindDsName())).toPartitionResult();
 	}
 
-	protected long innerCommit(List<T> objs, String site, String tablename, String dbName) throws SQLException {
+	protected int innerCommit(List<T> objs, String site, String tablename, String dbName) throws SQLException {
 		OperateTarget db = parent.selectTarget(site);
 		String sql = toSql(DbUtils.escapeColumn(db.getProfile(), tablename));
-		if (ORMConfig.getInstance().isDebugMode())
-			LogUtil.show(sql + " | " + dbName);
+		SqlLog log = ORMConfig.getInstance().newLogger();
+		if (log.isDebug()) {
+			log.append(sql, " | ").append(dbName);
+			log.output();
+		}
 
 		PreparedStatement p = db.prepareStatement(sql);
 		try {
@@ -300,11 +540,36 @@ public abstract class Batch<T extends IQueryableEntity> {
 	}
 
 	/*
-	 * 提交每批数据，返回本次数据库完成后的时间
+	 * 提交每批数据，返回影响的记录数。设置了chunkSize时分成多次executeBatch()提交，避免驱动中积累过多的参数。
 	 */
-	protected long doCommit(PreparedStatement psmt, OperateTarget db, List<T> listValue) throws SQLException {
+	protected int doCommit(PreparedStatement psmt, OperateTarget db, List<T> listValue) throws SQLException {
+		int size = listValue.size();
+		int chunk = chunkSize > 0 && chunkSize < size ? chunkSize : size;
+		int total = 0;
+		for (int from = 0; from < size; from += chunk) {
+			List<T> part = chunk == size ? listValue : listValue.subList(from, Math.min(size, from + chunk));
+			total = addCount(total, commitChunk(psmt, db, part, from == 0));
+		}
+		return total;
+	}
+
+	/*
+	 * 违反约束的异常统一转换为SQLIntegrityConstraintViolationException
+	 */
+	protected static SQLException wrapConstraintViolation(SQLException e, OperateTarget db) {
+		if (e instanceof SQLIntegrityConstraintViolationException) {
+			return e;
+		}
+		String constraintName = db.getProfile().getViolatedConstraintNameExtracter().extractConstraintName(e);
+		if (constraintName != null) {
+			return new SQLIntegrityConstraintViolationException(constraintName);
+		}
+		return e;
+	}
+
+	private int commitChunk(PreparedStatement psmt, OperateTarget db, List<T> listValue, boolean first) throws SQLException {
 		callEventListenerBefore(listValue);
-		processJdbcParams(psmt, listValue, db);
+		processJdbcParams(psmt, listValue, db, first);
 		int[] result;
 		try {
 			result = psmt.executeBatch();
@@ -318,30 +583,9 @@ public abstract class Batch<T extends IQueryableEntity> {
 					realException = e;
 				}
 			}
-			if (realException instanceof SQLIntegrityConstraintViolationException) {
-				throw realException;
-			}
-			String constraintName = db.getProfile().getViolatedConstraintNameExtracter().extractConstraintName(realException);
-			if (constraintName != null) {
-				if (realException instanceof SQLIntegrityConstraintViolationException) {
-					throw realException;
-				} else {
-					throw new SQLIntegrityConstraintViolationException(constraintName);
-				}
-			} else {
-				throw realException;
-			}
+			throw wrapConstraintViolation(realException, db);
 		} catch (SQLException e) {
-			String constraintName = db.getProfile().getViolatedConstraintNameExtracter().extractConstraintName(e);
-			if (constraintName != null) {
-				if (e instanceof SQLIntegrityConstraintViolationException) {
-					throw e;
-				} else {
-					throw new SQLIntegrityConstraintViolationException(constraintName);
-				}
-			} else {
-				throw e;
-			}
+			throw wrapConstraintViolation(e, db);
 		}
 		int total = 0;
 		if (result[0] < 0) {
@@ -351,10 +595,8 @@ public abstract class Batch<T extends IQueryableEntity> {
 				total += i;
 			}
 		}
-		this.executeResult = total;
-		long dbAccess = System.currentTimeMillis();
 		callEventListenerAfter(listValue);
-		return dbAccess;
+		return total;
 	}
 
 	/*
@@ -372,8 +614,18 @@ public abstract class Batch<T extends IQueryableEntity> {
 	 */
 	protected abstract void callEventListenerAfter(List<T> listValue) throws SQLException;
 
+	/*
+	 * 绑定参数并加入批
+	 */
 	protected abstract void processJdbcParams(PreparedStatement psmt, List<T> listValue, OperateTarget db) throws SQLException;
 
+	/*
+	 * 分段提交时绑定参数并加入批。first为false时表示不是第一段数据，不再输出参数日志。默认忽略first，调用不带该参数的方法
+	 */
+	protected void processJdbcParams(PreparedStatement psmt, List<T> listValue, OperateTarget db, boolean first) throws SQLException {
+		processJdbcParams(psmt, listValue, db);
+	}
+
 	/**
 	 * 根据传入的表名，计算针对该表的SQL语句
 	 * 
@@ -444,9 +696,14 @@ public abstract class Batch<T extends IQueryableEntity> {
 
 		@Override
 		protected void processJdbcParams(PreparedStatement psmt, List<T> listValue, OperateTarget db) throws SQLException {
+			processJdbcParams(psmt, listValue, db, true);
+		}
+
+		@Override
+		protected void processJdbcParams(PreparedStatement psmt, List<T> listValue, OperateTarget db, boolean first) throws SQLException {
 			List<ColumnMapping> writeFields = insertPart.getFields();
 			int len = listValue.size();
-			SqlLog log = ORMConfig.getInstance().newLogger(this.extreme);
+			SqlLog log = ORMConfig.getInstance().newLogger(this.extreme || !first);
 			int maxLog = ORMConfig.getInstance().getMaxBatchLog();
 			for (int i = 0; i < len; i++) {
 				T t = listValue.get(i);
@@ -463,24 +720,109 @@ public abstract class Batch<T extends IQueryableEntity> {
 			}
 		}
 
-		protected long innerCommit(List<T> objs, String site, String tablename, String dbName) throws SQLException {
+		protected int innerCommit(List<T> objs, String site, String tablename, String dbName) throws SQLException {
 			OperateTarget db = parent.selectTarget(site);
+			// 并行执行时各组可能位于不同类型的数据库上，在副本上调整，不修改共用的insertPart
+			InsertSqlClause clause = insertPart;
 			if (extreme) {
-				db.getProfile().toExtremeInsert(insertPart);
+				clause = insertPart.copy();
+				db.getProfile().toExtremeInsert(clause);
 			}
-			String sql = toSql(tablename);
-			if (ORMConfig.getInstance().isDebugMode())
-				LogUtil.show(sql + " | " + dbName);
-			PreparedStatement p = insertPart.getCallback().doPrepareStatement(db, sql);
+			int rows = getMultiRows(db.getProfile(), objs.size());
+			if (rows > 1) {
+				try {
+					return multiRowCommit(db, clause, objs, tablename, dbName, rows);
+				} finally {
+					db.releaseConnection();
+				}
+			}
+			String sql = clause.getSql(tablename);
+			SqlLog log = ORMConfig.getInstance().newLogger();
+			if (log.isDebug()) {
+				log.append(sql, " | ").append(dbName);
+				log.output();
+			}
+			PreparedStatement p = clause.getCallback().doPrepareStatement(db, sql);
 			try {
-				long dbAccess = doCommit(p, db, objs);
-				return dbAccess;
+				return doCommit(p, db, objs);
 			} finally {
 				p.close();
 				db.releaseConnection();
 			}
 		}
 
+		/*
+		 * 计算一条多行insert语句中的行数，不能改写为多行values时返回0
+		 */
+		int getMultiRows(DatabaseDialect profile, int size) {
+			int columns = insertPart.getFields().size();
+			if (!isMultiRowValues() || size < 2 || columns == 0 || !profile.has(Feature.SUPPORT_MULTI_ROW_VALUES)) {
+				return 0;
+			}
+			int rows = Math.min(size, getMultiRowSize());
+			int maxParams = profile.getPropertyInt(DbProperty.MAX_BIND_PARAMETERS);
+			if (maxParams > 0) {
+				rows = Math.min(rows, maxParams / columns);
+			}
+			return rows;
+		}
+
+		/*
+		 * 每rows个对象合并为一条insert语句执行，不足rows的剩余部分再用一条行数较少的语句执行
+		 */
+		private int multiRowCommit(OperateTarget db, InsertSqlClause clause, List<T> objs, String tablename, String dbName, int rows) throws SQLException {
+			int size = objs.size();
+			int full = size - size % rows;
+			int total = 0;
+			if (full > 0) {
+				total += multiRowCommit(db, clause, objs.subList(0, full), tablename, dbName, rows, true);
+			}
+			if (full < size) {
+				total += multiRowCommit(db, clause, objs.subList(full, size), tablename, dbName, size - full, full == 0);
+			}
+			return total;
+		}
+
+		private int multiRowCommit(OperateTarget db, InsertSqlClause clause, List<T> objs, String tablename, String dbName, int rows, boolean first) throws SQLException {
+			SqlLog log = ORMConfig.getInstance().newLogger();
+			if (log.isDebug()) {
+				log.append(clause.getSql(tablename), " | ").append(dbName).append(" (multi-row values: ", rows).append(')');
+				log.output();
+			}
+			List<ColumnMapping> writeFields = clause.getFields();
+			int columns = writeFields.size();
+			int maxLog = ORMConfig.getInstance().getMaxBatchLog();
+			int total = 0;
+			PreparedStatement psmt = clause.getCallback().doPrepareStatement(db, clause.getMultiRowSql(tablename, rows));
+			try {
+				for (int from = 0; from < objs.size(); from += rows) {
+					List<T> part = objs.subList(from, from + rows);
+					callEventListenerBefore(part);
+					SqlLog paramLog = ORMConfig.getInstance().newLogger(this.extreme || !first || from > 0);
+					for (int i = 0; i < rows; i++) {
+						BindVariableContext context = new BindVariableContext(psmt, db.getProfile(), paramLog.append("Batch Parameters: ", i + 1).append('/').append(rows));
+						context.setInsertVariables(part.get(i), writeFields, i * columns);
+						if (paramLog.isDebug()) {
+							paramLog.output();
+							if (i + 1 == maxLog) {
+								paramLog.directLog("Batch Parameters: After " + maxLog + "th are ignored to reduce the size of log file.");
+								paramLog = SqlLog.DUMMY;
+							}
+						}
+					}
+					try {
+						total += psmt.executeUpdate();
+					} catch (SQLException e) {
+						throw wrapConstraintViolation(e, db);
+					}
+					callEventListenerAfter(part);
+				}
+			} finally {
+				psmt.close();
+			}
+			return total;
+		}
+
 		@Override
 		protected void callVeryBefore(List<T> objs) throws SQLException {
 			if (insertPart.getCallback() != null) {
@@ -489,6 +831,115 @@ public abstract class Batch<T extends IQueryableEntity> {
 		}
 	}
 
+	static final class Merge<T extends IQueryableEntity> extends Batch<T> {
+		/**
+		 * 写入的字段，顺序与SQL中的绑定变量相同
+		 */
+		private final List<ColumnMapping> fields;
+		/**
+		 * 生成SQL使用的方言
+		 */
+		private final DatabaseDialect profile;
+		private final List<String> columns = new ArrayList<String>();
+		private final List<String> keys = new ArrayList<String>();
+		private final List<String> updates = new ArrayList<String>();
+
+		Merge(Session parent, ITableMetadata meta, DatabaseDialect profile) throws SQLException {
+			super(parent, meta);
+			this.profile = profile;
+			this.fields = new ArrayList<ColumnMapping>();
+			for (ColumnMapping column : meta.getColumns()) {
+				String name = column.getColumnName(profile, true);
+				if (column.isPk()) {
+					keys.add(name);
+				} else if (column.isNotInsert()) {
+					continue;
+				} else if (!column.isNotUpdate() && !isGeneratedVersion(column)) {
+					updates.add(name);
+				}
+				fields.add(column);
+				columns.add(name);
+			}
+		}
+
+		/*
+		 * 版本号、创建/修改时间等由框架维护的列。合并语句中这些列只在插入时写入，记录已存在时保留原值，
+		 * 以免用对象中的旧值覆盖数据库中的版本号
+		 */
+		private static boolean isGeneratedVersion(ColumnMapping column) {
+			return column instanceof VersionSupportColumn && column.isGenerated();
+		}
+
+		/**
+		 * 方言是否支持单条语句的合并
+		 * 
+		 * @return
+		 */
+		boolean isSupported() {
+			return profile.toUpsertSql("T", columns, keys, updates) != null;
+		}
+
+		@Override
+		protected String toSql(String tablename) {
+			return profile.toUpsertSql(tablename, columns, keys, updates);
+		}
+
+		@Override
+		protected void callEventListenerBefore(List<T> listValue) {
+			Session parent = this.parent;
+			DbOperatorListener listener = parent.getListener();
+			for (T t : listValue) {
+				listener.beforeUpdate(t, parent);
+			}
+		}
+
+		@Override
+		protected void callEventListenerAfter(List<T> listValue) {
+			Session parent = this.parent;
+			// 无法得知每条记录是插入还是更新，都按插入处理：清除该主键的缓存(含主键缓存)，以及同一表上其他维度的查询结果
+			Cache cache = parent.getCache();
+			DbOperatorListener listener = parent.getListener();
+			for (T t : listValue) {
+				try {
+					cache.onInsert(t, forceTableName);
+				} catch (Exception e) {
+					LogUtil.exception(e);
+				}
+				t.clearUpdate();
+				listener.afterUpdate(t, 1, parent);
+			}
+		}
+
+		@Override
+		protected void processJdbcParams(PreparedStatement psmt, List<T> listValue, OperateTarget db) throws SQLException {
+			processJdbcParams(psmt, listValue, db, true);
+		}
+
+		@Override
+		protected void processJdbcParams(PreparedStatement psmt, List<T> listValue, OperateTarget db, boolean first) throws SQLException {
+			int len = listValue.size();
+			SqlLog log = ORMConfig.getInstance().newLogger(this.extreme || !first);
+			int maxLog = ORMConfig.getInstance().getMaxBatchLog();
+			for (int i = 0; i < len; i++) {
+				T t = listValue.get(i);
+				BindVariableContext context = new BindVariableContext(psmt, db.getProfile(), log.append("Batch Parameters: ", i + 1).append('/').append(len));
+				context.setInsertVariables(t, fields);
+				psmt.addBatch();
+				if (log.isDebug()) {
+					log.output();
+					if (i + 1 == maxLog) {
+						log.directLog("Batch Parameters: After " + maxLog + "th are ignored to reduce the size of log file.");
+						log = SqlLog.DUMMY;
+					}
+				}
+			}
+		}
+
+		@Override
+		protected void callVeryBefore(List<T> objs) throws SQLException {
+		}
+	}
+
 	static final class Update<T extends IQueryableEntity> extends Batch<T> {
 		/**
 		 * SQL片段，update部分(UPDATE语句使用)
@@ -538,9 +989,14 @@ public abstract class Batch<T extends IQueryableEntity> {
 
 		@Override
 		protected void processJdbcParams(PreparedStatement psmt, List<T> listValue, OperateTarget db) throws SQLException {
+			processJdbcParams(psmt, listValue, db, true);
+		}
+
+		@Override
+		protected void processJdbcParams(PreparedStatement psmt, List<T> listValue, OperateTarget db, boolean first) throws SQLException {
 			List<Variable> bindVar = wherePart.getBind();
 			int len = listValue.size();
-			SqlLog log = ORMConfig.getInstance().newLogger(this.extreme);
+			SqlLog log = ORMConfig.getInstance().newLogger(this.extreme || !first);
 			int maxLog = ORMConfig.getInstance().getMaxBatchLog();
 			for (int i = 0; i < len; i++) {
 				T t = listValue.get(i);
@@ -548,7 +1004,7 @@ public abstract class Batch<T extends IQueryableEntity> {
 				List<Object> whereBind = context.setVariables(t.getQuery(), updatePart.getVariables(), bindVar);
 				psmt.addBatch();
 				String baseTableName = forceTableName == null ? meta.getTableName(false) : forceTableName;
-				parent.getCache().onUpdate(baseTableName, wherePart.getSql(), whereBind);
+				parent.getCache().onUpdate(baseTableName, wherePart.getSql(), whereBind, updatePart.getColumns());
 
 				if (log.isDebug()) {
 					log.output();
@@ -608,8 +1064,13 @@ public abstract class Batch<T extends IQueryableEntity> {
 
 		@Override
 		protected void processJdbcParams(PreparedStatement psmt, List<T> listValue, OperateTarget db) throws SQLException {
+			processJdbcParams(psmt, listValue, db, true);
+		}
+
+		@Override
+		protected void processJdbcParams(PreparedStatement psmt, List<T> listValue, OperateTarget db, boolean first) throws SQLException {
 			int len = listValue.size();
-			SqlLog log = ORMConfig.getInstance().newLogger(this.extreme);
+			SqlLog log = ORMConfig.getInstance().newLogger(this.extreme || !first);
 			int maxLog = ORMConfig.getInstance().getMaxBatchLog();
 			for (int i = 0; i < len; i++) {
 				T t = listValue.get(i);
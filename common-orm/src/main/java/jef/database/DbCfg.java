@@ -33,6 +33,26 @@ public enum DbCfg implements ConfigItem {
 	 * 数据库删除超时,单位秒，默认60<br/>
 	 */
 	DB_DELETE_TIMEOUT,
+	/**
+	 * 单表条件查询的SQL缓存条数，默认1000，设置为0表示不启用。
+	 * 结构相同（字段、运算符、IN列表长度、排序相同）的查询直接复用上次生成的SQL语句，只替换绑定变量的值。
+	 */
+	DB_SQL_PLAN_CACHE_SIZE,
+	/**
+	 * 单行insert/update语句的SQL缓存条数，默认1000，设置为0表示不启用。
+	 * 同一实体上设置了值的字段相同时，直接复用上次生成的列、值和set部分。
+	 */
+	DB_WRITE_SQL_CACHE_SIZE,
+	/**
+	 * 拼装查询结果时，是否用ASM为每种类和结果集列布局生成拼装类，默认true。
+	 * 生成的类按列序号直接调用ResultSet.getXxx(int)和setter，不再按字段名反射设值。
+	 */
+	DB_ASM_ROW_MAPPER,
+	/**
+	 * 路由数据源(JDataSource)上SQL解析结果的缓存条数，默认1000。
+	 * 相同的SQL语句只解析和改写一次，执行时只按参数值计算路由。
+	 */
+	DB_ROUTING_PARSE_CACHE_SIZE,
 	/**
 	 * schema重定向功能（特色）
 	 */
@@ -91,6 +111,26 @@ public enum DbCfg implements ConfigItem {
 	 * 在批量操作时日志中打印出的最多的参数组，默认5
 	 */
 	DB_MAX_BATCH_LOG,
+	/**
+	 * 分库分表的批量操作按表分组后，是否在多个线程上并行执行各组，默认false。仅对非事务操作有效。
+	 */
+	DB_BATCH_PARALLEL,
+	/**
+	 * 批量操作并行执行时，每个数据源上同时执行的组数上限，默认4
+	 */
+	DB_BATCH_PARALLEL_PER_DATASOURCE,
+	/**
+	 * 批量操作时每次executeBatch()提交的最大记录数，默认0表示一次提交全部记录
+	 */
+	DB_BATCH_CHUNK_SIZE,
+	/**
+	 * 批量插入时，在支持的数据库上是否改写为一条insert语句带多行values的形式，默认false
+	 */
+	DB_BATCH_MULTI_ROW_VALUES,
+	/**
+	 * 改写为多行values时，一条insert语句中的最大行数，默认500。同时受数据库绑定变量个数上限的限制。
+	 */
+	DB_BATCH_MULTI_ROW_SIZE,
 	/**
 	 * 自动转换表名(为旧版本保留，如果用户没有通过JPA配置对象与表名的关系，那么开启此选项后， userId -> USER_ID， 否则userId -> USERID
 	 */
@@ -121,10 +161,28 @@ public enum DbCfg implements ConfigItem {
 	 * JEF内嵌连接池心跳时间，按此间隔对连接进行扫描检查，单位毫秒。默认120秒
 	 */
 	DB_HEARTBEAT,
+	/**
+	 * JEF内嵌连接池创建时是否在后台预先建立最小连接数个连接，默认false。多个连接池的预热并行进行
+	 */
+	DB_POOL_WARM_UP,
+	/**
+	 * JEF内嵌连接池后台检查连接有效性的超时时间，单位秒，默认5
+	 */
+	DB_POOL_CHECK_TIMEOUT,
+	/**
+	 * JEF内嵌连接池在后台建立连接（预热、补足最小连接数、重连失效连接）的超时时间，单位秒，默认10。超时的连接建立完成后会被关闭
+	 */
+	DB_POOL_CONNECT_TIMEOUT,
 	/**
 	 * 每个连接最小生存时间
 	 */
 	DB_CONNECTION_LIVE,	
+	/**
+	 * JEF内嵌连接池中每个连接缓存的PreparedStatement个数，数字，默认0（不缓存）。
+	 * 
+	 * 开启后相同的SQL在同一个连接上不再重复prepare，Statement关闭时归还到缓存中
+	 */
+	DB_STATEMENT_CACHE_SIZE,
 	
 	
 	/////////////////默认连接的数据库配置////////////////
@@ -173,6 +231,22 @@ public enum DbCfg implements ConfigItem {
 	 * 为此可以配置为default / no_wrap，no_wrap格式下，一个SQL语句只占用一行输出。
 	 */
 	DB_LOG_FORMAT,
+	/**
+	 * 异步输出SQL日志，默认false。开启后执行SQL的线程只记录语句和参数的引用，由后台线程格式化并输出，适合在生产环境中打开SQL日志。
+	 */
+	DB_LOG_ASYNC,
+	/**
+	 * 异步SQL日志的缓冲区大小(条)，默认4096。缓冲区满时丢弃日志，不阻塞数据库操作。
+	 */
+	DB_LOG_ASYNC_BUFFER,
+	/**
+	 * 异步SQL日志的抽样率，默认1。设置为N时每N次数据库操作记录一次日志。
+	 */
+	DB_LOG_SAMPLE_RATE,
+	/**
+	 * 异步SQL日志每秒最多记录的数据库操作次数，默认0表示不限制。
+	 */
+	DB_LOG_MAX_PER_SECOND,
 	
 	/**
 	 * 格式化SQL语句
@@ -319,6 +393,36 @@ public enum DbCfg implements ConfigItem {
 	 * 默认为50;
 	 */
 	SEQUENCE_BATCH_SIZE,
+	/**
+	 * Sequence缓存中剩余的值低于一批的百分之多少时，在后台线程中预取下一批，使插入操作不必等待数据库。
+	 * 
+	 * 默认为20，配置为0时不预取，缓存用完时再同步获取。
+	 */
+	SEQUENCE_PREFETCH_PERCENT,
+	/**
+	 * 是否根据每个Sequence实际的消耗速度自动调整每次获取的数量，默认false。
+	 * 消耗快的Sequence逐步加大获取数量，减少访问数据库的次数；消耗慢的逐步减小，避免重启后浪费大段的值。
+	 * 配置了{@link #SEQUENCE_BATCH_SIZE}时始终按配置的数量获取，不自动调整。
+	 */
+	SEQUENCE_ADAPTIVE,
+	/**
+	 * 自动调整时，两次获取之间的目标间隔(秒)。一批值用完的时间短于其一半时加倍获取数量，长于其两倍时减半。默认10
+	 */
+	SEQUENCE_ADAPTIVE_INTERVAL,
+	/**
+	 * 自动调整时每次获取数量的下限，默认1
+	 */
+	SEQUENCE_BATCH_SIZE_MIN,
+	/**
+	 * 自动调整时每次获取的值个数的上限，默认5000。原生Sequence的步长大于1时，每次查询得到步长个值，按值的个数计算
+	 */
+	SEQUENCE_BATCH_SIZE_MAX,
+	/**
+	 * 使用公共的Sequence表({@link #DB_GLOBAL_SEQUENCE_TABLE})时，每个Sequence分成几个号段行，默认1(不分段)。
+	 * 大于1时各节点优先更新按节点计算出的号段行，冲突时换下一行，避免集群中所有节点争用同一行的锁。
+	 * 集群中所有节点的此项配置和{@link #SEQUENCE_BATCH_SIZE}必须相同。
+	 */
+	SEQUENCE_STRIPES,
 	/**
 	 * 开启此选项后，允许自动创建数据库SEQUENCE (或模拟用的TABLE)。
 	 * 一般用在开发时和一些小型项目中，不适用于对用户权限有严格规范的专业项目中。
@@ -348,7 +452,21 @@ public enum DbCfg implements ConfigItem {
 	 * 默认空白
 	 */
 	DB_GLOBAL_SEQUENCE_TABLE,
-	
+	/**
+	 * Snowflake算法生成ID时本节点的节点号(0~1023)，集群中每个节点必须不同。
+	 * 默认-1，表示从节点表中租用一个空闲的节点号，关闭DbClient时归还。
+	 */
+	DB_SNOWFLAKE_NODE_ID,
+	/**
+	 * 租用Snowflake节点号的表名，默认JEF_SNOWFLAKE_NODES
+	 */
+	DB_SNOWFLAKE_NODE_TABLE,
+	/**
+	 * 租用的Snowflake节点号的租约时长(秒)，默认300。租用者每隔三分之一的时长续期一次，
+	 * 超过时长未续期的节点号可被其他进程回收，原租用者此后不再生成ID。
+	 */
+	DB_SNOWFLAKE_LEASE_TIMEOUT,
+
 	////////////////////其他数据库相关设置////////////////////////
 	/**
 	 * 启用一级缓存，默认false
@@ -360,6 +478,53 @@ public enum DbCfg implements ConfigItem {
 	 * 如果设置为>0的数值表示启用二级缓存，每条缓存记录的最大生存时间等于指定的秒数。
 	 */
 	CACHE_GLOBAL_EXPIRE_TIME,
+	/**
+	 * 二级缓存中每个表空间（即每张表或每个多表查询的组合）允许占用的最大内存，单位KB。默认16384，即16MB。
+	 * 缓存项按估算的大小计量，超出后按访问频率淘汰。设置为0表示不限制。
+	 * 可以被实体上的&#64;CacheSetting注解覆盖。
+	 */
+	CACHE_GLOBAL_SPACE_SIZE,
+	/**
+	 * 二级缓存使用堆外内存存放查询结果，默认false。
+	 * 开启后实体结果被编码为紧凑的字节格式存放在堆外(Direct ByteBuffer)，命中时重新构造实体。此时{@link #CACHE_GLOBAL_SPACE_SIZE}限制的是编码后的大小。
+	 * 无法编码的结果（如非实体结果、含有不支持的数据类型）仍然存放在堆内。
+	 */
+	CACHE_GLOBAL_OFF_HEAP,
+	/**
+	 * 二级缓存中按主键加载的对象缓存，每张表最多缓存的对象个数，默认10000。设置为0表示不启用。
+	 * 启用后按主键加载(load/batchLoad)时先从该缓存中查找，只对未命中的主键查询数据库。
+	 * 仅对无级联关系、无分表规则的实体生效。
+	 */
+	CACHE_GLOBAL_IDENTITY_SIZE,
+	/**
+	 * 缓存维度解析结果的最大条数，默认4096。
+	 * 构造缓存Key时需要解析where条件和表定义，解析结果会按原始文本缓存，避免每次查询都解析SQL。
+	 */
+	CACHE_KEY_PARSE_SIZE,
+	/**
+	 * 缓存的行级失效，默认false。
+	 * 开启后缓存的查询结果会记录其中各行的主键，按主键更新/删除记录时，只清除包含这些记录的结果，以及条件中引用了被修改列的结果，
+	 * 而不是清除该表的全部缓存。适用于读写混合的表。
+	 */
+	CACHE_ROW_INVALIDATION,
+	/**
+	 * 集群缓存的消息总线，配置为一个实现了jef.database.cache.InvalidationBus接口的类名。默认空白，即不启用。
+	 * 多个节点连接同一个数据库时，配置后各节点的二级缓存互相通知数据修改，保持一致。
+	 * 内置实现有jef.database.cache.DatagramInvalidationBus(UDP)和jef.database.cache.LocalInvalidationBus(JVM内部，测试用)
+	 */
+	CACHE_CLUSTER_BUS,
+	/**
+	 * 使用DatagramInvalidationBus时，本节点绑定的地址，默认为环回地址。多台主机组成集群时须配置为本机在集群网络中的地址
+	 */
+	CACHE_CLUSTER_BIND,
+	/**
+	 * 使用DatagramInvalidationBus时，本节点监听的UDP端口，默认7070
+	 */
+	CACHE_CLUSTER_PORT,
+	/**
+	 * 使用DatagramInvalidationBus时，其他节点的地址，格式为 host1:port1,host2:port2
+	 */
+	CACHE_CLUSTER_PEERS,
 	/**
 	 * 允许为空的查询条件，默认false
 	 */
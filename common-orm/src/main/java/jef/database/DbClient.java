@@ -28,6 +28,8 @@ import jef.common.log.LogUtil;
 import jef.database.cache.Cache;
 import jef.database.cache.CacheDummy;
 import jef.database.cache.CacheImpl;
+import jef.database.cache.ClusterCache;
+import jef.database.cache.InvalidationBus;
 import jef.database.datasource.SimpleDataSource;
 import jef.database.dialect.AbstractDialect;
 import jef.database.dialect.DatabaseDialect;
@@ -73,6 +75,10 @@ public class DbClient extends Session implements SessionFactory {
      * Sequence管理器
      */
     private SequenceManager sequenceManager;
+    /**
+     * Snowflake ID生成器，首次使用时创建
+     */
+    private volatile SnowflakeIdGenerator snowflake;
 
     /**
      * 事务支持类型
@@ -240,6 +246,21 @@ public class DbClient extends Session implements SessionFactory {
         }
     }
 
+    /*
+     * 创建集群缓存的消息总线
+     */
+    private InvalidationBus createInvalidationBus() {
+        String clz = JefConfiguration.get(DbCfg.CACHE_CLUSTER_BUS);
+        if (StringUtils.isEmpty(clz)) {
+            return null;
+        }
+        try {
+            return (InvalidationBus) BeanUtils.newInstance(Class.forName(clz));
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Invalid cache cluster bus:" + clz, e);
+        }
+    }
+
     protected synchronized void initNQ() {
         namedQueries = new NamedQueryHolder(this);
     }
@@ -320,6 +341,28 @@ public class DbClient extends Session implements SessionFactory {
         return sequenceManager;
     }
 
+    /**
+     * 获得本节点的Snowflake ID生成器。
+     * 首次调用时按配置确定节点号，未配置节点号时在默认数据源上租用一个。
+     * 
+     * @return
+     * @throws SQLException
+     * @see DbCfg#DB_SNOWFLAKE_NODE_ID
+     */
+    public SnowflakeIdGenerator getSnowflakeGenerator() throws SQLException {
+        SnowflakeIdGenerator g = snowflake;
+        if (g == null) {
+            synchronized (this) {
+                g = snowflake;
+                if (g == null) {
+                    g = SnowflakeIdGenerator.create(getMetaData(null));
+                    snowflake = g;
+                }
+            }
+        }
+        return g;
+    }
+
     /*
      * 初始化
      */
@@ -347,7 +390,9 @@ public class DbClient extends Session implements SessionFactory {
 
         // 设置全局缓存
         if (ORMConfig.getInstance().getCacheLevel2() > 0) {
-            this.golbalCache = new CacheImpl(preProcessor, selectp, ORMConfig.getInstance().getCacheLevel2(), "GLOBAL");
+            CacheImpl cache = new CacheImpl(preProcessor, selectp, ORMConfig.getInstance().getCacheLevel2(), ORMConfig.getInstance().getCacheLevel2SpaceSize(), "GLOBAL");
+            InvalidationBus bus = createInvalidationBus();
+            this.golbalCache = bus == null ? cache : new ClusterCache(cache, bus);
         } else {
             this.golbalCache = CacheDummy.getInstance();
         }
@@ -796,6 +841,33 @@ public class DbClient extends Session implements SessionFactory {
         return !connPool.isDummy();
     }
 
+    /**
+     * 获得单表查询SQL缓存的统计信息
+     * 
+     * @return
+     */
+    public String getSqlPlanCacheStatics() {
+        return selectp.getPlanCacheStatics();
+    }
+
+    /**
+     * 获得insert/update语句SQL缓存的统计信息
+     * 
+     * @return
+     */
+    public String getWriteSqlCacheStatics() {
+        return "insert " + insertp.getSqlCacheStatics() + ", update " + updatep.getSqlCacheStatics();
+    }
+
+    /**
+     * 获得各个Sequence的获取数量和耗时
+     * 
+     * @return
+     */
+    public String getSequenceStatics() {
+        return sequenceManager.getStatics();
+    }
+
     /**
      * 获得内部连接池的统计信息
      * 
@@ -1017,6 +1089,13 @@ public class DbClient extends Session implements SessionFactory {
             LogUtil.exception(e);
         }
         this.sequenceManager.close();
+        if (snowflake != null) {
+            snowflake.release();
+            snowflake = null;
+        }
+        if (golbalCache instanceof ClusterCache) {
+            ((ClusterCache) golbalCache).close();
+        }
         try {
             connPool.close();
             JefFacade.unregisteEmf((DbClient) this);
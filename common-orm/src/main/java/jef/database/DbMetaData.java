@@ -179,6 +179,10 @@ public class DbMetaData {
      * 时间偏移量
      */
     private long dbTimeDelta;
+    /**
+     * 能否使用合并(upsert)语句，首次使用时按数据库版本计算
+     */
+    private volatile Boolean upsertSupported;
 
     private IUserManagedPool parent;
 
@@ -944,6 +948,22 @@ public class DbMetaData {
         return version;
     }
 
+    /**
+     * 当前数据库能否执行方言生成的合并(upsert)语句
+     * 
+     * @return 不支持时返回false
+     * @throws SQLException
+     * @see DatabaseDialect#supportsUpsert(String)
+     */
+    public boolean supportsUpsert() throws SQLException {
+        Boolean result = upsertSupported;
+        if (result == null) {
+            result = info.profile.supportsUpsert(getDatabaseVersion());
+            upsertSupported = result;
+        }
+        return result;
+    }
+
     /**
      * @return the JDBC 'DatabaseMetaData' object
      * @throws SQLException
@@ -70,6 +70,7 @@ import jef.database.dialect.type.ColumnMapping;
 import jef.database.innerpool.PartitionSupport;
 import jef.database.jsqlparser.parser.JpqlParser;
 import jef.database.jsqlparser.parser.ParseException;
+import jef.database.jsqlparser.parser.SimpleSqlParser;
 import jef.database.jsqlparser.parser.StSqlParser;
 import jef.database.jsqlparser.parser.TokenMgrError;
 import jef.database.jsqlparser.statement.create.ColumnDefinition;
@@ -419,6 +420,10 @@ public final class DbUtils {
 	 * @throws ParseException
 	 */
 	public static Select parseSelect(String sql) throws ParseException {
+		jef.database.jsqlparser.visitor.Statement st = SimpleSqlParser.parse(sql, true);
+		if (st instanceof Select) {
+			return (Select) st;
+		}
 		JpqlParser parser = new JpqlParser(new StringReader(sql));
 		return parser.Select();
 	}
@@ -431,10 +436,30 @@ public final class DbUtils {
 	 * @throws ParseException
 	 */
 	public static Select parseNativeSelect(String sql) throws ParseException {
+		jef.database.jsqlparser.visitor.Statement st = SimpleSqlParser.parse(sql, false);
+		if (st instanceof Select) {
+			return (Select) st;
+		}
 		StSqlParser parser = new StSqlParser(new StringReader(sql));
 		return parser.Select();
 	}
 
+	/**
+	 * 解析语句(原生SQL)
+	 * 
+	 * @param sql
+	 * @return
+	 * @throws ParseException
+	 */
+	public static jef.database.jsqlparser.visitor.Statement parseNativeStatement(String sql) throws ParseException {
+		jef.database.jsqlparser.visitor.Statement st = SimpleSqlParser.parse(sql, false);
+		if (st != null) {
+			return st;
+		}
+		StSqlParser parser = new StSqlParser(new StringReader(sql));
+		return parser.Statement();
+	}
+
 	/**
 	 * 解析表达式
 	 * 
@@ -483,6 +508,11 @@ public final class DbUtils {
 	 * @throws ParseException
 	 */
 	public static jef.database.jsqlparser.visitor.Statement parseStatement(String sql) throws ParseException {
+		// 简单语句直接解析，其余的交给JavaCC解析器
+		jef.database.jsqlparser.visitor.Statement st = SimpleSqlParser.parse(sql, true);
+		if (st != null) {
+			return st;
+		}
 		JpqlParser parser = new JpqlParser(new StringReader(sql));
 		try {
 			return parser.Statement();
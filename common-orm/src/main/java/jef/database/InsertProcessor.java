@@ -17,6 +17,7 @@ import jef.database.wrapper.clause.InsertSqlClause;
 import jef.database.wrapper.processor.InsertStep.OracleRowidKeyCallback;
 import jef.database.wrapper.variable.BindVariableContext;
 import jef.tools.ArrayUtils;
+import jef.tools.JefConfiguration;
 import jef.tools.StringUtils;
 
 abstract class InsertProcessor {
@@ -62,9 +63,22 @@ abstract class InsertProcessor {
 		this.db = parentDbClient;
 	}
 
+	/**
+	 * 得到SQL缓存的命中统计
+	 * 
+	 * @return
+	 */
+	String getSqlCacheStatics() {
+		return "";
+	}
+
 	static final class PreparedImpl extends InsertProcessor {
+		private final WriteSqlCache sqls;
+
 		PreparedImpl(DbClient parentDbClient) {
 			super(parentDbClient);
+			int size = JefConfiguration.getInt(DbCfg.DB_WRITE_SQL_CACHE_SIZE, 1000);
+			this.sqls = size > 0 ? new WriteSqlCache(size) : null;
 		}
 
 		@Override
@@ -75,26 +89,37 @@ abstract class InsertProcessor {
 		@Override
 		InsertSqlClause toInsertSqlBatch(IQueryableEntity obj, String tableName, boolean dynamic, boolean extreme, PartitionResult pr) throws SQLException {
 			DatabaseDialect profile = pr == null ? db.getProfile(null) : db.getProfile(pr.getDatabase());
-			List<String> cStr = new ArrayList<String>();// 字段列表
-			List<String> vStr = new ArrayList<String>();// 值列表
 			ITableMetadata meta = MetaHolder.getMeta(obj);
 			InsertSqlClause result = new InsertSqlClause(extreme);
 			result.parent = db;
 			result.profile = profile;
 			result.setTableNames(pr);
-			for (ColumnMapping entry : meta.getColumns()) {
-				if(entry.isNotInsert())
-					continue;
-				entry.processPreparedInsert(obj, cStr, vStr, result, dynamic);
+			List<Object> key = sqls == null ? null : WriteSqlCache.insertKey(meta, obj, profile, pr, dynamic, extreme);
+			if (key == null || !sqls.applyInsert(key, result)) {
+				List<String> cStr = new ArrayList<String>();// 字段列表
+				List<String> vStr = new ArrayList<String>();// 值列表
+				for (ColumnMapping entry : meta.getColumns()) {
+					if(entry.isNotInsert())
+						continue;
+					entry.processPreparedInsert(obj, cStr, vStr, result, dynamic);
+				}
+				result.setColumnsPart(StringUtils.join(cStr, ','));
+				result.setValuesPart(StringUtils.join(vStr, ','));
+				if (key != null) {
+					sqls.putInsert(key, result);
+				}
 			}
 			if (profile.has(Feature.SELECT_ROW_NUM) && !extreme) {
 				result.getCallback().addProcessor(new OracleRowidKeyCallback());
 			}
-			result.setColumnsPart(StringUtils.join(cStr, ','));
-			result.setValuesPart(StringUtils.join(vStr, ','));
 			return result;
 		}
 
+		@Override
+		String getSqlCacheStatics() {
+			return sqls == null ? "Disabled." : sqls.getStatics();
+		}
+
 		@Override
 		void processInsert(OperateTarget db, IQueryableEntity obj, InsertSqlClause sqls, long start, long parse) throws SQLException {
 			SqlLog sb = ORMConfig.getInstance().newLogger();
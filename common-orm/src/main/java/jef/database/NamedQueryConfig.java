@@ -3,15 +3,20 @@ package jef.database;
 import java.lang.reflect.Array;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Transient;
 
 import jef.common.Entry;
 import jef.database.annotation.EasyEntity;
@@ -136,6 +141,12 @@ public class NamedQueryConfig extends jef.database.DataObject {
 	@Column(name = "FETCH_SIZE", precision = 6)
 	private int fetchSize;
 
+	/**
+	 * 查询结果缓存的生存时间（秒），0表示不缓存。在XML中用cache-expire属性配置
+	 */
+	@Transient
+	private int cacheExpire;
+
 	private boolean fromDb = false;
 
 	private Map<DatabaseDialect, DialectCase> datas = new IdentityHashMap<DatabaseDialect, DialectCase>();;
@@ -148,12 +159,26 @@ public class NamedQueryConfig extends jef.database.DataObject {
 		this.fromDb = fromDb;
 	}
 
+	/**
+	 * 每个语句最多缓存的模板数
+	 */
+	private static final int MAX_TEMPLATES = 256;
+
 	private static final class DialectCase {
 		Statement statement;
 		jef.database.jsqlparser.statement.select.Select count;
 		Map<Object, ParameterMetadata> params;
 		RemovedDelayProcess delays;
 		public Limit countLimit;
+		/**
+		 * 语句中出现的全部参数名/序号
+		 */
+		Object[] keys;
+		/**
+		 * 按参数传入情况缓存的模板
+		 */
+		final Map<List<Object>, NamedQueryTemplate> templates = new ConcurrentHashMap<List<Object>, NamedQueryTemplate>();
+		final Map<List<Object>, NamedQueryTemplate> countTemplates = new ConcurrentHashMap<List<Object>, NamedQueryTemplate>();
 	}
 
 	static final class ParameterMetadata {
@@ -246,6 +271,7 @@ public class NamedQueryConfig extends jef.database.DataObject {
 			DialectCase result = new DialectCase();
 			result.statement = st;
 			result.params = params;
+			result.keys = collectKeys(st);
 			if (localization.delayLimit != null || localization.delayStartWith != null) {
 				result.delays = new RemovedDelayProcess(localization.delayLimit, localization.delayStartWith);
 			}
@@ -297,8 +323,25 @@ public class NamedQueryConfig extends jef.database.DataObject {
 	 * @throws SQLException
 	 */
 	public SqlAndParameter getSqlAndParams(OperateTarget db, ParameterProvider prov) throws SQLException {
+		return getSqlAndParams(db, prov, true);
+	}
+
+	/**
+	 * 得到SQL和绑定参数
+	 * 
+	 * @param db
+	 * @param prov
+	 * @param routing
+	 *            是否要对语句做路由分析。路由分析需要在语法树上应用参数，否则使用预编译的模板生成SQL
+	 * @return 要执行的语句和绑定变量列表
+	 * @throws SQLException
+	 */
+	public SqlAndParameter getSqlAndParams(OperateTarget db, ParameterProvider prov, boolean routing) throws SQLException {
 		DialectCase dc = getDialectCase(db);
-		SqlAndParameter result = applyParam(dc.statement, prov);
+		SqlAndParameter result = routing ? null : applyTemplate(dc, false, db, prov);
+		if (result == null) {
+			result = applyParam(dc.statement, prov);
+		}
 		result.setInMemoryClause(dc.delays);
 		return result;
 	}
@@ -330,46 +373,168 @@ public class NamedQueryConfig extends jef.database.DataObject {
 	 * @throws SQLException
 	 */
 	public SqlAndParameter getCountSqlAndParams(OperateTarget db, ParameterProvider prov) throws SQLException {
+		return getCountSqlAndParams(db, prov, true);
+	}
+
+	/**
+	 * 得到修改后的count语句和绑定参数 注意只有select语句能修改成count语句
+	 * 
+	 * @param db
+	 * @param prov
+	 * @param routing
+	 *            是否要对语句做路由分析
+	 * @return
+	 * @throws SQLException
+	 */
+	public SqlAndParameter getCountSqlAndParams(OperateTarget db, ParameterProvider prov, boolean routing) throws SQLException {
 		DialectCase dc = getDialectCase(db);
 		if (dc.count == null) {
-			if (dc.statement instanceof jef.database.jsqlparser.statement.select.Select) {
-				SelectBody oldBody = ((jef.database.jsqlparser.statement.select.Select) dc.statement).getSelectBody();
-				SelectToCountWrapper body = null;
-				if (oldBody instanceof PlainSelect) {
-					body = new SelectToCountWrapper((PlainSelect) oldBody, db.getProfile());
-				} else if (oldBody instanceof Union) {
-					body = new SelectToCountWrapper((Union) oldBody);
-				}
-				if (body == null) {
-					throw new SQLException("Can not generate count SQL statement for " + dc.statement.getClass().getName());
-				}
-				jef.database.jsqlparser.statement.select.Select ctst = new jef.database.jsqlparser.statement.select.Select();
-				ctst.setSelectBody(body);
-				dc.count = ctst;
-				if (dc.delays != null && dc.delays.limit != null) {
-					dc.countLimit = dc.delays.limit;
-				} else {
-					dc.countLimit = body.getRemovedLimit();
-				}
-			} else {
-				throw new IllegalArgumentException();
-			}
+			createCount(dc, db.getProfile());
+		}
+		SqlAndParameter result = routing ? null : applyTemplate(dc, true, db, prov);
+		if (result == null) {
+			result = applyParam(dc.count, prov);
 		}
-		SqlAndParameter result = applyParam(dc.count, prov);
 		result.setInMemoryClause(dc.delays);
 		result.setLimit(dc.countLimit);
 		return result;
 	}
 
+	/*
+	 * 生成count语句
+	 */
+	private static void createCount(DialectCase dc, DatabaseDialect profile) throws SQLException {
+		if (dc.statement instanceof jef.database.jsqlparser.statement.select.Select) {
+			SelectBody oldBody = ((jef.database.jsqlparser.statement.select.Select) dc.statement).getSelectBody();
+			SelectToCountWrapper body = null;
+			if (oldBody instanceof PlainSelect) {
+				body = new SelectToCountWrapper((PlainSelect) oldBody, profile);
+			} else if (oldBody instanceof Union) {
+				body = new SelectToCountWrapper((Union) oldBody);
+			}
+			if (body == null) {
+				throw new SQLException("Can not generate count SQL statement for " + dc.statement.getClass().getName());
+			}
+			jef.database.jsqlparser.statement.select.Select ctst = new jef.database.jsqlparser.statement.select.Select();
+			ctst.setSelectBody(body);
+			if (dc.delays != null && dc.delays.limit != null) {
+				dc.countLimit = dc.delays.limit;
+			} else {
+				dc.countLimit = body.getRemovedLimit();
+			}
+			dc.count = ctst;
+		} else {
+			throw new IllegalArgumentException();
+		}
+	}
+
+	/*
+	 * 使用模板生成SQL和参数，模板不存在时编译
+	 */
+	private SqlAndParameter applyTemplate(DialectCase dc, boolean count, OperateTarget db, ParameterProvider prov) throws SQLException {
+		Statement st = count ? dc.count : dc.statement;
+		Map<List<Object>, NamedQueryTemplate> templates = count ? dc.countTemplates : dc.templates;
+		Object[] keys = dc.keys;
+		Object[] signature = new Object[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			Object key = keys[i];
+			Object value = key instanceof Integer ? prov.getIndexedParam((Integer) key) : prov.getNamedParam((String) key);
+			if (value instanceof SqlExpression) {
+				signature[i] = ((SqlExpression) value).getText();
+			} else {
+				signature[i] = value != null || prov.containsParam(key);
+			}
+		}
+		List<Object> sig = Arrays.asList(signature);
+		NamedQueryTemplate template = templates.get(sig);
+		if (template == null) {
+			template = compile(st, count, db, prov);
+			if (template == null) {
+				return null;
+			}
+			if (templates.size() < MAX_TEMPLATES) {
+				templates.put(sig, template);
+			}
+		}
+		return template.apply(st, prov);
+	}
+
+	/*
+	 * 编译模板。语法树按参数输出SQL时要在节点的线程变量上标记参数的展开和条件的省略，
+	 * 为了不改动缓存中共享的语法树，在重新解析得到的副本上输出，再将副本中的参数对应到共享语法树中相同位置的参数。
+	 * 编译结果只包含文本段和参数，不再引用副本
+	 */
+	private NamedQueryTemplate compile(Statement st, boolean count, OperateTarget db, ParameterProvider prov) throws SQLException {
+		DialectCase copy = analy(this.rawsql, this.type, db);
+		if (count) {
+			createCount(copy, db.getProfile());
+		}
+		Statement target = count ? copy.count : copy.statement;
+		List<JpqlParameter> from = collectParams(target);
+		List<JpqlParameter> to = collectParams(st);
+		if (from.size() != to.size()) {
+			return null;
+		}
+		Map<JpqlParameter, JpqlParameter> mapping = new IdentityHashMap<JpqlParameter, JpqlParameter>();
+		for (int i = 0; i < from.size(); i++) {
+			mapping.put(from.get(i), to.get(i));
+		}
+		List<JpqlParameter> slots = new ArrayList<JpqlParameter>();
+		target.accept(new ParamApplier(prov, null, slots));
+		String sql = target.toString();
+		for (int i = 0; i < slots.size(); i++) {
+			slots.set(i, mapping.get(slots.get(i)));
+		}
+		return NamedQueryTemplate.parse(sql, slots);
+	}
+
+	/*
+	 * 按遍历顺序收集语句中的参数节点
+	 */
+	private static List<JpqlParameter> collectParams(Statement st) {
+		final List<JpqlParameter> params = new ArrayList<JpqlParameter>();
+		st.accept(new VisitorAdapter() {
+			@Override
+			public void visit(JpqlParameter param) {
+				params.add(param);
+			}
+		});
+		return params;
+	}
+
+	/*
+	 * 收集语句中出现的全部参数
+	 */
+	private static Object[] collectKeys(Statement st) {
+		final Set<Object> keys = new LinkedHashSet<Object>();
+		st.accept(new VisitorAdapter() {
+			@Override
+			public void visit(JpqlParameter param) {
+				keys.add(param.getKey());
+			}
+		});
+		return keys.toArray();
+	}
+
 	private final static class ParamApplier extends VisitorAdapter {
 		private ParameterProvider prov;
 		private List<Object> params;
+		/**
+		 * 编译模板时不收集参数值，而是将有值的参数输出为标记，并按顺序记录在这里
+		 */
+		private List<JpqlParameter> slots;
 
 		public ParamApplier(ParameterProvider prov, List<Object> params) {
 			this.prov = prov;
 			this.params = params;
 		}
 
+		ParamApplier(ParameterProvider prov, List<Object> params, List<JpqlParameter> slots) {
+			this.prov = prov;
+			this.params = params;
+			this.slots = slots;
+		}
+
 		// 进行绑定变量匹配
 		@Override
 		public void visit(JpqlParameter param) {
@@ -385,6 +550,9 @@ public class NamedQueryConfig extends jef.database.DataObject {
 
 			if (value instanceof SqlExpression) {
 				param.setResolved(((SqlExpression) value).getText());
+			} else if (slots != null && (value != null || contains)) {
+				param.setResolved(NamedQueryTemplate.marker(slots.size()));
+				slots.add(param);
 			} else if (value != null) {
 				if (value.getClass().isArray()) {
 					int size = Array.getLength(value);
@@ -576,6 +744,14 @@ public class NamedQueryConfig extends jef.database.DataObject {
 		this.fetchSize = fetchSize;
 	}
 
+	public int getCacheExpire() {
+		return cacheExpire;
+	}
+
+	public void setCacheExpire(int cacheExpire) {
+		this.cacheExpire = cacheExpire;
+	}
+
 	public enum Field implements jef.database.Field {
 		rawsql, name, type, tag, remark, fetchSize
 	}
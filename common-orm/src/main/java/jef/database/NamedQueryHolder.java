@@ -222,6 +222,7 @@ final class NamedQueryHolder {
 				}
 				NamedQueryConfig nq = new NamedQueryConfig(name, sql, "JPQL".equalsIgnoreCase(type), size);
 				nq.setTag(XMLUtils.attrib(e, "tag"));
+				nq.setCacheExpire(StringUtils.toInt(XMLUtils.attrib(e, "cache-expire"), 0));
 				RDBMS dialect = processName(nq);
 				put0(result, nq, dialect, file.getAbsolutePath());
 			}
@@ -0,0 +1,141 @@
+package jef.database;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jef.database.jsqlparser.expression.JpqlParameter;
+import jef.database.jsqlparser.visitor.Expression;
+import jef.database.jsqlparser.visitor.Statement;
+import jef.database.query.ParameterProvider;
+import jef.database.routing.sql.SqlAndParameter;
+import jef.tools.ArrayUtils;
+import jef.tools.StringUtils;
+
+/**
+ * 预编译的命名查询模板。
+ * <p>
+ * 对于同一个命名查询，每个参数有没有传入、是否为SQL片段确定之后，生成的SQL语句就只剩下参数占位符的个数（IN列表的长度）会变化。
+ * 因此按参数的传入情况将语句预先输出为若干段文本和参数位置，执行时只需拼接文本、按参数值展开占位符，
+ * 不再遍历语法树，也不再读写语法树节点上的线程变量。
+ *
+ * @author jiyi
+ * @see NamedQueryConfig
+ */
+final class NamedQueryTemplate {
+	/**
+	 * 编译时代替参数输出的标记字符
+	 */
+	private static final char MARK = '\u0001';
+
+	/**
+	 * 文本段，比参数位置多一个
+	 */
+	private final String[] segments;
+	/**
+	 * 参数位置，按在SQL中出现的顺序
+	 */
+	private final JpqlParameter[] slots;
+	private final int length;
+
+	private NamedQueryTemplate(String[] segments, JpqlParameter[] slots) {
+		this.segments = segments;
+		this.slots = slots;
+		int len = slots.length;
+		for (String s : segments) {
+			len += s.length();
+		}
+		this.length = len;
+	}
+
+	/**
+	 * 编译时第index个参数输出的标记
+	 *
+	 * @param index
+	 * @return
+	 */
+	static String marker(int index) {
+		return StringUtils.concat(String.valueOf(MARK), String.valueOf(index), String.valueOf(MARK));
+	}
+
+	/**
+	 * 将带有参数标记的SQL语句拆分为模板
+	 *
+	 * @param sql
+	 *            语法树输出的SQL语句，其中的参数被输出为{@link #marker(int)}
+	 * @param params
+	 *            各个标记对应的参数
+	 * @return 标记与参数无法一一对应时返回null
+	 */
+	static NamedQueryTemplate parse(String sql, List<JpqlParameter> params) {
+		List<String> segments = new ArrayList<String>(params.size() + 1);
+		JpqlParameter[] slots = new JpqlParameter[params.size()];
+		boolean[] found = new boolean[params.size()];
+		int start = 0;
+		int n = 0;
+		for (int i = sql.indexOf(MARK); i > -1; i = sql.indexOf(MARK, start)) {
+			int end = sql.indexOf(MARK, i + 1);
+			if (end < 0 || n >= slots.length) {
+				return null;
+			}
+			int index = Integer.parseInt(sql.substring(i + 1, end));
+			if (index >= found.length || found[index]) {
+				return null;
+			}
+			found[index] = true;
+			segments.add(sql.substring(start, i));
+			slots[n++] = params.get(index);
+			start = end + 1;
+		}
+		if (n < slots.length) {
+			return null;
+		}
+		segments.add(sql.substring(start));
+		return new NamedQueryTemplate(segments.toArray(new String[segments.size()]), slots);
+	}
+
+	/**
+	 * 按参数值生成SQL语句和绑定变量
+	 *
+	 * @param st
+	 *            原语句，供路由、内存分页等后续处理分析结构使用
+	 * @param prov
+	 * @return
+	 */
+	SqlAndParameter apply(Statement st, ParameterProvider prov) {
+		StringBuilder sb = new StringBuilder(length + 16);
+		List<Object> params = new ArrayList<Object>(slots.length);
+		Map<Expression, Object> paramsMap = new IdentityHashMap<Expression, Object>();
+		for (int i = 0; i < slots.length; i++) {
+			sb.append(segments[i]);
+			JpqlParameter p = slots[i];
+			Object value = p.isIndexParam() ? prov.getIndexedParam(p.getIndex()) : prov.getNamedParam(p.getName());
+			Object[] values = null;
+			if (value != null && value.getClass().isArray()) {
+				values = (Object[]) (value.getClass().getComponentType().isPrimitive() ? ArrayUtils.toObject(value) : value);
+			} else if (value instanceof Collection) {
+				values = ((Collection<?>) value).toArray();
+			}
+			if (values == null) {
+				sb.append('?');
+				params.add(value);
+				paramsMap.put(p, value);
+			} else {
+				sb.append('?');
+				if (values.length > 1) {
+					StringUtils.repeat(sb, ",?", values.length - 1);
+				}
+				for (Object v : values) {
+					params.add(v);
+				}
+				if (values.length > 0) {
+					paramsMap.put(p, values);
+				}
+			}
+		}
+		sb.append(segments[slots.length]);
+		return new SqlAndParameter(st, sb.toString(), params, paramsMap, prov);
+	}
+}
@@ -17,6 +17,7 @@ package jef.database;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -39,12 +40,16 @@ import jef.database.NamedQueryConfig.ParameterMetadata;
 import jef.database.OperateTarget.TransformerAdapter;
 import jef.database.OperateTarget.TransformerIteratrAdapter;
 import jef.database.Session.PopulateStrategy;
+import jef.database.cache.Cache;
+import jef.database.cache.CacheKey;
+import jef.database.cache.NativeQueryCacheKey;
 import jef.database.dialect.type.ResultSetAccessor;
 import jef.database.jdbc.GenerateKeyReturnOper;
 import jef.database.jdbc.result.IResultSet;
 import jef.database.jsqlparser.expression.JpqlDataType;
 import jef.database.jsqlparser.statement.select.Select;
 import jef.database.jsqlparser.visitor.Statement;
+import jef.database.meta.AbstractMetadata;
 import jef.database.query.ParameterProvider;
 import jef.database.query.QueryHints;
 import jef.database.query.SqlExpression;
@@ -273,6 +278,11 @@ public class NativeQuery<X> implements javax.persistence.TypedQuery<X>, Paramete
 	 */
 	private boolean routing;
 
+	/**
+	 * 结果缓存的生存时间（秒），0表示不缓存
+	 */
+	private int cacheExpire;
+
 	/**
 	 * 是否启用ＳＱＬ语句路由功能
 	 * 
@@ -303,6 +313,19 @@ public class NativeQuery<X> implements javax.persistence.TypedQuery<X>, Paramete
 		return this;
 	}
 
+	/**
+	 * 启用查询结果缓存。需要启用二级缓存才生效。<br>
+	 * 以规范化后的SQL语句和绑定参数为Key缓存{@link #getResultList()}的结果，语句中引用的任意一张表被修改时，缓存失效。
+	 * 
+	 * @param expireSeconds
+	 *            缓存的生存时间（秒），0表示不缓存
+	 * @return 当前NativeQuery本身
+	 */
+	public NativeQuery<X> withCache(int expireSeconds) {
+		this.cacheExpire = expireSeconds;
+		return this;
+	}
+
 	/**
 	 * 从SQL语句加上返回类型 构造
 	 * 
@@ -329,6 +352,7 @@ public class NativeQuery<X> implements javax.persistence.TypedQuery<X>, Paramete
 		this.db = db;
 		this.resultTransformer = t;
 		this.config = config;
+		this.cacheExpire = config.getCacheExpire();
 		resultTransformer.addStrategy(PopulateStrategy.PLAIN_MODE);
 	}
 
@@ -347,12 +371,12 @@ public class NativeQuery<X> implements javax.persistence.TypedQuery<X>, Paramete
 	 */
 	public long getResultCount() {
 		try {
-			SqlAndParameter paramHolder = config.getCountSqlAndParams(db, this);
+			SqlAndParameter paramHolder = config.getCountSqlAndParams(db, this, routing);
 			QueryablePlan plan = null;
 			if (routing) {
 				plan = SqlAnalyzer.getSelectExecutionPlan((Select) paramHolder.statement, paramHolder.getParamsMap(), paramHolder.params, db);
 			} else {
-				plan = new SimpleExecutionPlan(paramHolder.statement, paramHolder.params, null, db);
+				plan = new SimpleExecutionPlan(paramHolder, db);
 			}
 			long maxSize = paramHolder.getLimitSpan(); // 查询分页条件，count结果不可能大于分页的最大结果
 			paramHolder.setNewLimit(null);
@@ -415,6 +439,9 @@ public class NativeQuery<X> implements javax.persistence.TypedQuery<X>, Paramete
 		try {
 			TransformerAdapter<X> rst = new TransformerAdapter<X>(resultTransformer, db);
 			rst.setFetchSize(fetchSize);
+			if (cacheExpire > 0) {
+				return doCachedQuery(rst);
+			}
 			return doQuery(rst, false);
 		} catch (SQLException e) {
 			throw new PersistenceException(e.getMessage() + " " + e.getSQLState(), e);
@@ -433,16 +460,63 @@ public class NativeQuery<X> implements javax.persistence.TypedQuery<X>, Paramete
 	 *             数据库异常
 	 */
 	private <T> T doQuery(ResultSetExtractor<T> extractor, boolean forCount) throws SQLException {
-		SqlAndParameter sqlContext = config.getSqlAndParams(db, this);
+		return doQuery(config.getSqlAndParams(db, this, routing), extractor, forCount);
+	}
+
+	private <T> T doQuery(SqlAndParameter sqlContext, ResultSetExtractor<T> extractor, boolean forCount) throws SQLException {
 		QueryablePlan plan = null;
 		if (routing) {
 			plan = SqlAnalyzer.getSelectExecutionPlan((Select) sqlContext.statement, sqlContext.getParamsMap(), sqlContext.params, db);
 		} else {
-			plan = new SimpleExecutionPlan(sqlContext.statement, sqlContext.params, null, db);
+			plan = new SimpleExecutionPlan(sqlContext, db);
 		}
 		return plan.doQuery(sqlContext, extractor, forCount, range);
 	}
 
+	/*
+	 * 启用结果缓存时的查询
+	 */
+	@SuppressWarnings("rawtypes")
+	private List<X> doCachedQuery(TransformerAdapter<X> extractor) throws SQLException {
+		SqlAndParameter sqlContext = config.getSqlAndParams(db, this, routing);
+		Cache cache = db.getSession().getCache();
+		CacheKey key = cache.isDummy() ? null : toCacheKey(sqlContext);
+		if (key == null) {
+			return doQuery(sqlContext, extractor, false);
+		}
+		List<X> list = cache.load(key);
+		if (list == null) {
+			list = doQuery(sqlContext, extractor, false);
+			if (!list.isEmpty()) {
+				cache.onLoad(key, list, (Class) resultTransformer.getResultClazz());
+			}
+		}
+		return list;
+	}
+
+	/*
+	 * 缓存Key为规范化后的语句、绑定参数、返回类型和结果范围。 分表的查询不缓存，因为实际访问的表由路由决定
+	 */
+	private CacheKey toCacheKey(SqlAndParameter sqlContext) {
+		Statement st = sqlContext.statement;
+		AbstractMetadata meta = SqlAnalyzer.getTableMeta(st).get();
+		if (meta != null && meta.getPartition() != null) {
+			return null;
+		}
+		List<String> tables = SqlAnalyzer.getTableNames(st);
+		if (tables.isEmpty()) {
+			return null;
+		}
+		String sql = sqlContext.getLimit() == null ? sqlContext.getSql() : sqlContext.getSql() + " " + sqlContext.getLimit();
+		List<Object> params = new ArrayList<Object>(sqlContext.params.size() + 4);
+		params.add(resultTransformer.getResultClazz());
+		params.add(Arrays.asList(getStrategies()));
+		params.add(range == null ? null : range.getStart());
+		params.add(range == null ? null : range.getLimit());
+		params.addAll(sqlContext.params);
+		return new NativeQueryCacheKey(sql, tables, params, cacheExpire);
+	}
+
 	/**
 	 * 设置查询结果的条数限制，即分页 包含了{@link #setMaxResults(int)}和
 	 * {@link #setFirstResult(int)}的功能<br>
@@ -541,13 +615,12 @@ public class NativeQuery<X> implements javax.persistence.TypedQuery<X>, Paramete
 	 */
 	public int executeUpdate() {
 		try {
-			SqlAndParameter parse = config.getSqlAndParams(db, this);
-			Statement sql = parse.statement;
+			SqlAndParameter parse = config.getSqlAndParams(db, this, routing);
 			ExecuteablePlan plan = null;
 			if (routing) {
-				plan = SqlAnalyzer.getExecutionPlan(sql, parse.getParamsMap(), parse.params, db);
+				plan = SqlAnalyzer.getExecutionPlan(parse.statement, parse.getParamsMap(), parse.params, db);
 			} else {
-				plan = new SimpleExecutionPlan(sql, parse.params, null, db);
+				plan = new SimpleExecutionPlan(parse, db);
 			}
 			return plan.processUpdate(GenerateKeyReturnOper.NONE).getAffectedRows();
 		} catch (SQLException e) {
@@ -653,6 +726,8 @@ public class NativeQuery<X> implements javax.persistence.TypedQuery<X>, Paramete
 			setRange(startLimit[0], startLimit[1]);
 		} else if (QueryHints.FETCH_SIZE.equals(hintName)) {
 			this.setFetchSize(StringUtils.toInt(String.valueOf(value), 0));
+		} else if (QueryHints.CACHE_EXPIRE.equals(hintName)) {
+			this.withCache(StringUtils.toInt(String.valueOf(value), 0));
 		}
 		return this;
 	}
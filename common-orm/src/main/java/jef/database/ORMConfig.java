@@ -6,6 +6,7 @@ import jef.common.log.LogUtil;
 import jef.database.meta.MetaHolder;
 import jef.database.meta.MetadataFacade;
 import jef.database.support.GqClassFileTransformer;
+import jef.database.support.AsyncSqlLog;
 import jef.database.support.SqlLog;
 import jef.jre5support.ProcessUtil;
 import jef.tools.JefConfiguration;
@@ -39,6 +40,10 @@ public class ORMConfig implements ORMConfigMBean {
      * 调试模式
      */
     protected boolean debugMode;
+    /**
+     * 异步输出SQL日志
+     */
+    private boolean asyncLog;
 
     /**
      * 打印出文本型数据字段的实际编码后长度。将字符编码一次来输出长度有不小的开销，默认关闭
@@ -157,6 +162,26 @@ public class ORMConfig implements ORMConfigMBean {
      */
     private int cacheLevel2;
 
+    /**
+     * 二级缓存每个表空间的最大容量(KB)，为0时不限制。
+     */
+    private int cacheLevel2SpaceSize;
+
+    /**
+     * 缓存按行失效
+     */
+    private boolean cacheRowInvalidation;
+
+    /**
+     * 二级缓存使用堆外存储
+     */
+    private boolean cacheOffHeap;
+
+    /**
+     * 二级缓存中每张表按主键缓存的最大对象数，为0时不启用。
+     */
+    private int cacheIdentitySize;
+
     /**
      * 定期检查连接
      */
@@ -213,6 +238,7 @@ public class ORMConfig implements ORMConfigMBean {
         globalMaxResults = JefConfiguration.getInt(DbCfg.DB_MAX_RESULTS_LIMIT, 0);
         globalFetchSize = JefConfiguration.getInt(DbCfg.DB_FETCH_SIZE, 0);
         debugMode = JefConfiguration.getBoolean(Item.DB_DEBUG, false);
+        asyncLog = JefConfiguration.getBoolean(DbCfg.DB_LOG_ASYNC, false);
         maxBatchLog = JefConfiguration.getInt(DbCfg.DB_MAX_BATCH_LOG, 5);
         selectTimeout = JefConfiguration.getInt(DbCfg.DB_SELECT_TIMEOUT, 60);
         updateTimeout = JefConfiguration.getInt(DbCfg.DB_UPDATE_TIMEOUT, 60);
@@ -233,6 +259,10 @@ public class ORMConfig implements ORMConfigMBean {
         enableLazyLob = JefConfiguration.getBoolean(DbCfg.DB_LOB_LAZY_LOAD, false);
         cacheLevel1 = JefConfiguration.getBoolean(DbCfg.CACHE_LEVEL_1, false);
         cacheLevel2 = JefConfiguration.getInt(DbCfg.CACHE_GLOBAL_EXPIRE_TIME, 0);
+        cacheLevel2SpaceSize = JefConfiguration.getInt(DbCfg.CACHE_GLOBAL_SPACE_SIZE, 16384);
+        cacheRowInvalidation = JefConfiguration.getBoolean(DbCfg.CACHE_ROW_INVALIDATION, false);
+        cacheOffHeap = JefConfiguration.getBoolean(DbCfg.CACHE_GLOBAL_OFF_HEAP, false);
+        cacheIdentitySize = JefConfiguration.getInt(DbCfg.CACHE_GLOBAL_IDENTITY_SIZE, 10000);
         cacheDebug = System.getProperty("cache.debug") != null;
         setFormatSQL(JefConfiguration.getBoolean(DbCfg.DB_FORMAT_SQL, false));
         heartBeatSleep = JefConfiguration.getLong(DbCfg.DB_HEARTBEAT, 120000);
@@ -406,6 +436,14 @@ public class ORMConfig implements ORMConfigMBean {
         this.debugMode = debugMode;
     }
 
+    public boolean isAsyncLog() {
+        return asyncLog;
+    }
+
+    public void setAsyncLog(boolean asyncLog) {
+        this.asyncLog = asyncLog;
+    }
+
     public int getGlobalFetchSize() {
         return globalFetchSize;
     }
@@ -626,7 +664,7 @@ public class ORMConfig implements ORMConfigMBean {
 
     public SqlLog newLogger(int len) {
         if (debugMode) {
-            return new SqlLog.LogImpl(len);
+            return asyncLog ? AsyncSqlLog.newInstance() : new SqlLog.LogImpl(len);
         } else {
             return SqlLog.DUMMY;
         }
@@ -634,7 +672,7 @@ public class ORMConfig implements ORMConfigMBean {
 
     public SqlLog newLogger() {
         if (debugMode) {
-            return new SqlLog.LogImpl();
+            return asyncLog ? AsyncSqlLog.newInstance() : new SqlLog.LogImpl();
         } else {
             return SqlLog.DUMMY;
         }
@@ -658,7 +696,7 @@ public class ORMConfig implements ORMConfigMBean {
 
     public SqlLog newLogger(boolean isDummy) {
         if (debugMode && !isDummy) {
-            return new SqlLog.LogImpl();
+            return asyncLog ? AsyncSqlLog.newInstance() : new SqlLog.LogImpl();
         } else {
             return SqlLog.DUMMY;
         }
@@ -684,4 +722,51 @@ public class ORMConfig implements ORMConfigMBean {
     public void setCacheLevel2(int cacheLevel2) {
         this.cacheLevel2 = cacheLevel2;
     }
+
+    /**
+     * 二级缓存中每个表空间的最大容量，单位KB，为0时不限制。 该值必须在DbClient对象创建之前设置。对象创建后再设置无效
+     * 
+     * @return
+     */
+    public int getCacheLevel2SpaceSize() {
+        return cacheLevel2SpaceSize;
+    }
+
+    public void setCacheLevel2SpaceSize(int cacheLevel2SpaceSize) {
+        this.cacheLevel2SpaceSize = cacheLevel2SpaceSize;
+    }
+
+    public boolean isCacheRowInvalidation() {
+        return cacheRowInvalidation;
+    }
+
+    public void setCacheRowInvalidation(boolean cacheRowInvalidation) {
+        this.cacheRowInvalidation = cacheRowInvalidation;
+    }
+
+    /**
+     * 二级缓存是否使用堆外存储。 该值必须在缓存创建之前设置，对已创建的表空间无效
+     * 
+     * @return
+     */
+    public boolean isCacheOffHeap() {
+        return cacheOffHeap;
+    }
+
+    public void setCacheOffHeap(boolean cacheOffHeap) {
+        this.cacheOffHeap = cacheOffHeap;
+    }
+
+    /**
+     * 二级缓存中每张表按主键缓存的最大对象数，为0时不启用。 该值必须在DbClient对象创建之前设置。对象创建后再设置无效
+     * 
+     * @return
+     */
+    public int getCacheIdentitySize() {
+        return cacheIdentitySize;
+    }
+
+    public void setCacheIdentitySize(int cacheIdentitySize) {
+        this.cacheIdentitySize = cacheIdentitySize;
+    }
 }
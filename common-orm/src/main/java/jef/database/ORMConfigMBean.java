@@ -129,6 +129,18 @@ public interface ORMConfigMBean {
 	 */
 	void setDebugMode(boolean debugMode);
 
+	/**
+	 * 是否异步输出SQL日志
+	 * @return
+	 */
+	boolean isAsyncLog();
+
+	/**
+	 * 修改配置
+	 * @param asyncLog 是否异步输出SQL日志
+	 */
+	void setAsyncLog(boolean asyncLog);
+
 	/**
 	 * 获得配置参数
 	 * @return {@link DbCfg#DB_FETCH_SIZE}
@@ -286,6 +298,18 @@ public interface ORMConfigMBean {
 	 */
 	void setCacheLevel1(boolean cacheLevel1);
 
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#CACHE_ROW_INVALIDATION}
+	 */
+	boolean isCacheRowInvalidation();
+
+	/**
+	 * 修改配置
+	 * @param cacheRowInvalidation {@link DbCfg#CACHE_ROW_INVALIDATION}
+	 */
+	void setCacheRowInvalidation(boolean cacheRowInvalidation);
+
 	/**
 	 * 获得配置参数
 	 * @return 一级缓存调试开关，该开关只能通过API调节。主要供开发调试用。
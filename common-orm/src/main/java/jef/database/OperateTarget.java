@@ -32,7 +32,10 @@ import jef.database.jdbc.statement.ProcessableStatement;
 import jef.database.jdbc.statement.ResultSetLaterProcess;
 import jef.database.jsqlparser.SqlFunctionlocalization;
 import jef.database.jsqlparser.parser.ParseException;
+import jef.database.jsqlparser.parser.SimpleSqlParser;
 import jef.database.jsqlparser.parser.StSqlParser;
+import jef.database.jsqlparser.statement.select.PlainSelect;
+import jef.database.jsqlparser.statement.select.Select;
 import jef.database.jsqlparser.visitor.SelectItem;
 import jef.database.meta.DbProperty;
 import jef.database.meta.ITableMetadata;
@@ -562,12 +565,17 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 
 	public <T> T getExpressionValue(String expression, Class<T> clz, Object... params) throws SQLException {
 		String sql = "select " + expression + " from dual";
-		StSqlParser parser = new StSqlParser(new StringReader(sql));
 		List<SelectItem> sts;
-		try {
-			sts = parser.PlainSelect().getSelectItems();
-		} catch (ParseException e) {
-			throw new SQLException("ParseError:[" + sql + "] Detail:" + e.getMessage());
+		jef.database.jsqlparser.visitor.Statement st = SimpleSqlParser.parse(sql, false);
+		if (st instanceof Select) {
+			sts = ((PlainSelect) ((Select) st).getSelectBody()).getSelectItems();
+		} else {
+			StSqlParser parser = new StSqlParser(new StringReader(sql));
+			try {
+				sts = parser.PlainSelect().getSelectItems();
+			} catch (ParseException e) {
+				throw new SQLException("ParseError:[" + sql + "] Detail:" + e.getMessage());
+			}
 		}
 		// 进行本地语言转化
 		DatabaseDialect dialect = this.profile;
@@ -172,6 +172,12 @@ public final class RecordsHolder<T extends IQueryableEntity> implements Iterable
 			} catch (SQLException e) {
 				throw new PersistenceException(e);
 			}
+		} else if (gtype == GenerationResolution.SNOWFLAKE) {
+			try {
+				return ((OperateTarget) rs.getTarget()).getSession().getNoTransactionSession().getSnowflakeGenerator().next();
+			} catch (SQLException e) {
+				throw new PersistenceException(e);
+			}
 		} else {
 			return profile.getColumnAutoIncreamentValue(mapping, this.rs.getTarget());
 		}
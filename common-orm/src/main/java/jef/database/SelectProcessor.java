@@ -33,11 +33,13 @@ import jef.database.wrapper.clause.CountClause;
 import jef.database.wrapper.clause.GroupClause;
 import jef.database.wrapper.clause.OrderClause;
 import jef.database.wrapper.clause.QueryClause;
+import jef.database.wrapper.clause.QueryClauseImpl;
 import jef.database.wrapper.clause.SelectPart;
 import jef.database.wrapper.executor.DbTask;
 import jef.database.wrapper.variable.BindVariableContext;
 import jef.http.client.support.CommentEntry;
 import jef.tools.ArrayUtils;
+import jef.tools.JefConfiguration;
 import jef.tools.PageLimit;
 import jef.tools.StringUtils;
 
@@ -90,21 +92,47 @@ public abstract class SelectProcessor {
 		return this.parent.getProfile(sites);
 	}
 
+	/**
+	 * 得到SQL缓存的命中统计
+	 * 
+	 * @return
+	 */
+	public String getPlanCacheStatics() {
+		return "";
+	}
+
 	public PartitionSupport getPartitionSupport() {
 		return db.getPartitionSupport();
 	}
 
 	final static class PreparedImpl extends SelectProcessor {
+		private final SqlPlanCache plans;
+
 		PreparedImpl(DbClient db, SqlProcessor parent) {
 			super(db, parent);
+			int size = JefConfiguration.getInt(DbCfg.DB_SQL_PLAN_CACHE_SIZE, 1000);
+			this.plans = size > 0 ? new SqlPlanCache(size) : null;
 		}
 
 		public QueryClause toQuerySql(ConditionQuery obj, PageLimit range, boolean order) {
-			QueryClause result = obj.toQuerySql(this, obj.prepare(), order);
+			SqlContext context = obj.prepare();
+			SqlPlanCache.Shape shape = plans == null ? null : SqlPlanCache.shapeOf(obj, context, order, getProfile());
+			QueryClause result = shape == null ? null : plans.get(shape);
+			if (result == null) {
+				result = obj.toQuerySql(this, context, order);
+				if (shape != null) {
+					plans.put(shape, (QueryClauseImpl) result);
+				}
+			}
 			result.setPageRange(range);
 			return result;
 		}
 
+		@Override
+		public String getPlanCacheStatics() {
+			return plans == null ? "SQL plan cache is Disabled." : plans.getStatics();
+		}
+
 		protected void processSelect0(OperateTarget db, QueryClause sqlResult, PartitionResult site, ConditionQuery queryObj, ResultSetContainer rs2, QueryOption option, SqlLog sb) throws SQLException {
 			// 计算查询结果集参数
 			if (option.holdResult && db.getProfile().has(Feature.TYPE_FORWARD_ONLY)) {
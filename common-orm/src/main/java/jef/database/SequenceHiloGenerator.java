@@ -23,12 +23,11 @@ public final class SequenceHiloGenerator extends AbstractSequence {
 	}
 
 	@Override
-	protected long getFirstAndPushOthers(int size,DbClient conn,String dbKey) throws SQLException {
+	protected void fetchRanges(int size,DbClient conn,String dbKey) throws SQLException {
 		long value = inner.next();
 		long min = value * (maxLo + 1);
 		long max = min + maxLo;
-		pushRange(min + 1, max);
-		return min;
+		pushRange(min, max);
 	}
 
 	public boolean isTable() {
@@ -1,8 +1,11 @@
 package jef.database;
 
+import java.lang.management.ManagementFactory;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 
 import javax.persistence.GenerationType;
 import javax.persistence.PersistenceException;
@@ -36,6 +39,7 @@ public final class SequenceManager {
 
 	private final HashMap<String, Sequence> holders = new HashMap<String, Sequence>();
 	private boolean hiloFlag = JefConfiguration.getBoolean(DbCfg.DB_AUTOINCREMENT_HILO, false);
+	private static final int STRIPES = Math.max(1, JefConfiguration.getInt(DbCfg.SEQUENCE_STRIPES, 1));
 	private DbClient parent;
 
 	/**
@@ -158,6 +162,25 @@ public final class SequenceManager {
 		}
 	}
 
+	/**
+	 * 获得各个Sequence当前每次获取的数量、获取次数和最近一次获取的耗时
+	 * 
+	 * @return
+	 */
+	public String getStatics() {
+		StringBuilder sb = new StringBuilder();
+		synchronized (holders) {
+			for (Map.Entry<String, Sequence> e : holders.entrySet()) {
+				if (e.getValue() instanceof AbstractSequence) {
+					if (sb.length() > 0)
+						sb.append("; ");
+					sb.append(e.getKey()).append(' ').append(((AbstractSequence) e.getValue()).getStatics());
+				}
+			}
+		}
+		return sb.toString();
+	}
+
 	/**
 	 * must clean cache on junit 4 tests....
 	 */
@@ -176,6 +199,9 @@ public final class SequenceManager {
 		if (table != null) {
 			String sql = "delete from " + table + " where T=?";
 			int i = sqlTemplate.executeSql(sql, key);
+			for (int n = 0; n < STRIPES && STRIPES > 1; n++) {// 分段的号段行
+				i += sqlTemplate.executeSql(sql, StripedSeqTableImpl.segment(key, n));
+			}
 			return i > 0;
 		}
 		return false;
@@ -199,6 +225,8 @@ public final class SequenceManager {
 		String pname = JefConfiguration.get(DbCfg.DB_GLOBAL_SEQUENCE_TABLE);
 		if (StringUtils.isEmpty(pname)) {
 			return new SeqTableImpl(client, name, config, tableName, columnName, this);
+		} else if (STRIPES > 1) {
+			return new StripedSeqTableImpl(client, name, config, tableName, columnName, this, STRIPES);
 		} else {
 			return new AdvSeqTableImpl(client, name, config, tableName, columnName, this);
 		}
@@ -225,7 +253,6 @@ public final class SequenceManager {
 			seqtable = new TupleMetadata("SEQ");
 			seqtable.addColumn("V", new ColumnType.Int(12));
 		}
-		private int valueStep;
 		private String table;
 
 		private String rawTable;
@@ -257,31 +284,30 @@ public final class SequenceManager {
 
 			this.update = "UPDATE " + table + " SET " + valueColumn + "=? WHERE " + valueColumn + "=?";
 			this.select = "SELECT " + valueColumn + " FROM " + table;
-			this.valueStep = JefConfiguration.getInt(DbCfg.SEQUENCE_BATCH_SIZE, 20);// 每次取一批
+			int valueStep = JefConfiguration.getInt(DbCfg.SEQUENCE_BATCH_SIZE, 20);// 每次取一批
 			if (valueStep < 1)
 				valueStep = config == null ? 20 : config.allocationSize();
+			setCacheSize(valueStep);
 			if (target != null) {
 				tryInit();
 			}
 		}
 
 		@Override
-		protected long getFirstAndPushOthers(int num, DbClient conn, String dbKey) throws SQLException {
+		protected void fetchRanges(int num, DbClient conn, String dbKey) throws SQLException {
 			DbMetaData meta = conn.getMetaData(dbKey);
 			if (last < 0) {
 				last = queryLast(meta);
 			}
-			long nextVal = last + valueStep;
+			long nextVal = last + num;
 			int updated = conn.executeSql(update, nextVal, last);
 			while (updated == 0) { // 基于CAS操作的乐观锁,
 				last = queryLast(meta);
-				nextVal = last + valueStep;
+				nextVal = last + num;
 				updated = conn.executeSql(update, nextVal, last);
 			}
-			long result = last + 1;
-			super.pushRange(last + 2, nextVal);
+			super.pushRange(last + 1, nextVal);
 			last = nextVal;
-			return result;
 		}
 
 		private long queryLast(DbMetaData conn) throws SQLException {
@@ -339,7 +365,6 @@ public final class SequenceManager {
 		}
 		private String table;
 		private String key;
-		private int valueStep;
 
 		private String rawTable;
 		private String rawColumn;
@@ -364,9 +389,10 @@ public final class SequenceManager {
 			this.rawColumn = rawColumn;
 			this.initValue = config == null ? 0 : config.initialValue();
 
-			this.valueStep = JefConfiguration.getInt(DbCfg.SEQUENCE_BATCH_SIZE, 20);
+			int valueStep = JefConfiguration.getInt(DbCfg.SEQUENCE_BATCH_SIZE, 20);
 			if (valueStep < 1)
 				valueStep = 20;
+			setCacheSize(valueStep);
 
 			this.update = "UPDATE " + table + " SET V=? WHERE V=? AND T='" + key + "'";
 			this.select = "SELECT V FROM " + table + " WHERE T='" + key + "'";
@@ -376,22 +402,20 @@ public final class SequenceManager {
 		}
 
 		@Override
-		protected long getFirstAndPushOthers(int num, DbClient conn, String dbKey) throws SQLException {
+		protected void fetchRanges(int num, DbClient conn, String dbKey) throws SQLException {
 			DbMetaData meta = conn.getNoTransactionSession().getMetaData(dbKey);
 			if (last < 0) {
 				last = queryLast(meta);
 			}
-			long nextVal = last + valueStep;
+			long nextVal = last + num;
 			int updated = conn.executeSql(update, nextVal, last);
 			while (updated == 0) { // 基于CAS操作的乐观锁,
 				last = queryLast(meta);
-				nextVal = last + valueStep;
+				nextVal = last + num;
 				updated = conn.executeSql(update, nextVal, last);
 			}
-			long result = last + 1;
-			super.pushRange(last + 2, nextVal);
+			super.pushRange(last + 1, nextVal);
 			last = nextVal;
-			return result;
 		}
 
 		private long queryLast(DbMetaData conn) throws SQLException {
@@ -434,6 +458,164 @@ public final class SequenceManager {
 		}
 	}
 
+	/**
+	 * 第三种SQL实现，所有Sequence公用一张表，每个Sequence分为多个号段行。
+	 * <p>
+	 * 号段行的T列为 名称#序号，V列为该行下一个可分配的块号。值按块分配，块号为b的块包含 b*块大小+1 到 (b+1)*块大小，
+	 * 第i行的块号总是满足 b % 行数 == i，因此各行分配出的值互不重复。每次获取时更新一行，将块号增加 块数*行数。
+	 * <p>
+	 * 每个节点优先使用按节点计算出的一行，该行被其他节点并发更新时换下一行，从而将锁分散到多行上。
+	 */
+	static final class StripedSeqTableImpl extends AbstractSequence {
+		private String table;
+		private String key;
+
+		private String rawTable;
+		private String rawColumn;
+		private int initValue;
+
+		private final int stripes;
+		private final int block;
+		/**
+		 * 本节点优先使用的号段行
+		 */
+		private final int home;
+		/**
+		 * 各号段行上次更新后的块号，-1表示未知
+		 */
+		private final long[] nexts;
+
+		private String update;
+		private String select;
+
+		StripedSeqTableImpl(OperateTarget target, String key, TableGenerator config, String rawTable, String rawColumn, SequenceManager parent, int stripes) {
+			super(target, parent);
+			Assert.notNull(target);
+			this.table = AdvSeqTableImpl.publicTableName;
+			this.key = key;
+
+			this.rawTable = rawTable;
+			this.rawColumn = rawColumn;
+			this.initValue = config == null ? 0 : config.initialValue();
+
+			int valueStep = JefConfiguration.getInt(DbCfg.SEQUENCE_BATCH_SIZE, 20);
+			if (valueStep < 1)
+				valueStep = 20;
+			this.block = valueStep;
+			setCacheSize(valueStep);
+
+			this.stripes = stripes;
+			this.nexts = new long[stripes];
+			Arrays.fill(nexts, -1);
+			this.home = ((ManagementFactory.getRuntimeMXBean().getName() + key).hashCode() & Integer.MAX_VALUE) % stripes;
+
+			this.update = "UPDATE " + table + " SET V=? WHERE V=? AND T=?";
+			this.select = "SELECT V FROM " + table + " WHERE T=?";
+			if (target != null) {
+				tryInit();
+			}
+		}
+
+		static String segment(String key, int index) {
+			return key + "#" + index;
+		}
+
+		@Override
+		protected void fetchRanges(int num, DbClient conn, String dbKey) throws SQLException {
+			DbMetaData meta = conn.getNoTransactionSession().getMetaData(dbKey);
+			int blocks = (num + block - 1) / block;
+			int i = home;
+			while (true) {
+				long b = nexts[i];
+				if (b < 0) {
+					b = queryNext(meta, i);
+				}
+				long nb = b + (long) blocks * stripes;
+				if (conn.executeSql(update, nb, b, segment(key, i)) > 0) {
+					nexts[i] = nb;
+					for (long x = b; x < nb; x += stripes) {
+						super.pushRange(x * block + 1, (x + 1) * block);
+					}
+					return;
+				}
+				// 该行已被其他节点更新，换下一行
+				nexts[i] = -1;
+				i = (i + 1) % stripes;
+			}
+		}
+
+		/*
+		 * 查询号段行的块号，行不存在时按已有的值计算起始块号并插入
+		 */
+		private long queryNext(DbMetaData meta, int i) throws SQLException {
+			String t = segment(key, i);
+			long value = meta.selectBySql(select, GET_LONG_OR_TABLE_NOT_EXIST, 1, Arrays.asList(t));
+			if (value == -9999L) {
+				// 从不分段的记录切换过来时，要跳过已经分配过的值
+				long legacy = meta.selectBySql(select, GET_LONG_OR_TABLE_NOT_EXIST, 1, Arrays.asList(key));
+				long start = super.caclStartValue(meta, null, rawTable, rawColumn, initValue, 99999999999L);
+				value = firstBlock(Math.max(start, legacy), block, stripes, i);
+				try {
+					meta.executeSql("INSERT INTO " + table + "(V,T) VALUES(?,?)", value, t);
+				} catch (SQLException e) {// 其他节点同时插入了该行
+					value = meta.selectBySql(select, GET_LONG_OR_TABLE_NOT_EXIST, 1, Arrays.asList(t));
+					if (value == -9999L) {
+						throw e;
+					}
+				}
+			}
+			return value;
+		}
+
+		public boolean isTable() {
+			return true;
+		}
+
+		public String getName() {
+			return key;
+		}
+
+		@Override
+		protected boolean doInit(DbClient session, String dbKey) throws SQLException {
+			DbMetaData meta = session.getMetaData(dbKey);
+			String exists = meta.getExists(ObjectType.TABLE, this.table);
+			if (exists == null) {
+				if (ORMConfig.getInstance().isAutoCreateSequence()) {
+					meta.createTable(AdvSeqTableImpl.seqtable, table);
+				} else {
+					throw new PersistenceException("Table for sequence " + table + " does not exist on " + meta + "!");
+				}
+			} else {
+				this.table = exists;
+				this.update = "UPDATE " + table + " SET V=? WHERE V=? AND T=?";
+				this.select = "SELECT V FROM " + table + " WHERE T=?";
+			}
+			return true;
+		}
+
+		public boolean isRawNative() {
+			return false;
+		}
+	}
+
+	/**
+	 * 计算号段行的起始块号：第一个所含值都大于start、且属于该行的块
+	 * 
+	 * @param start
+	 *            已经使用过的最大值
+	 * @param block
+	 *            块大小
+	 * @param stripes
+	 *            号段行数
+	 * @param index
+	 *            号段行序号
+	 * @return
+	 */
+	static long firstBlock(long start, int block, int stripes, int index) {
+		long b = start <= 0 ? 0 : (start + block - 1) / block;
+		return b + (index - b % stripes + stripes) % stripes;
+	}
+
 	/**
 	 * 从结果中获得单个LONG值
 	 */
@@ -229,21 +229,17 @@ final class SequenceNativeImpl extends AbstractSequence {
 		}
 	}
 
-	protected long getFirstAndPushOthers(int size, DbClient conn, String dbKey) throws SQLException {
+	protected void fetchRanges(int size, DbClient conn, String dbKey) throws SQLException {
 		// 开始
 		long start = System.currentTimeMillis();
 		OperateTarget target = (OperateTarget) conn.getSqlTemplate(dbKey);
 		PreparedStatement ps = null;
-		long result = 0;
 		try {
 			ps = target.prepareStatement(selectSql);
 			ps.setMaxRows(1);
-			long value = queryOnce(ps);
-			result = value; // 直接将选出的值作为sequence
-			// 向后取值（比如value=10, step=5, 那么实际有效的是10,11,12,13,14）
-			pushRange(value + 1, value + step - 1); // 从第二个值开始推送到缓存
-			for (int i = 1; i < size; i++) {// 获取多次
-				value = queryOnce(ps);
+			for (int i = 0; i < size; i++) {// 获取多次
+				long value = queryOnce(ps);
+				// 向后取值（比如value=10, step=5, 那么实际有效的是10,11,12,13,14）
 				pushRange(value, value + step - 1);
 			}
 		} catch (SQLException e) {
@@ -256,7 +252,6 @@ final class SequenceNativeImpl extends AbstractSequence {
 		if (ORMConfig.getInstance().isDebugMode()) {
 			LogUtil.info(StringUtils.concat(selectSql, " (fetch size=", String.valueOf(size), ")\t[Cost:", String.valueOf(System.currentTimeMillis() - start), "ms]|", target.getTransactionId()));
 		}
-		return result;
 	}
 
 	private long queryOnce(PreparedStatement ps) throws SQLException {
@@ -287,4 +282,9 @@ final class SequenceNativeImpl extends AbstractSequence {
 	public boolean isRawNative() {
 		return step==1;
 	}
+
+	@Override
+	protected int getFetchStep() {
+		return step;
+	}
 }
@@ -16,7 +16,6 @@
 package jef.database;
 
 import java.io.Serializable;
-import java.io.StringReader;
 import java.lang.reflect.Type;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -24,7 +23,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -51,7 +52,6 @@ import jef.database.jdbc.result.ResultSetContainer;
 import jef.database.jdbc.result.ResultSetWrapper;
 import jef.database.jdbc.result.ResultSets;
 import jef.database.jsqlparser.parser.ParseException;
-import jef.database.jsqlparser.parser.StSqlParser;
 import jef.database.meta.AbstractMetadata;
 import jef.database.meta.AbstractRefField;
 import jef.database.meta.EntityType;
@@ -89,6 +89,8 @@ import jef.tools.Assert;
 import jef.tools.JefConfiguration;
 import jef.tools.PageLimit;
 import jef.tools.StringUtils;
+import jef.tools.reflect.BeanUtils;
+import jef.tools.reflect.ConvertUtils;
 
 import org.easyframe.enterprise.spring.TransactionMode;
 
@@ -1491,6 +1493,25 @@ public abstract class Session {
 	 */
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public <T> T load(ITableMetadata meta, Serializable... keys) throws SQLException {
+		if (isIdentityCacheable(meta) && keys.length == meta.getPKFields().size()) {
+			List<ColumnMapping> pkFields = meta.getPKFields();
+			List<Serializable> pk = new ArrayList<Serializable>(keys.length);
+			for (int i = 0; i < keys.length; i++) {
+				pk.add(toPKType(pkFields.get(i), keys[i]));
+			}
+			Cache cache = getCache();
+			Object cached = cache.loadByPK(meta, pk);
+			if (cached != null)
+				return (T) cached;
+			Object stamp = cache.getIdentityStamp(meta);
+			PKQuery query = new PKQuery(meta, keys);
+			List<T> result = innerSelect(query, null, null, QueryOption.DEFAULT_MAX1);
+			if (result.isEmpty())
+				return null;
+			T t = result.get(0);
+			cache.onLoadByPK(meta, DbUtils.getPKValueSafe((IQueryableEntity) t), t, stamp);
+			return t;
+		}
 		if (meta.getType() == EntityType.POJO) {
 			PKQuery<PojoWrapper> query = new PKQuery<PojoWrapper>(meta, keys);
 			List<PojoWrapper> result = innerSelect(query, null, null, QueryOption.DEFAULT_MAX1);
@@ -1562,6 +1583,48 @@ public abstract class Session {
 	 */
 	@SuppressWarnings("unchecked")
 	public final <T> List<T> batchLoad(ITableMetadata meta, List<? extends Serializable> pkValues) throws SQLException {
+		if (isIdentityCacheable(meta) && meta.getPKFields().size() == 1) {
+			// 先从主键缓存中查找，只查询未命中的部分
+			Cache cache = getCache();
+			ColumnMapping pkField = meta.getPKFields().get(0);
+			List<Serializable> keys = new ArrayList<Serializable>(pkValues.size());
+			for (Serializable pk : pkValues) {
+				keys.add(toPKType(pkField, pk));
+			}
+			Map<Object, T> found = new HashMap<Object, T>();
+			List<Serializable> missing = new ArrayList<Serializable>();
+			for (Serializable pk : new LinkedHashSet<Serializable>(keys)) {
+				Object cached = cache.loadByPK(meta, Collections.singletonList(pk));
+				if (cached == null) {
+					missing.add(pk);
+				} else {
+					found.put(pk, (T) cached);
+				}
+			}
+			if (!missing.isEmpty()) {
+				Object stamp = cache.getIdentityStamp(meta);
+				List<T> loaded = batchLoad0(meta, missing);
+				for (T t : loaded) {
+					List<?> pk = DbUtils.getPKValueSafe((IQueryableEntity) t);
+					cache.onLoadByPK(meta, pk, t, stamp);
+					found.put(pk.get(0), t);
+				}
+			}
+			// 按传入的主键顺序返回，重复的主键返回重复的对象
+			List<T> result = new ArrayList<T>(keys.size());
+			for (Serializable pk : keys) {
+				T t = found.get(pk);
+				if (t != null) {
+					result.add(t);
+				}
+			}
+			return result;
+		}
+		return batchLoad0(meta, pkValues);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> List<T> batchLoad0(ITableMetadata meta, List<? extends Serializable> pkValues) throws SQLException {
 		int MAX_IN_CONDITIONS = ORMConfig.getInstance().getMaxInConditions();
 		if (pkValues.size() < MAX_IN_CONDITIONS) {
 			return batchLoadByPK0(meta, pkValues);
@@ -2450,6 +2513,82 @@ public abstract class Session {
 		batch.execute(entities);
 	}
 
+	/**
+	 * 批量合并记录——记录如果已经存在则更新，不存在则新增。（无级联操作）<br>
+	 * 在支持的数据库上使用单条语句的合并语法批量执行(MySQL的insert ... on duplicate key update，PostgreSQL 9.5+/SQLite的insert ... on conflict，
+	 * Oracle/SQL Server 2008+/HSQLDB的merge)，不必像{@link #merge(Object)}那样先逐条查询旧记录。<br>
+	 * 合并时写入对象的全部字段，已存在的记录中除主键、版本号和自动维护的时间字段外，其余字段都会被覆盖。没有主键值的对象直接批量插入；数据库不支持合并语法时，逐条调用{@link #merge(Object)}。
+	 * 
+	 * @param entities
+	 *            要合并的记录
+	 * @return 影响的记录行数。各数据库对合并操作的计数方式不同(如MySQL中更新一条记录计为2)，仅供参考。
+	 * @throws SQLException
+	 *             如果数据库操作错误，抛出。
+	 */
+	@SuppressWarnings("unchecked")
+	public final <T> int batchMerge(List<T> entities) throws SQLException {
+		if (entities == null || entities.isEmpty())
+			return 0;
+		T t = entities.get(0);
+		if (t instanceof IQueryableEntity) {
+			return batchMerge0((List<IQueryableEntity>) entities);
+		} else {
+			List<PojoWrapper> list = PojoWrapper.wrap(entities, false);
+			return batchMerge0(list);
+		}
+	}
+
+	private final <T extends IQueryableEntity> int batchMerge0(List<T> entities) throws SQLException {
+		ITableMetadata meta = MetaHolder.getMeta(entities.get(0));
+		if (meta.getPKFields().isEmpty()) {
+			throw new UnsupportedOperationException("Do not support merge operate on table without primary key.");
+		}
+		long start = System.nanoTime();
+		Batch.Merge<T> batch = new Batch.Merge<T>(this, meta, getProfile(meta.getBindDsName()));
+		if (!batch.isSupported() || !selectTarget(meta.getBindDsName()).getMetaData().supportsUpsert()) {
+			for (T entity : entities) {
+				merge0(entity);
+			}
+			return entities.size();
+		}
+		batch.parseTime = System.nanoTime() - start;
+		List<T> toMerge = new ArrayList<T>(entities.size());
+		List<T> toInsert = new ArrayList<T>();
+		for (T entity : entities) {
+			if (hasFullPK(entity)) {
+				toMerge.add(entity);
+			} else {
+				toInsert.add(entity);
+			}
+		}
+		int total = 0;
+		if (!toMerge.isEmpty()) {
+			total += batch.execute(toMerge);
+		}
+		if (!toInsert.isEmpty()) {
+			batchInsert0(toInsert, null, null);
+			total += toInsert.size();
+		}
+		return total;
+	}
+
+	/*
+	 * 复合主键的每个字段都有值时才能按主键合并，否则只能插入
+	 */
+	private static boolean hasFullPK(IQueryableEntity entity) {
+		List<Serializable> pk = DbUtils.getPKValueSafe(entity);
+		if (pk == null) {
+			return false;
+		}
+		for (Serializable value : pk) {
+			if (value == null) {
+				return false;
+			}
+		}
+		// 原生类型的主键字段还需排除未赋值的情况
+		return DbUtils.getPrimaryKeyValue(entity) != null;
+	}
+
 	/**
 	 * 极限模式下的批量插入操作<br>
 	 * extreme模式：extreme是为了性能而优化的特殊模式，该模式下数据库自增主键将不会被回写到对象中。
@@ -2956,6 +3095,25 @@ public abstract class Session {
 		}
 	}
 
+	/*
+	 * 传入的主键可能和实体字段是不同的类型(如Long主键传入Integer)，转换为字段类型，
+	 * 与更新、删除时按实体取得的主键(DbUtils.getPKValueSafe)一致
+	 */
+	private static Serializable toPKType(ColumnMapping field, Serializable value) {
+		Class<?> type = BeanUtils.toWrapperClass(field.getFieldType());
+		if (value == null || type.isInstance(value)) {
+			return value;
+		}
+		return (Serializable) ConvertUtils.toProperType(value, type);
+	}
+
+	/*
+	 * 按主键的对象缓存只适用于可缓存、无级联关系、无分表规则的实体
+	 */
+	private boolean isIdentityCacheable(ITableMetadata meta) {
+		return meta.getType() != EntityType.POJO && meta.isCacheable() && !meta.getPKFields().isEmpty() && meta.getRefFieldsByName().isEmpty() && meta.getPartition() == null;
+	}
+
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	private List batchLoadByPK0(ITableMetadata meta, List<? extends Serializable> pkValues) throws SQLException {
 		if (meta.getPKFields().size() != 1) {
@@ -2987,9 +3145,8 @@ public abstract class Session {
 		if (getCache().isDummy())
 			return;
 		jef.database.jsqlparser.visitor.Statement st = null;
-		StSqlParser parser = new StSqlParser(new StringReader(sql));
 		try {
-			st = parser.Statement();
+			st = DbUtils.parseNativeStatement(sql);
 		} catch (ParseException e) {
 			// 解析错误就不管
 		}
@@ -3087,7 +3244,7 @@ public abstract class Session {
 		int count = updatep.processUpdate(this, obj, updateClause, whereClause, sites, parseCost);
 		if (count > 0) {
 			String tableName = myTableName == null ? query.getMeta().getTableName(false) : myTableName;
-			getCache().onUpdate(tableName, whereClause.getSql(), CacheImpl.toParamList(whereClause.getBind()));
+			getCache().onUpdate(tableName, whereClause.getSql(), CacheImpl.toParamList(whereClause.getBind()), updateClause.getColumns());
 		} else if (context.needVersionCondition()) {// 基于版本的乐观锁并发检测，记录没有成功更新
 			throw new OptimisticLockException("The row in database has been modified by others after the entity was loaded.", null, obj);
 		}
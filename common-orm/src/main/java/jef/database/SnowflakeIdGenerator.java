@@ -0,0 +1,322 @@
+package jef.database;
+
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jef.common.log.LogUtil;
+import jef.database.DbMetaData.ObjectType;
+import jef.database.dialect.ColumnType;
+import jef.database.jdbc.result.IResultSet;
+import jef.database.meta.TupleMetadata;
+import jef.database.wrapper.populator.AbstractResultSetTransformer;
+import jef.database.wrapper.populator.ResultSetExtractor;
+import jef.tools.JefConfiguration;
+import jef.tools.StringUtils;
+
+/**
+ * 本地生成的按时间有序的64位ID(Snowflake算法)。
+ * <p>
+ * ID由 41位毫秒时间戳 + 10位节点号 + 12位毫秒内序号 组成，每个节点每毫秒最多生成4096个值，生成时无锁、无需访问数据库，
+ * 且同一节点上的值单调递增，作为主键时对B树索引友好。
+ * <p>
+ * 节点号由{@link DbCfg#DB_SNOWFLAKE_NODE_ID}指定；未指定时在节点表({@link DbCfg#DB_SNOWFLAKE_NODE_TABLE})中租用一个空闲的节点号。
+ * 租约在后台定期续期，同时记录已生成的最大时间戳；超过{@link DbCfg#DB_SNOWFLAKE_LEASE_TIMEOUT}未续期的节点号可被其他进程回收。
+ * {@link #release()}时保留节点表中的记录，只清除租用者并写入最后生成的时间戳。新的租用者从该时间戳(被回收时为租约到期时间)之后开始生成，
+ * 因此节点号被重复使用也不会产生重复的ID。租约到期后未能续期的生成器不再生成ID。
+ * <p>
+ * 时钟回拨或单毫秒内序号用尽时，借用之后的时间戳继续生成，不会等待也不会重复。
+ *
+ * @author jiyi
+ *
+ */
+public final class SnowflakeIdGenerator {
+	/**
+	 * 时间戳起点 2015-01-01 00:00:00 UTC
+	 */
+	public static final long EPOCH = 1420070400000L;
+	public static final int NODE_BITS = 10;
+	public static final int SEQUENCE_BITS = 12;
+	public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+	private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+	/**
+	 * 节点表。LAST_TS为已生成的最大时间戳，EXPIRE_TIME为租约到期时间，0表示空闲
+	 */
+	private static final TupleMetadata NODE_TABLE;
+	static {
+		NODE_TABLE = new TupleMetadata("JEF_SNOWFLAKE_NODES");
+		NODE_TABLE.addColumn("N", "N", new ColumnType.Int(8), true);
+		NODE_TABLE.addColumn("OWNER", new ColumnType.Varchar(128));
+		NODE_TABLE.addColumn("LAST_TS", new ColumnType.Int(16));
+		NODE_TABLE.addColumn("EXPIRE_TIME", new ColumnType.Int(16));
+	}
+
+	private static final AtomicInteger leaseSeq = new AtomicInteger();
+
+	private final int nodeId;
+	/**
+	 * (时间戳-EPOCH)左移12位 | 毫秒内序号
+	 */
+	private final AtomicLong state = new AtomicLong();
+	/**
+	 * 租约到期时间，之后不再生成ID。未租用节点号时不限制
+	 */
+	private volatile long leaseExpire = Long.MAX_VALUE;
+
+	/*
+	 * 租用节点号时的信息，用于续期和归还
+	 */
+	private DbMetaData leaseDb;
+	private String leaseTable;
+	private String owner;
+	private long leaseTimeout;
+	private ScheduledFuture<?> heartbeat;
+
+	/**
+	 * 使用指定的节点号构造
+	 *
+	 * @param nodeId
+	 *            0~1023
+	 */
+	public SnowflakeIdGenerator(int nodeId) {
+		if (nodeId < 0 || nodeId > MAX_NODE) {
+			throw new IllegalArgumentException("The node id must between 0 and " + MAX_NODE + ", but was " + nodeId);
+		}
+		this.nodeId = nodeId;
+	}
+
+	/**
+	 * 按配置得到节点号，未配置时在数据库中租用一个节点号
+	 *
+	 * @param meta
+	 * @return
+	 * @throws SQLException
+	 */
+	static SnowflakeIdGenerator create(DbMetaData meta) throws SQLException {
+		int node = JefConfiguration.getInt(DbCfg.DB_SNOWFLAKE_NODE_ID, -1);
+		if (node >= 0) {
+			return new SnowflakeIdGenerator(node);
+		}
+		String table = JefConfiguration.get(DbCfg.DB_SNOWFLAKE_NODE_TABLE, "JEF_SNOWFLAKE_NODES");
+		long timeout = Math.max(3, JefConfiguration.getInt(DbCfg.DB_SNOWFLAKE_LEASE_TIMEOUT, 300)) * 1000L;
+		return lease(meta, table, timeout);
+	}
+
+	/**
+	 * 在节点表中租用一个空闲或已过期的节点号
+	 *
+	 * @param meta
+	 * @param table
+	 *            节点表
+	 * @param timeout
+	 *            租约时长(毫秒)，每隔三分之一的时长续期一次
+	 * @return
+	 * @throws SQLException
+	 */
+	static SnowflakeIdGenerator lease(DbMetaData meta, String table, long timeout) throws SQLException {
+		String exists = meta.getExists(ObjectType.TABLE, table);
+		if (exists == null) {
+			meta.createTable(NODE_TABLE, table);
+		} else {
+			table = exists;
+		}
+		String owner = StringUtils.substring(ManagementFactory.getRuntimeMXBean().getName(), 0, 112) + "#" + leaseSeq.incrementAndGet();
+		String select = "SELECT N,LAST_TS,EXPIRE_TIME FROM " + table;
+		// 并发租用时主键冲突或记录已被修改，重新查询后再试
+		for (int retry = 0; retry < 5; retry++) {
+			long[][] nodes = meta.selectBySql(select, GET_NODES, 0, Collections.EMPTY_LIST);
+			long now = System.currentTimeMillis();
+			int free = -1;
+			for (int i = 0; i <= MAX_NODE; i++) {
+				if (nodes[i] == null || nodes[i][1] < now) {
+					free = i;
+					break;
+				}
+			}
+			if (free < 0) {
+				throw new SQLException("There is no free snowflake node id in table " + table + ".");
+			}
+			long expire = now + timeout;
+			long start;
+			try {
+				if (nodes[free] == null) {
+					meta.executeSql("INSERT INTO " + table + "(N,OWNER,LAST_TS,EXPIRE_TIME) VALUES(?,?,?,?)", free, owner, 0L, expire);
+					start = 0;
+				} else if (meta.executeSql("UPDATE " + table + " SET OWNER=?,EXPIRE_TIME=? WHERE N=? AND EXPIRE_TIME=?", owner, expire, free, nodes[free][1]) > 0) {
+					// 过期的租用者最多生成到它的租约到期时间
+					start = Math.max(nodes[free][0], nodes[free][1]);
+				} else {
+					continue;
+				}
+			} catch (SQLException e) {
+				LogUtil.debug("Snowflake node id " + free + " was taken, retry. " + e.getMessage());
+				continue;
+			}
+			SnowflakeIdGenerator g = new SnowflakeIdGenerator(free);
+			if (start > EPOCH) {
+				// 从start之后的一毫秒开始生成
+				g.state.set(((start + 1 - EPOCH) << SEQUENCE_BITS) - 1);
+			}
+			g.leaseDb = meta;
+			g.leaseTable = table;
+			g.owner = owner;
+			g.leaseTimeout = timeout;
+			g.leaseExpire = expire;
+			g.startHeartbeat();
+			LogUtil.info("Snowflake node id " + free + " was leased by " + owner);
+			return g;
+		}
+		throw new SQLException("Can not lease a snowflake node id from table " + table + ".");
+	}
+
+	/**
+	 * 获得下一个ID
+	 *
+	 * @return
+	 * @throws IllegalStateException
+	 *             节点号的租约已经到期或已归还
+	 */
+	public long next() {
+		long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+		long last, next;
+		do {
+			last = state.get();
+			next = now > last ? now : last + 1;
+		} while (!state.compareAndSet(last, next));
+		long timestamp = next >>> SEQUENCE_BITS;
+		if (timestamp + EPOCH > leaseExpire) {
+			throw new IllegalStateException("The lease of snowflake node id " + nodeId + " was expired or released.");
+		}
+		return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | ((long) nodeId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+	}
+
+	/**
+	 * 当前节点号
+	 *
+	 * @return
+	 */
+	public int getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * 已生成的最大时间戳
+	 *
+	 * @return 毫秒数
+	 */
+	long getLastTimestamp() {
+		return (state.get() >>> SEQUENCE_BITS) + EPOCH;
+	}
+
+	/**
+	 * 从ID中解析出生成的时间
+	 *
+	 * @param id
+	 * @return 毫秒数
+	 */
+	public static long getTimestamp(long id) {
+		return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+	}
+
+	/**
+	 * 从ID中解析出节点号
+	 *
+	 * @param id
+	 * @return
+	 */
+	public static int getNodeId(long id) {
+		return (int) (id >>> SEQUENCE_BITS) & MAX_NODE;
+	}
+
+	/*
+	 * 所有生成器共用一个续期线程，首次租用节点号时才创建
+	 */
+	private static final class Heartbeat {
+		static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "thread-JEFSnowflakeLease");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		static {
+			SCHEDULER.setRemoveOnCancelPolicy(true);
+		}
+	}
+
+	private void startHeartbeat() {
+		long period = leaseTimeout / 3;
+		heartbeat = Heartbeat.SCHEDULER.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				renew();
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 续期租约，同时记录已生成的最大时间戳
+	 *
+	 * @return 租约是否仍然有效
+	 */
+	synchronized boolean renew() {
+		if (leaseDb == null) {
+			return false;
+		}
+		long expire = System.currentTimeMillis() + leaseTimeout;
+		try {
+			if (leaseDb.executeSql("UPDATE " + leaseTable + " SET LAST_TS=?,EXPIRE_TIME=? WHERE N=? AND OWNER=?", getLastTimestamp(), expire, nodeId, owner) > 0) {
+				leaseExpire = expire;
+				return true;
+			}
+			// 租约已过期并被其他进程回收
+			leaseExpire = 0;
+			LogUtil.error("The lease of snowflake node id " + nodeId + " was taken by others.");
+		} catch (SQLException e) {
+			LogUtil.exception(e);
+		}
+		return false;
+	}
+
+	/**
+	 * 归还租用的节点号。保留节点表中的记录并写入最后生成的时间戳，供下一个租用者接续
+	 */
+	synchronized void release() {
+		if (leaseDb == null) {
+			return;
+		}
+		heartbeat.cancel(false);
+		// 先停止生成，再记录最大时间戳
+		leaseExpire = 0;
+		try {
+			leaseDb.executeSql("UPDATE " + leaseTable + " SET OWNER=NULL,LAST_TS=?,EXPIRE_TIME=0 WHERE N=? AND OWNER=?", getLastTimestamp(), nodeId, owner);
+		} catch (SQLException e) {
+			LogUtil.exception(e);
+		} finally {
+			leaseDb = null;
+		}
+	}
+
+	/*
+	 * 按节点号读取节点表，每个元素为{LAST_TS,EXPIRE_TIME}，没有记录的为null
+	 */
+	private static final ResultSetExtractor<long[][]> GET_NODES = new AbstractResultSetTransformer<long[][]>() {
+		public long[][] transformer(IResultSet rs) throws SQLException {
+			long[][] nodes = new long[MAX_NODE + 1][];
+			while (rs.next()) {
+				int n = rs.getInt(1);
+				if (n >= 0 && n <= MAX_NODE) {
+					nodes[n] = new long[] { rs.getLong(2), rs.getLong(3) };
+				}
+			}
+			return nodes;
+		}
+	};
+}
@@ -0,0 +1,275 @@
+package jef.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import jef.database.Condition.Operator;
+import jef.database.dialect.DatabaseDialect;
+import jef.database.meta.EntityType;
+import jef.database.meta.ITableMetadata;
+import jef.database.query.OrderField;
+import jef.database.query.QueryImpl;
+import jef.database.query.SqlContext;
+import jef.database.wrapper.clause.QueryClauseImpl;
+import jef.database.wrapper.variable.ConstantVariable;
+import jef.database.wrapper.variable.Variable;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * 单表条件查询的SQL缓存。
+ * <p>
+ * 同一个实体上结构相同的查询（相同的方言、字段、运算符、条件嵌套、IN列表长度、排序），生成的SQL语句是一样的，只有绑定变量的值不同。
+ * 因此按查询的“形状”缓存第一次生成的{@link QueryClauseImpl}，再次遇到相同形状的查询时直接复制SQL，并按位置换上本次查询的参数值，
+ * 省去条件树遍历、列名转义和字符串拼接。
+ * <p>
+ * 只处理普通实体上不带自定义select、不分表的{@link QueryImpl}。Join、Like条件、表达式条件、分表等情况下生成的SQL与参数值有关，不进入缓存，按原方式生成。
+ *
+ * @author jiyi
+ *
+ */
+final class SqlPlanCache {
+	/**
+	 * 标记该形状的SQL无法按位置替换参数，不再尝试缓存
+	 */
+	private static final Object UNCACHEABLE = new Object();
+	private static final Object NULL = new Object();
+	private static final Object EMPTY_STRING = new Object();
+
+	private final Cache<List<Object>, Object> plans;
+
+	SqlPlanCache(int size) {
+		this.plans = CacheBuilder.newBuilder().maximumSize(size).recordStats().build();
+	}
+
+	/**
+	 * 计算查询的形状
+	 *
+	 * @param obj
+	 * @param context
+	 * @param order
+	 * @param profile
+	 *            生成SQL使用的数据库方言
+	 * @return 不支持缓存的查询返回null
+	 */
+	static Shape shapeOf(Object obj, SqlContext context, boolean order, DatabaseDialect profile) {
+		if (obj.getClass() != QueryImpl.class || context.getSelectsImpl() != null) {
+			return null;
+		}
+		QueryImpl<?> q = (QueryImpl<?>) obj;
+		ITableMetadata meta = q.getMeta();
+		if (meta.getType() != EntityType.NATIVE || meta.getPartition() != null) {
+			return null;
+		}
+		// 条件为空时会按实体中的字段值自动生成条件
+		if (q.getConditions().isEmpty() && !q.isAll()) {
+			return null;
+		}
+		Shape shape = new Shape();
+		shape.key.add(profile);
+		shape.key.add(meta);
+		shape.key.add(order);
+		shape.key.add(q.isAll());
+		shape.key.add(ORMConfig.getInstance().isEnableLazyLob());
+		shape.key.add(ORMConfig.getInstance().isSpecifyAllColumnName());
+		Map<String, Object> attributes = q.getAttributes();
+		if (attributes != null && !attributes.isEmpty()) {
+			for (Object value : attributes.values()) {
+				if (!isPlainValue(value)) {
+					return null;
+				}
+			}
+			shape.key.add(attributes.toString());
+		}
+		if (!collect(q.getConditions(), shape)) {
+			return null;
+		}
+		if (order && q.getOrderBy() != null) {
+			for (OrderField field : q.getOrderBy()) {
+				if (!(field.getField() instanceof Enum)) {
+					return null;
+				}
+				shape.key.add(field.getField());
+				shape.key.add(field.isAsc());
+			}
+		}
+		return shape;
+	}
+
+	private static boolean collect(List<Condition> conditions, Shape shape) {
+		shape.key.add(conditions.size());
+		for (Condition c : conditions) {
+			Field field = c.getField();
+			if (field instanceof IConditionField.AbstractAndOr || field instanceof IConditionField.Not) {
+				shape.key.add(field.getClass());
+				if (!collect(((IConditionField) field).getConditions(), shape)) {
+					return false;
+				}
+				continue;
+			}
+			// 元模型字段之外的情况(表达式、引用字段、Exists等)不处理
+			if (!(field instanceof Enum) || c.getOperator() == null) {
+				return false;
+			}
+			Operator op = c.getOperator();
+			if (op == Operator.MATCH_ANY || op == Operator.MATCH_START || op == Operator.MATCH_END) {
+				return false;
+			}
+			shape.key.add(field);
+			shape.key.add(op);
+			Object value = c.getValue();
+			if (value == null) {
+				shape.key.add(NULL);
+			} else if (op == Operator.IN || op == Operator.NOT_IN || op == Operator.BETWEEN_L_L) {
+				Collection<?> values;
+				if (value instanceof Collection) {
+					values = (Collection<?>) value;
+				} else if (value instanceof Object[]) {
+					values = Arrays.asList((Object[]) value);
+				} else {
+					return false;
+				}
+				shape.key.add(values.size());
+				for (Object v : values) {
+					if (!isPlainValue(v)) {
+						return false;
+					}
+					shape.key.add(v.getClass());
+					shape.values.add(v);
+				}
+			} else {
+				if (!isPlainValue(value)) {
+					return false;
+				}
+				shape.key.add(value.getClass());
+				if (value instanceof CharSequence && ((CharSequence) value).length() == 0) {
+					shape.key.add(EMPTY_STRING);
+				}
+				shape.values.add(value);
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * 只有这些类型的值会原样作为绑定变量，不影响SQL语句本身
+	 */
+	private static boolean isPlainValue(Object v) {
+		if (v == null || v instanceof Field) {
+			return false;
+		}
+		return v instanceof String || v instanceof Number || v instanceof Boolean || v instanceof Character || v instanceof Date || v instanceof Enum || v instanceof byte[];
+	}
+
+	/**
+	 * 按形状得到缓存的SQL，并换上本次查询的参数值
+	 *
+	 * @param shape
+	 * @return 未缓存时返回null
+	 */
+	QueryClauseImpl get(Shape shape) {
+		Object plan = plans.getIfPresent(shape.key);
+		if (plan == null || plan == UNCACHEABLE) {
+			return null;
+		}
+		return ((Plan) plan).bind(shape.values);
+	}
+
+	/**
+	 * 将按原方式生成的SQL放入缓存。
+	 *
+	 * @param shape
+	 * @param clause
+	 */
+	void put(Shape shape, QueryClauseImpl clause) {
+		if (plans.asMap().containsKey(shape.key)) {
+			return;
+		}
+		// 表被路由到了其他数据库上，生成的SQL与形状中的方言不符
+		if (clause.getProfile() != shape.key.get(0)) {
+			plans.put(shape.key, UNCACHEABLE);
+			return;
+		}
+		List<Variable> bind = clause.getBind();
+		List<Object> values = shape.values;
+		ConstantVariable[] variables = new ConstantVariable[bind.size()];
+		int[] slots = new int[bind.size()];
+		boolean[] used = new boolean[values.size()];
+		for (int i = 0; i < variables.length; i++) {
+			Variable v = bind.get(i);
+			if (!(v instanceof ConstantVariable)) {
+				plans.put(shape.key, UNCACHEABLE);
+				return;
+			}
+			// 按对象身份确定绑定变量来自哪个参数值
+			Object value = v.getConstantValue();
+			int slot = -1;
+			for (int j = 0; j < used.length; j++) {
+				if (values.get(j) == value) {
+					if (slot > -1) {// 同一个对象用在多处，本次无法确定位置，下次再试
+						return;
+					}
+					slot = j;
+				}
+			}
+			if (slot < 0) {// 参数值在生成SQL时被转换过
+				plans.put(shape.key, UNCACHEABLE);
+				return;
+			}
+			variables[i] = ((ConstantVariable) v).copyWithValue(null);
+			slots[i] = slot;
+			used[slot] = true;
+		}
+		for (boolean b : used) {
+			if (!b) {// 参数值没有出现在绑定变量中，可能被写入了SQL语句
+				plans.put(shape.key, UNCACHEABLE);
+				return;
+			}
+		}
+		plans.put(shape.key, new Plan(clause.copyWithBind(Collections.<Variable> emptyList()), variables, slots));
+	}
+
+	String getStatics() {
+		CacheStats stats = plans.stats();
+		return String.format("size:%d hit:%d miss:%d hitRate:%.2f%%", plans.size(), stats.hitCount(), stats.missCount(), stats.hitRate() * 100);
+	}
+
+	void clear() {
+		plans.invalidateAll();
+	}
+
+	/**
+	 * 查询的形状和本次的参数值
+	 */
+	static final class Shape {
+		final List<Object> key = new ArrayList<Object>();
+		final List<Object> values = new ArrayList<Object>();
+	}
+
+	private static final class Plan {
+		private final QueryClauseImpl template;
+		private final ConstantVariable[] variables;
+		private final int[] slots;
+
+		Plan(QueryClauseImpl template, ConstantVariable[] variables, int[] slots) {
+			this.template = template;
+			this.variables = variables;
+			this.slots = slots;
+		}
+
+		QueryClauseImpl bind(List<Object> values) {
+			List<Variable> bind = new ArrayList<Variable>(variables.length);
+			for (int i = 0; i < variables.length; i++) {
+				bind.add(variables[i].copyWithValue(values.get(slots[i])));
+			}
+			return template.copyWithBind(bind);
+		}
+	}
+}
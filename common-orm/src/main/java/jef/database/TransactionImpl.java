@@ -5,8 +5,10 @@ import java.sql.SQLException;
 import javax.persistence.PersistenceException;
 
 import jef.common.log.LogUtil;
+import jef.database.cache.Cache;
 import jef.database.cache.CacheChain;
 import jef.database.cache.CacheImpl;
+import jef.database.cache.ClusterCache;
 import jef.database.innerpool.IConnection;
 import jef.database.support.TransactionTimedOutException;
 
@@ -47,6 +49,11 @@ public class TransactionImpl extends Transaction {
 
 	private boolean isJpa;
 
+	/**
+	 * 集群缓存的事务视图，事务提交后发布失效事件
+	 */
+	private ClusterCache clusterCache;
+
 	public void setReadonly(boolean flag) {
 		if (this.readOnly == flag)
 			return;
@@ -123,15 +130,21 @@ public class TransactionImpl extends Transaction {
 		this.insertp = parent.insertp;
 		this.updatep = parent.updatep;
 		this.deletep = parent.deletep;
+		Cache globalCache = parent.getCache();
+		if (globalCache instanceof ClusterCache) {
+			// 集群缓存，事务提交后才通知其他节点
+			clusterCache = ((ClusterCache) globalCache).newTransaction();
+			globalCache = clusterCache;
+		}
 		if (noCache || !ORMConfig.getInstance().isCacheLevel1()) {
 			// 没有自己的缓存
-			cache = parent.getCache();
-		} else if (parent.getCache().isDummy()) {
+			cache = globalCache;
+		} else if (globalCache.isDummy()) {
 			// 自己有缓存，上级无缓存
 			cache = new CacheImpl(preProcessor, selectp, 0, "L1");
 		} else {
 			// 两级缓存都启用的情况下
-			cache = new CacheChain(new CacheImpl(preProcessor, selectp, 0, "L1"), parent.getCache());
+			cache = new CacheChain(new CacheImpl(preProcessor, selectp, 0, "L1"), globalCache);
 		}
 		getListener().newTransaction(this);
 		if (timeout > 0) {
@@ -219,6 +232,9 @@ public class TransactionImpl extends Transaction {
 			long start = System.currentTimeMillis();
 			conn.rollback();
 			dirty = false;
+			if (clusterCache != null) {
+				clusterCache.rollback();
+			}
 			log.debug("[JPA DEBUG]:Transaction {} rollback. cost {}ms.", this, (System.currentTimeMillis() - start));
 			getListener().postRollback(this);
 		}
@@ -230,6 +246,9 @@ public class TransactionImpl extends Transaction {
 			long start = System.currentTimeMillis();
 			conn.commit();
 			dirty = false;
+			if (clusterCache != null) {
+				clusterCache.commit();
+			}
 			log.debug("[JPA DEBUG]:Transaction {} commited. cost {}ms.", this, System.currentTimeMillis() - start);
 			getListener().postCommit(this);
 		}
@@ -265,6 +284,10 @@ public class TransactionImpl extends Transaction {
 
 	@Override
 	public void close() {
+		if (clusterCache != null && parent != null && dirty && !autoCommit) {
+			// 未提交的修改将被回滚，不能通知其他节点
+			clusterCache.rollback();
+		}
 		cache.evictAll();
 		if (parent != null) {
 			if (!readOnly && dirty && !autoCommit) {
@@ -37,6 +37,7 @@ import jef.database.wrapper.variable.ConstantVariable;
 import jef.database.wrapper.variable.UpdateVairable;
 import jef.database.wrapper.variable.Variable;
 import jef.tools.Assert;
+import jef.tools.JefConfiguration;
 import jef.tools.StringUtils;
 import jef.tools.reflect.BeanWrapper;
 
@@ -104,9 +105,22 @@ public abstract class UpdateProcessor {
 		this.processor = parent;
 	}
 
+	/**
+	 * 得到SQL缓存的命中统计
+	 * 
+	 * @return
+	 */
+	String getSqlCacheStatics() {
+		return "";
+	}
+
 	final static class PreparedImpl extends UpdateProcessor {
+		private final WriteSqlCache sqls;
+
 		public PreparedImpl(SqlProcessor db) {
 			super(db);
+			int size = JefConfiguration.getInt(DbCfg.DB_WRITE_SQL_CACHE_SIZE, 1000);
+			this.sqls = size > 0 ? new WriteSqlCache(size) : null;
 		}
 
 		int processUpdate0(OperateTarget db, IQueryableEntity obj, UpdateClause setValues, BindSql whereValues, PartitionResult site, SqlLog log) throws SQLException {
@@ -152,15 +166,29 @@ public abstract class UpdateProcessor {
 		@SuppressWarnings("unchecked")
 		public UpdateClause toUpdateClauseBatch(IQueryableEntity obj, PartitionResult[] prs, boolean dynamic) {
 			DatabaseDialect profile = processor.getProfile(prs);
-			UpdateClause result = new UpdateClause();
-
 			Map<Field, Object> map = obj.getUpdateValueMap();
 			Map.Entry<Field, Object>[] fields;
 			ITableMetadata meta = MetaHolder.getMeta(obj);
 			if (dynamic) {
 				fields = map.entrySet().toArray(new Map.Entry[map.size()]);
 				moveLobFieldsToLast(fields, meta);
+			} else {
+				fields = getAllFieldValues(meta, map, BeanWrapper.wrap(obj), profile);
+			}
+			List<Object> key = sqls == null ? null : WriteSqlCache.updateKey(obj, meta, profile, fields, dynamic);
+			UpdateClause result = key == null ? null : sqls.getUpdate(key);
+			if (result == null) {
+				result = buildUpdateClause(obj, meta, profile, map, fields, dynamic);
+				if (key != null) {
+					sqls.putUpdate(key, result);
+				}
+			}
+			return result;
+		}
 
+		private UpdateClause buildUpdateClause(IQueryableEntity obj, ITableMetadata meta, DatabaseDialect profile, Map<Field, Object> map, Map.Entry<Field, Object>[] fields, boolean dynamic) {
+			UpdateClause result = new UpdateClause();
+			if (dynamic) {
 				// 增加时间戳自动更新的列
 				VersionSupportColumn[] autoUpdateTime = meta.getAutoUpdateColumnDef();
 				if (autoUpdateTime != null) {
@@ -170,8 +198,6 @@ public abstract class UpdateProcessor {
 						}
 					}
 				}
-			} else {
-				fields = getAllFieldValues(meta, map, BeanWrapper.wrap(obj), profile);
 			}
 			boolean safeMerge=ORMConfig.getInstance().isSafeMerge();
 					
@@ -231,6 +257,11 @@ public abstract class UpdateProcessor {
 			return toUpdateClauseBatch(obj, prs, dynamic);
 		}
 
+		@Override
+		String getSqlCacheStatics() {
+			return sqls == null ? "Disabled." : sqls.getStatics();
+		}
+
 		@Override
 		BindSql toWhereClause(JoinElement joinElement, SqlContext context, UpdateContext update, DatabaseDialect profile) {
 			return processor.toWhereClause(joinElement, context, update, profile, false);
@@ -0,0 +1,219 @@
+package jef.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import jef.database.dialect.DatabaseDialect;
+import jef.database.dialect.type.AutoGuidMapping;
+import jef.database.dialect.type.AutoIncrementMapping;
+import jef.database.dialect.type.ColumnMapping;
+import jef.database.meta.EntityType;
+import jef.database.meta.ITableMetadata;
+import jef.database.query.JpqlExpression;
+import jef.database.query.Query;
+import jef.database.query.SqlExpression;
+import jef.database.routing.PartitionResult;
+import jef.database.wrapper.clause.InsertSqlClause;
+import jef.database.wrapper.clause.UpdateClause;
+import jef.database.wrapper.processor.InsertStep;
+import jef.database.wrapper.variable.UpdateVairable;
+import jef.database.wrapper.variable.Variable;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * 单行insert/update语句的SQL缓存。
+ * <p>
+ * 同一个实体在同一种数据库上，设置了值的字段相同时，生成的insert列、值部分和update的set部分总是一样的，绑定变量的顺序也一样。
+ * 因此按(元数据、方言、数据源、已设值的字段)缓存生成结果，再次写入时直接复用，省去逐列生成和拼接SQL。
+ * 表名不在缓存的SQL片段中，执行时按分表结果拼接。
+ * <p>
+ * 取值与字段值本身有关的情况不进入缓存：手动指定的自增/GUID主键、update中的表达式、Java端生成的自动更新时间等。
+ *
+ * @author jiyi
+ *
+ */
+final class WriteSqlCache {
+	/**
+	 * 标记该结构的SQL与字段值有关，不再尝试缓存
+	 */
+	private static final Object UNCACHEABLE = new Object();
+
+	private final Cache<List<Object>, Object> cache;
+
+	WriteSqlCache(int size) {
+		this.cache = CacheBuilder.newBuilder().maximumSize(size).recordStats().build();
+	}
+
+	/**
+	 * 计算insert语句的缓存键，每一个可插入的列占一个bit，记录对象中该字段是否设置过值
+	 *
+	 * @param meta
+	 * @param obj
+	 * @param profile
+	 * @param pr
+	 * @param dynamic
+	 * @param extreme
+	 * @return 不支持缓存时返回null
+	 */
+	static List<Object> insertKey(ITableMetadata meta, IQueryableEntity obj, DatabaseDialect profile, PartitionResult pr, boolean dynamic, boolean extreme) {
+		if (meta.getType() == EntityType.TUPLE) {// 动态表的列可能变化
+			return null;
+		}
+		boolean manualSequence = ORMConfig.getInstance().isManualSequence();
+		BitSet used = new BitSet();
+		int i = 0;
+		for (ColumnMapping column : meta.getColumns()) {
+			if (column.isNotInsert()) {
+				continue;
+			}
+			if (obj.isUsed(column.field())) {
+				// 手动指定主键时，是否使用生成器取决于字段值
+				if (manualSequence && (column instanceof AutoIncrementMapping || column instanceof AutoGuidMapping)) {
+					return null;
+				}
+				used.set(i);
+			}
+			i++;
+		}
+		return Arrays.<Object> asList(meta, profile, pr == null ? null : pr.getDatabase(), dynamic, extreme, used);
+	}
+
+	/**
+	 * 计算update语句的缓存键，由实际更新的字段按顺序组成
+	 *
+	 * @param obj
+	 * @param meta
+	 * @param profile
+	 * @param fields
+	 *            要更新的字段和值，顺序与生成SQL时相同
+	 * @param dynamic
+	 * @return 不支持缓存时返回null
+	 */
+	static List<Object> updateKey(IQueryableEntity obj, ITableMetadata meta, DatabaseDialect profile, Map.Entry<Field, Object>[] fields, boolean dynamic) {
+		if (meta.getType() == EntityType.TUPLE) {
+			return null;
+		}
+		boolean safeMerge = ORMConfig.getInstance().isSafeMerge();
+		List<Object> key = new ArrayList<Object>(fields.length + 3);
+		key.add(meta);
+		key.add(profile);
+		key.add(dynamic);
+		for (Map.Entry<Field, Object> e : fields) {
+			Field field = e.getKey();
+			Object value = e.getValue();
+			if (value instanceof JpqlExpression) {
+				return null;
+			} else if (value instanceof SqlExpression) {
+				// 表达式中的参数会按查询的属性替换
+				if (obj.hasQuery()) {
+					Map<String, Object> attrs = ((Query<?>) obj.getQuery()).getAttributes();
+					if (attrs != null && attrs.size() > 0) {
+						return null;
+					}
+				}
+				key.add(field);
+				key.add(((SqlExpression) value).getText());
+			} else if (value instanceof Field) {
+				key.add(field);
+				key.add(value);
+			} else if (!safeMerge || !DbUtils.isInvalidValue(value, meta.getColumnDef(field), true)) {
+				key.add(field);
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * 将缓存的insert语句片段填入clause
+	 *
+	 * @param key
+	 * @param clause
+	 * @return 未缓存时返回false
+	 */
+	boolean applyInsert(List<Object> key, InsertSqlClause clause) {
+		Object value = cache.getIfPresent(key);
+		if (value == null || value == UNCACHEABLE) {
+			return false;
+		}
+		((InsertTemplate) value).applyTo(clause);
+		return true;
+	}
+
+	/**
+	 * 将按原方式生成的insert语句片段放入缓存
+	 *
+	 * @param key
+	 * @param clause
+	 */
+	void putInsert(List<Object> key, InsertSqlClause clause) {
+		cache.put(key, new InsertTemplate(clause));
+	}
+
+	/**
+	 * 得到缓存的update语句set部分。返回的对象被多个线程共用，不能再修改。
+	 *
+	 * @param key
+	 * @return 未缓存时返回null
+	 */
+	UpdateClause getUpdate(List<Object> key) {
+		Object value = cache.getIfPresent(key);
+		if (value == null || value == UNCACHEABLE) {
+			return null;
+		}
+		return (UpdateClause) value;
+	}
+
+	/**
+	 * 将按原方式生成的update语句set部分放入缓存
+	 *
+	 * @param key
+	 * @param clause
+	 */
+	void putUpdate(List<Object> key, UpdateClause clause) {
+		for (Variable v : clause.getVariables()) {
+			// 常量(如Java端生成的更新时间)每次都不同
+			if (!(v instanceof UpdateVairable)) {
+				cache.put(key, UNCACHEABLE);
+				return;
+			}
+		}
+		cache.put(key, clause);
+	}
+
+	String getStatics() {
+		CacheStats stats = cache.stats();
+		return String.format("size:%d hit:%d miss:%d hitRate:%.2f%%", cache.size(), stats.hitCount(), stats.missCount(), stats.hitRate() * 100);
+	}
+
+	private static final class InsertTemplate {
+		private final String columnsPart;
+		private final String valuesPart;
+		private final ColumnMapping[] fields;
+		private final InsertStep[] processors;
+
+		InsertTemplate(InsertSqlClause clause) {
+			this.columnsPart = clause.getColumnsPart();
+			this.valuesPart = clause.getValuesPart();
+			this.fields = clause.getFields().toArray(new ColumnMapping[clause.getFields().size()]);
+			List<InsertStep> steps = clause.getCallback().getProcessors();
+			this.processors = steps.toArray(new InsertStep[steps.size()]);
+		}
+
+		void applyTo(InsertSqlClause clause) {
+			clause.setColumnsPart(columnsPart);
+			clause.setValuesPart(valuesPart);
+			for (ColumnMapping field : fields) {
+				clause.addField(field);
+			}
+			for (InsertStep step : processors) {
+				clause.getCallback().addProcessor(step);
+			}
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package jef.database.annotation;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * 为单个实体指定二级缓存的容量和生存时间，覆盖全局配置。
+ * <ul>
+ * <li>{@link jef.database.DbCfg#CACHE_GLOBAL_SPACE_SIZE}</li>
+ * <li>{@link jef.database.DbCfg#CACHE_GLOBAL_EXPIRE_TIME}</li>
+ * </ul>
+ * 一般和&#64;Cacheable一起使用。
+ * 
+ * @author jiyi
+ *
+ */
+@Target(TYPE)
+@Retention(RUNTIME)
+public @interface CacheSetting {
+	/**
+	 * 该实体对应表空间的缓存最大容量，单位KB。-1表示使用全局配置，0表示不限制。
+	 * @return
+	 */
+	int spaceSize() default -1;
+
+	/**
+	 * 缓存项的生存时间，单位秒。-1表示使用全局配置，0表示永不过期。
+	 * @return
+	 */
+	int expireSeconds() default -1;
+}
@@ -0,0 +1,22 @@
+package jef.database.annotation;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ *
+ * 这个注解和&#64;GeneratedValue一起使用，表示主键不再从数据库的Sequence或自增列获取，而是在本地用Snowflake算法生成。
+ * <p>
+ * 生成的值为64位的长整数，字段必须是long/Long类型。值按时间有序，插入时无需访问数据库取主键。
+ *
+ * @see jef.database.SnowflakeIdGenerator
+ * @see jef.database.DbCfg#DB_SNOWFLAKE_NODE_ID
+ *
+ */
+@Target(FIELD)
+@Retention(RUNTIME)
+public @interface SnowflakeGeneration {
+}
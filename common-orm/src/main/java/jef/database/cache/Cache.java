@@ -1,5 +1,6 @@
 package jef.database.cache;
 
+import java.util.Collection;
 import java.util.List;
 
 import jef.database.IQueryableEntity;
@@ -7,6 +8,7 @@ import jef.database.jsqlparser.statement.delete.Delete;
 import jef.database.jsqlparser.statement.insert.Insert;
 import jef.database.jsqlparser.statement.truncate.Truncate;
 import jef.database.jsqlparser.statement.update.Update;
+import jef.database.meta.ITableMetadata;
 
 /**
  * 以事务为生命周期的缓存，Level 1 Cache
@@ -30,6 +32,33 @@ public interface Cache extends javax.persistence.Cache{
 	@SuppressWarnings("rawtypes")
 	public List load(CacheKey key);
 
+	/**
+	 * load an entity by primary key from the identity cache.
+	 * @param meta entity metadata
+	 * @param pk values of primary key
+	 * @return null if not cached.
+	 */
+	public Object loadByPK(ITableMetadata meta, List<?> pk);
+
+	/**
+	 * Get the current modification stamp of the identity cache of the table.
+	 * Take it before querying the database and pass it to {@link #onLoadByPK(ITableMetadata, List, Object, Object)},
+	 * so that an entity read before a concurrent modification is not cached.
+	 * @param meta entity metadata
+	 * @return an opaque stamp, may be null.
+	 */
+	public Object getIdentityStamp(ITableMetadata meta);
+
+	/**
+	 * Store an entity loaded by primary key into the identity cache.
+	 * @param meta entity metadata
+	 * @param pk values of primary key
+	 * @param obj the entity
+	 * @param stamp the stamp got by {@link #getIdentityStamp(ITableMetadata)} before the entity was loaded.
+	 * The entity is not cached if the table was modified since then.
+	 */
+	public void onLoadByPK(ITableMetadata meta, List<?> pk, Object obj, Object stamp);
+
 	/**
 	 * remove from cache
 	 * @param cacheKey
@@ -64,6 +93,15 @@ public interface Cache extends javax.persistence.Cache{
 	 * @param bind
 	 */
 	public void onUpdate(String table, String where, List<Object> bind);
+
+	/**
+	 * on object update, refresh cache.
+	 * @param table
+	 * @param where
+	 * @param bind
+	 * @param columns 被更新的列。用于行级失效判断，传入null表示未知
+	 */
+	public void onUpdate(String table, String where, List<Object> bind, Collection<String> columns);
 	/**
 	 * is this cache a dummy cache( no cache)
 	 * @return
@@ -1,5 +1,6 @@
 package jef.database.cache;
 
+import java.util.Collection;
 import java.util.List;
 
 import jef.database.IQueryableEntity;
@@ -7,6 +8,7 @@ import jef.database.jsqlparser.statement.delete.Delete;
 import jef.database.jsqlparser.statement.insert.Insert;
 import jef.database.jsqlparser.statement.truncate.Truncate;
 import jef.database.jsqlparser.statement.update.Update;
+import jef.database.meta.ITableMetadata;
 
 /**
  * 缓存链
@@ -77,6 +79,34 @@ public final class CacheChain implements Cache{
 		return null;
 	}
 
+	@Override
+	public Object loadByPK(ITableMetadata meta, List<?> pk) {
+		for(Cache c: chains) {
+			Object o=c.loadByPK(meta, pk);
+			if(o!=null) {
+				return o;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public Object getIdentityStamp(ITableMetadata meta) {
+		Object[] stamps=new Object[chains.length];
+		for(int i=0;i<chains.length;i++) {
+			stamps[i]=chains[i].getIdentityStamp(meta);
+		}
+		return stamps;
+	}
+
+	@Override
+	public void onLoadByPK(ITableMetadata meta, List<?> pk, Object obj, Object stamp) {
+		Object[] stamps=(Object[])stamp;
+		for(int i=0;i<chains.length;i++) {
+			chains[i].onLoadByPK(meta, pk, obj, stamps[i]);
+		}
+	}
+
 	@Override
 	public void evict(CacheKey cacheKey) {
 		for(Cache c: chains) {
@@ -115,6 +145,13 @@ public final class CacheChain implements Cache{
 		}
 	}
 
+	@Override
+	public void onUpdate(String table, String where, List<Object> bind, Collection<String> columns) {
+		for(Cache c: chains) {
+			c.onUpdate(table, where, bind, columns);
+		}
+	}
+
 	@Override
 	public boolean isDummy() {
 		for(Cache c: chains) {
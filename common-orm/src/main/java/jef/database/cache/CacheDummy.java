@@ -1,5 +1,6 @@
 package jef.database.cache;
 
+import java.util.Collection;
 import java.util.List;
 
 import jef.database.IQueryableEntity;
@@ -7,6 +8,7 @@ import jef.database.jsqlparser.statement.delete.Delete;
 import jef.database.jsqlparser.statement.insert.Insert;
 import jef.database.jsqlparser.statement.truncate.Truncate;
 import jef.database.jsqlparser.statement.update.Update;
+import jef.database.meta.ITableMetadata;
 
 
 @SuppressWarnings("rawtypes") 
@@ -42,6 +44,17 @@ public final class CacheDummy  implements Cache{
 		return null;
 	}
 
+	public Object loadByPK(ITableMetadata meta, List<?> pk) {
+		return null;
+	}
+
+	public Object getIdentityStamp(ITableMetadata meta) {
+		return null;
+	}
+
+	public void onLoadByPK(ITableMetadata meta, List<?> pk, Object obj, Object stamp) {
+	}
+
 	public void onInsert(IQueryableEntity obj,String table) {
 	}
 
@@ -49,6 +62,8 @@ public final class CacheDummy  implements Cache{
 	}
 	public void onUpdate(String table, String where, List<Object> bind) {
 	}
+	public void onUpdate(String table, String where, List<Object> bind, Collection<String> columns) {
+	}
 	public boolean isDummy() {
 		return true;
 	}
@@ -1,11 +1,14 @@
 package jef.database.cache;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -14,6 +17,7 @@ import jef.database.IQueryableEntity;
 import jef.database.ORMConfig;
 import jef.database.SelectProcessor;
 import jef.database.SqlProcessor;
+import jef.database.annotation.CacheSetting;
 import jef.database.dialect.DatabaseDialect;
 import jef.database.jsqlparser.expression.JdbcParameter;
 import jef.database.jsqlparser.expression.JpqlParameter;
@@ -60,6 +64,10 @@ public class CacheImpl implements Cache {
 	 * 缓存失效周期，单位秒
 	 */
 	private int expireInterval;
+	/**
+	 * 每个表空间的最大容量，单位KB。0表示不限制，-1表示使用非线程安全的简单存储（一级缓存）
+	 */
+	private int spaceSize;
 	/**
 	 * 缓存名称
 	 */
@@ -75,7 +83,22 @@ public class CacheImpl implements Cache {
 	 * 定时失效机制如何添加：拟添加在第三层 清洗规则中，可以以任意一级为条件进行清洗
 	 * 
 	 */
-	private final Map<String, Map<KeyDimension, DimCache>> cache = new ConcurrentHashMap<String, Map<KeyDimension, DimCache>>();
+	private final ConcurrentMap<String, Map<KeyDimension, DimCache>> cache = new ConcurrentHashMap<String, Map<KeyDimension, DimCache>>();
+
+	/**
+	 * 各表空间的容量配额，仅当spaceSize>=0时使用
+	 */
+	private final ConcurrentHashMap<String, CacheSpaceQuota> quotas = new ConcurrentHashMap<String, CacheSpaceQuota>();
+
+	/**
+	 * 各表空间的主键维度，用于行级失效
+	 */
+	private final ConcurrentHashMap<String, KeyDimension> pkDimensions = new ConcurrentHashMap<String, KeyDimension>();
+
+	/**
+	 * 按主键的对象缓存，仅当spaceSize>=0时使用，否则为null
+	 */
+	private final IdentityCache identities;
 
 	/**
 	 * 构造
@@ -88,11 +111,32 @@ public class CacheImpl implements Cache {
 	 *            缓存过期事件
 	 */
 	public CacheImpl(SqlProcessor sql, SelectProcessor selectp, int expireInterval, String name) {
+		this(sql, selectp, expireInterval, -1, name);
+	}
+
+	/**
+	 * 构造一个线程安全、有容量限制的缓存
+	 * 
+	 * @param sql
+	 *            SQL处理器
+	 * @param selectp
+	 *            查询处理器
+	 * @param expireInterval
+	 *            缓存过期时间，单位秒
+	 * @param spaceSize
+	 *            每个表空间的最大容量，单位KB。0表示不限制，-1表示使用非线程安全的简单存储
+	 * @param name
+	 *            缓存名称
+	 */
+	public CacheImpl(SqlProcessor sql, SelectProcessor selectp, int expireInterval, int spaceSize, String name) {
 		this.preparedSqlProcessor = sql;
 		this.selectp = selectp;
 		this.expireInterval = expireInterval;
+		this.spaceSize = spaceSize;
 		this.name = name;
 		this.profile = preparedSqlProcessor.getProfile();
+		int identitySize = config.getCacheIdentitySize();
+		this.identities = spaceSize >= 0 && identitySize > 0 ? new IdentityCache(identitySize, expireInterval) : null;
 	}
 
 	public boolean contains(Class cls, Object primaryKey) {
@@ -147,6 +191,8 @@ public class CacheImpl implements Cache {
 	public void evict(Class cls) {
 		AbstractMetadata meta = MetaHolder.getMeta(cls);
 		KeyDimension dim = meta.getPKDimension(profile);
+		if (identities != null)
+			identities.invalidateSpace(dim.getTableDefinition());
 		Map<KeyDimension, DimCache> tableSpace = this.cache.get(dim.getTableDefinition());
 		for (DimCache cache : tableSpace.values()) {
 			cache.clear();
@@ -154,17 +200,40 @@ public class CacheImpl implements Cache {
 	}
 
 	public void evictAll() {
+		if (identities != null)
+			identities.invalidateAll();
 		for (Map<KeyDimension, DimCache> space : cache.values()) {
+			// 先清除每个维度，以便释放表空间的容量配额
+			for (DimCache dc : space.values()) {
+				dc.clear();
+			}
 			space.clear();
 		}
 	}
 
+	/**
+	 * 清除指定表空间的全部缓存
+	 * 
+	 * @param space
+	 *            表空间，即大写的表名或多表定义
+	 */
+	public void evictSpace(String space) {
+		if (identities != null)
+			identities.invalidateSpace(space);
+		Map<KeyDimension, DimCache> tableSpace = this.cache.get(space);
+		if (tableSpace != null) {
+			refreshCacheExcept(tableSpace, null);
+		}
+	}
+
 	/**
 	 * for JPA Only
 	 * 
 	 * @param key
 	 */
 	public void evict(CacheKey key) {
+		if (identities != null)
+			identities.invalidate(key);
 		Map<KeyDimension, DimCache> tableCache = cache.get(key.getStoreSpace());
 		if (tableCache == null || tableCache.isEmpty())
 			return;
@@ -184,12 +253,13 @@ public class CacheImpl implements Cache {
 		DimCache dc;
 		{
 			Map<KeyDimension, DimCache> tableCache = getCreateTableCache(key.getStoreSpace());
+			int expire = key instanceof NativeQueryCacheKey ? ((NativeQueryCacheKey) key).getExpireSeconds() : -1;
 			dc = tableCache.get(key.getDimension());
 			if (dc == null) {
-				dc = expireInterval > 0 ? new DimCacheExpImpl(expireInterval) : new DimCacheImpl();
+				dc = newDimCache(key.getStoreSpace(), key.getDimension(), clz, expire);
 				tableCache.put(key.getDimension(), dc);
 			}
-			dc.put(key.getParams(), ImmutableList.copyOf(result));
+			dc.put(key.getParams(), toCachedList(key, result, clz), expire);
 		}
 
 		if (key.getAffectedKey() != null) {
@@ -204,6 +274,32 @@ public class CacheImpl implements Cache {
 		}
 	}
 
+	/*
+	 * 行级失效模式下，记录结果中各行的主键；否则直接复制为不可变的List
+	 */
+	private <T> List<T> toCachedList(CacheKey key, List<T> result, Class<T> clz) {
+		if (!config.isCacheRowInvalidation() || key.getAffectedKey() != null || clz == null || !IQueryableEntity.class.isAssignableFrom(clz)) {
+			return ImmutableList.copyOf(result);
+		}
+		AbstractMetadata meta = MetaHolder.getMeta(clz);
+		String space = key.getStoreSpace();
+		if (meta.getPKFields().isEmpty() || !meta.getTableName(false).equalsIgnoreCase(space)) {
+			return ImmutableList.copyOf(result);
+		}
+		if (!pkDimensions.containsKey(space)) {
+			pkDimensions.putIfAbsent(space, meta.getPKDimension(profile));
+		}
+		List<List<?>> pks = new ArrayList<List<?>>(result.size());
+		for (T t : result) {
+			List<Serializable> pk = DbUtils.getPKValueSafe((IQueryableEntity) t);
+			if (pk == null) {
+				return ImmutableList.copyOf(result);
+			}
+			pks.add(pk);
+		}
+		return new CachedResultList<T>(result, pks);
+	}
+
 	public List load(CacheKey key) {
 		if (key == null)
 			return null;
@@ -236,6 +332,35 @@ public class CacheImpl implements Cache {
 		return list;
 	}
 
+	public Object loadByPK(ITableMetadata meta, List<?> pk) {
+		if (identities == null)
+			return null;
+		String space = ((AbstractMetadata) meta).getPKDimension(profile).getTableDefinition();
+		Object obj = identities.get(space, pk);
+		if (obj == null) {
+			miss.getAndIncrement();
+			if (config.cacheDebug)
+				logger.info("{}-Cache  Miss: [{}] PK{}", name, space, pk);
+		} else {
+			hit.incrementAndGet();
+			if (config.cacheDebug)
+				logger.info("{}-Cache   Hit: [{}] PK{}", name, space, pk);
+		}
+		return obj;
+	}
+
+	public Object getIdentityStamp(ITableMetadata meta) {
+		if (identities == null)
+			return null;
+		return identities.version(((AbstractMetadata) meta).getPKDimension(profile).getTableDefinition());
+	}
+
+	public void onLoadByPK(ITableMetadata meta, List<?> pk, Object obj, Object stamp) {
+		if (identities == null || obj == null || !(stamp instanceof Long))
+			return;
+		identities.put(((AbstractMetadata) meta).getPKDimension(profile), pk, obj, (Long) stamp);
+	}
+
 	public void onInsert(IQueryableEntity obj, String table) {
 		if (obj == null)
 			return;
@@ -263,6 +388,8 @@ public class CacheImpl implements Cache {
 				dim = meta.getPKDimension(profile);
 			}
 			CacheKey pkCache = new SqlCacheKey(dim, pks);
+			if (identities != null)
+				identities.invalidate(pkCache);
 
 			Map<KeyDimension, DimCache> tableCache = getCreateTableCache(pkCache.getStoreSpace());
 			refreshCache(tableCache, pkCache, null);
@@ -298,20 +425,90 @@ public class CacheImpl implements Cache {
 
 	public void onDelete(String table, String where, List<Object> object) {
 		CacheKey key = new SqlCacheKey(KeyDimension.forSingleTable(table, where, null, profile), object);
+		if (identities != null)
+			identities.invalidate(key);
 		Map<KeyDimension, DimCache> tableCache = this.cache.get(key.getStoreSpace());
 		if (tableCache == null || tableCache.isEmpty()) {
 			return;
 		}
-		refreshCache(tableCache, key, null);
+		// 删除记录不会使记录进入其他结果，因此只需清除包含这些记录的结果
+		if (!refreshCacheByRow(tableCache, key, Collections.<String> emptyList())) {
+			refreshCache(tableCache, key, null);
+		}
 	}
 
 	public void onUpdate(String table, String where, List<Object> object) {
+		onUpdate(table, where, object, null);
+	}
+
+	public void onUpdate(String table, String where, List<Object> object, Collection<String> columns) {
 		CacheKey key = new SqlCacheKey(KeyDimension.forSingleTable(table, where, null, profile), object);
+		if (identities != null)
+			identities.invalidate(key);
 		Map<KeyDimension, DimCache> tableCache = this.cache.get(key.getStoreSpace());
 		if (tableCache == null || tableCache.isEmpty()) {
 			return;
 		}
-		refreshCache(tableCache, key, null);
+		if (columns == null || !refreshCacheByRow(tableCache, key, normalizeColumns(columns))) {
+			refreshCache(tableCache, key, null);
+		}
+	}
+
+	/*
+	 * 列名转大写并去除引号，和KeyDimension中规范化后的文本一致
+	 */
+	private static List<String> normalizeColumns(Collection<String> columns) {
+		List<String> result = new ArrayList<String>(columns.size());
+		for (String column : columns) {
+			String s = column.toUpperCase();
+			if (s.length() > 1 && (s.charAt(0) == '"' || s.charAt(0) == '`')) {
+				s = s.substring(1, s.length() - 1);
+			}
+			result.add(s);
+		}
+		return result;
+	}
+
+	/**
+	 * 行级缓存刷新策略，仅当操作条件为主键时生效。
+	 * <ul>
+	 * <li>主键维度：清除该主键对应的缓存</li>
+	 * <li>条件或排序中引用了被修改列的维度：全部失效</li>
+	 * <li>多表维度：全部失效</li>
+	 * <li>其他维度：仅清除结果中包含该主键的缓存</li>
+	 * </ul>
+	 * 
+	 * @param tableCache
+	 *            目标空间
+	 * @param key
+	 *            操作的维度和参数
+	 * @param columns
+	 *            被修改的列，删除时为空集合
+	 * @return false表示不满足行级失效的条件，需要按原策略刷新
+	 */
+	private boolean refreshCacheByRow(Map<KeyDimension, DimCache> tableCache, CacheKey key, Collection<String> columns) {
+		if (!config.isCacheRowInvalidation()) {
+			return false;
+		}
+		KeyDimension pkDim = pkDimensions.get(key.getStoreSpace());
+		if (pkDim == null || !pkDim.equals(key.getDimension())) {
+			return false;
+		}
+		List<List<?>> pks = Collections.<List<?>> singletonList(key.getParams());
+		for (Map.Entry<KeyDimension, DimCache> entry : tableCache.entrySet()) {
+			KeyDimension dim = entry.getKey();
+			DimCache dc = entry.getValue();
+			if (dim.equals(pkDim)) {
+				dc.remove(key.getParams());
+			} else if (dim.getTables() != null || dim.isAffectedBy(columns)) {
+				dc.clear();
+			} else {
+				dc.evictContaining(pks);
+			}
+		}
+		if (config.cacheDebug)
+			logger.info("{}-Cache Row Evict: {}", name, key);
+		return true;
 	}
 
 	/**
@@ -333,7 +530,7 @@ public class CacheImpl implements Cache {
 
 		if (cache == null) {
 			if (obj != null) {// 添加缓存
-				cache = expireInterval > 0 ? new DimCacheExpImpl(expireInterval) : new DimCacheImpl();
+				cache = newDimCache(key.getStoreSpace(), key.getDimension(), obj.getClass(), -1);
 				cache.put(key.getParams(), Arrays.asList(obj));
 				if (config.cacheDebug)
 					logger.info("{}-Cache Store: {}", name, key);
@@ -374,11 +571,50 @@ public class CacheImpl implements Cache {
 		}
 	}
 
+	/**
+	 * 创建维度的缓存存储
+	 * 
+	 * @param space
+	 *            表空间
+	 * @param dim
+	 *            维度
+	 * @param clz
+	 *            缓存的对象类型，用于读取实体上的缓存设置
+	 * @param expire
+	 *            指定的生存时间（秒），-1表示使用默认设置
+	 * @return
+	 */
+	private DimCache newDimCache(String space, KeyDimension dim, Class<?> clz, int expire) {
+		if (spaceSize < 0) {
+			int interval = expire > 0 ? expire : expireInterval;
+			return interval > 0 ? new DimCacheExpImpl(interval) : new DimCacheImpl();
+		}
+		CacheSpaceQuota quota = quotas.get(space);
+		if (quota == null) {
+			int size = spaceSize;
+			CacheSetting setting = clz == null ? null : clz.getAnnotation(CacheSetting.class);
+			if (expire < 0) {
+				expire = expireInterval;
+				if (setting != null && setting.expireSeconds() >= 0)
+					expire = setting.expireSeconds();
+			}
+			if (setting != null && setting.spaceSize() >= 0)
+				size = setting.spaceSize();
+			quota = new CacheSpaceQuota(size * 1024L, expire, config.isCacheOffHeap());
+			CacheSpaceQuota old = quotas.putIfAbsent(space, quota);
+			if (old != null)
+				quota = old;
+		}
+		return new DimCacheBoundedImpl(quota, dim);
+	}
+
 	private Map<KeyDimension, DimCache> getCreateTableCache(String table) {
 		Map<KeyDimension, DimCache> tableCache = this.cache.get(table);
 		if (tableCache == null) {
 			tableCache = new ConcurrentHashMap<KeyDimension, DimCache>();
-			this.cache.put(table, tableCache);
+			Map<KeyDimension, DimCache> old = this.cache.putIfAbsent(table, tableCache);
+			if (old != null)
+				tableCache = old;
 		}
 		return tableCache;
 	}
@@ -390,6 +626,8 @@ public class CacheImpl implements Cache {
 	public void process(Truncate st, List<Object> list) {
 		Table t = st.getTable();
 		String tableName = t.getName().toUpperCase();
+		if (identities != null)
+			identities.invalidateSpace(tableName);
 		Map<KeyDimension, DimCache> tableCache = this.cache.get(tableName);
 		if (tableCache != null) {
 			refreshCacheExcept(tableCache, null);
@@ -401,6 +639,8 @@ public class CacheImpl implements Cache {
 			Table t = (Table) st.getTable();
 			KeyDimension dim = new KeyDimension(t, st.getWhere(), null);
 			CacheKey key = new SqlCacheKey(dim, list);
+			if (identities != null)
+				identities.invalidate(key);
 			Map<KeyDimension, DimCache> tableCache = this.cache.get(key.getStoreSpace());
 
 			if (tableCache == null)
@@ -431,6 +671,8 @@ public class CacheImpl implements Cache {
 	public void process(Update st, List<Object> list) {
 		if (st.getTable() instanceof Table) {
 			Table t = (Table) st.getTable();
+			if (identities != null)
+				identities.invalidateSpace(t.getName().toUpperCase());
 
 			Map<KeyDimension, DimCache> tableCache = this.cache.get(t.getName().toUpperCase());
 			if (tableCache == null)
@@ -469,6 +711,10 @@ public class CacheImpl implements Cache {
 		}
 	}
 
+	boolean isDebug() {
+		return config.cacheDebug;
+	}
+
 	public long getHitCount() {
 		return hit.get();
 	}
@@ -0,0 +1,163 @@
+package jef.database.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jef.database.cache.DimCacheBoundedImpl.Node;
+
+/**
+ * 一个表空间（即CacheImpl中第一级Map的一个Key）的缓存容量配额。
+ * <p>
+ * 同一表空间下所有维度的{@link DimCacheBoundedImpl}共享一个配额，按估算的字节数计量。
+ * 当容量不足时，从最早进入缓存的若干项中采样，淘汰其中访问频率最低的一项；
+ * 如果新进入的缓存项的访问频率还不如被淘汰项，则拒绝其进入缓存（TinyLFU准入）。
+ *
+ * @author jiyi
+ *
+ */
+final class CacheSpaceQuota {
+	/**
+	 * 每次淘汰时的采样个数
+	 */
+	private static final int SAMPLES = 8;
+
+	private final long maxBytes;
+	private final int expireSeconds;
+	private final boolean offHeap;
+	private final AtomicLong usedBytes = new AtomicLong();
+	private final AtomicInteger deadNodes = new AtomicInteger();
+	private final FrequencySketch sketch;
+	private final ConcurrentLinkedQueue<Node> order = new ConcurrentLinkedQueue<Node>();
+
+	/**
+	 * 构造
+	 *
+	 * @param maxBytes
+	 *            空间的最大字节数，0表示不限制
+	 * @param expireSeconds
+	 *            缓存项的生存时间，0表示永不过期
+	 * @param offHeap
+	 *            缓存结果存放在堆外内存中
+	 */
+	CacheSpaceQuota(long maxBytes, int expireSeconds, boolean offHeap) {
+		this.maxBytes = maxBytes;
+		this.expireSeconds = expireSeconds;
+		this.offHeap = offHeap;
+		this.sketch = new FrequencySketch(maxBytes > 0 ? (int) Math.min(maxBytes >> 12, 1 << 20) : 1024);
+	}
+
+	long getMaxBytes() {
+		return maxBytes;
+	}
+
+	long getUsedBytes() {
+		return usedBytes.get();
+	}
+
+	int getExpireSeconds() {
+		return expireSeconds;
+	}
+
+	boolean isOffHeap() {
+		return offHeap;
+	}
+
+	void recordAccess(int hash) {
+		sketch.increment(hash);
+	}
+
+	/**
+	 * 尝试为新的缓存项分配空间
+	 *
+	 * @param candidate
+	 * @return false表示新项被拒绝
+	 */
+	boolean admit(Node candidate) {
+		if (maxBytes > 0) {
+			if (candidate.weight > maxBytes) {
+				return false;
+			}
+			int candidateFreq = sketch.frequency(candidate.hash);
+			while (usedBytes.get() + candidate.weight > maxBytes) {
+				Node victim = selectVictim();
+				if (victim == null) {
+					break;
+				}
+				if (sketch.frequency(victim.hash) > candidateFreq) {
+					order.offer(victim);
+					return false;
+				}
+				victim.owner.evict(victim);
+			}
+		}
+		usedBytes.addAndGet(candidate.weight);
+		order.offer(candidate);
+		return true;
+	}
+
+	/**
+	 * 缓存项被移除时释放空间
+	 *
+	 * @param node
+	 */
+	void release(Node node) {
+		usedBytes.addAndGet(-node.weight);
+		if (deadNodes.incrementAndGet() > 1024) {
+			purge();
+		}
+	}
+
+	/*
+	 * 从队列头部采样，取出访问频率最低的一项，其余放回队尾
+	 */
+	private Node selectVictim() {
+		List<Node> samples = new ArrayList<Node>(SAMPLES);
+		Node node;
+		while (samples.size() < SAMPLES && (node = order.poll()) != null) {
+			if (node.removed) {
+				deadNodes.decrementAndGet();
+			} else {
+				samples.add(node);
+			}
+		}
+		if (samples.isEmpty()) {
+			return null;
+		}
+		Node victim = null;
+		int min = Integer.MAX_VALUE;
+		for (Node n : samples) {
+			int freq = sketch.frequency(n.hash);
+			if (freq < min) {
+				min = freq;
+				victim = n;
+			}
+		}
+		for (Node n : samples) {
+			if (n != victim) {
+				order.offer(n);
+			}
+		}
+		return victim;
+	}
+
+	/*
+	 * 清理队列中已经失效的节点，避免无需淘汰时队列无限增长
+	 */
+	private void purge() {
+		deadNodes.set(0);
+		for (Iterator<Node> iter = order.iterator(); iter.hasNext();) {
+			if (iter.next().removed) {
+				iter.remove();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return usedBytes.get() + "/" + maxBytes + " bytes";
+	}
+}
@@ -0,0 +1,86 @@
+package jef.database.cache;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * 放入缓存的查询结果，同时记录结果中包含的各行记录的主键。
+ * <p>
+ * 在行级失效模式下，按主键更新/删除记录时，只需要清除包含了这些主键的结果即可，其他结果可以保留。
+ * 
+ * @author jiyi
+ *
+ * @param <T>
+ */
+final class CachedResultList<T> extends AbstractList<T> implements RandomAccess {
+	private final ImmutableList<T> list;
+	private final Set<List<?>> primaryKeys;
+
+	CachedResultList(List<T> list, Collection<? extends List<?>> primaryKeys) {
+		this.list = ImmutableList.copyOf(list);
+		this.primaryKeys = new HashSet<List<?>>(primaryKeys);
+	}
+
+	@Override
+	public T get(int index) {
+		return list.get(index);
+	}
+
+	@Override
+	public int size() {
+		return list.size();
+	}
+
+	/**
+	 * 结果中是否包含了任意一个指定的主键
+	 * 
+	 * @param pks
+	 * @return
+	 */
+	boolean containsAnyKey(Collection<? extends List<?>> pks) {
+		return mayContain(primaryKeys, pks);
+	}
+
+	Set<List<?>> getPrimaryKeys() {
+		return primaryKeys;
+	}
+
+	/**
+	 * 判断缓存的结果是否可能包含指定的主键。未记录主键的结果总是视为包含。
+	 * 
+	 * @param value
+	 * @param pks
+	 * @return
+	 */
+	static boolean mayContain(List<?> value, Collection<? extends List<?>> pks) {
+		if (value instanceof CachedResultList) {
+			return ((CachedResultList<?>) value).containsAnyKey(pks);
+		}
+		return true;
+	}
+
+	/**
+	 * 判断记录的主键集合中是否可能包含指定的主键。未记录主键(null)时总是视为包含。
+	 * 
+	 * @param keys
+	 * @param pks
+	 * @return
+	 */
+	static boolean mayContain(Set<List<?>> keys, Collection<? extends List<?>> pks) {
+		if (keys == null) {
+			return true;
+		}
+		for (List<?> pk : pks) {
+			if (keys.contains(pk)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
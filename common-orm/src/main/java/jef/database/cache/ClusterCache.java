@@ -0,0 +1,280 @@
+package jef.database.cache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import jef.database.IQueryableEntity;
+import jef.database.jsqlparser.expression.Table;
+import jef.database.jsqlparser.statement.delete.Delete;
+import jef.database.jsqlparser.statement.insert.Insert;
+import jef.database.jsqlparser.statement.truncate.Truncate;
+import jef.database.jsqlparser.statement.update.Update;
+import jef.database.jsqlparser.visitor.FromItem;
+import jef.database.meta.ITableMetadata;
+import jef.database.meta.MetaHolder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 集群一致的二级缓存。
+ * <p>
+ * 本地的缓存操作全部委托给{@link CacheImpl}，同时将数据的修改记录为失效事件，通过{@link InvalidationBus}发布给其他节点；
+ * 收到其他节点的事件后，在本地缓存中重放。
+ * <p>
+ * 事务中的修改在事务提交后才合并为一个事件发布，参见{@link #newTransaction()}。
+ * 
+ * @author jiyi
+ *
+ */
+@SuppressWarnings("rawtypes")
+public final class ClusterCache implements Cache, InvalidationBus.Listener {
+	private static Logger logger = LoggerFactory.getLogger(ClusterCache.class);
+
+	private final CacheImpl local;
+	private final InvalidationBus bus;
+	private final String node;
+	/**
+	 * 事务中尚未发布的事件，为null时表示每次操作后立即发布
+	 */
+	private InvalidationEvent pending;
+
+	/**
+	 * 构造
+	 * 
+	 * @param local
+	 *            本地缓存
+	 * @param bus
+	 *            消息总线
+	 */
+	public ClusterCache(CacheImpl local, InvalidationBus bus) {
+		this.local = local;
+		this.bus = bus;
+		this.node = UUID.randomUUID().toString();
+		bus.subscribe(this);
+	}
+
+	private ClusterCache(ClusterCache parent) {
+		this.local = parent.local;
+		this.bus = parent.bus;
+		this.node = parent.node;
+		this.pending = new InvalidationEvent(node);
+	}
+
+	/**
+	 * 创建一个供事务使用的缓存视图。视图中的修改在{@link #commit()}时合并发布，{@link #rollback()}时丢弃。
+	 * 
+	 * @return
+	 */
+	public ClusterCache newTransaction() {
+		return new ClusterCache(this);
+	}
+
+	/**
+	 * 事务提交，发布事务中积累的失效事件
+	 */
+	public void commit() {
+		if (pending != null && !pending.isEmpty()) {
+			InvalidationEvent event = pending;
+			pending = new InvalidationEvent(node);
+			publish(event);
+		}
+	}
+
+	/**
+	 * 事务回滚，丢弃事务中积累的失效事件。本地缓存在修改时已经清除，无需处理。
+	 */
+	public void rollback() {
+		if (pending != null) {
+			pending = new InvalidationEvent(node);
+		}
+	}
+
+	/**
+	 * 关闭消息总线
+	 */
+	public void close() {
+		bus.close();
+	}
+
+	public void onEvent(InvalidationEvent event) {
+		if (node.equals(event.getOrigin())) {
+			return;
+		}
+		if (event.isAll()) {
+			local.evictAll();
+			return;
+		}
+		for (Map.Entry<String, List<InvalidationEvent.Entry>> e : event.getEntries().entrySet()) {
+			for (InvalidationEvent.Entry entry : e.getValue()) {
+				switch (entry.type) {
+				case InvalidationEvent.UPDATE:
+					local.onUpdate(entry.space, entry.where, entry.params, entry.columns);
+					break;
+				case InvalidationEvent.DELETE:
+					local.onDelete(entry.space, entry.where, entry.params);
+					break;
+				default:
+					local.evictSpace(entry.space);
+				}
+			}
+		}
+		if (local.isDebug()) {
+			logger.info("Cache invalidation received: {}", event);
+		}
+	}
+
+	private void publish(InvalidationEvent event) {
+		try {
+			bus.publish(event);
+		} catch (RuntimeException e) {
+			logger.error("Publish cache invalidation failed: {}", event, e);
+		}
+	}
+
+	private void record(InvalidationEvent.Entry entry) {
+		if (pending == null) {
+			InvalidationEvent event = new InvalidationEvent(node);
+			event.add(entry);
+			publish(event);
+		} else {
+			pending.add(entry);
+		}
+	}
+
+	private void recordSpace(String space) {
+		if (pending == null) {
+			InvalidationEvent event = new InvalidationEvent(node);
+			event.clearSpace(space);
+			publish(event);
+		} else {
+			pending.clearSpace(space);
+		}
+	}
+
+	private void recordTable(FromItem table) {
+		if (table instanceof Table) {
+			recordSpace(((Table) table).getName().toUpperCase());
+		}
+	}
+
+	public boolean contains(Class cls, Object primaryKey) {
+		return local.contains(cls, primaryKey);
+	}
+
+	public void evict(Class cls, Object primaryKey) {
+		local.evict(cls, primaryKey);
+	}
+
+	public void evict(Class cls) {
+		local.evict(cls);
+		recordSpace(MetaHolder.getMeta(cls).getTableName(false).toUpperCase());
+	}
+
+	/**
+	 * 清除全部缓存。
+	 * <p>
+	 * 事务视图上调用时（事务关闭时总会调用），只清除本地缓存并发布积累的事件，不会通知其他节点清除全部缓存。
+	 */
+	public void evictAll() {
+		local.evictAll();
+		if (pending == null) {
+			InvalidationEvent event = new InvalidationEvent(node);
+			event.clearAll();
+			publish(event);
+		} else {
+			commit();
+		}
+	}
+
+	public <T> T unwrap(Class<T> cls) {
+		return local.unwrap(cls);
+	}
+
+	public <T> void onLoad(CacheKey key, List<T> result, Class<T> clz) {
+		local.onLoad(key, result, clz);
+	}
+
+	public List load(CacheKey key) {
+		return local.load(key);
+	}
+
+	public Object loadByPK(ITableMetadata meta, List<?> pk) {
+		return local.loadByPK(meta, pk);
+	}
+
+	public Object getIdentityStamp(ITableMetadata meta) {
+		return local.getIdentityStamp(meta);
+	}
+
+	public void onLoadByPK(ITableMetadata meta, List<?> pk, Object obj, Object stamp) {
+		local.onLoadByPK(meta, pk, obj, stamp);
+	}
+
+	public void evict(CacheKey cacheKey) {
+		local.evict(cacheKey);
+		recordSpace(cacheKey.getStoreSpace());
+	}
+
+	public void evict(IQueryableEntity obj) {
+		local.evict(obj);
+		if (obj != null) {
+			recordSpace(MetaHolder.getMeta(obj).getTableName(false).toUpperCase());
+		}
+	}
+
+	public void onInsert(IQueryableEntity obj, String table) {
+		local.onInsert(obj, table);
+		if (obj != null) {
+			recordSpace(table == null ? MetaHolder.getMeta(obj).getTableName(false).toUpperCase() : table.toUpperCase());
+		}
+	}
+
+	public void onDelete(String table, String where, List<Object> bind) {
+		local.onDelete(table, where, bind);
+		record(new InvalidationEvent.Entry(InvalidationEvent.DELETE, table.toUpperCase(), where, bind, null));
+	}
+
+	public void onUpdate(String table, String where, List<Object> bind) {
+		onUpdate(table, where, bind, null);
+	}
+
+	public void onUpdate(String table, String where, List<Object> bind, Collection<String> columns) {
+		local.onUpdate(table, where, bind, columns);
+		record(new InvalidationEvent.Entry(InvalidationEvent.UPDATE, table.toUpperCase(), where, bind, columns));
+	}
+
+	public boolean isDummy() {
+		return false;
+	}
+
+	public void process(Truncate st, List<Object> list) {
+		local.process(st, list);
+		recordTable(st.getTable());
+	}
+
+	public void process(Delete st, List<Object> list) {
+		local.process(st, list);
+		recordTable(st.getTable());
+	}
+
+	public void process(Insert st, List<Object> list) {
+		local.process(st, list);
+		recordTable(st.getTable());
+	}
+
+	public void process(Update st, List<Object> list) {
+		local.process(st, list);
+		recordTable(st.getTable());
+	}
+
+	public long getHitCount() {
+		return local.getHitCount();
+	}
+
+	public long getMissCount() {
+		return local.getMissCount();
+	}
+}
@@ -0,0 +1,217 @@
+package jef.database.cache;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import jef.database.DbCfg;
+import jef.tools.JefConfiguration;
+import jef.tools.StringUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于UDP的失效消息总线，将事件直接发送给配置的各个节点。
+ * <p>
+ * 配置方法
+ * <ul>
+ * <li>{@link DbCfg#CACHE_CLUSTER_BIND} 本节点绑定的地址，默认为环回地址</li>
+ * <li>{@link DbCfg#CACHE_CLUSTER_PORT} 本节点监听的端口</li>
+ * <li>{@link DbCfg#CACHE_CLUSTER_PEERS} 其他节点的地址，如 {@code 10.0.0.2:7070,10.0.0.3:7070}</li>
+ * </ul>
+ * 只接受来自已配置节点的报文，其他来源的报文直接丢弃。
+ * UDP不保证送达，适用于同一局域网内、对缓存一致性要求不是绝对严格的场合，建议同时配置缓存的过期时间作为兜底。
+ * 也可以在测试中使用环回地址模拟多个节点。
+ * 
+ * @author jiyi
+ *
+ */
+public final class DatagramInvalidationBus implements InvalidationBus {
+	private static final Logger log = LoggerFactory.getLogger(DatagramInvalidationBus.class);
+	/**
+	 * UDP报文的最大长度
+	 */
+	private static final int MAX_PACKET = 65000;
+
+	private final DatagramSocket socket;
+	private final Set<InetSocketAddress> peers;
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	private final Thread receiver;
+	private volatile boolean closed;
+
+	/**
+	 * 按全局配置构造
+	 * 
+	 * @throws SocketException
+	 */
+	public DatagramInvalidationBus() throws SocketException {
+		this(bindAddress(JefConfiguration.get(DbCfg.CACHE_CLUSTER_BIND, ""), JefConfiguration.getInt(DbCfg.CACHE_CLUSTER_PORT, 7070)), parsePeers(JefConfiguration.get(DbCfg.CACHE_CLUSTER_PEERS, "")));
+	}
+
+	/**
+	 * 构造，绑定在环回地址上
+	 * 
+	 * @param port
+	 *            监听端口，0表示随机端口
+	 * @param peers
+	 *            其他节点的地址
+	 * @throws SocketException
+	 */
+	public DatagramInvalidationBus(int port, List<InetSocketAddress> peers) throws SocketException {
+		this(loopback(port), peers);
+	}
+
+	/**
+	 * 构造
+	 * 
+	 * @param bind
+	 *            本节点绑定的地址，端口为0表示随机端口
+	 * @param peers
+	 *            其他节点的地址
+	 * @throws SocketException
+	 */
+	public DatagramInvalidationBus(InetSocketAddress bind, List<InetSocketAddress> peers) throws SocketException {
+		this.socket = new DatagramSocket(bind);
+		this.peers = new CopyOnWriteArraySet<InetSocketAddress>(peers);
+		this.receiver = new Thread("CacheInvalidationReceiver-" + socket.getLocalPort()) {
+			@Override
+			public void run() {
+				receive();
+			}
+		};
+		receiver.setDaemon(true);
+		receiver.start();
+	}
+
+	/**
+	 * 得到实际监听的端口
+	 * 
+	 * @return
+	 */
+	public int getLocalPort() {
+		return socket.getLocalPort();
+	}
+
+	/**
+	 * 添加一个节点
+	 * 
+	 * @param peer
+	 */
+	public void addPeer(InetSocketAddress peer) {
+		peers.add(peer);
+	}
+
+	public void publish(InvalidationEvent event) {
+		byte[] data;
+		try {
+			data = event.toBytes();
+			if (data.length > MAX_PACKET) {
+				data = event.toSpaceLevel().toBytes();
+			}
+		} catch (IOException e) {
+			// 参数无法序列化时，降级为清除整个表空间
+			try {
+				data = event.toSpaceLevel().toBytes();
+			} catch (IOException e1) {
+				log.error("Cache invalidation event can not be serialized: {}", event, e1);
+				return;
+			}
+		}
+		for (InetSocketAddress peer : peers) {
+			try {
+				socket.send(new DatagramPacket(data, data.length, peer));
+			} catch (IOException e) {
+				log.warn("Send cache invalidation to {} failed: {}", peer, e.getMessage());
+			}
+		}
+	}
+
+	public void subscribe(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public void close() {
+		closed = true;
+		socket.close();
+	}
+
+	private void receive() {
+		byte[] buffer = new byte[MAX_PACKET];
+		while (!closed) {
+			DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+			try {
+				socket.receive(packet);
+				if (!peers.contains(packet.getSocketAddress())) {
+					log.warn("Drop cache invalidation from unknown peer {}", packet.getSocketAddress());
+					continue;
+				}
+				InvalidationEvent event = InvalidationEvent.fromBytes(packet.getData(), packet.getOffset(), packet.getLength());
+				for (Listener l : listeners) {
+					l.onEvent(event);
+				}
+			} catch (IOException e) {
+				if (!closed) {
+					log.warn("Receive cache invalidation failed: {}", e.getMessage());
+				}
+			} catch (RuntimeException e) {
+				log.error("Process cache invalidation failed.", e);
+			}
+		}
+	}
+
+	/**
+	 * 解析节点地址列表
+	 * 
+	 * @param peers
+	 *            格式如 {@code host1:port1,host2:port2}
+	 * @return
+	 */
+	public static List<InetSocketAddress> parsePeers(String peers) {
+		List<InetSocketAddress> result = new ArrayList<InetSocketAddress>();
+		for (String peer : StringUtils.split(peers, ',')) {
+			peer = peer.trim();
+			if (peer.length() == 0)
+				continue;
+			int index = peer.lastIndexOf(':');
+			if (index < 0) {
+				throw new IllegalArgumentException("Invalid peer address: " + peer);
+			}
+			result.add(new InetSocketAddress(peer.substring(0, index), Integer.parseInt(peer.substring(index + 1))));
+		}
+		return result;
+	}
+
+	/**
+	 * 解析本节点绑定的地址
+	 * 
+	 * @param host
+	 *            主机名或IP，为空时使用环回地址
+	 * @param port
+	 * @return
+	 */
+	public static InetSocketAddress bindAddress(String host, int port) {
+		if (StringUtils.isEmpty(host)) {
+			return loopback(port);
+		}
+		return new InetSocketAddress(host, port);
+	}
+
+	/**
+	 * 环回地址
+	 * 
+	 * @param port
+	 * @return
+	 */
+	public static InetSocketAddress loopback(int port) {
+		return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+	}
+}
@@ -1,5 +1,6 @@
 package jef.database.cache;
 
+import java.util.Collection;
 import java.util.List;
 
 public abstract class DimCache {
@@ -22,8 +23,24 @@ public abstract class DimCache {
 	 * @param obj    查询结果（不可修改的List）
 	 */
 	public abstract void put(List<?> params, List<?> obj);
+
+	/**
+	 * 将结果放入缓存，并指定生存时间。默认实现忽略生存时间
+	 * @param params 查询参数
+	 * @param obj    查询结果（不可修改的List）
+	 * @param expireSeconds 生存时间（秒），小于等于0表示使用默认设置
+	 */
+	public void put(List<?> params, List<?> obj, int expireSeconds) {
+		put(params, obj);
+	}
 	/**
 	 * 清除缓存
 	 */
 	public abstract void clear();
+
+	/**
+	 * 清除结果中包含了指定主键的缓存（行级失效）。未记录主键的缓存结果一律清除。
+	 * @param pks 主键值的集合
+	 */
+	public abstract void evictContaining(Collection<? extends List<?>> pks);
 }
@@ -0,0 +1,296 @@
+package jef.database.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jef.database.IQueryableEntity;
+import jef.database.meta.MetaHolder;
+
+/**
+ * 缓存存储的最后一道，线程安全，有容量限制的实现。
+ *
+ * 参数 <-> 缓存
+ * <p>
+ * 容量按估算的字节数计量，由同一表空间的{@link CacheSpaceQuota}统一管理，
+ * 淘汰和准入采用基于访问频率的TinyLFU策略。每个缓存项都可以有生存时间。
+ * <p>
+ * 表空间启用堆外存储时，实体结果被编码后存放在堆外内存中，命中时重建实体，参见{@link RowCodec}。
+ *
+ * @author jiyi
+ *
+ */
+final class DimCacheBoundedImpl extends DimCache {
+	/**
+	 * 对象头和引用等固定开销的估算值
+	 */
+	private static final int OBJECT_OVERHEAD = 64;
+	/**
+	 * 每个字段（包装类型）的估算开销
+	 */
+	private static final int FIELD_OVERHEAD = 32;
+
+	private final ConcurrentMap<List<?>, Node> sqlCache = new ConcurrentHashMap<List<?>, Node>();
+	private final CacheSpaceQuota quota;
+	private final int seed;
+
+	/**
+	 * 构造
+	 *
+	 * @param quota
+	 *            所属表空间的配额
+	 * @param dimension
+	 *            维度
+	 */
+	DimCacheBoundedImpl(CacheSpaceQuota quota, KeyDimension dimension) {
+		this.quota = quota;
+		this.seed = dimension.hashCode();
+	}
+
+	/**
+	 * 加载缓存
+	 *
+	 * @param params
+	 * @return
+	 */
+	public List<?> load(List<?> params) {
+		quota.recordAccess(hash(params));
+		Node node = sqlCache.get(params);
+		if (node == null) {
+			return null;
+		}
+		if (node.isExpired(System.currentTimeMillis())) {
+			evict(node);
+			return null;
+		}
+		return node.value();
+	}
+
+	/**
+	 * 删除缓存
+	 *
+	 * @param params
+	 */
+	public void remove(List<?> params) {
+		Node node = sqlCache.get(params);
+		if (node != null) {
+			evict(node);
+		}
+	}
+
+	/**
+	 * 将结果放入缓存
+	 *
+	 * @param params
+	 *            查询参数
+	 * @param obj
+	 *            查询结果（不可修改的List）
+	 */
+	public void put(List<?> params, List<?> obj) {
+		put(params, obj, -1);
+	}
+
+	@Override
+	public void put(List<?> params, List<?> obj, int expireSeconds) {
+		int expire = expireSeconds > 0 ? expireSeconds : quota.getExpireSeconds();
+		long expireAt = expire > 0 ? System.currentTimeMillis() + expire * 1000L : Long.MAX_VALUE;
+		Node node = null;
+		if (quota.isOffHeap()) {
+			RowCodec codec = RowCodec.of(obj);
+			ByteBuffer data = codec == null ? null : codec.encode(obj);
+			if (data != null) {
+				node = new Node(this, params, data, codec, hash(params), keyWeight(params) + data.capacity(), expireAt);
+			}
+		}
+		if (node == null) {
+			node = new Node(this, params, obj, null, hash(params), estimateWeight(params, obj), expireAt);
+		}
+		if (obj instanceof CachedResultList) {
+			node.keys = ((CachedResultList<?>) obj).getPrimaryKeys();
+		}
+		if (!quota.admit(node)) {
+			// 未被接纳，保留原有的值
+			if (node.markRemoved()) {
+				node.free();
+			}
+			return;
+		}
+		Node old = sqlCache.put(params, node);
+		if (old != null) {
+			release(old);
+		}
+		if (node.removed) {
+			// 放入之前已被选为淘汰对象
+			sqlCache.remove(params, node);
+		}
+	}
+
+	@Override
+	public void clear() {
+		for (Node node : sqlCache.values()) {
+			evict(node);
+		}
+	}
+
+	@Override
+	public void evictContaining(Collection<? extends List<?>> pks) {
+		for (Node node : sqlCache.values()) {
+			if (CachedResultList.mayContain(node.keys, pks)) {
+				evict(node);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return sqlCache.keySet() + " " + quota;
+	}
+
+	/*
+	 * 移除指定节点并释放空间。节点已经被替换或移除时只是确保已释放；尚未放入的节点被标记为已移除，放入后随即移除
+	 */
+	void evict(Node node) {
+		sqlCache.remove(node.key, node);
+		release(node);
+	}
+
+	private void release(Node node) {
+		if (node.markRemoved()) {
+			quota.release(node);
+			node.free();
+		}
+	}
+
+	private int hash(List<?> params) {
+		return seed * 31 + params.hashCode();
+	}
+
+	/**
+	 * 估算缓存项占用的字节数
+	 *
+	 * @param params
+	 * @param value
+	 * @return
+	 */
+	static int estimateWeight(List<?> params, List<?> value) {
+		long weight = keyWeight(params);
+		if (!value.isEmpty()) {
+			Object first = value.get(0);
+			int rowWeight;
+			if (first instanceof IQueryableEntity) {
+				rowWeight = OBJECT_OVERHEAD * 2 + MetaHolder.getMeta(first).getColumns().size() * FIELD_OVERHEAD;
+			} else {
+				rowWeight = OBJECT_OVERHEAD;
+			}
+			weight += (long) value.size() * rowWeight;
+		}
+		return (int) Math.min(weight, Integer.MAX_VALUE);
+	}
+
+	/*
+	 * 参数的估算大小。原生SQL查询的参数中包含语句本身，需要计入
+	 */
+	private static int keyWeight(List<?> params) {
+		int weight = OBJECT_OVERHEAD + params.size() * FIELD_OVERHEAD;
+		for (Object p : params) {
+			if (p instanceof String) {
+				weight += ((String) p).length() * 2;
+			}
+		}
+		return weight;
+	}
+
+	static final class Node {
+		final DimCacheBoundedImpl owner;
+		final List<?> key;
+		/**
+		 * 堆内存储时为List，堆外存储时为编码后的ByteBuffer
+		 */
+		final Object data;
+		final RowCodec codec;
+		final int hash;
+		final int weight;
+		final long expireAt;
+		/**
+		 * 结果中包含的主键，未记录时为null
+		 */
+		Set<List<?>> keys;
+		volatile boolean removed;
+		/**
+		 * 堆外存储时的引用计数，缓存本身持有一个引用，正在解码的线程各持有一个引用。归零时归还堆外内存。
+		 */
+		private final AtomicInteger refs = new AtomicInteger(1);
+
+		Node(DimCacheBoundedImpl owner, List<?> key, Object data, RowCodec codec, int hash, int weight, long expireAt) {
+			this.owner = owner;
+			this.key = key;
+			this.data = data;
+			this.codec = codec;
+			this.hash = hash;
+			this.weight = weight;
+			this.expireAt = expireAt;
+		}
+
+		/**
+		 * 得到缓存的结果
+		 * 
+		 * @return 堆外存储的节点已经被移除时返回null
+		 */
+		List<?> value() {
+			if (codec == null) {
+				return (List<?>) data;
+			}
+			if (!retain()) {
+				return null;
+			}
+			try {
+				return codec.decode((ByteBuffer) data);
+			} finally {
+				unretain();
+			}
+		}
+
+		synchronized boolean markRemoved() {
+			if (removed) {
+				return false;
+			}
+			removed = true;
+			return true;
+		}
+
+		/*
+		 * 释放缓存持有的引用，只能在markRemoved()成功后调用一次
+		 */
+		void free() {
+			if (codec != null) {
+				unretain();
+			}
+		}
+
+		private boolean retain() {
+			for (;;) {
+				int r = refs.get();
+				if (r <= 0) {
+					return false;
+				}
+				if (refs.compareAndSet(r, r + 1)) {
+					return true;
+				}
+			}
+		}
+
+		private void unretain() {
+			if (refs.decrementAndGet() == 0) {
+				codec.free((ByteBuffer) data);
+			}
+		}
+
+		boolean isExpired(long now) {
+			return now > expireAt;
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package jef.database.cache;
 
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -59,6 +61,15 @@ final class DimCacheExpImpl extends DimCache{
 	public void clear() {
 		sqlCache.invalidateAll();
 	}
+
+	@Override
+	public void evictContaining(Collection<? extends List<?>> pks) {
+		for (Iterator<List<?>> iter = sqlCache.asMap().values().iterator(); iter.hasNext();) {
+			if (CachedResultList.mayContain(iter.next(), pks)) {
+				iter.remove();
+			}
+		}
+	}
 	
 	
 }
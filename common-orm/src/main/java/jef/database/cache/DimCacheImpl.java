@@ -1,6 +1,8 @@
 package jef.database.cache;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -50,4 +52,13 @@ final class DimCacheImpl extends DimCache{
 	public void clear() {
 		sqlCache.clear();
 	}
+
+	@Override
+	public void evictContaining(Collection<? extends List<?>> pks) {
+		for (Iterator<List<?>> iter = sqlCache.values().iterator(); iter.hasNext();) {
+			if (CachedResultList.mayContain(iter.next(), pks)) {
+				iter.remove();
+			}
+		}
+	}
 }
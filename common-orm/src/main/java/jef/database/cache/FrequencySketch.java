@@ -0,0 +1,107 @@
+package jef.database.cache;
+
+/**
+ * 访问频率估计器（Count-Min Sketch，每个计数器4bit）
+ * <p>
+ * 用于TinyLFU准入策略：新的缓存项只有在估计访问频率高于被淘汰项时才被允许进入缓存。
+ * 计数器总量达到采样上限后，所有计数器减半，使频率随时间衰减。
+ * <p>
+ * 线程安全说明：计数的更新不加锁，并发下允许少量的计数丢失，这对频率估计的结果影响可忽略。
+ *
+ * @author jiyi
+ *
+ */
+final class FrequencySketch {
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final long ONE_MASK = 0x1111111111111111L;
+	private static final int[] SEEDS = { 0x97cb3127, 0xb9d2e5a1, 0x9e3779b9, 0x85ebca6b };
+
+	private final long[] table;
+	private final int tableMask;
+	private final int sampleSize;
+	private int size;
+
+	/**
+	 * 构造
+	 *
+	 * @param expectedItems
+	 *            预计的缓存项数量
+	 */
+	FrequencySketch(int expectedItems) {
+		int n = ceilingPowerOfTwo(Math.max(expectedItems, 64));
+		this.table = new long[n];
+		this.tableMask = n - 1;
+		this.sampleSize = 10 * n;
+	}
+
+	/**
+	 * 得到指定hash的估计访问频率(0~15)
+	 *
+	 * @param hash
+	 * @return
+	 */
+	int frequency(int hash) {
+		int start = (spread(hash) & 3) << 2;
+		int frequency = Integer.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			int index = indexOf(hash, i);
+			int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+		return frequency;
+	}
+
+	/**
+	 * 记录一次访问
+	 *
+	 * @param hash
+	 */
+	void increment(int hash) {
+		int start = (spread(hash) & 3) << 2;
+		boolean added = false;
+		for (int i = 0; i < 4; i++) {
+			added |= incrementAt(indexOf(hash, i), start + i);
+		}
+		if (added && ++size >= sampleSize) {
+			reset();
+		}
+	}
+
+	private boolean incrementAt(int i, int j) {
+		int offset = j << 2;
+		long mask = (0xfL << offset);
+		if ((table[i] & mask) != mask) {
+			table[i] += (1L << offset);
+			return true;
+		}
+		return false;
+	}
+
+	/*
+	 * 所有计数器减半
+	 */
+	private void reset() {
+		int count = 0;
+		for (int i = 0; i < table.length; i++) {
+			count += Long.bitCount(table[i] & ONE_MASK);
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		size = (size >>> 1) - (count >>> 2);
+	}
+
+	private int indexOf(int item, int i) {
+		long hash = (item + SEEDS[i]) * 0x9e3779b97f4a7c15L;
+		hash += (hash >>> 32);
+		return ((int) hash) & tableMask;
+	}
+
+	private static int spread(int x) {
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		return (x >>> 16) ^ x;
+	}
+
+	private static int ceilingPowerOfTwo(int x) {
+		return 1 << (32 - Integer.numberOfLeadingZeros(x - 1));
+	}
+}
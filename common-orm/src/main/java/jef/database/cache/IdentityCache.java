@@ -0,0 +1,182 @@
+package jef.database.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * 按主键的对象标识缓存。
+ * <p>
+ * 以表空间（大写的表名）和主键值为Key，直接存放按主键加载到的对象。
+ * {@code Session.load()}和{@code Session.batchLoad()}先查找此缓存，只对未命中的主键生成SQL并查询数据库。
+ * <p>
+ * 每个表空间一个有容量上限的Map。按主键修改或删除记录时精确清除对应的项，其他条件的修改清除整个表空间。
+ * <p>
+ * 每个表空间还有一个修改版本号，每次清除时递增。查询数据库之前先取得版本号，存入时版本号已经变化则放弃，
+ * 避免与修改并发的查询把修改前的旧数据放入缓存。
+ *
+ * @author jiyi
+ *
+ */
+final class IdentityCache {
+	private final ConcurrentMap<String, com.google.common.cache.Cache<List<?>, Object>> spaces = new ConcurrentHashMap<String, com.google.common.cache.Cache<List<?>, Object>>();
+	/**
+	 * 各表空间的主键维度，用于判断修改操作的条件是否为主键
+	 */
+	private final ConcurrentMap<String, KeyDimension> pkDimensions = new ConcurrentHashMap<String, KeyDimension>();
+	/**
+	 * 各表空间的修改版本号
+	 */
+	private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<String, AtomicLong>();
+	private final int maxSize;
+	private final int expireSeconds;
+
+	/**
+	 * 构造
+	 *
+	 * @param maxSize
+	 *            每个表空间最多缓存的对象个数
+	 * @param expireSeconds
+	 *            生存时间，0表示永不过期
+	 */
+	IdentityCache(int maxSize, int expireSeconds) {
+		this.maxSize = maxSize;
+		this.expireSeconds = expireSeconds;
+	}
+
+	/**
+	 * 查找
+	 *
+	 * @param space
+	 *            表空间
+	 * @param pk
+	 *            主键值
+	 * @return 未命中返回null
+	 */
+	Object get(String space, List<?> pk) {
+		com.google.common.cache.Cache<List<?>, Object> c = spaces.get(space);
+		return c == null ? null : c.getIfPresent(pk);
+	}
+
+	/**
+	 * 得到表空间当前的修改版本号
+	 *
+	 * @param space
+	 *            表空间
+	 * @return
+	 */
+	long version(String space) {
+		AtomicLong v = versions.get(space);
+		if (v == null) {
+			v = new AtomicLong();
+			AtomicLong old = versions.putIfAbsent(space, v);
+			if (old != null) {
+				v = old;
+			}
+		}
+		return v.get();
+	}
+
+	/**
+	 * 存入
+	 *
+	 * @param pkDim
+	 *            主键维度
+	 * @param pk
+	 *            主键值
+	 * @param obj
+	 *            对象
+	 * @param version
+	 *            查询数据库之前取得的版本号，参见{@link #version(String)}
+	 */
+	void put(KeyDimension pkDim, List<?> pk, Object obj, long version) {
+		String space = pkDim.getTableDefinition();
+		com.google.common.cache.Cache<List<?>, Object> c = spaces.get(space);
+		if (c == null) {
+			CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maxSize);
+			if (expireSeconds > 0) {
+				builder.expireAfterWrite(expireSeconds, TimeUnit.SECONDS);
+			}
+			c = builder.build();
+			com.google.common.cache.Cache<List<?>, Object> old = spaces.putIfAbsent(space, c);
+			if (old != null) {
+				c = old;
+			}
+			pkDimensions.putIfAbsent(space, pkDim);
+		}
+		c.put(pk, obj);
+		// 先存入再检查，检查之后发生的修改总会清除刚存入的对象
+		if (version(space) != version) {
+			c.invalidate(pk);
+		}
+	}
+
+	/**
+	 * 记录被修改或删除时清除
+	 *
+	 * @param key
+	 *            修改操作的维度和参数。维度为主键时精确清除，否则清除整个表空间
+	 */
+	void invalidate(CacheKey key) {
+		String space = key.getStoreSpace();
+		increaseVersion(space);
+		com.google.common.cache.Cache<List<?>, Object> c = spaces.get(space);
+		if (c == null) {
+			return;
+		}
+		if (key.getDimension().equals(pkDimensions.get(space))) {
+			c.invalidate(key.getParams());
+		} else {
+			c.invalidateAll();
+		}
+	}
+
+	/**
+	 * 清除表空间
+	 *
+	 * @param space
+	 */
+	void invalidateSpace(String space) {
+		increaseVersion(space);
+		com.google.common.cache.Cache<List<?>, Object> c = spaces.get(space);
+		if (c != null) {
+			c.invalidateAll();
+		}
+	}
+
+	/**
+	 * 清除全部
+	 */
+	void invalidateAll() {
+		for (AtomicLong v : versions.values()) {
+			v.incrementAndGet();
+		}
+		for (com.google.common.cache.Cache<List<?>, Object> c : spaces.values()) {
+			c.invalidateAll();
+		}
+	}
+
+	/*
+	 * 版本号必须在清除缓存之前递增
+	 */
+	private void increaseVersion(String space) {
+		AtomicLong v = versions.get(space);
+		if (v != null) {
+			v.incrementAndGet();
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, com.google.common.cache.Cache<List<?>, Object>> e : spaces.entrySet()) {
+			sb.append(e.getKey()).append('=').append(e.getValue().size()).append(' ');
+		}
+		return sb.toString();
+	}
+}
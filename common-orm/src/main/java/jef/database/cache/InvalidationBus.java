@@ -0,0 +1,45 @@
+package jef.database.cache;
+
+/**
+ * 缓存失效消息总线（SPI）。
+ * <p>
+ * 多个JVM连接同一个数据库时，每个节点的二级缓存通过总线互相通知数据的修改，从而保持缓存一致。
+ * 可以基于MQ、Redis等实现，通过{@link jef.database.DbCfg#CACHE_CLUSTER_BUS}配置实现类。
+ * 
+ * @author jiyi
+ *
+ * @see LocalInvalidationBus
+ * @see DatagramInvalidationBus
+ */
+public interface InvalidationBus {
+	/**
+	 * 向其他节点发布失效事件
+	 * 
+	 * @param event
+	 */
+	void publish(InvalidationEvent event);
+
+	/**
+	 * 注册监听器，接收其他节点发布的失效事件
+	 * 
+	 * @param listener
+	 */
+	void subscribe(Listener listener);
+
+	/**
+	 * 关闭总线，释放资源
+	 */
+	void close();
+
+	/**
+	 * 失效事件的监听器
+	 */
+	public interface Listener {
+		/**
+		 * 收到其他节点的失效事件
+		 * 
+		 * @param event
+		 */
+		void onEvent(InvalidationEvent event);
+	}
+}
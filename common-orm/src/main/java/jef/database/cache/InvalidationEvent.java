@@ -0,0 +1,365 @@
+package jef.database.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 缓存失效事件，在集群的各个节点之间传播。
+ * <p>
+ * 一个事件包含一次事务（或一次非事务操作）中产生的所有失效项。同一个表空间中的失效项过多时，合并为清除整个表空间。
+ * 
+ * @author jiyi
+ *
+ */
+public final class InvalidationEvent {
+	/**
+	 * 编码格式的版本号
+	 */
+	private static final int VERSION = 1;
+
+	// 绑定参数的类型标记
+	private static final int T_NULL = 0;
+	private static final int T_STRING = 1;
+	private static final int T_INT = 2;
+	private static final int T_LONG = 3;
+	private static final int T_SHORT = 4;
+	private static final int T_DOUBLE = 5;
+	private static final int T_FLOAT = 6;
+	private static final int T_BOOLEAN = 7;
+	private static final int T_DECIMAL = 8;
+	private static final int T_TIMESTAMP = 9;
+	private static final int T_SQL_DATE = 10;
+	private static final int T_DATE = 11;
+
+	/**
+	 * 同一表空间内最多保留的精确失效项，超过后合并为清除整个表空间
+	 */
+	static final int MAX_ENTRIES_PER_SPACE = 8;
+
+	/**
+	 * 失效项类型：清除表空间
+	 */
+	public static final int CLEAR_SPACE = 0;
+	/**
+	 * 失效项类型：按条件更新
+	 */
+	public static final int UPDATE = 1;
+	/**
+	 * 失效项类型：按条件删除
+	 */
+	public static final int DELETE = 2;
+
+	/**
+	 * 产生事件的节点
+	 */
+	private final String origin;
+	/**
+	 * 清除全部缓存
+	 */
+	private boolean all;
+	/**
+	 * 表空间 -> 失效项
+	 */
+	private final Map<String, List<Entry>> entries = new LinkedHashMap<String, List<Entry>>();
+
+	public InvalidationEvent(String origin) {
+		this.origin = origin;
+	}
+
+	public String getOrigin() {
+		return origin;
+	}
+
+	public boolean isAll() {
+		return all;
+	}
+
+	public boolean isEmpty() {
+		return !all && entries.isEmpty();
+	}
+
+	/**
+	 * 得到所有表空间的失效项
+	 * 
+	 * @return
+	 */
+	public Map<String, List<Entry>> getEntries() {
+		return entries;
+	}
+
+	void clearAll() {
+		this.all = true;
+		entries.clear();
+	}
+
+	void clearSpace(String space) {
+		if (all)
+			return;
+		List<Entry> list = new ArrayList<Entry>(1);
+		list.add(new Entry(CLEAR_SPACE, space, null, null, null));
+		entries.put(space, list);
+	}
+
+	void add(Entry entry) {
+		if (all)
+			return;
+		List<Entry> list = entries.get(entry.space);
+		if (list == null) {
+			list = new ArrayList<Entry>(4);
+			entries.put(entry.space, list);
+		} else if (list.get(0).type == CLEAR_SPACE) {
+			return;
+		} else if (list.size() >= MAX_ENTRIES_PER_SPACE) {
+			clearSpace(entry.space);
+			return;
+		}
+		list.add(entry);
+	}
+
+	/**
+	 * 编码为字节。
+	 * <p>
+	 * 格式为：版本号、产生事件的节点、是否清除全部；然后是每个表空间的名称和失效项，
+	 * 每个失效项依次为类型、条件、绑定参数和修改的列，字符串均以长度为前缀。绑定参数只支持常见的简单类型。
+	 * 
+	 * @return
+	 * @throws IOException
+	 *             绑定参数的类型不支持编码时
+	 */
+	public byte[] toBytes() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(VERSION);
+		out.writeUTF(origin);
+		out.writeBoolean(all);
+		out.writeShort(entries.size());
+		for (Map.Entry<String, List<Entry>> e : entries.entrySet()) {
+			out.writeUTF(e.getKey());
+			out.writeShort(e.getValue().size());
+			for (Entry entry : e.getValue()) {
+				out.writeByte(entry.type);
+				writeString(out, entry.where);
+				if (entry.params == null) {
+					out.writeShort(-1);
+				} else {
+					out.writeShort(entry.params.size());
+					for (Object param : entry.params) {
+						writeValue(out, param);
+					}
+				}
+				if (entry.columns == null) {
+					out.writeShort(-1);
+				} else {
+					out.writeShort(entry.columns.size());
+					for (String column : entry.columns) {
+						out.writeUTF(column);
+					}
+				}
+			}
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * 从字节解码
+	 * 
+	 * @param data
+	 * @param offset
+	 * @param length
+	 * @return
+	 * @throws IOException
+	 *             数据格式或版本不正确时
+	 */
+	public static InvalidationEvent fromBytes(byte[] data, int offset, int length) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length));
+		int version = in.readByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported cache invalidation event version: " + version);
+		}
+		InvalidationEvent event = new InvalidationEvent(in.readUTF());
+		if (in.readBoolean()) {
+			event.clearAll();
+		}
+		int spaces = in.readShort();
+		for (int i = 0; i < spaces; i++) {
+			String space = in.readUTF();
+			int count = in.readShort();
+			List<Entry> list = new ArrayList<Entry>(count);
+			for (int j = 0; j < count; j++) {
+				int type = in.readByte();
+				if (type != CLEAR_SPACE && type != UPDATE && type != DELETE) {
+					throw new IOException("Invalid cache invalidation entry type: " + type);
+				}
+				String where = readString(in);
+				List<Object> params = null;
+				int size = in.readShort();
+				if (size >= 0) {
+					params = new ArrayList<Object>(size);
+					for (int k = 0; k < size; k++) {
+						params.add(readValue(in));
+					}
+				}
+				List<String> columns = null;
+				size = in.readShort();
+				if (size >= 0) {
+					columns = new ArrayList<String>(size);
+					for (int k = 0; k < size; k++) {
+						columns.add(in.readUTF());
+					}
+				}
+				list.add(new Entry(type, space, where, params, columns));
+			}
+			if (!list.isEmpty()) {
+				event.entries.put(space, list);
+			}
+		}
+		return event;
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		out.writeBoolean(s != null);
+		if (s != null) {
+			out.writeUTF(s);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(T_NULL);
+		} else if (value instanceof String) {
+			out.writeByte(T_STRING);
+			out.writeUTF((String) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(T_INT);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(T_LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Short) {
+			out.writeByte(T_SHORT);
+			out.writeShort((Short) value);
+		} else if (value instanceof Double) {
+			out.writeByte(T_DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Float) {
+			out.writeByte(T_FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(T_BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof BigDecimal) {
+			out.writeByte(T_DECIMAL);
+			out.writeUTF(value.toString());
+		} else if (value instanceof java.sql.Timestamp) {
+			out.writeByte(T_TIMESTAMP);
+			out.writeLong(((java.sql.Timestamp) value).getTime());
+			out.writeInt(((java.sql.Timestamp) value).getNanos());
+		} else if (value instanceof java.sql.Date) {
+			out.writeByte(T_SQL_DATE);
+			out.writeLong(((Date) value).getTime());
+		} else if (value.getClass() == Date.class) {
+			out.writeByte(T_DATE);
+			out.writeLong(((Date) value).getTime());
+		} else {
+			throw new IOException("Unsupported parameter type in cache invalidation event: " + value.getClass().getName());
+		}
+	}
+
+	private static Object readValue(DataInputStream in) throws IOException {
+		int type = in.readByte();
+		switch (type) {
+		case T_NULL:
+			return null;
+		case T_STRING:
+			return in.readUTF();
+		case T_INT:
+			return in.readInt();
+		case T_LONG:
+			return in.readLong();
+		case T_SHORT:
+			return in.readShort();
+		case T_DOUBLE:
+			return in.readDouble();
+		case T_FLOAT:
+			return in.readFloat();
+		case T_BOOLEAN:
+			return in.readBoolean();
+		case T_DECIMAL:
+			return new BigDecimal(in.readUTF());
+		case T_TIMESTAMP:
+			java.sql.Timestamp ts = new java.sql.Timestamp(in.readLong());
+			ts.setNanos(in.readInt());
+			return ts;
+		case T_SQL_DATE:
+			return new java.sql.Date(in.readLong());
+		case T_DATE:
+			return new Date(in.readLong());
+		default:
+			throw new IOException("Invalid parameter type in cache invalidation event: " + type);
+		}
+	}
+
+	/**
+	 * 将事件中的精确失效项全部降级为清除表空间，用于事件过大无法传输的场合
+	 * 
+	 * @return
+	 */
+	InvalidationEvent toSpaceLevel() {
+		InvalidationEvent result = new InvalidationEvent(origin);
+		if (all) {
+			result.clearAll();
+		} else {
+			for (String space : entries.keySet()) {
+				result.clearSpace(space);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return all ? origin + ":ALL" : origin + ":" + entries.keySet();
+	}
+
+	/**
+	 * 一个失效项
+	 */
+	public static final class Entry {
+		final int type;
+		final String space;
+		final String where;
+		final List<Object> params;
+		final Collection<String> columns;
+
+		Entry(int type, String space, String where, List<Object> params, Collection<String> columns) {
+			this.type = type;
+			this.space = space;
+			this.where = where;
+			this.params = params == null ? null : new ArrayList<Object>(params);
+			this.columns = columns == null ? null : new ArrayList<String>(columns);
+		}
+
+		public int getType() {
+			return type;
+		}
+
+		public String getSpace() {
+			return space;
+		}
+	}
+}
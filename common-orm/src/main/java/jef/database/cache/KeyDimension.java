@@ -1,18 +1,35 @@
 package jef.database.cache;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import jef.common.PairSO;
+import jef.database.DbCfg;
 import jef.database.cache.WhereParser.DruidImpl;
 import jef.database.cache.WhereParser.NativeImpl;
 import jef.database.dialect.DatabaseDialect;
 import jef.database.jdbc.statement.UnionJudgement;
 import jef.database.jsqlparser.expression.Table;
 import jef.database.jsqlparser.visitor.Expression;
+import jef.tools.JefConfiguration;
 
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
 public class KeyDimension {
+	/**
+	 * 原生SQL查询共用的表空间
+	 */
+	public static final String NATIVE_QUERY_SPACE = "SQL:";
+
 	protected String where;
 	protected String order;
 
@@ -27,8 +44,16 @@ public class KeyDimension {
 	// 唯一标识
 	protected int hashCode;
 
+	// 条件和排序中出现的单词，用于判断是否引用了某列
+	private volatile Set<String> words;
+
 	public KeyDimension newKeyDimensionOf(String newTable, DatabaseDialect profile) {
-		KeyDimension result = new KeyDimension(newTable,profile, where, order);
+		ParseKey key = new ParseKey(ParseKey.NEW_TABLE, profile, newTable, where, order);
+		KeyDimension result = PARSED.getIfPresent(key);
+		if (result == null) {
+			result = new KeyDimension(newTable, profile, where, order);
+			PARSED.put(key, result);
+		}
 		return result;
 	}
 	
@@ -56,7 +81,50 @@ public class KeyDimension {
 	 * @return
 	 */
 	public static KeyDimension forSingleTable(String table, String where, String order, DatabaseDialect profile) {
-		return new KeyDimension(profile, table, where, order);
+		ParseKey key = new ParseKey(ParseKey.SINGLE_TABLE, profile, table, where, order);
+		KeyDimension result = PARSED.getIfPresent(key);
+		if (result == null) {
+			result = new KeyDimension(profile, table, where, order);
+			PARSED.put(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * 解析表定义和where条件，构造维度。和构造方法相同，但解析结果会被缓存，相同的文本不会被重复解析。
+	 * 
+	 * @param table
+	 *            表定义，可以是多表
+	 * @param where
+	 * @param order
+	 * @param profile
+	 * @return
+	 */
+	public static KeyDimension of(String table, String where, String order, DatabaseDialect profile) {
+		ParseKey key = new ParseKey(ParseKey.TABLES, profile, table, where, order);
+		KeyDimension result = PARSED.getIfPresent(key);
+		if (result == null) {
+			result = new KeyDimension(table, where, order, profile);
+			PARSED.put(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * 得到维度解析缓存的统计信息
+	 * 
+	 * @return
+	 */
+	public static String getParseCacheStatics() {
+		CacheStats stats = PARSED.stats();
+		return String.format("size:%d hit:%d miss:%d hitRate:%.2f%%", PARSED.size(), stats.hitCount(), stats.missCount(), stats.hitRate() * 100);
+	}
+
+	/**
+	 * 清除维度解析缓存
+	 */
+	public static void clearParseCache() {
+		PARSED.invalidateAll();
 	}
 
 
@@ -120,6 +188,28 @@ public class KeyDimension {
 		return affectedTables;
 	}
 
+	/**
+	 * 原生SQL查询的维度。所有原生SQL查询共用一个表空间，引用了相同的表的语句共用一个维度，语句本身作为缓存参数的一部分。
+	 * 语句中引用的表作为关联空间
+	 * 
+	 * @param tables
+	 *            语句中引用的表
+	 * @return
+	 */
+	public static KeyDimension forNativeQuery(List<String> tables) {
+		return new KeyDimension(tables);
+	}
+
+	private KeyDimension(List<String> tables) {
+		List<String> sorted = new ArrayList<String>(tables);
+		Collections.sort(sorted);
+		this.tableDefinition = NATIVE_QUERY_SPACE;
+		this.affectedTables = tables;
+		this.where = sorted.toString();
+		this.order = "";
+		this.hashCode = where.hashCode();
+	}
+
 	/**
 	 * 构造
 	 * 
@@ -137,6 +227,48 @@ public class KeyDimension {
 		this.hashCode = new HashCodeBuilder().append(where).append(affectedTables).append(order).toHashCode();
 	}
 
+	/**
+	 * 判断维度的条件或排序是否引用了指定的列。
+	 * <p>
+	 * 当这些列被更新后，原先不在结果中的记录可能会进入结果，因此该维度的缓存不能只按主键清除。
+	 * 判断基于规范化后的文本，偏向于保守（可能误判为引用）。
+	 * 
+	 * @param columns
+	 *            列名（大写，不含引号）
+	 * @return
+	 */
+	public boolean isAffectedBy(Collection<String> columns) {
+		Set<String> words = this.words;
+		if (words == null) {
+			words = new HashSet<String>();
+			splitWords(where, words);
+			splitWords(order, words);
+			this.words = words;
+		}
+		for (String column : columns) {
+			if (words.contains(column)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void splitWords(String text, Set<String> words) {
+		if (text == null)
+			return;
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			char c = i < text.length() ? text.charAt(i) : ' ';
+			if (Character.isLetterOrDigit(c) || c == '_' || c == '$') {
+				if (start < 0)
+					start = i;
+			} else if (start >= 0) {
+				words.add(text.substring(start, i).toUpperCase());
+				start = -1;
+			}
+		}
+	}
+
 	@Override
 	public int hashCode() {
 		return hashCode;
@@ -146,7 +278,7 @@ public class KeyDimension {
 	public boolean equals(Object obj) {
 		if (obj instanceof KeyDimension) {
 			KeyDimension rhs = (KeyDimension) obj;
-			return this.where.equals(rhs.where) && this.order.equals(rhs.order) && tableDefinition.equals(rhs.tableDefinition);
+			return Objects.equal(this.where, rhs.where) && Objects.equal(this.order, rhs.order) && Objects.equal(tableDefinition, rhs.tableDefinition);
 		}
 		return false;
 	}
@@ -162,6 +294,51 @@ public class KeyDimension {
 
 	private static final WhereParser wp;
 
+	/**
+	 * 原始的表定义和where文本 -> 规范化后的维度。
+	 * 构造维度需要完整地解析一遍SQL片段，而同样的文本总是得到相同的结果，因此缓存起来避免重复解析。
+	 */
+	private static final Cache<ParseKey, KeyDimension> PARSED = CacheBuilder.newBuilder().maximumSize(JefConfiguration.getInt(DbCfg.CACHE_KEY_PARSE_SIZE, 4096)).recordStats().build();
+
+	/**
+	 * 维度解析缓存的Key
+	 */
+	private static final class ParseKey {
+		static final int SINGLE_TABLE = 0;
+		static final int TABLES = 1;
+		static final int NEW_TABLE = 2;
+
+		private final int type;
+		private final DatabaseDialect profile;
+		private final String table;
+		private final String where;
+		private final String order;
+		private final int hashCode;
+
+		ParseKey(int type, DatabaseDialect profile, String table, String where, String order) {
+			this.type = type;
+			this.profile = profile;
+			this.table = table;
+			this.where = where;
+			this.order = order;
+			this.hashCode = new HashCodeBuilder().append(type).append(System.identityHashCode(profile)).append(table).append(where).append(order).toHashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof ParseKey) {
+				ParseKey rhs = (ParseKey) obj;
+				return type == rhs.type && profile == rhs.profile && Objects.equal(table, rhs.table) && Objects.equal(where, rhs.where) && Objects.equal(order, rhs.order);
+			}
+			return false;
+		}
+	}
+
 	static {
 		if (UnionJudgement.isDruid()) {
 			wp = new DruidImpl();
@@ -0,0 +1,62 @@
+package jef.database.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * JVM内部的失效消息总线。同一频道的多个总线实例互相投递消息，用于在单个JVM中模拟多个节点（主要供测试使用）。
+ * <p>
+ * 消息同步投递。
+ * 
+ * @author jiyi
+ *
+ */
+public final class LocalInvalidationBus implements InvalidationBus {
+	private static final Map<String, List<LocalInvalidationBus>> CHANNELS = new ConcurrentHashMap<String, List<LocalInvalidationBus>>();
+
+	private final List<LocalInvalidationBus> channel;
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+	public LocalInvalidationBus() {
+		this("default");
+	}
+
+	/**
+	 * 构造
+	 * 
+	 * @param channelName
+	 *            频道名称
+	 */
+	public LocalInvalidationBus(String channelName) {
+		synchronized (CHANNELS) {
+			List<LocalInvalidationBus> list = CHANNELS.get(channelName);
+			if (list == null) {
+				list = new CopyOnWriteArrayList<LocalInvalidationBus>();
+				CHANNELS.put(channelName, list);
+			}
+			this.channel = list;
+		}
+		channel.add(this);
+	}
+
+	public void publish(InvalidationEvent event) {
+		for (LocalInvalidationBus bus : channel) {
+			if (bus != this) {
+				for (Listener l : bus.listeners) {
+					l.onEvent(event);
+				}
+			}
+		}
+	}
+
+	public void subscribe(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public void close() {
+		channel.remove(this);
+		listeners.clear();
+	}
+}
@@ -0,0 +1,54 @@
+package jef.database.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 原生SQL查询(NativeQuery)的缓存Key。
+ * <p>
+ * 所有原生SQL查询的结果存放在同一个有容量限制的表空间中，引用相同表的语句共用一个维度，规范化后的语句作为参数的第一项。
+ * 语句中引用的各张表作为关联空间，任意一张表发生修改时，该查询的缓存失效。
+ * 
+ * @author jiyi
+ *
+ */
+@SuppressWarnings("serial")
+public class NativeQueryCacheKey extends SqlCacheKey {
+	private int expireSeconds;
+
+	public NativeQueryCacheKey() {
+	}
+
+	/**
+	 * 构造
+	 * 
+	 * @param sql
+	 *            规范化后的SQL语句
+	 * @param tables
+	 *            语句中引用的表（大写）
+	 * @param params
+	 *            绑定变量等参数
+	 * @param expireSeconds
+	 *            缓存的生存时间（秒）
+	 */
+	public NativeQueryCacheKey(String sql, List<String> tables, List<?> params, int expireSeconds) {
+		super(KeyDimension.forNativeQuery(tables), withSql(sql, params));
+		this.expireSeconds = expireSeconds;
+	}
+
+	private static List<Object> withSql(String sql, List<?> params) {
+		List<Object> result = new ArrayList<Object>(params.size() + 1);
+		result.add(sql);
+		result.addAll(params);
+		return result;
+	}
+
+	/**
+	 * 缓存的生存时间（秒）
+	 * 
+	 * @return
+	 */
+	public int getExpireSeconds() {
+		return expireSeconds;
+	}
+}
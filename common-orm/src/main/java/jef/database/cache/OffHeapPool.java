@@ -0,0 +1,114 @@
+package jef.database.cache;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 堆外内存池，供{@link RowCodec}存放编码后的结果。
+ * <p>
+ * 堆外内存按块（slab）一次性申请，再按2的幂切分成不同规格的小块。缓存项被淘汰时由{@link DimCacheBoundedImpl}显式归还，
+ * 归还的小块进入同规格的空闲队列供后续复用，因此堆外内存的总量只取决于缓存容量的峰值，不依赖GC回收DirectByteBuffer。
+ * 超过最大规格的结果不使用堆外内存。
+ *
+ * @author jiyi
+ *
+ */
+final class OffHeapPool {
+	/**
+	 * 最小规格 64字节
+	 */
+	private static final int MIN_SHIFT = 6;
+	/**
+	 * 最大规格 64K
+	 */
+	private static final int MAX_SHIFT = 16;
+	/**
+	 * 每次向系统申请的块大小 1M
+	 */
+	private static final int SLAB_SIZE = 1 << 20;
+
+	static final OffHeapPool INSTANCE = new OffHeapPool();
+
+	private final ConcurrentLinkedQueue<ByteBuffer>[] free;
+	private final AtomicLong reserved = new AtomicLong();
+
+	@SuppressWarnings("unchecked")
+	OffHeapPool() {
+		free = new ConcurrentLinkedQueue[MAX_SHIFT - MIN_SHIFT + 1];
+		for (int i = 0; i < free.length; i++) {
+			free[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+		}
+	}
+
+	/**
+	 * 分配一块堆外内存
+	 *
+	 * @param size
+	 *            需要的字节数
+	 * @return 容量为对应规格、limit为size的缓冲区；超过最大规格时返回null
+	 */
+	ByteBuffer allocate(int size) {
+		if (size > 1 << MAX_SHIFT) {
+			return null;
+		}
+		int index = indexOf(size);
+		ByteBuffer chunk = free[index].poll();
+		if (chunk == null) {
+			chunk = refill(index);
+		}
+		chunk.clear();
+		chunk.limit(size);
+		return chunk;
+	}
+
+	/**
+	 * 归还一块由{@link #allocate(int)}分配的内存，归还后调用者不能再访问该缓冲区
+	 *
+	 * @param chunk
+	 */
+	void release(ByteBuffer chunk) {
+		free[indexOf(chunk.capacity())].offer(chunk);
+	}
+
+	/**
+	 * 已经向系统申请的堆外内存字节数
+	 *
+	 * @return
+	 */
+	long getReservedBytes() {
+		return reserved.get();
+	}
+
+	/*
+	 * 申请一个新的块，切分后放入空闲队列
+	 */
+	private ByteBuffer refill(int index) {
+		ConcurrentLinkedQueue<ByteBuffer> queue = free[index];
+		synchronized (queue) {
+			ByteBuffer chunk = queue.poll();
+			if (chunk != null) {
+				return chunk;
+			}
+			int chunkSize = 1 << (index + MIN_SHIFT);
+			ByteBuffer slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+			reserved.addAndGet(SLAB_SIZE);
+			for (int offset = chunkSize; offset < SLAB_SIZE; offset += chunkSize) {
+				queue.offer(slice(slab, offset, chunkSize));
+			}
+			return slice(slab, 0, chunkSize);
+		}
+	}
+
+	private static ByteBuffer slice(ByteBuffer slab, int offset, int size) {
+		ByteBuffer dup = slab.duplicate();
+		dup.position(offset);
+		dup.limit(offset + size);
+		return dup.slice();
+	}
+
+	private static int indexOf(int size) {
+		int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+		return Math.max(shift, MIN_SHIFT) - MIN_SHIFT;
+	}
+}
@@ -0,0 +1,251 @@
+package jef.database.cache;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import jef.database.IQueryableEntity;
+import jef.database.dialect.type.ColumnMapping;
+import jef.database.meta.ITableMetadata;
+import jef.database.meta.MetaHolder;
+
+/**
+ * 将查询结果编码为紧凑的行格式，存放在堆外内存中。
+ * <p>
+ * 只支持由同一种实体构成的结果，且各列的值都是基本的数据类型，否则{@link #encode(List)}返回null，由调用者改为堆内存储。
+ * 堆外内存从{@link OffHeapPool}中分配，缓存项被移除时显式归还。
+ * 解码时按照和结果集拼装相同的流程重建实体：创建实例，关闭更新记录，写入各列的值，再打开更新记录。
+ * 
+ * @author jiyi
+ *
+ */
+final class RowCodec {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte INT = 2;
+	private static final byte LONG = 3;
+	private static final byte SHORT = 4;
+	private static final byte BYTE = 5;
+	private static final byte DOUBLE = 6;
+	private static final byte FLOAT = 7;
+	private static final byte BOOLEAN = 8;
+	private static final byte CHAR = 9;
+	private static final byte DECIMAL = 10;
+	private static final byte BIGINT = 11;
+	private static final byte DATE = 12;
+	private static final byte SQL_DATE = 13;
+	private static final byte TIME = 14;
+	private static final byte TIMESTAMP = 15;
+	private static final byte BYTES = 16;
+
+	private final ITableMetadata meta;
+	private final ColumnMapping[] columns;
+
+	private RowCodec(ITableMetadata meta) {
+		this.meta = meta;
+		Collection<ColumnMapping> cs = meta.getColumns();
+		this.columns = cs.toArray(new ColumnMapping[cs.size()]);
+	}
+
+	/**
+	 * 得到可以编码该结果的编解码器
+	 * 
+	 * @param value
+	 * @return 不支持时返回null
+	 */
+	static RowCodec of(List<?> value) {
+		if (value.isEmpty() || !(value.get(0) instanceof IQueryableEntity)) {
+			return null;
+		}
+		Class<?> type = value.get(0).getClass();
+		for (Object obj : value) {
+			if (obj == null || obj.getClass() != type) {
+				return null;
+			}
+		}
+		ITableMetadata meta = MetaHolder.getMeta(value.get(0));
+		if (meta.getThisType() != type) {
+			return null;
+		}
+		return new RowCodec(meta);
+	}
+
+	/**
+	 * 编码到堆外内存。得到的缓冲区不再使用时必须调用{@link #free(ByteBuffer)}归还。
+	 * 
+	 * @param value
+	 * @return 遇到不支持的数据类型，或编码后过大时返回null
+	 */
+	ByteBuffer encode(List<?> value) {
+		ByteBuffer buf = ByteBuffer.allocate(256);
+		buf.putInt(value.size());
+		for (Object obj : value) {
+			for (ColumnMapping column : columns) {
+				buf = ensure(buf, 16);
+				buf = write(buf, column.getFieldAccessor().get(obj));
+				if (buf == null) {
+					return null;
+				}
+			}
+		}
+		buf.flip();
+		ByteBuffer direct = OffHeapPool.INSTANCE.allocate(buf.remaining());
+		if (direct == null) {
+			return null;
+		}
+		direct.put(buf);
+		direct.flip();
+		return direct;
+	}
+
+	/**
+	 * 归还{@link #encode(List)}得到的堆外内存
+	 * 
+	 * @param data
+	 */
+	void free(ByteBuffer data) {
+		OffHeapPool.INSTANCE.release(data);
+	}
+
+	/**
+	 * 解码，重建实体
+	 * 
+	 * @param data
+	 * @return
+	 */
+	List<?> decode(ByteBuffer data) {
+		ByteBuffer buf = data.duplicate();
+		int size = buf.getInt();
+		List<IQueryableEntity> result = new ArrayList<IQueryableEntity>(size);
+		for (int i = 0; i < size; i++) {
+			IQueryableEntity e = meta.newInstance();
+			e.stopUpdate();
+			for (ColumnMapping column : columns) {
+				Object v = read(buf);
+				if (v != null) {
+					column.getFieldAccessor().set(e, v);
+				}
+			}
+			e.startUpdate();
+			result.add(e);
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	private static ByteBuffer ensure(ByteBuffer buf, int more) {
+		if (buf.remaining() >= more) {
+			return buf;
+		}
+		ByteBuffer n = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + more));
+		buf.flip();
+		n.put(buf);
+		return n;
+	}
+
+	private static ByteBuffer write(ByteBuffer buf, Object v) {
+		if (v == null) {
+			buf.put(NULL);
+		} else if (v instanceof String) {
+			buf = writeBytes(buf, STRING, ((String) v).getBytes(UTF8));
+		} else if (v instanceof Integer) {
+			buf.put(INT).putInt((Integer) v);
+		} else if (v instanceof Long) {
+			buf.put(LONG).putLong((Long) v);
+		} else if (v instanceof Short) {
+			buf.put(SHORT).putShort((Short) v);
+		} else if (v instanceof Byte) {
+			buf.put(BYTE).put((Byte) v);
+		} else if (v instanceof Double) {
+			buf.put(DOUBLE).putDouble((Double) v);
+		} else if (v instanceof Float) {
+			buf.put(FLOAT).putFloat((Float) v);
+		} else if (v instanceof Boolean) {
+			buf.put(BOOLEAN).put((byte) (((Boolean) v) ? 1 : 0));
+		} else if (v instanceof Character) {
+			buf.put(CHAR).putChar((Character) v);
+		} else if (v instanceof BigDecimal) {
+			buf = writeBytes(buf, DECIMAL, v.toString().getBytes(UTF8));
+		} else if (v instanceof BigInteger) {
+			buf = writeBytes(buf, BIGINT, ((BigInteger) v).toByteArray());
+		} else if (v instanceof byte[]) {
+			buf = writeBytes(buf, BYTES, (byte[]) v);
+		} else if (v instanceof java.sql.Timestamp) {
+			java.sql.Timestamp ts = (java.sql.Timestamp) v;
+			buf.put(TIMESTAMP).putLong(ts.getTime());
+			buf.putInt(ts.getNanos());
+		} else if (v instanceof java.sql.Date) {
+			buf.put(SQL_DATE).putLong(((java.util.Date) v).getTime());
+		} else if (v instanceof java.sql.Time) {
+			buf.put(TIME).putLong(((java.util.Date) v).getTime());
+		} else if (v.getClass() == java.util.Date.class) {
+			buf.put(DATE).putLong(((java.util.Date) v).getTime());
+		} else {
+			return null;
+		}
+		return buf;
+	}
+
+	private static ByteBuffer writeBytes(ByteBuffer buf, byte tag, byte[] bytes) {
+		buf = ensure(buf, bytes.length + 5);
+		buf.put(tag).putInt(bytes.length).put(bytes);
+		return buf;
+	}
+
+	private static Object read(ByteBuffer buf) {
+		byte tag = buf.get();
+		switch (tag) {
+		case NULL:
+			return null;
+		case STRING:
+			return new String(readBytes(buf), UTF8);
+		case INT:
+			return buf.getInt();
+		case LONG:
+			return buf.getLong();
+		case SHORT:
+			return buf.getShort();
+		case BYTE:
+			return buf.get();
+		case DOUBLE:
+			return buf.getDouble();
+		case FLOAT:
+			return buf.getFloat();
+		case BOOLEAN:
+			return buf.get() != 0;
+		case CHAR:
+			return buf.getChar();
+		case DECIMAL:
+			return new BigDecimal(new String(readBytes(buf), UTF8));
+		case BIGINT:
+			return new BigInteger(readBytes(buf));
+		case BYTES:
+			return readBytes(buf);
+		case TIMESTAMP: {
+			java.sql.Timestamp ts = new java.sql.Timestamp(buf.getLong());
+			ts.setNanos(buf.getInt());
+			return ts;
+		}
+		case SQL_DATE:
+			return new java.sql.Date(buf.getLong());
+		case TIME:
+			return new java.sql.Time(buf.getLong());
+		case DATE:
+			return new java.util.Date(buf.getLong());
+		default:
+			throw new IllegalStateException("Unknown value type in off-heap cache: " + tag);
+		}
+	}
+
+	private static byte[] readBytes(ByteBuffer buf) {
+		byte[] bytes = new byte[buf.getInt()];
+		buf.get(bytes);
+		return bytes;
+	}
+}
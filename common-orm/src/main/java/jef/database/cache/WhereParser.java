@@ -13,6 +13,7 @@ import jef.database.dialect.DatabaseDialect;
 import jef.database.jsqlparser.expression.Column;
 import jef.database.jsqlparser.expression.Table;
 import jef.database.jsqlparser.parser.ParseException;
+import jef.database.jsqlparser.parser.SimpleSqlParser;
 import jef.database.jsqlparser.parser.StSqlParser;
 import jef.database.jsqlparser.parser.TokenMgrError;
 import jef.database.jsqlparser.statement.select.Join;
@@ -55,9 +56,14 @@ public abstract class WhereParser {
 	public static final class NativeImpl extends WhereParser {
 		@Override
 		String process(String where, DatabaseDialect profile) {
+			Expression exp = SimpleSqlParser.parseWhereClause(where);
+			if (exp != null) {
+				removeAliasAndCase(exp);
+				return exp.toString();
+			}
 			StSqlParser parser = new StSqlParser(new StringReader(where));
 			try {
-				Expression exp = parser.WhereClause();
+				exp = parser.WhereClause();
 				removeAliasAndCase(exp);
 				return exp.toString();
 			} catch (ParseException e) {
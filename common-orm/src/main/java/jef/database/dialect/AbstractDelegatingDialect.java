@@ -201,6 +201,16 @@ public class AbstractDelegatingDialect implements DatabaseDialect{
 		dialect.toExtremeInsert(sql);
 	}
 
+	@Override
+	public String toUpsertSql(String table, List<String> columns, List<String> keys, List<String> updates) {
+		return dialect.toUpsertSql(table, columns, keys, updates);
+	}
+
+	@Override
+	public boolean supportsUpsert(String databaseVersion) {
+		return dialect.supportsUpsert(databaseVersion);
+	}
+
 	@Override
 	public String toDefaultString(Object defaultValue, int sqlType, int changeTo) {
 		return dialect.toDefaultString(defaultValue, sqlType,changeTo);
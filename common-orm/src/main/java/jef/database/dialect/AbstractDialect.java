@@ -371,7 +371,7 @@ public abstract class AbstractDialect implements DatabaseDialect {
 		if (column instanceof ColumnType.AutoIncrement) {
 			ColumnType.AutoIncrement cType=(ColumnType.AutoIncrement) column;
 			GenerationType type=cType.getGenerationType(this, true);
-			if(type==GenerationType.IDENTITY){
+			if(type==GenerationType.IDENTITY && !cType.isSnowflake()){
 				return getComment(cType,flag);				
 			}else{
 				column=cType.toNormalType();
@@ -690,6 +690,105 @@ public abstract class AbstractDialect implements DatabaseDialect {
 
 	public void toExtremeInsert(InsertSqlClause sql) {
 	}
+
+	public String toUpsertSql(String table, List<String> columns, List<String> keys, List<String> updates) {
+		return null;
+	}
+
+	public boolean supportsUpsert(String databaseVersion) {
+		return true;
+	}
+
+	/**
+	 * 拼接insert into table(a,b) values(?,?)部分，供使用insert语法实现upsert的数据库使用
+	 * 
+	 * @param table
+	 * @param columns
+	 * @return
+	 */
+	protected StringBuilder toUpsertInsertPart(String table, List<String> columns) {
+		StringBuilder sb = new StringBuilder(64 + columns.size() * 24);
+		sb.append("insert into ").append(table).append('(');
+		StringUtils.joinTo(columns, ",", sb);
+		sb.append(") values(");
+		for (int i = 0; i < columns.size(); i++) {
+			if (i > 0)
+				sb.append(',');
+			sb.append('?');
+		}
+		sb.append(')');
+		return sb;
+	}
+
+	/**
+	 * 生成insert ... on conflict(keys) do update语句，供PostgreSQL、SQLite使用
+	 * 
+	 * @param table
+	 * @param columns
+	 * @param keys
+	 * @param updates
+	 * @return
+	 */
+	protected String toOnConflictUpsertSql(String table, List<String> columns, List<String> keys, List<String> updates) {
+		StringBuilder sb = toUpsertInsertPart(table, columns);
+		sb.append(" on conflict(");
+		StringUtils.joinTo(keys, ",", sb);
+		if (updates.isEmpty()) {
+			sb.append(") do nothing");
+		} else {
+			sb.append(") do update set ");
+			for (int i = 0; i < updates.size(); i++) {
+				if (i > 0)
+					sb.append(',');
+				String column = updates.get(i);
+				sb.append(column).append("=excluded.").append(column);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 生成标准的merge语句，供支持merge的数据库使用
+	 * 
+	 * @param table
+	 *            表名
+	 * @param source
+	 *            数据源部分，别名为s，列名与columns相同，例如 (values(?,?)) as s(a,b)
+	 * @param columns
+	 * @param keys
+	 * @param updates
+	 * @return
+	 */
+	protected String toMergeSql(String table, String source, List<String> columns, List<String> keys, List<String> updates) {
+		StringBuilder sb = new StringBuilder(64 + columns.size() * 24);
+		sb.append("merge into ").append(table).append(" t using ").append(source).append(" on (");
+		for (int i = 0; i < keys.size(); i++) {
+			if (i > 0)
+				sb.append(" and ");
+			String key = keys.get(i);
+			sb.append("t.").append(key).append(" = s.").append(key);
+		}
+		sb.append(')');
+		if (!updates.isEmpty()) {
+			sb.append(" when matched then update set ");
+			for (int i = 0; i < updates.size(); i++) {
+				if (i > 0)
+					sb.append(", ");
+				String column = updates.get(i);
+				sb.append(column).append(" = s.").append(column);
+			}
+		}
+		sb.append(" when not matched then insert (");
+		StringUtils.joinTo(columns, ",", sb);
+		sb.append(") values (");
+		for (int i = 0; i < columns.size(); i++) {
+			if (i > 0)
+				sb.append(',');
+			sb.append("s.").append(columns.get(i));
+		}
+		sb.append(')');
+		return sb.toString();
+	}
 	
 	public void accept(DbMetaData dbMetadata) {
 		this.caseHandler=dbMetadata.getFeature().getDefaultCase();
@@ -31,6 +31,7 @@ import javax.persistence.TableGenerator;
 import jef.database.ORMConfig;
 import jef.database.annotation.DateGenerateType;
 import jef.database.annotation.HiloGeneration;
+import jef.database.annotation.SnowflakeGeneration;
 import jef.database.dialect.type.AColumnMapping;
 import jef.database.dialect.type.AutoGuidMapping;
 import jef.database.dialect.type.AutoIntMapping;
@@ -836,6 +837,7 @@ public abstract class ColumnType {
 		private TableGenerator tableGenerator;
 		private SequenceGenerator seqGenerator;
 		private HiloGeneration hilo;
+		private boolean snowflake;
 
 		public TableGenerator getTableGenerator() {
 			return tableGenerator;
@@ -853,6 +855,15 @@ public abstract class ColumnType {
 			return hilo;
 		}
 
+		/**
+		 * 是否在本地使用Snowflake算法生成
+		 * 
+		 * @return
+		 */
+		public boolean isSnowflake() {
+			return snowflake;
+		}
+
 		public AutoIncrement(int i) {
 			super(i);
 			init(GenerationType.AUTO, null, null, null);
@@ -864,6 +875,7 @@ public abstract class ColumnType {
 			SequenceGenerator sg = fieldProvider.getAnnotation(SequenceGenerator.class);
 			HiloGeneration hilo = fieldProvider.getAnnotation(HiloGeneration.class);
 			init(type, tg, sg, hilo);
+			this.snowflake = fieldProvider.getAnnotation(SnowflakeGeneration.class) != null;
 		}
 
 		private void init(GenerationType type, TableGenerator tg, SequenceGenerator sg, HiloGeneration hilo) {
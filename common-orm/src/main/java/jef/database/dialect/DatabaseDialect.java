@@ -368,6 +368,32 @@ public interface DatabaseDialect {
 	 * @param sql
 	 */
 	void toExtremeInsert(InsertSqlClause sql);
+
+	/**
+	 * 生成单条语句的合并(upsert)SQL：按keys判断记录是否存在，存在则更新updates中的列，不存在则插入columns中的列。<br>
+	 * 语句中绑定变量的个数和顺序与columns相同。
+	 * 
+	 * @param table
+	 *            表名
+	 * @param columns
+	 *            要写入的列名(已转义)
+	 * @param keys
+	 *            判断记录是否存在的列名(一般为主键)，是columns的子集
+	 * @param updates
+	 *            记录已存在时要更新的列名，是columns的子集，不包含keys。可能为空
+	 * @return 数据库不支持时返回null
+	 */
+	String toUpsertSql(String table, List<String> columns, List<String> keys, List<String> updates);
+
+	/**
+	 * 按数据库的版本判断能否执行{@link #toUpsertSql(String, List, List, List)}生成的语句。<br>
+	 * 同种数据库的各个版本共用一个方言对象，因此结果不能保存在方言中，由{@link jef.database.DbMetaData#supportsUpsert()}按数据源分别缓存。
+	 * 
+	 * @param databaseVersion
+	 *            数据库版本，即DatabaseMetaData.getDatabaseProductVersion()
+	 * @return
+	 */
+	boolean supportsUpsert(String databaseVersion);
 	
 	/**
 	 * 获得SQL解析器。目前内置了两套解析器，一套是作者基于JavaCC自行编写的，性能较差，一套是直接使用Druid的SQL解析器.
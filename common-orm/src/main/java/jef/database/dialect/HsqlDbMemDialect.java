@@ -208,6 +208,21 @@ public class HsqlDbMemDialect extends AbstractDialect {
 		typeNames.put(Types.BOOLEAN, "boolean", 0,"bool");
 	}
 
+	@Override
+	public String toUpsertSql(String table, List<String> columns, List<String> keys, List<String> updates) {
+		StringBuilder sb = new StringBuilder(32 + columns.size() * 16);
+		sb.append("(values(");
+		for (int i = 0; i < columns.size(); i++) {
+			if (i > 0)
+				sb.append(',');
+			sb.append('?');
+		}
+		sb.append(")) as s(");
+		StringUtils.joinTo(columns, ",", sb);
+		sb.append(')');
+		return toMergeSql(table, sb.toString(), columns, keys, updates);
+	}
+
 	public RDBMS getName() {
 		return RDBMS.hsqldb;
 	}
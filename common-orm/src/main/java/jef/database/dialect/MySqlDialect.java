@@ -18,6 +18,7 @@ package jef.database.dialect;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.Arrays;
+import java.util.List;
 
 import jef.common.log.LogUtil;
 import jef.database.ConnectInfo;
@@ -104,7 +105,8 @@ public class MySqlDialect extends AbstractDialect {
 	public MySqlDialect() {
 		// 在MYSQL中 ||是逻辑运算符
 		features = CollectionUtils.identityHashSet();
-		features.addAll(Arrays.asList(Feature.DBNAME_AS_SCHEMA, Feature.SUPPORT_INLINE_COMMENT,Feature.ALTER_FOR_EACH_COLUMN, Feature.NOT_FETCH_NEXT_AUTOINCREAMENTD, Feature.SUPPORT_LIMIT, Feature.COLUMN_DEF_ALLOW_NULL));
+		features.addAll(Arrays.asList(Feature.DBNAME_AS_SCHEMA, Feature.SUPPORT_INLINE_COMMENT,Feature.ALTER_FOR_EACH_COLUMN, Feature.NOT_FETCH_NEXT_AUTOINCREAMENTD, Feature.SUPPORT_LIMIT, Feature.COLUMN_DEF_ALLOW_NULL,
+				Feature.SUPPORT_MULTI_ROW_VALUES));
 		setProperty(DbProperty.ADD_COLUMN, "ADD");
 		setProperty(DbProperty.MODIFY_COLUMN, "MODIFY");
 		setProperty(DbProperty.DROP_COLUMN, "DROP COLUMN");
@@ -117,6 +119,7 @@ public class MySqlDialect extends AbstractDialect {
 		setProperty(DbProperty.INDEX_LENGTH_CHARESET_FIX, "charset=latin5");
 		setProperty(DbProperty.DROP_INDEX_TABLE_PATTERN, "%1$s ON %2$s");
 		setProperty(DbProperty.DROP_FK_PATTERN, "alter table %1$s drop foreign key %2$s");
+		setProperty(DbProperty.MAX_BIND_PARAMETERS, "65535");
 		
 		loadKeywords("mysql_keywords.properties");
 		registerNative(new StandardSQLFunction("ascii"));
@@ -392,6 +395,26 @@ public class MySqlDialect extends AbstractDialect {
 		}
 	}
 
+	/**
+	 * MySQL使用insert ... on duplicate key update实现，判断依据为表上的主键和唯一约束
+	 */
+	@Override
+	public String toUpsertSql(String table, List<String> columns, List<String> keys, List<String> updates) {
+		StringBuilder sb = toUpsertInsertPart(table, columns);
+		sb.append(" on duplicate key update ");
+		if (updates.isEmpty()) {// 记录已存在时不作修改
+			sb.append(keys.get(0)).append('=').append(keys.get(0));
+		} else {
+			for (int i = 0; i < updates.size(); i++) {
+				if (i > 0)
+					sb.append(',');
+				String column = updates.get(i);
+				sb.append(column).append("=values(").append(column).append(')');
+			}
+		}
+		return sb.toString();
+	}
+
 	public RDBMS getName() {
 		return RDBMS.mysql;
 	}
@@ -293,6 +293,19 @@ public class OracleDialect extends AbstractDialect {
 		return url;
 	}
 
+	@Override
+	public String toUpsertSql(String table, List<String> columns, List<String> keys, List<String> updates) {
+		StringBuilder sb = new StringBuilder(32 + columns.size() * 16);
+		sb.append("(select ");
+		for (int i = 0; i < columns.size(); i++) {
+			if (i > 0)
+				sb.append(", ");
+			sb.append("? ").append(columns.get(i));
+		}
+		sb.append(" from dual) s");
+		return toMergeSql(table, sb.toString(), columns, keys, updates);
+	}
+
 	public RDBMS getName() {
 		return RDBMS.oracle;
 	}
@@ -8,6 +8,7 @@ import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.Arrays;
+import java.util.List;
 
 import javax.persistence.PersistenceException;
 
@@ -60,11 +61,10 @@ import com.querydsl.sql.SQLTemplates;
 public class PostgreSqlDialect extends AbstractDialect {
 	protected static final String JDBC_URL_FORMAT = "jdbc:postgresql://%1$s:%2$s/%3$s";
 	protected static final int DEFAULT_PORT = 5432;
-
 	public PostgreSqlDialect() {
 		features = CollectionUtils.identityHashSet();
 		features.addAll(Arrays.asList(Feature.ALTER_FOR_EACH_COLUMN, Feature.COLUMN_ALTERATION_SYNTAX, Feature.SUPPORT_CONCAT, Feature.SUPPORT_SEQUENCE, Feature.SUPPORT_LIMIT, Feature.AI_TO_SEQUENCE_WITHOUT_DEFAULT,
-				Feature.SUPPORT_COMMENT));
+				Feature.SUPPORT_COMMENT, Feature.SUPPORT_MULTI_ROW_VALUES));
 
 		loadKeywords("postgresql_keywords.properties");
 
@@ -184,6 +184,7 @@ public class PostgreSqlDialect extends AbstractDialect {
 		setProperty(DbProperty.SEQUENCE_FETCH, "select nextval('%s')");
 		setProperty(DbProperty.WRAP_FOR_KEYWORD, "\"\"");
 		setProperty(DbProperty.GET_IDENTITY_FUNCTION, "SELECT currval('%tableName%_%columnName%_seq')");
+		setProperty(DbProperty.MAX_BIND_PARAMETERS, "32767");
 
 		typeNames.put(Types.BLOB, "bytea", Types.VARBINARY);
 		typeNames.put(Types.CLOB, "text", 0);
@@ -201,6 +202,26 @@ public class PostgreSqlDialect extends AbstractDialect {
 		typeNames.put(Types.NUMERIC, "numeric($p, $s)", 0);
 	}
 
+	@Override
+	public String toUpsertSql(String table, List<String> columns, List<String> keys, List<String> updates) {
+		return toOnConflictUpsertSql(table, columns, keys, updates);
+	}
+
+	/**
+	 * PostgreSQL 9.5开始支持insert ... on conflict do update
+	 */
+	@Override
+	public boolean supportsUpsert(String databaseVersion) {
+		try {
+			String[] version = StringUtils.split(databaseVersion, ". ");
+			int major = Integer.parseInt(version[0]);
+			return major > 9 || (major == 9 && Integer.parseInt(version[1]) >= 5);
+		} catch (RuntimeException e) {
+			LogUtil.warn("Unable to check the version of PostgreSQL: " + databaseVersion);
+			return false;
+		}
+	}
+
 	public RDBMS getName() {
 		return RDBMS.postgresql;
 	}
@@ -1,6 +1,9 @@
 package jef.database.dialect;
 
 import java.sql.Types;
+import java.util.List;
+
+import jef.tools.StringUtils;
 
 import com.querydsl.sql.SQLServer2008Templates;
 import com.querydsl.sql.SQLTemplates;
@@ -27,6 +30,24 @@ public class SQLServer2008Dialect extends SQLServer2005Dialect {
 		typeNames.put(Types.TIMESTAMP, "datetime2", 0);
 	}
 	
+	/**
+	 * SQL Server 2008开始支持merge语句，merge语句必须以分号结束
+	 */
+	@Override
+	public String toUpsertSql(String table, List<String> columns, List<String> keys, List<String> updates) {
+		StringBuilder sb = new StringBuilder(32 + columns.size() * 16);
+		sb.append("(values(");
+		for (int i = 0; i < columns.size(); i++) {
+			if (i > 0)
+				sb.append(',');
+			sb.append('?');
+		}
+		sb.append(")) as s(");
+		StringUtils.joinTo(columns, ",", sb);
+		sb.append(')');
+		return toMergeSql(table, sb.toString(), columns, keys, updates) + ";";
+	}
+
 	 //to be override
     protected SQLTemplates generateQueryDslTemplates() {
         return new SQLServer2008Templates();
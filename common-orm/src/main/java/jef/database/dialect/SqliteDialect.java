@@ -17,7 +17,9 @@ package jef.database.dialect;
 
 import java.io.File;
 import java.sql.SQLException;
+import java.util.List;
 
+import jef.common.log.LogUtil;
 import jef.database.ConnectInfo;
 import jef.database.DbFunction;
 import jef.database.dialect.ColumnType.AutoIncrement;
@@ -201,6 +203,26 @@ public class SqliteDialect extends AbstractDialect {
 		return 0;
 	}
 
+	/**
+	 * SQLite 3.24开始支持insert ... on conflict do update
+	 */
+	@Override
+	public String toUpsertSql(String table, List<String> columns, List<String> keys, List<String> updates) {
+		return toOnConflictUpsertSql(table, columns, keys, updates);
+	}
+
+	@Override
+	public boolean supportsUpsert(String databaseVersion) {
+		try {
+			String[] version = StringUtils.split(databaseVersion, ". ");
+			int major = Integer.parseInt(version[0]);
+			return major > 3 || (major == 3 && Integer.parseInt(version[1]) >= 24);
+		} catch (RuntimeException e) {
+			LogUtil.warn("Unable to check the version of SQLite: " + databaseVersion);
+			return false;
+		}
+	}
+
 	public RDBMS getName() {
 		return RDBMS.sqlite;
 	}
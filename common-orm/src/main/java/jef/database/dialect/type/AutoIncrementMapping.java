@@ -29,6 +29,8 @@ import jef.database.wrapper.clause.InsertSqlClause;
 import jef.database.wrapper.processor.InsertStep;
 import jef.database.wrapper.processor.InsertStep.JdbcAutoGeneratedKeyCallback;
 import jef.database.wrapper.processor.InsertStep.SequenceGenerateCallback;
+import jef.database.wrapper.processor.InsertStep.SingleKeySetCallback;
+import jef.database.wrapper.processor.InsertStep.SnowflakeGenerateCallback;
 import jef.tools.StringUtils;
 import jef.tools.reflect.Property;
 
@@ -58,7 +60,9 @@ public abstract class AutoIncrementMapping extends AColumnMapping {
 
 		IDENTITY_DEFAULT,
 
-		CHECK_IS_IDENTITY
+		CHECK_IS_IDENTITY,
+
+		SNOWFLAKE
 	}
 
 	@Override
@@ -108,7 +112,7 @@ public abstract class AutoIncrementMapping extends AColumnMapping {
 
 		AutoIncrement a = (AutoIncrement) columnDef;
 		GenerationType type = a.getGenerationType(profile, this.meta.getEffectPartitionKeys() == null);// 只有非分表的类允许使用Identity方式生成，其他都仅允许Seq或Tble
-		this.generationType = getResolution(type, profile);
+		this.generationType = a.isSnowflake() ? GenerationResolution.SNOWFLAKE : getResolution(type, profile);
 		sequenceName = getSequenceName0(meta.getSchema(), meta.getTableName(false), type);
 		autoGenerateCall = new JdbcAutoGeneratedKeyCallback(accessor, getColumnName(profile, false), profile);
 	}
@@ -264,6 +268,12 @@ public abstract class AutoIncrementMapping extends AColumnMapping {
 		case IDENTITY_SKIP:
 			result.getCallback().addProcessor(autoGenerateCall);
 			break;
+		case SNOWFLAKE:
+			long id = result.parent.getNoTransactionSession().getSnowflakeGenerator().next();
+			result.getCallback().addProcessor(new SingleKeySetCallback(accessor, id));
+			cStr.add(cachedEscapeColumnName);
+			vStr.add(String.valueOf(id));
+			break;
 		case SEQUENCE:
 		case TABLE:
 		default:
@@ -319,6 +329,12 @@ public abstract class AutoIncrementMapping extends AColumnMapping {
 				result.getCallback().addProcessor(autoGenerateCall);
 			}
 			break;
+		case SNOWFLAKE:// 本地生成，无需访问数据库
+			result.getCallback().addProcessor(new SnowflakeGenerateCallback(accessor, result.parent.getNoTransactionSession().getSnowflakeGenerator()));
+			cStr.add(cachedEscapeColumnName);
+			vStr.add("?");
+			result.addField(this);
+			break;
 		case SEQUENCE:
 		case TABLE:
 		default:
@@ -0,0 +1,206 @@
+package jef.database.innerpool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import jef.database.DbUtils;
+import jef.database.jdbc.statement.DelegatingPreparedStatement;
+
+/**
+ * 从{@link StatementCache}中取出的PreparedStatement。
+ * <p>
+ * close()时不关闭真正的Statement，而是关闭未关闭的结果集，清除参数、批次，恢复被修改过的属性后归还到缓存中。
+ * 恢复失败，或修改过无法恢复的属性(poolable、cursorName、closeOnCompletion)时关闭真正的Statement。
+ * <p>
+ * close()之后真正的Statement可能已被其他使用者取走，因此之后的任何操作都抛出SQLException。
+ *
+ * @author jiyi
+ *
+ */
+final class CachedPreparedStatement extends DelegatingPreparedStatement {
+	/**
+	 * close()后替换掉真正的Statement，所有操作都抛出异常
+	 */
+	private static final PreparedStatement CLOSED = (PreparedStatement) Proxy.newProxyInstance(CachedPreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getDeclaringClass() == Object.class) {
+				if ("equals".equals(method.getName())) {
+					return proxy == args[0];
+				} else if ("hashCode".equals(method.getName())) {
+					return System.identityHashCode(proxy);
+				}
+				return "ClosedPreparedStatement";
+			}
+			throw new SQLException("PreparedStatement is closed.");
+		}
+	});
+
+	private final StatementCache cache;
+	private final StatementCache.Key key;
+	private boolean closed;
+	/**
+	 * 最后一次得到的结果集和生成的主键，归还时如果未关闭就关闭它
+	 */
+	private ResultSet resultSet;
+	private ResultSet generatedKeys;
+	private boolean propertiesChanged;
+	private boolean largeMaxRowsChanged;
+	/**
+	 * 修改过无法可靠恢复的属性，不能再放回缓存
+	 */
+	private boolean notReusable;
+	private final int defaultFetchSize;
+	private final int epoch;
+
+	CachedPreparedStatement(PreparedStatement st, StatementCache cache, StatementCache.Key key) throws SQLException {
+		super(st);
+		this.cache = cache;
+		this.key = key;
+		this.defaultFetchSize = st.getFetchSize();
+		this.epoch = cache.epoch();
+	}
+
+	@Override
+	public ResultSet executeQuery() throws SQLException {
+		return resultSet = super.executeQuery();
+	}
+
+	@Override
+	public ResultSet getResultSet() throws SQLException {
+		return resultSet = super.getResultSet();
+	}
+
+	@Override
+	public ResultSet getGeneratedKeys() throws SQLException {
+		return generatedKeys = super.getGeneratedKeys();
+	}
+
+	@Override
+	public void setMaxRows(int max) throws SQLException {
+		propertiesChanged = true;
+		super.setMaxRows(max);
+	}
+
+	@Override
+	public void setLargeMaxRows(long max) throws SQLException {
+		largeMaxRowsChanged = true;
+		_stmt.setLargeMaxRows(max);
+	}
+
+	@Override
+	public long getLargeMaxRows() throws SQLException {
+		return _stmt.getLargeMaxRows();
+	}
+
+	@Override
+	public void setMaxFieldSize(int max) throws SQLException {
+		propertiesChanged = true;
+		super.setMaxFieldSize(max);
+	}
+
+	@Override
+	public void setQueryTimeout(int seconds) throws SQLException {
+		propertiesChanged = true;
+		super.setQueryTimeout(seconds);
+	}
+
+	@Override
+	public void setFetchSize(int rows) throws SQLException {
+		propertiesChanged = true;
+		super.setFetchSize(rows);
+	}
+
+	@Override
+	public void setFetchDirection(int direction) throws SQLException {
+		propertiesChanged = true;
+		super.setFetchDirection(direction);
+	}
+
+	@Override
+	public void setEscapeProcessing(boolean enable) throws SQLException {
+		propertiesChanged = true;
+		super.setEscapeProcessing(enable);
+	}
+
+	@Override
+	public void setPoolable(boolean poolable) throws SQLException {
+		notReusable = true;
+		super.setPoolable(poolable);
+	}
+
+	@Override
+	public void setCursorName(String name) throws SQLException {
+		notReusable = true;
+		super.setCursorName(name);
+	}
+
+	@Override
+	public void closeOnCompletion() throws SQLException {
+		notReusable = true;
+		super.closeOnCompletion();
+	}
+
+	@Override
+	public boolean isClosed() throws SQLException {
+		return closed;
+	}
+
+	/*
+	 * 同一个Statement会先后被多个使用者取出，不能按真正的Statement判断相等
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return this == obj;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(this);
+	}
+
+	@Override
+	public void close() throws SQLException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		PreparedStatement st = (PreparedStatement) _stmt;
+		_stmt = CLOSED;
+		if (notReusable) {
+			DbUtils.close(st);
+			return;
+		}
+		try {
+			if (resultSet != null) {
+				resultSet.close();
+				resultSet = null;
+			}
+			if (generatedKeys != null) {
+				generatedKeys.close();
+				generatedKeys = null;
+			}
+			st.clearParameters();
+			st.clearBatch();
+			if (propertiesChanged) {
+				st.setMaxRows(0);
+				st.setMaxFieldSize(0);
+				st.setQueryTimeout(0);
+				st.setFetchSize(defaultFetchSize);
+				st.setFetchDirection(ResultSet.FETCH_FORWARD);
+				st.setEscapeProcessing(true);
+			}
+			if (largeMaxRowsChanged) {
+				st.setLargeMaxRows(0);
+			}
+			st.clearWarnings();
+		} catch (SQLException e) {
+			DbUtils.close(st);
+			return;
+		}
+		cache.offer(key, st, epoch);
+	}
+}
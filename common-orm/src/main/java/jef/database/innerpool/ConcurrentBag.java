@@ -0,0 +1,208 @@
+package jef.database.innerpool;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 连接池使用的无锁容器。
+ * <p>
+ * 容器中的每个元素都有一个状态，拿取和归还都是对元素状态的CAS操作，元素本身不会移入移出容器。
+ * <ul>
+ * <li>1、每个线程记录自己上次使用的元素，再次拿取时优先尝试该元素（线程亲和）。</li>
+ * <li>2、其次扫描共享列表，尝试占用任意一个空闲元素。</li>
+ * <li>3、仍然没有时在公平的交接队列上等待，其他线程归还元素时，如果有等待者则直接交给等待者。</li>
+ * </ul>
+ *
+ * @author jiyi
+ *
+ * @param <T>
+ */
+final class ConcurrentBag<T extends ConcurrentBag.Entry> {
+	static final int STATE_FREE = 0;
+	static final int STATE_IN_USE = 1;
+	static final int STATE_REMOVED = -1;
+	static final int STATE_RESERVED = -2;
+
+	/**
+	 * 容器中的元素
+	 */
+	interface Entry {
+		int getState();
+
+		void setState(int state);
+
+		boolean compareAndSetState(int expect, int update);
+	}
+
+	private final CopyOnWriteArrayList<T> sharedList = new CopyOnWriteArrayList<T>();
+	private final ThreadLocal<WeakReference<T>> lastUsed = new ThreadLocal<WeakReference<T>>();
+	private final SynchronousQueue<T> handoffQueue = new SynchronousQueue<T>(true);
+	private final AtomicInteger waiters = new AtomicInteger();
+
+	/**
+	 * 拿取一个空闲元素
+	 *
+	 * @param timeout
+	 *            等待时间，小于等于0时不等待
+	 * @param unit
+	 * @return 超时返回null
+	 * @throws InterruptedException
+	 */
+	T borrow(long timeout, TimeUnit unit) throws InterruptedException {
+		WeakReference<T> ref = lastUsed.get();
+		if (ref != null) {
+			T t = ref.get();
+			if (t != null && t.compareAndSetState(STATE_FREE, STATE_IN_USE)) {
+				return t;
+			}
+		}
+		// 必须在扫描之前登记等待，否则扫描之后归还的元素可能不会交给自己
+		waiters.incrementAndGet();
+		try {
+			for (T t : sharedList) {
+				if (t.compareAndSetState(STATE_FREE, STATE_IN_USE)) {
+					return t;
+				}
+			}
+			long nanos = unit.toNanos(timeout);
+			while (nanos > 0) {
+				long start = System.nanoTime();
+				T t = handoffQueue.poll(nanos, TimeUnit.NANOSECONDS);
+				if (t == null) {
+					return null;
+				}
+				if (t.compareAndSetState(STATE_FREE, STATE_IN_USE)) {
+					return t;
+				}
+				nanos -= System.nanoTime() - start;
+			}
+			return null;
+		} finally {
+			waiters.decrementAndGet();
+		}
+	}
+
+	/**
+	 * 归还元素
+	 *
+	 * @param t
+	 */
+	void requite(T t) {
+		t.setState(STATE_FREE);
+		handoff(t);
+		lastUsed.set(new WeakReference<T>(t));
+	}
+
+	/**
+	 * 加入一个新元素，该元素直接处于被调用者占用的状态
+	 *
+	 * @param t
+	 */
+	void add(T t) {
+		t.setState(STATE_IN_USE);
+		sharedList.add(t);
+	}
+
+	/**
+	 * 移除一个被占用或被保留的元素
+	 *
+	 * @param t
+	 * @return false表示元素不处于可移除的状态
+	 */
+	boolean remove(T t) {
+		if (!t.compareAndSetState(STATE_IN_USE, STATE_REMOVED) && !t.compareAndSetState(STATE_RESERVED, STATE_REMOVED)) {
+			return false;
+		}
+		return sharedList.remove(t);
+	}
+
+	/**
+	 * 保留一个空闲元素，使其不会被拿取。用于检查和收缩
+	 *
+	 * @param t
+	 * @return
+	 */
+	boolean reserve(T t) {
+		return t.compareAndSetState(STATE_FREE, STATE_RESERVED);
+	}
+
+	/**
+	 * 取消保留
+	 *
+	 * @param t
+	 */
+	void unreserve(T t) {
+		if (t.compareAndSetState(STATE_RESERVED, STATE_FREE)) {
+			handoff(t);
+		}
+	}
+
+	/**
+	 * 保留当前所有的空闲元素
+	 *
+	 * @return
+	 */
+	List<T> reserveFree() {
+		List<T> result = new ArrayList<T>();
+		for (T t : sharedList) {
+			if (reserve(t)) {
+				result.add(t);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 当前所有元素的快照
+	 *
+	 * @return
+	 */
+	List<T> values() {
+		return new ArrayList<T>(sharedList);
+	}
+
+	/**
+	 * 得到处于指定状态的元素个数
+	 *
+	 * @param state
+	 * @return
+	 */
+	int getCount(int state) {
+		int count = 0;
+		for (T t : sharedList) {
+			if (t.getState() == state) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	int size() {
+		return sharedList.size();
+	}
+
+	int getWaitingCount() {
+		return waiters.get();
+	}
+
+	/*
+	 * 有等待者时，将空闲元素交给等待者。元素被其他线程抢先占用时停止
+	 */
+	private void handoff(T t) {
+		for (int i = 0; waiters.get() > 0; i++) {
+			if (t.getState() != STATE_FREE || handoffQueue.offer(t)) {
+				return;
+			} else if ((i & 0xff) == 0xff) {
+				LockSupport.parkNanos(10000);
+			} else {
+				Thread.yield();
+			}
+		}
+	}
+}
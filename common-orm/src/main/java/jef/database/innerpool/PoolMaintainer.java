@@ -0,0 +1,261 @@
+package jef.database.innerpool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import jef.common.log.LogUtil;
+import jef.database.DbCfg;
+import jef.database.DbUtils;
+import jef.database.ORMConfig;
+import jef.tools.JefConfiguration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 连接池的后台维护任务调度器，取代原先全局唯一的检查线程。
+ * <p>
+ * 所有维护器共用一个守护调度线程，只负责按时触发任务。每个连接池的检查和补足连接在自己按需创建、空闲后回收的工作线程中执行，
+ * 另有一组按需创建的线程负责建立物理连接。
+ * 后台建立连接受{@link DbCfg#DB_POOL_CONNECT_TIMEOUT}限制，一个数据库无响应时只影响它自己的连接池，不会拖慢其他连接池的维护。
+ * 连接池创建时的预热（建立最小连接数）也由各自的维护器并行执行，多个数据源的预热互不等待。
+ *
+ * @author jiyi
+ *
+ */
+final class PoolMaintainer {
+	private static final Logger log = LoggerFactory.getLogger(PoolMaintainer.class);
+	/**
+	 * 首次检查前的等待时间
+	 */
+	private static final long INITIAL_DELAY = 12000;
+
+	private static final AtomicInteger poolSeq = new AtomicInteger();
+
+	/**
+	 * 所有连接池共用的调度线程，只负责把定时任务交给各连接池的工作线程
+	 */
+	private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("thread-JEFPoolScheduler"));
+	static {
+		SCHEDULER.setRemoveOnCancelPolicy(true);
+	}
+
+	private final CheckablePool pool;
+	/**
+	 * 执行检查和补足连接的工作线程，空闲一段时间后回收
+	 */
+	private final ThreadPoolExecutor worker;
+	/**
+	 * 建立物理连接的线程，空闲一段时间后回收
+	 */
+	private final ThreadPoolExecutor connector;
+	/**
+	 * 后台建立连接的超时时间（秒）
+	 */
+	private final int connectTimeout;
+	private ScheduledFuture<?> checkTask;
+	/**
+	 * 上一次定时检查尚未执行完时，不再重复提交
+	 */
+	private final AtomicBoolean checkPending = new AtomicBoolean();
+
+	/**
+	 * 构造
+	 *
+	 * @param pool
+	 *            要维护的连接池
+	 * @param connectThreads
+	 *            同时建立物理连接的最大线程数
+	 */
+	PoolMaintainer(CheckablePool pool, int connectThreads) {
+		this(pool, connectThreads, JefConfiguration.getInt(DbCfg.DB_POOL_CONNECT_TIMEOUT, 10));
+	}
+
+	PoolMaintainer(CheckablePool pool, int connectThreads, int connectTimeout) {
+		this.pool = pool;
+		this.connectTimeout = connectTimeout;
+		String name = "thread-JEFPoolMaintainer-" + poolSeq.incrementAndGet();
+		this.worker = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory(name));
+		worker.allowCoreThreadTimeOut(true);
+		this.connector = new ThreadPoolExecutor(0, Math.max(1, connectThreads), 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new DaemonThreadFactory(name + "-connect"));
+	}
+
+	/**
+	 * 按心跳间隔定期检查连接池，心跳间隔小于等于0时不检查
+	 */
+	synchronized void start() {
+		long period = ORMConfig.getInstance().getHeartBeatSleep();
+		if (period <= 0 || checkTask != null) {
+			return;
+		}
+		if (ORMConfig.getInstance().isDebugMode()) {
+			LogUtil.show("The [" + pool.toString() + "] was added into PoolCheck task queue.");
+		}
+		checkTask = SCHEDULER.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				if (checkPending.compareAndSet(false, true)) {
+					execute(new Runnable() {
+						public void run() {
+							checkPending.set(false);
+							check();
+						}
+					});
+				}
+			}
+		}, Math.min(INITIAL_DELAY, period), period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 立即在后台检查一次连接池
+	 */
+	void checkNow() {
+		execute(new Runnable() {
+			public void run() {
+				check();
+			}
+		});
+	}
+
+	/**
+	 * 在工作线程上执行任务，连接池关闭后忽略
+	 *
+	 * @param task
+	 */
+	void execute(Runnable task) {
+		try {
+			worker.execute(task);
+		} catch (RejectedExecutionException e) {
+			log.debug("Pool {} was closed, task ignored.", pool);
+		}
+	}
+
+	/**
+	 * 并行建立若干个物理连接。每个连接最多等待{@link DbCfg#DB_POOL_CONNECT_TIMEOUT}秒，超时后放弃，迟到的连接会被关闭。
+	 *
+	 * @param ds
+	 *            数据源
+	 * @param count
+	 *            连接个数
+	 * @return 成功建立的连接，个数可能少于count
+	 */
+	List<Connection> connect(DataSource ds, int count) {
+		List<ConnectTask> tasks = new ArrayList<ConnectTask>(count);
+		List<Future<Connection>> futures = new ArrayList<Future<Connection>>(count);
+		for (int i = 0; i < count; i++) {
+			ConnectTask task = new ConnectTask(ds);
+			try {
+				futures.add(connector.submit(task));
+				tasks.add(task);
+			} catch (RejectedExecutionException e) {
+				// 线程全部被卡住的连接占用，或连接池已关闭
+				LogUtil.warn("Too many pending connections to [" + ds + "], skip " + (count - i) + " connection(s).");
+				break;
+			}
+		}
+		List<Connection> result = new ArrayList<Connection>(futures.size());
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(connectTimeout);
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				result.add(futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+			} catch (TimeoutException e) {
+				DbUtils.closeConnection(tasks.get(i).abandon());
+				LogUtil.warn("Create connection to [" + ds + "] timeout after " + connectTimeout + "s.");
+			} catch (ExecutionException e) {
+				LogUtil.warn("Create connection to [" + ds + "] failed: " + e.getCause().getMessage());
+			} catch (InterruptedException e) {
+				DbUtils.closeConnection(tasks.get(i).abandon());
+				Thread.currentThread().interrupt();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 连接池关闭时停止维护，正在建立中的连接完成后会被关闭
+	 */
+	synchronized void shutdown() {
+		if (checkTask != null) {
+			checkTask.cancel(false);
+		}
+		worker.shutdownNow();
+		connector.shutdown();
+	}
+
+	private void check() {
+		try {
+			synchronized (pool) {
+				pool.doCheck();
+			}
+		} catch (Throwable e) {
+			log.error("Check pool " + pool + " error.", e);
+		}
+	}
+
+	/*
+	 * 建立一个物理连接。等待方放弃后才建立成功的连接直接关闭
+	 */
+	private static final class ConnectTask implements Callable<Connection> {
+		private final DataSource ds;
+		private boolean abandoned;
+		private Connection result;
+
+		ConnectTask(DataSource ds) {
+			this.ds = ds;
+		}
+
+		public Connection call() throws SQLException {
+			Connection conn = ds.getConnection();
+			synchronized (this) {
+				if (!abandoned) {
+					result = conn;
+					return conn;
+				}
+			}
+			DbUtils.closeConnection(conn);
+			return null;
+		}
+
+		/*
+		 * 放弃等待，返回恰好在超时前后建立完成的连接，由调用者关闭
+		 */
+		synchronized Connection abandon() {
+			abandoned = true;
+			Connection conn = result;
+			result = null;
+			return conn;
+		}
+	}
+
+	private static final class DaemonThreadFactory implements ThreadFactory {
+		private final String name;
+		private final AtomicInteger seq = new AtomicInteger();
+
+		DaemonThreadFactory(String name) {
+			this.name = name;
+		}
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, name + "-" + seq.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
@@ -110,6 +110,18 @@ public class PoolService {
 	 * @return 无效的连接数. -1表示连接池无法进行检测
 	 */
 	public static int doCheck(String testSql,Iterator<? extends CheckableConnection> connectionsToCheck) {
+		return doCheck(testSql, 5, connectionsToCheck);
+	}
+
+	/**
+	 * 立刻检查
+	 * 
+	 * @param testSql
+	 * @param timeout 使用JDBC4方式检查时，每个连接的超时时间（秒）
+	 * @param connectionsToCheck
+	 * @return 无效的连接数. -1表示连接池无法进行检测
+	 */
+	public static int doCheck(String testSql,int timeout,Iterator<? extends CheckableConnection> connectionsToCheck) {
 		int invalid = 0;
 		boolean useJDbcValidation = false;
 		if (StringUtils.isBlank(testSql) || "jdbc4".equals(testSql)) {
@@ -126,7 +138,7 @@ public class PoolService {
 			try {
 				if (useJDbcValidation) {
 					try{
-						flag = conn.checkValid(5);
+						flag = conn.checkValid(timeout);
 					}catch(AbstractMethodError e){ //JDBC未实现此方法
 						//LogUtil.exception(e);无需输入堆栈
 						LogUtil.warn("The Connection Check was disabled since the JDBC Driver doesn't support 'isValid(I)Z'"+conn.toString());
@@ -42,6 +42,7 @@ public final class SimplePooledDatasource extends AbstractDataSource implements
 	private String testSQL;
 	private BlockingQueue<Connection> freeConns;
 	private AtomicInteger used = new AtomicInteger();// 被取走的连接数
+	private final PoolMaintainer maintainer;
 
 	/**
 	 * 空构造器
@@ -68,7 +69,8 @@ public final class SimplePooledDatasource extends AbstractDataSource implements
 		this.datasource = ds;
 		freeConns = new LinkedBlockingQueue<Connection>(max);
 		PoolReleaseThread.getInstance().addPool(this);
-		PoolCheckThread.getInstance().addPool(this);
+		maintainer = new PoolMaintainer(this, 1);
+		maintainer.start();
 	}
 
 	public void setDatasource(DataSource datasource) {
@@ -160,6 +162,7 @@ public final class SimplePooledDatasource extends AbstractDataSource implements
 		min = 0;
 		closeConnectionTillMin();
 		PoolReleaseThread.getInstance().removePool(this);
+		maintainer.shutdown();
 	}
 
 	@Override
@@ -2,7 +2,10 @@ package jef.database.innerpool;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import javax.sql.DataSource;
 
@@ -15,8 +18,9 @@ import org.slf4j.LoggerFactory;
  * @author jiyi
  * 
  */
-final class SingleConnection extends AbstractJDBCConnection implements ReentrantConnection{
+final class SingleConnection extends AbstractJDBCConnection implements ReentrantConnection,ConcurrentBag.Entry{
 	private static Logger log = LoggerFactory.getLogger(SingleConnection.class);
+	private static final AtomicIntegerFieldUpdater<SingleConnection> STATE = AtomicIntegerFieldUpdater.newUpdater(SingleConnection.class, "state");
 	/**
 	 * Belongs to the connection pool.
 	 */
@@ -29,6 +33,14 @@ final class SingleConnection extends AbstractJDBCConnection implements Reentrant
 	 * Reentrant count of the lock.
 	 */
 	private volatile int count;
+	/**
+	 * State in the connection pool.
+	 */
+	private volatile int state;
+	/**
+	 * PreparedStatement cache of the physical connection, null if disabled.
+	 */
+	private final StatementCache statements;
 
 	/**
 	 * 构造
@@ -38,11 +50,27 @@ final class SingleConnection extends AbstractJDBCConnection implements Reentrant
 	 * @throws SQLException
 	 */
 	SingleConnection(Connection connection, IPool<ReentrantConnection> parent) {
+		this(connection, parent, null);
+	}
+
+	/**
+	 * 构造
+	 * 
+	 * @param conn
+	 * @param parent
+	 * @param statements
+	 *            PreparedStatement缓存，为null时不缓存
+	 */
+	SingleConnection(Connection connection, IPool<ReentrantConnection> parent, StatementCache statements) {
 		this.conn = connection;
 		this.parent = parent;
+		this.statements = statements;
 	}
 
 	public void closePhysical() {
+		if (statements != null) {
+			statements.clear();
+		}
 		if (conn != null) {
 			DbUtils.closeConnection(conn);
 			conn = null;
@@ -56,6 +84,9 @@ final class SingleConnection extends AbstractJDBCConnection implements Reentrant
 	
 	public void ensureOpen() throws SQLException {
 		if (conn != null && conn.isClosed()) {// 检测到关闭的连接后，提示全面检测
+			if (statements != null) {
+				statements.clear();
+			}
 			conn=null;
 		}
 		if (conn == null) {// 试图创建新连接
@@ -66,8 +97,84 @@ final class SingleConnection extends AbstractJDBCConnection implements Reentrant
 		}
 	}
 	
+	/*
+	 * 物理连接是否已经被关闭（例如检查时被判定为失效）
+	 */
+	boolean isPhysicalClosed() {
+		return conn == null;
+	}
+
+	/*
+	 * 设置在后台建立的物理连接
+	 */
+	void setPhysical(Connection connection) {
+		this.conn = connection;
+	}
+
 	public void setKey(String key) {
 	}
+
+	/////////////////PreparedStatement缓存/////////////////
+	@Override
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		return prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, -1, Statement.NO_GENERATED_KEYS, null, null);
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return prepareStatement(sql, resultSetType, resultSetConcurrency, -1, Statement.NO_GENERATED_KEYS, null, null);
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability, Statement.NO_GENERATED_KEYS, null, null);
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+		return prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, -1, autoGeneratedKeys, null, null);
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+		return prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, -1, Statement.RETURN_GENERATED_KEYS, columnIndexes, null);
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+		return prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, -1, Statement.RETURN_GENERATED_KEYS, null, columnNames);
+	}
+
+	/*
+	 * holdability为-1表示未指定，使用驱动的默认值
+	 */
+	private PreparedStatement prepareStatement(String sql, int type, int concurrency, int holdability, int autoGeneratedKeys, int[] columnIndexes, String[] columnNames) throws SQLException {
+		if (statements == null) {
+			return doPrepare(sql, type, concurrency, holdability, autoGeneratedKeys, columnIndexes, columnNames);
+		}
+		StatementCache.Key key = new StatementCache.Key(sql, type, concurrency, holdability, autoGeneratedKeys, columnIndexes, columnNames);
+		PreparedStatement st = statements.take(key);
+		if (st == null) {
+			st = doPrepare(sql, type, concurrency, holdability, autoGeneratedKeys, columnIndexes, columnNames);
+		}
+		return new CachedPreparedStatement(st, statements, key);
+	}
+
+	private PreparedStatement doPrepare(String sql, int type, int concurrency, int holdability, int autoGeneratedKeys, int[] columnIndexes, String[] columnNames) throws SQLException {
+		if (columnIndexes != null) {
+			return conn.prepareStatement(sql, columnIndexes);
+		} else if (columnNames != null) {
+			return conn.prepareStatement(sql, columnNames);
+		} else if (autoGeneratedKeys != Statement.NO_GENERATED_KEYS) {
+			return conn.prepareStatement(sql, autoGeneratedKeys);
+		} else if (holdability != -1) {
+			return conn.prepareStatement(sql, type, concurrency, holdability);
+		} else if (type == ResultSet.TYPE_FORWARD_ONLY && concurrency == ResultSet.CONCUR_READ_ONLY) {
+			return conn.prepareStatement(sql);
+		} else {
+			return conn.prepareStatement(sql, type, concurrency);
+		}
+	}
 	/////////////////有效性检查/////////////////
 	public void setInvalid() {
 		closePhysical();
@@ -117,4 +224,26 @@ final class SingleConnection extends AbstractJDBCConnection implements Reentrant
 	public boolean isUsed() {
 		return count > 0;
 	}
+
+	boolean isUsedBy(Object user) {
+		return used == user;
+	}
+
+	boolean belongsTo(IPool<?> pool) {
+		return parent == pool;
+	}
+
+	///////////////////连接池中的状态////////////////
+
+	public int getState() {
+		return state;
+	}
+
+	public void setState(int state) {
+		this.state = state;
+	}
+
+	public boolean compareAndSetState(int expect, int update) {
+		return STATE.compareAndSet(this, expect, update);
+	}
 }
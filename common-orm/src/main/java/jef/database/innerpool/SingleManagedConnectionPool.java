@@ -16,14 +16,16 @@
 package jef.database.innerpool;
 
 import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -54,7 +56,9 @@ import com.google.common.collect.MapMaker;
  * <ul>
  * <li>1、根据IUserManagedPool接口要求，对同一个线程或者事务会返回相同的连接。</li>
  * <li>2、连接池大小控制，会在指定的范围内，自动管理连接数量。</li>
- * <li>3、定时检查连接有效性</li>
+ * <li>3、可选在后台预热到最小连接数(参见{@link DbCfg#DB_POOL_WARM_UP})，并定时检查连接有效性、重连失效的连接、补足最小连接数，参见{@link PoolMaintainer}</li>
+ * <li>4、连接存放在无锁的{@link ConcurrentBag}中，拿取和归还基本上是无竞争的CAS操作，线程优先拿到自己上次使用的连接。</li>
+ * <li>5、可选的PreparedStatement缓存，参见{@link DbCfg#DB_STATEMENT_CACHE_SIZE}</li>
  * </ul>
  */
 final class SingleManagedConnectionPool implements IManagedConnectionPool, DataSource, CheckablePool {
@@ -67,32 +71,98 @@ final class SingleManagedConnectionPool implements IManagedConnectionPool, DataS
 	private String testSQL;
 
 	/**
-	 * 本来是使用usedConnections.size()来计算目前使用中的连接数的, 但是发现Google
-	 * map在数量统计时不太靠谱,只好自行记录使用
+	 * 连接总数（包括正在创建中的），用于控制连接池上限
 	 */
-	private final AtomicInteger used = new AtomicInteger();
-	final Map<Object, ReentrantConnection> usedConnections = new MapMaker().concurrencyLevel(12).weakKeys().makeMap();
+	private final AtomicInteger total = new AtomicInteger();
+
+	/**
+	 * 全部连接
+	 */
+	private final ConcurrentBag<SingleConnection> bag = new ConcurrentBag<SingleConnection>();
+
+	/**
+	 * 以线程为使用者时，线程当前占用的连接。需要校验连接是否仍然被该线程占用。
+	 * 使用弱引用，连接被关闭移出连接池后不会因为线程仍然存活而无法回收
+	 */
+	private final ThreadLocal<WeakReference<SingleConnection>> threadConnections = new ThreadLocal<WeakReference<SingleConnection>>();
 
 	/**
-	 * 空闲连接数
+	 * 以事务等其他对象为使用者时，使用者和连接的对应关系
 	 */
-	private final BlockingQueue<ReentrantConnection> freeConns;
+	final Map<Object, ReentrantConnection> usedConnections = new MapMaker().concurrencyLevel(12).weakKeys().makeMap();
 
 	// 统计信息，统计拿取和设置的全不知
 	private final AtomicLong pollCount = new AtomicLong();
 	private final AtomicLong offerCount = new AtomicLong();
 
+	/**
+	 * 每个连接缓存的PreparedStatement个数，0表示不缓存
+	 */
+	private final int statementCacheSize = JefConfiguration.getInt(DbCfg.DB_STATEMENT_CACHE_SIZE, 0);
+	// PreparedStatement缓存的命中统计，所有连接共享
+	private final AtomicLong statementHits = new AtomicLong();
+	private final AtomicLong statementMisses = new AtomicLong();
+
+	/**
+	 * 后台检查连接的超时时间（秒）
+	 */
+	private final int checkTimeout = JefConfiguration.getInt(DbCfg.DB_POOL_CHECK_TIMEOUT, 5);
+	/**
+	 * 本连接池专用的后台维护器
+	 */
+	private final PoolMaintainer maintainer;
+
 	SingleManagedConnectionPool(DataSource ds, int min, int max) {
 		if (min > max)
 			min = max;
 		this.ds = ds;
 		this.min = min;
 		this.max = max;
-		freeConns = new LinkedBlockingQueue<ReentrantConnection>(max);
+		this.maintainer = new PoolMaintainer(this, max);
 		this.metadata = new DbMetaData(ds, this, null);
 		metadata.getProfile().accept(metadata);
 		PoolReleaseThread.getInstance().addPool(this);
-		PoolCheckThread.getInstance().addPool(this);
+		maintainer.start();
+		if (JefConfiguration.getBoolean(DbCfg.DB_POOL_WARM_UP, false)) {
+			maintainer.execute(new Runnable() {
+				public void run() {
+					fillToMin();
+				}
+			});
+		}
+	}
+
+	/*
+	 * 在后台并行建立空闲连接，直到最小连接数
+	 * @return 建立的连接数
+	 */
+	private int fillToMin() {
+		int count = 0;
+		for (;;) {
+			int n = total.get();
+			if (n >= min) {
+				break;
+			}
+			if (total.compareAndSet(n, min)) {// 提前计数，并发下为了严格阻止连接池超出上限，必须这样做
+				count = min - n;
+				break;
+			}
+		}
+		if (count == 0) {
+			return 0;
+		}
+		List<Connection> conns = maintainer.connect(ds, count);
+		total.addAndGet(conns.size() - count);
+		for (Connection c : conns) {
+			SingleConnection conn = new SingleConnection(c, this, newStatementCache());
+			bag.add(conn);
+			if (max == 0) {// 连接池已关闭
+				discard(conn);
+			} else {
+				bag.requite(conn);
+			}
+		}
+		return conns.size();
 	}
 
 	public String toString() {
@@ -104,14 +174,23 @@ final class SingleManagedConnectionPool implements IManagedConnectionPool, DataS
 	}
 
 	public PoolStatus getStatus() {
-		int used = usedConnections.size();
-		int free = freeConns.size();
+		int used = bag.getCount(ConcurrentBag.STATE_IN_USE);
+		int free = bag.getCount(ConcurrentBag.STATE_FREE);
 		PoolStatus ps = new PoolStatus(max, min, used + free, used, free);
 		ps.setOfferCount(offerCount.get());
 		ps.setPollCount(pollCount.get());
+		ps.setStatementHits(statementHits.get());
+		ps.setStatementMisses(statementMisses.get());
 		return ps;
 	}
 
+	/*
+	 * 连接池中的连接个数
+	 */
+	int getConnectionCount() {
+		return bag.size();
+	}
+
 	@SuppressWarnings("unchecked")
 	public Collection<String> getAllDatasourceNames() {
 		return Collections.EMPTY_SET;
@@ -119,32 +198,93 @@ final class SingleManagedConnectionPool implements IManagedConnectionPool, DataS
 
 	public ReentrantConnection getConnection(Object transaction) throws SQLException {
 		pollCount.incrementAndGet();
+		ReentrantConnection used = getUsedConnection(transaction);
+		if (used != null) {
+			used.addUsedByObject();
+			return used;
+		}
+		SingleConnection conn;
 		try {
-			ReentrantConnection conn = usedConnections.get(transaction);
+			conn = bag.borrow(0, TimeUnit.NANOSECONDS);
+			if (conn == null) {// 尝试用新连接
+				conn = createConnection(max);
+			}
 			if (conn == null) {
-				if (used.get() < max && freeConns.isEmpty()) {// 尝试用新连接
-					used.getAndIncrement(); // 提前计数
-					conn = new SingleConnection(ds.getConnection(), this);
-					conn.setUsedByObject(transaction);
-				} else {
-					used.getAndIncrement(); // 提前计数，并发下为了严格阻止连接池超出上限，必须这样做
-					conn = freeConns.poll(5000000000L, TimeUnit.NANOSECONDS);// 5秒
-					if (conn == null) {
-						used.decrementAndGet();
-						throw new SQLException("No connection avaliable now." + getStatus());
-					}
-					conn.ensureOpen();
-					conn.setUsedByObject(transaction);
+				conn = bag.borrow(5, TimeUnit.SECONDS);
+				if (conn == null) {
+					throw new SQLException("No connection avaliable now." + getStatus());
 				}
-				usedConnections.put(transaction, conn);
-			} else {
-				conn.addUsedByObject();
 			}
-			// log(transaction,conn,"get");
-			return conn;
 		} catch (InterruptedException e) {
 			throw new SQLException(e);
 		}
+		try {
+			conn.ensureOpen();
+		} catch (SQLException e) {
+			// 无法打开的连接不再放回连接池
+			discard(conn);
+			throw e;
+		}
+		conn.setUsedByObject(transaction);
+		if (transaction == Thread.currentThread()) {
+			threadConnections.set(new WeakReference<SingleConnection>(conn));
+		} else {
+			usedConnections.put(transaction, conn);
+		}
+		// log(transaction,conn,"get");
+		return conn;
+	}
+
+	/*
+	 * 得到使用者当前占用的连接
+	 */
+	private ReentrantConnection getUsedConnection(Object transaction) {
+		if (transaction == Thread.currentThread()) {
+			WeakReference<SingleConnection> ref = threadConnections.get();
+			SingleConnection conn = ref == null ? null : ref.get();
+			return conn != null && conn.isUsedBy(transaction) ? conn : null;
+		}
+		return usedConnections.get(transaction);
+	}
+
+	/*
+	 * 将被占用或被保留的连接移出连接池并关闭
+	 */
+	private void discard(SingleConnection conn) {
+		if (bag.remove(conn)) {
+			total.decrementAndGet();
+		}
+		conn.closePhysical();
+	}
+
+	/*
+	 * 在指定的连接数以内创建新连接，已达上限时返回null
+	 */
+	private SingleConnection createConnection(int limit) throws SQLException {
+		for (;;) {
+			int n = total.get();
+			if (n >= limit) {
+				return null;
+			}
+			if (total.compareAndSet(n, n + 1)) {// 提前计数，并发下为了严格阻止连接池超出上限，必须这样做
+				break;
+			}
+		}
+		try {
+			SingleConnection conn = new SingleConnection(ds.getConnection(), this, newStatementCache());
+			bag.add(conn);
+			return conn;
+		} catch (SQLException e) {
+			total.decrementAndGet();
+			throw e;
+		} catch (RuntimeException e) {
+			total.decrementAndGet();
+			throw e;
+		}
+	}
+
+	private StatementCache newStatementCache() {
+		return statementCacheSize > 0 ? new StatementCache(statementCacheSize, statementHits, statementMisses) : null;
 	}
 
 //	@SuppressWarnings("unused")
@@ -168,13 +308,31 @@ final class SingleManagedConnectionPool implements IManagedConnectionPool, DataS
 			if (o == null) {
 				return;// 不是真正的归还
 			}
+			if (!(conn instanceof SingleConnection) || !((SingleConnection) conn).belongsTo(this) || ((SingleConnection) conn).getState() != ConcurrentBag.STATE_IN_USE) {
+				conn.setUsedByObject(o);// 恢复使用记录，由它真正的连接池归还
+				throw new IllegalStateException("The connection returned is not in use in this pool." + conn);
+			}
 			ReentrantConnection conn1 = usedConnections.remove(o);
-			boolean success = freeConns.offer(conn);
-			if (!success) {
-				conn.closePhysical();
+			if (conn1 == null && o instanceof Thread) {
+				// 以线程为使用者的连接，在使用者线程上归还时与ThreadLocal中记录的连接核对
+				if (o == Thread.currentThread()) {
+					WeakReference<SingleConnection> ref = threadConnections.get();
+					threadConnections.remove();
+					conn1 = ref == null ? null : ref.get();
+				} else {
+					// 在其他线程上归还时无法读取和清除ThreadLocal，依靠拿取时的校验，只能确认是本连接池中被占用的连接
+					conn1 = conn;
+				}
+			}
+			SingleConnection c = (SingleConnection) conn;
+			if (max == 0) {// 连接池已关闭
+				if (bag.remove(c)) {
+					total.decrementAndGet();
+				}
+				c.closePhysical();
+			} else {
+				bag.requite(c);
 			}
-			// 归还成功，才减低连接池大小
-			used.decrementAndGet();
 			if (conn1 != conn) {
 				throw new IllegalStateException("The connection returned not match." + conn + "\t" + conn1);
 			}
@@ -187,15 +345,23 @@ final class SingleManagedConnectionPool implements IManagedConnectionPool, DataS
 		min = 0;
 		closeConnectionTillMin();
 		PoolReleaseThread.getInstance().removePool(this);
+		maintainer.shutdown();
 		PoolService.logPoolStatic(getClass().getSimpleName(), pollCount.get(), offerCount.get());
 	}
 
 	public void closeConnectionTillMin() {
-		if (freeConns.size() > min) {
-			ReentrantConnection conn;
-			// 注意下面两个条件顺序必须确保poll操作在后，因为poll操作会变更集合的Size
-			while (freeConns.size() > min && (conn = freeConns.poll()) != null) {
-				conn.closePhysical();
+		int free = bag.getCount(ConcurrentBag.STATE_FREE);
+		if (free > min) {
+			for (SingleConnection conn : bag.values()) {
+				if (free <= min) {
+					break;
+				}
+				// 先保留，确保关闭的连接不会同时被其他线程拿走
+				if (bag.reserve(conn) && bag.remove(conn)) {
+					total.decrementAndGet();
+					conn.closePhysical();
+					free--;
+				}
 			}
 		}
 	}
@@ -280,7 +446,7 @@ final class SingleManagedConnectionPool implements IManagedConnectionPool, DataS
 		if (LogUtil.isDebugEnabled()) {
 			LogUtil.debug("Disconnected connection found, notify Checker thread.");
 		}
-		this.doCheck();
+		maintainer.checkNow();
 	}
 
 	public boolean isRouting() {
@@ -292,9 +458,43 @@ final class SingleManagedConnectionPool implements IManagedConnectionPool, DataS
 	}
 
 	public synchronized void doCheck() {
-		int total = freeConns.size();
-		int invalid = PoolService.doCheck(this.testSQL, freeConns.iterator());
-		LogUtil.debug("Checked [{}]. total:{},  invalid:{}", this, total, invalid);
+		List<SingleConnection> idle = bag.reserveFree();
+		int invalid;
+		try {
+			invalid = PoolService.doCheck(this.testSQL, checkTimeout, idle.iterator());
+			if (invalid > 0) {
+				reconnect(idle);
+			}
+		} finally {
+			for (SingleConnection conn : idle) {
+				bag.unreserve(conn);
+			}
+		}
+		// 补足最小连接数
+		fillToMin();
+		LogUtil.debug("Checked [{}]. total:{},  invalid:{}", this, idle.size(), invalid);
+	}
+
+	/*
+	 * 失效的连接已被关闭，在后台并行重连，避免使用者拿到连接后再去等待建立连接。
+	 * 重连失败或超时的连接移出连接池，之后按需或在下次检查时重新建立
+	 */
+	private void reconnect(List<SingleConnection> idle) {
+		List<SingleConnection> broken = new ArrayList<SingleConnection>();
+		for (SingleConnection conn : idle) {
+			if (conn.isPhysicalClosed()) {
+				broken.add(conn);
+			}
+		}
+		Iterator<Connection> conns = maintainer.connect(ds, broken.size()).iterator();
+		for (SingleConnection conn : broken) {
+			if (conns.hasNext()) {
+				conn.setPhysical(conns.next());
+			} else {
+				idle.remove(conn);
+				discard(conn);
+			}
+		}
 	}
 
 	public boolean isMultipleRdbms() {
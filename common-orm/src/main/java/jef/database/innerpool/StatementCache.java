@@ -0,0 +1,191 @@
+package jef.database.innerpool;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jef.database.DbUtils;
+
+/**
+ * 一个物理连接上的PreparedStatement缓存。
+ * <p>
+ * 缓存中只存放空闲的Statement。拿取时从缓存中移出，归还时再放回，因此同一时刻一个Statement只会被一个使用者持有，
+ * 相同SQL并发使用时会各自prepare一个。超出容量时按LRU关闭最久未用的Statement。
+ * <p>
+ * 命中和未命中次数记录在连接池的计数器上，多个连接共享。
+ *
+ * @author jiyi
+ *
+ */
+final class StatementCache {
+	private final int capacity;
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+	private final LinkedHashMap<Key, List<PreparedStatement>> idle = new LinkedHashMap<Key, List<PreparedStatement>>(16, 0.75f, true);
+	private int size;
+	/**
+	 * 每次清空时加1，用于拒绝清空前取出的Statement归还
+	 */
+	private int epoch;
+
+	/**
+	 * 构造
+	 *
+	 * @param capacity
+	 *            最多缓存的Statement个数
+	 * @param hits
+	 *            命中计数器
+	 * @param misses
+	 *            未命中计数器
+	 */
+	StatementCache(int capacity, AtomicLong hits, AtomicLong misses) {
+		this.capacity = capacity;
+		this.hits = hits;
+		this.misses = misses;
+	}
+
+	/**
+	 * 拿取一个空闲的Statement
+	 *
+	 * @param key
+	 * @return 未命中返回null
+	 */
+	synchronized PreparedStatement take(Key key) {
+		List<PreparedStatement> list = idle.get(key);
+		if (list == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		PreparedStatement st = list.remove(list.size() - 1);
+		if (list.isEmpty()) {
+			idle.remove(key);
+		}
+		size--;
+		hits.incrementAndGet();
+		return st;
+	}
+
+	synchronized int epoch() {
+		return epoch;
+	}
+
+	/**
+	 * 归还Statement，容量不足时关闭最久未使用的Statement
+	 *
+	 * @param key
+	 * @param st
+	 * @param takenEpoch
+	 *            Statement取出时的{@link #epoch()}，此后缓存被清空过的话直接关闭该Statement
+	 */
+	void offer(Key key, PreparedStatement st, int takenEpoch) {
+		List<PreparedStatement> evicted = new ArrayList<PreparedStatement>(1);
+		synchronized (this) {
+			if (takenEpoch != epoch) {
+				evicted.add(st);
+			} else {
+				List<PreparedStatement> list = idle.get(key);
+				if (list == null) {
+					list = new ArrayList<PreparedStatement>(2);
+					idle.put(key, list);
+				}
+				list.add(st);
+				size++;
+				for (Iterator<List<PreparedStatement>> iter = idle.values().iterator(); size > capacity && iter.hasNext();) {
+					List<PreparedStatement> eldest = iter.next();
+					evicted.addAll(eldest);
+					size -= eldest.size();
+					iter.remove();
+				}
+			}
+		}
+		for (PreparedStatement old : evicted) {
+			DbUtils.close(old);
+		}
+	}
+
+	/**
+	 * 关闭全部缓存的Statement，在物理连接关闭或重连前调用
+	 */
+	void clear() {
+		List<PreparedStatement> all = new ArrayList<PreparedStatement>();
+		synchronized (this) {
+			for (List<PreparedStatement> list : idle.values()) {
+				all.addAll(list);
+			}
+			idle.clear();
+			size = 0;
+			epoch++;
+		}
+		for (PreparedStatement st : all) {
+			DbUtils.close(st);
+		}
+	}
+
+	synchronized int size() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "statements:" + size() + "/" + capacity;
+	}
+
+	/**
+	 * 缓存的Key。所有影响prepareStatement()结果的参数都参与比较
+	 */
+	static final class Key {
+		private final String sql;
+		private final int resultSetType;
+		private final int resultSetConcurrency;
+		private final int resultSetHoldability;
+		private final int autoGeneratedKeys;
+		private final int[] columnIndexes;
+		private final String[] columnNames;
+		private final int hash;
+
+		Key(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability, int autoGeneratedKeys, int[] columnIndexes, String[] columnNames) {
+			this.sql = sql;
+			this.resultSetType = resultSetType;
+			this.resultSetConcurrency = resultSetConcurrency;
+			this.resultSetHoldability = resultSetHoldability;
+			this.autoGeneratedKeys = autoGeneratedKeys;
+			this.columnIndexes = columnIndexes;
+			this.columnNames = columnNames;
+			int h = sql.hashCode();
+			h = h * 31 + resultSetType;
+			h = h * 31 + resultSetConcurrency;
+			h = h * 31 + resultSetHoldability;
+			h = h * 31 + autoGeneratedKeys;
+			h = h * 31 + Arrays.hashCode(columnIndexes);
+			h = h * 31 + Arrays.hashCode(columnNames);
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key o = (Key) obj;
+			return hash == o.hash && sql.equals(o.sql) && resultSetType == o.resultSetType && resultSetConcurrency == o.resultSetConcurrency && resultSetHoldability == o.resultSetHoldability
+					&& autoGeneratedKeys == o.autoGeneratedKeys && Arrays.equals(columnIndexes, o.columnIndexes) && Arrays.equals(columnNames, o.columnNames);
+		}
+
+		@Override
+		public String toString() {
+			return sql;
+		}
+	}
+}
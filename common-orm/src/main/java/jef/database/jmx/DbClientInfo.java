@@ -1,6 +1,7 @@
 package jef.database.jmx;
 
 import jef.database.DbClient;
+import jef.database.cache.KeyDimension;
 import jef.database.jpa.JefEntityManagerFactory;
 
 import org.apache.commons.lang.StringUtils;
@@ -44,4 +45,20 @@ public class DbClientInfo implements DbClientInfoMBean {
 	public void clearGlobalCache() {
 		db.flush();
 	}
+
+	public String getCacheKeyParseStatics() {
+		return KeyDimension.getParseCacheStatics();
+	}
+
+	public String getSqlPlanCacheStatics() {
+		return db.getSqlPlanCacheStatics();
+	}
+
+	public String getWriteSqlCacheStatics() {
+		return db.getWriteSqlCacheStatics();
+	}
+
+	public String getSequenceStatics() {
+		return db.getSequenceStatics();
+	}
 }
@@ -40,4 +40,24 @@ public interface DbClientInfoMBean {
 	 * 清理全局缓存
 	 */
 	void clearGlobalCache();
+	/**
+	 * 得到缓存维度解析的命中统计
+	 * @return
+	 */
+	String getCacheKeyParseStatics();
+	/**
+	 * 得到单表查询SQL缓存的命中统计
+	 * @return
+	 */
+	String getSqlPlanCacheStatics();
+	/**
+	 * 得到insert/update语句SQL缓存的命中统计
+	 * @return
+	 */
+	String getWriteSqlCacheStatics();
+	/**
+	 * 得到各个Sequence当前每次获取的数量和获取耗时
+	 * @return
+	 */
+	String getSequenceStatics();
 }
@@ -0,0 +1,882 @@
+package jef.database.jsqlparser.parser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jef.database.jsqlparser.expression.BinaryExpression;
+import jef.database.jsqlparser.expression.Column;
+import jef.database.jsqlparser.expression.DoubleValue;
+import jef.database.jsqlparser.expression.JdbcParameter;
+import jef.database.jsqlparser.expression.JpqlParameter;
+import jef.database.jsqlparser.expression.LongValue;
+import jef.database.jsqlparser.expression.NullValue;
+import jef.database.jsqlparser.expression.Parenthesis;
+import jef.database.jsqlparser.expression.StringValue;
+import jef.database.jsqlparser.expression.Table;
+import jef.database.jsqlparser.expression.operators.conditional.AndExpression;
+import jef.database.jsqlparser.expression.operators.conditional.OrExpression;
+import jef.database.jsqlparser.expression.operators.relational.Between;
+import jef.database.jsqlparser.expression.operators.relational.EqualsTo;
+import jef.database.jsqlparser.expression.operators.relational.ExpressionList;
+import jef.database.jsqlparser.expression.operators.relational.GreaterThan;
+import jef.database.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import jef.database.jsqlparser.expression.operators.relational.InExpression;
+import jef.database.jsqlparser.expression.operators.relational.IsNullExpression;
+import jef.database.jsqlparser.expression.operators.relational.LikeExpression;
+import jef.database.jsqlparser.expression.operators.relational.MinorThan;
+import jef.database.jsqlparser.expression.operators.relational.MinorThanEquals;
+import jef.database.jsqlparser.expression.operators.relational.NotEqualsTo;
+import jef.database.jsqlparser.statement.delete.Delete;
+import jef.database.jsqlparser.statement.insert.Insert;
+import jef.database.jsqlparser.statement.select.AllColumns;
+import jef.database.jsqlparser.statement.select.AllTableColumns;
+import jef.database.jsqlparser.statement.select.Distinct;
+import jef.database.jsqlparser.statement.select.OrderBy;
+import jef.database.jsqlparser.statement.select.OrderByElement;
+import jef.database.jsqlparser.statement.select.PlainSelect;
+import jef.database.jsqlparser.statement.select.Select;
+import jef.database.jsqlparser.statement.select.SelectExpressionItem;
+import jef.database.jsqlparser.statement.update.Update;
+import jef.database.jsqlparser.visitor.Expression;
+import jef.database.jsqlparser.visitor.SelectItem;
+import jef.database.jsqlparser.visitor.Statement;
+
+/**
+ * 简单SQL语句的快速解析器。
+ * <p>
+ * 绝大多数SQL语句都是单表的增删改查，用JavaCC生成的{@link StSqlParser}/{@link JpqlParser}解析时，
+ * 大部分时间花在{@link SimpleCharStream}的逐字符读取、Token对象的创建和多层的语法预读上。
+ * 本类直接在字符数组上做词法分析，用递归下降的方式识别以下常见的语句，生成与JavaCC解析器完全相同的语法树：
+ * <ul>
+ * <li>SELECT [DISTINCT] 列|*|t.* FROM 表 [别名] [WHERE 条件] [ORDER BY 列 [ASC|DESC]]</li>
+ * <li>INSERT [INTO] 表 [(列...)] VALUES (值...)</li>
+ * <li>UPDATE 表 [别名] SET 列=值... [WHERE 条件]</li>
+ * <li>DELETE [FROM] 表 [别名] [WHERE 条件]</li>
+ * </ul>
+ * 条件中支持AND/OR/NOT、括号、比较运算、IN列表、BETWEEN、LIKE、IS NULL；值只能是列、常量和绑定变量。
+ * 遇到函数、运算表达式、子查询、连接、注释(Hint)等任何不认识的写法时都返回null，由调用者改用JavaCC解析器解析。
+ *
+ * @author jiyi
+ *
+ */
+public final class SimpleSqlParser {
+	/**
+	 * 两个解析器中的关键字，不能作为表名、列名使用
+	 */
+	private static final Map<String, String> KEYWORDS = new HashMap<String, String>();
+	/**
+	 * Jpql中可以作为参数名的关键字
+	 */
+	private static final String[] JPQL_PARAM_KEYWORDS = { "START", "OVER", "LAST", "WITH" };
+
+	static {
+		String[] keywords = { "AS", "BY", "DO", "IS", "IN", "OR", "ON", "ALL", "AND", "ANY", "NOT", "SET", "ASC", "TOP", "END", "DESC", "INTO", "NULL", "LIKE", "DROP", "JOIN", "LEFT", "FROM", "OPEN", "CASE", "WHEN", "THEN", "ELSE", "SOME", "FULL", "WITH", "TABLE", "WHERE", "USING", "UNION", "GROUP", "BEGIN", "INDEX", "INNER", "LIMIT", "OUTER", "ORDER", "PARTITION", "RIGHT", "DELETE", "CREATE", "SELECT", "OFFSET", "EXISTS", "HAVING", "INSERT", "UPDATE", "VALUES", "ESCAPE", "NATURAL", "REPLACE", "BETWEEN", "TRUNCATE", "DISTINCT", "INTERSECT", "CONNECT", "PRIOR", "START", "INTERVAL", "NULLS", "LAST", "OVER", "SQL" };
+		for (String s : keywords) {
+			KEYWORDS.put(s, s);
+		}
+	}
+
+	// 词法单元的类型，单个字符的符号直接用字符本身表示
+	private static final int EOF = -1;
+	private static final int NAME = -2;
+	private static final int QUOTED_NAME = -3;
+	private static final int STRING = -4;
+	private static final int INTEGER = -5;
+	private static final int DOUBLE = -6;
+	private static final int JDBC_PARAM = -7;
+	private static final int INDEX_PARAM = -8;
+	private static final int NAMED_PARAM = -9;
+	private static final int NE = -10;
+	private static final int LE = -11;
+	private static final int GE = -12;
+
+	/**
+	 * 遇到不支持的写法
+	 */
+	private static final class Unsupported extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		static final Unsupported INSTANCE = new Unsupported();
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+
+	private final char[] buf;
+	private final boolean jpql;
+	private int pos;
+
+	// 当前的词法单元
+	private int type;
+	private int start;
+	private int end;
+	private String keyword;
+
+	private SimpleSqlParser(String sql, boolean jpql) {
+		this.buf = sql.toCharArray();
+		this.jpql = jpql;
+		next();
+	}
+
+	/**
+	 * 解析SQL语句
+	 *
+	 * @param sql
+	 * @param jpql
+	 *            true按{@link JpqlParser}的语法（支持?1 :name形式的参数），false按{@link StSqlParser}的语法
+	 * @return 不支持的语句返回null
+	 */
+	public static Statement parse(String sql, boolean jpql) {
+		try {
+			SimpleSqlParser parser = new SimpleSqlParser(sql, jpql);
+			Statement st = parser.statement();
+			if (parser.type == ';') {
+				parser.next();
+			}
+			parser.expect(EOF);
+			return st;
+		} catch (Unsupported e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 解析WHERE条件，相当于{@link StSqlParser#WhereClause()}
+	 *
+	 * @param where
+	 *            以WHERE开头的条件语句
+	 * @return 不支持的语句返回null
+	 */
+	public static Expression parseWhereClause(String where) {
+		try {
+			SimpleSqlParser parser = new SimpleSqlParser(where, false);
+			parser.expectKeyword("WHERE");
+			Expression exp = parser.or();
+			parser.expect(EOF);
+			return exp;
+		} catch (Unsupported e) {
+			return null;
+		}
+	}
+
+	private Statement statement() {
+		if (keyword == "SELECT") {
+			return select();
+		} else if (keyword == "INSERT") {
+			return insert();
+		} else if (keyword == "UPDATE") {
+			return update();
+		} else if (keyword == "DELETE") {
+			return delete();
+		}
+		throw Unsupported.INSTANCE;
+	}
+
+	private Select select() {
+		next();
+		PlainSelect plainSelect = new PlainSelect();
+		if (isKeyword("DISTINCT")) {
+			next();
+			plainSelect.setDistinct(new Distinct());
+		}
+		List<SelectItem> items = new ArrayList<SelectItem>();
+		items.add(selectItem());
+		while (type == ',') {
+			next();
+			items.add(selectItem());
+		}
+		if (isKeyword("FROM")) {
+			next();
+			plainSelect.setFromItem(tableWithAlias());
+			if (isKeyword("WHERE")) {
+				next();
+				plainSelect.setWhere(or());
+			}
+			if (isKeyword("ORDER")) {
+				next();
+				expectKeyword("BY");
+				plainSelect.setOrderBy(orderBy());
+			}
+		}
+		plainSelect.setSelectItems(items);
+		Select select = new Select();
+		select.setSelectBody(plainSelect);
+		return select;
+	}
+
+	private SelectItem selectItem() {
+		if (type == '*') {
+			next();
+			return new AllColumns();
+		}
+		// t.* 或 schema.t.*
+		int mark = mark();
+		if (isName()) {
+			String name1 = name();
+			if (type == '.') {
+				next();
+				if (type == '*') {
+					next();
+					return new AllTableColumns(new Table(null, name1));
+				}
+				if (isName()) {
+					String name2 = name();
+					if (type == '.') {
+						next();
+						if (type == '*') {
+							next();
+							return new AllTableColumns(new Table(name1, name2));
+						}
+					}
+				}
+			}
+			reset(mark);
+		}
+		SelectExpressionItem item = new SelectExpressionItem();
+		item.setExpression(operand());
+		String alias = alias();
+		if (alias != null) {
+			item.setAlias(alias);
+		}
+		return item;
+	}
+
+	private Insert insert() {
+		next();
+		Insert insert = new Insert();
+		if (isKeyword("INTO")) {
+			next();
+		}
+		Table table = table();
+		List<Column> columns = new ArrayList<Column>();
+		if (type == '(') {
+			next();
+			columns.add(column());
+			while (type == ',') {
+				next();
+				columns.add(column());
+			}
+			expect(')');
+		}
+		expectKeyword("VALUES");
+		expect('(');
+		List<Expression> values = new ArrayList<Expression>();
+		values.add(operand());
+		while (type == ',') {
+			next();
+			values.add(operand());
+		}
+		expect(')');
+		insert.setItemsList(new ExpressionList(values));
+		insert.setTable(table);
+		if (columns.size() > 0) {
+			insert.setColumns(columns);
+		}
+		return insert;
+	}
+
+	private Update update() {
+		next();
+		Update update = new Update();
+		Table table = tableWithAlias();
+		expectKeyword("SET");
+		do {
+			Column column = column();
+			expect('=');
+			update.addSet(column, operand());
+			if (type != ',') {
+				break;
+			}
+			next();
+		} while (true);
+		if (isKeyword("WHERE")) {
+			next();
+			update.setWhere(or());
+		}
+		update.setTable(table);
+		return update;
+	}
+
+	private Delete delete() {
+		next();
+		Delete delete = new Delete();
+		String alias = null;
+		if (isKeyword("FROM")) {
+			next();
+		} else if (isName()) {
+			// DELETE alias FROM table
+			int mark = mark();
+			String name = name();
+			if (isKeyword("FROM")) {
+				next();
+				alias = name;
+			} else {
+				reset(mark);
+			}
+		}
+		Table table = tableWithAlias();
+		if (isKeyword("WHERE")) {
+			next();
+			delete.setWhere(or());
+		}
+		delete.setAlias(alias);
+		delete.setTable(table);
+		return delete;
+	}
+
+	private OrderBy orderBy() {
+		OrderBy orderBy = new OrderBy();
+		do {
+			OrderByElement element = new OrderByElement();
+			Expression exp = operand();
+			if (isKeyword("ASC")) {
+				next();
+			} else if (isKeyword("DESC")) {
+				next();
+				element.setAsc(false);
+			}
+			element.setExpression(exp);
+			orderBy.add(element);
+			if (type != ',') {
+				break;
+			}
+			next();
+		} while (true);
+		return orderBy;
+	}
+
+	private Table tableWithAlias() {
+		Table table = table();
+		String alias = alias();
+		if (alias != null) {
+			table.setAlias(alias);
+		}
+		return table;
+	}
+
+	private Table table() {
+		String name1 = name();
+		if (type == '.') {
+			next();
+			return new Table(name1, name());
+		}
+		return new Table(null, name1);
+	}
+
+	private String alias() {
+		if (isKeyword("AS")) {
+			next();
+			return name();
+		}
+		return isName() ? name() : null;
+	}
+
+	private Column column() {
+		String name1 = name();
+		if (type != '.') {
+			return new Column(null, name1);
+		}
+		next();
+		String name2 = name();
+		if (type != '.') {
+			return new Column(name1, name2);
+		}
+		next();
+		return new Column(name1, name2, name());
+	}
+
+	/*
+	 * OR连接的条件
+	 */
+	private Expression or() {
+		Expression left = and();
+		while (isKeyword("OR")) {
+			next();
+			left = new OrExpression(left, and());
+		}
+		return left;
+	}
+
+	/*
+	 * AND连接的条件
+	 */
+	private Expression and() {
+		Expression left = condition();
+		while (isKeyword("AND")) {
+			next();
+			left = new AndExpression(left, condition());
+		}
+		return left;
+	}
+
+	private Expression condition() {
+		boolean not = false;
+		if (isKeyword("NOT")) {
+			next();
+			not = true;
+		}
+		if (type == '(') {
+			// 括号中只能是条件，(a)=1 (a+1)>2 之类的写法由JavaCC解析
+			next();
+			Parenthesis p = new Parenthesis(or());
+			expect(')');
+			if (type != EOF && type != ')' && type != ';' && !isKeyword("AND") && !isKeyword("OR") && !isKeyword("ORDER")) {
+				throw Unsupported.INSTANCE;
+			}
+			if (not) {
+				p.setNot();
+			}
+			return p;
+		}
+		Expression left = operand();
+		BinaryExpression regCond = comparison();
+		if (regCond != null) {
+			next();
+			regCond.setLeftExpression(left);
+			regCond.setRightExpression(operand());
+			if (not) {
+				regCond.setNot();
+			}
+			return regCond;
+		}
+		if (not) {
+			throw Unsupported.INSTANCE;
+		}
+		if (isKeyword("IS")) {
+			next();
+			IsNullExpression result = new IsNullExpression();
+			if (isKeyword("NOT")) {
+				next();
+				result.setNot(true);
+			}
+			expectKeyword("NULL");
+			result.setLeftExpression(left);
+			return result;
+		}
+		if (isKeyword("NOT")) {
+			next();
+			not = true;
+		}
+		if (isKeyword("IN")) {
+			next();
+			expect('(');
+			List<Expression> values = new ArrayList<Expression>();
+			values.add(operand());
+			while (type == ',') {
+				next();
+				values.add(operand());
+			}
+			expect(')');
+			InExpression result = new InExpression();
+			if (not) {
+				result.setNot(true);
+			}
+			List<Expression> leftExpression = new ArrayList<Expression>(1);
+			leftExpression.add(left);
+			ExpressionList itemsList = new ExpressionList();
+			itemsList.setExpressions(values);
+			result.setLeftExpression(leftExpression);
+			result.setItemsList(itemsList);
+			return result;
+		} else if (isKeyword("BETWEEN")) {
+			next();
+			Between result = new Between();
+			if (not) {
+				result.setNot(true);
+			}
+			Expression from = operand();
+			expectKeyword("AND");
+			result.setLeftExpression(left);
+			result.setBetweenExpressionStart(from);
+			result.setBetweenExpressionEnd(operand());
+			return result;
+		} else if (isKeyword("LIKE")) {
+			next();
+			LikeExpression result = new LikeExpression();
+			if (not) {
+				result.setNot(true);
+			}
+			Expression right = operand();
+			if (isKeyword("ESCAPE")) {
+				next();
+				if (type != STRING) {
+					throw Unsupported.INSTANCE;
+				}
+				result.setEscape(new StringValue(text()).getValue());
+				next();
+			}
+			result.setLeftExpression(left);
+			result.setRightExpression(right);
+			return result;
+		}
+		throw Unsupported.INSTANCE;
+	}
+
+	private BinaryExpression comparison() {
+		switch (type) {
+		case '=':
+			return new EqualsTo();
+		case '>':
+			return new GreaterThan();
+		case '<':
+			return new MinorThan();
+		case GE:
+			return new GreaterThanEquals();
+		case LE:
+			return new MinorThanEquals();
+		case NE:
+			return new NotEqualsTo();
+		default:
+			return null;
+		}
+	}
+
+	/*
+	 * 列、常量或绑定变量，不支持任何运算
+	 */
+	private Expression operand() {
+		Expression result;
+		switch (type) {
+		case NAME:
+		case QUOTED_NAME:
+			if (keyword != null) {
+				if (keyword != "NULL") {
+					throw Unsupported.INSTANCE;
+				}
+				next();
+				return NullValue.getInstance();
+			}
+			String name1 = name();
+			if (type == '(') {
+				throw Unsupported.INSTANCE;
+			}
+			if (type != '.') {
+				return Column.getExpression(name1);
+			}
+			next();
+			String name2 = name();
+			if (type == '.') {
+				next();
+				result = new Column(name1, name2, name());
+			} else {
+				result = new Column(name1, name2);
+			}
+			if (type == '(') {
+				throw Unsupported.INSTANCE;
+			}
+			return result;
+		case STRING:
+			result = new StringValue(text());
+			break;
+		case INTEGER:
+			checkLong();
+			result = new LongValue(text());
+			break;
+		case DOUBLE:
+			result = new DoubleValue(text());
+			break;
+		case JDBC_PARAM:
+			result = new JdbcParameter();
+			break;
+		case INDEX_PARAM:
+			result = new JpqlParameter(text(), true, null);
+			break;
+		case NAMED_PARAM:
+			result = new JpqlParameter(text(), false, null);
+			break;
+		case '+':
+		case '-':
+			// 带符号的数字
+			String sign = type == '-' ? "-" : "";
+			next();
+			if (type == INTEGER) {
+				checkLong();
+				result = new LongValue(sign + text());
+			} else if (type == DOUBLE) {
+				result = new DoubleValue(sign + text());
+			} else {
+				throw Unsupported.INSTANCE;
+			}
+			break;
+		default:
+			throw Unsupported.INSTANCE;
+		}
+		next();
+		return result;
+	}
+
+	/*
+	 * 超出long范围的数字由JavaCC解析器报错
+	 */
+	private void checkLong() {
+		if (end - start > 18) {
+			throw Unsupported.INSTANCE;
+		}
+	}
+
+	private boolean isName() {
+		return (type == NAME && keyword == null) || type == QUOTED_NAME;
+	}
+
+	private String name() {
+		if (!isName()) {
+			throw Unsupported.INSTANCE;
+		}
+		String name = text();
+		next();
+		return name;
+	}
+
+	private boolean isKeyword(String kw) {
+		return keyword == kw;
+	}
+
+	private void expectKeyword(String kw) {
+		if (keyword != kw) {
+			throw Unsupported.INSTANCE;
+		}
+		next();
+	}
+
+	private void expect(int t) {
+		if (type != t) {
+			throw Unsupported.INSTANCE;
+		}
+		if (t != EOF) {
+			next();
+		}
+	}
+
+	private String text() {
+		return new String(buf, start, end - start);
+	}
+
+	private int mark() {
+		return start;
+	}
+
+	private void reset(int mark) {
+		pos = mark;
+		next();
+	}
+
+	/*
+	 * 读取下一个词法单元
+	 */
+	private void next() {
+		char[] buf = this.buf;
+		int len = buf.length;
+		int i = pos;
+		while (i < len) {
+			char c = buf[i];
+			if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+				break;
+			}
+			i++;
+		}
+		keyword = null;
+		start = i;
+		if (i >= len) {
+			type = EOF;
+			end = pos = i;
+			return;
+		}
+		char c = buf[i];
+		if (isLetter(c)) {
+			i++;
+			while (i < len && (isLetter(buf[i]) || isDigit(buf[i]) || buf[i] == '$')) {
+				i++;
+			}
+			type = NAME;
+			int length = i - start;
+			if (length > 1 && length < 10) {
+				keyword = KEYWORDS.get(new String(buf, start, length).toUpperCase());
+				if (keyword == "SQL" && !jpql) {// SQL只是Jpql中的关键字
+					keyword = null;
+				}
+			}
+		} else if (isDigit(c) || (c == '.' && i + 1 < len && isDigit(buf[i + 1]))) {
+			i = number(i);
+		} else if (c == '\'') {
+			// '...' 和 'it''s' 都是一个字符串
+			do {
+				i = indexOf('\'', i + 1);
+				i++;
+			} while (i < len && buf[i] == '\'');
+			type = STRING;
+		} else if (c == '"' || c == '`') {
+			for (i++; i < len && buf[i] != c; i++) {
+				if (buf[i] == '\r' || buf[i] == '\n') {
+					throw Unsupported.INSTANCE;
+				}
+			}
+			if (i >= len) {
+				throw Unsupported.INSTANCE;
+			}
+			i++;
+			type = QUOTED_NAME;
+		} else if (c == '?') {
+			i++;
+			if (!jpql) {
+				type = JDBC_PARAM;
+			} else {
+				// ?1
+				start = i;
+				while (i < len && isDigit(buf[i])) {
+					i++;
+				}
+				if (i == start) {
+					throw Unsupported.INSTANCE;
+				}
+				type = INDEX_PARAM;
+				checkParamType(i);
+			}
+		} else if (c == ':') {
+			// :name
+			if (!jpql) {
+				throw Unsupported.INSTANCE;
+			}
+			start = ++i;
+			if (i >= len || !isLetter(buf[i])) {
+				throw Unsupported.INSTANCE;
+			}
+			while (i < len && (isLetter(buf[i]) || isDigit(buf[i]) || buf[i] == '$')) {
+				i++;
+			}
+			String kw = KEYWORDS.get(new String(buf, start, i - start).toUpperCase());
+			if (kw != null && !isJpqlParamKeyword(kw)) {
+				throw Unsupported.INSTANCE;
+			}
+			type = NAMED_PARAM;
+			checkParamType(i);
+		} else if (c == '<') {
+			i++;
+			if (i < len && buf[i] == '>') {
+				i++;
+				type = NE;
+			} else if (i < len && buf[i] == '=') {
+				i++;
+				type = LE;
+			} else {
+				type = '<';
+			}
+		} else if (c == '>') {
+			i++;
+			if (i < len && buf[i] == '=') {
+				i++;
+				type = GE;
+			} else {
+				type = '>';
+			}
+		} else if (c == '!') {
+			if (i + 1 >= len || buf[i + 1] != '=') {
+				throw Unsupported.INSTANCE;
+			}
+			i += 2;
+			type = NE;
+		} else if (c == '-' && i + 1 < len && buf[i + 1] == '-') {
+			throw Unsupported.INSTANCE;// 注释
+		} else if (c == '(' || c == ')' || c == ',' || c == '.' || c == '*' || c == ';' || c == '=' || c == '+' || c == '-') {
+			i++;
+			type = c;
+		} else {
+			// 注释、Hint、运算符、其他字符
+			throw Unsupported.INSTANCE;
+		}
+		end = pos = i;
+	}
+
+	/*
+	 * 数字，规则与JavaCC解析器中的S_INTEGER和S_DOUBLE相同
+	 */
+	private int number(int i) {
+		char[] buf = this.buf;
+		int len = buf.length;
+		boolean isDouble = false;
+		while (i < len && isDigit(buf[i])) {
+			i++;
+		}
+		if (i < len && buf[i] == '.') {
+			if (i + 1 < len && isDigit(buf[i + 1])) {
+				i++;
+				while (i < len && isDigit(buf[i])) {
+					i++;
+				}
+				isDouble = true;
+			} else if (exponent(i + 1) > 0 && i > start) {
+				i++;
+			} else {
+				throw Unsupported.INSTANCE;
+			}
+		}
+		int exp = exponent(i);
+		if (exp > 0) {
+			i = exp;
+			isDouble = true;
+		}
+		type = isDouble ? DOUBLE : INTEGER;
+		return i;
+	}
+
+	/*
+	 * 指数部分的结束位置，不是指数时返回-1
+	 */
+	private int exponent(int i) {
+		char[] buf = this.buf;
+		int len = buf.length;
+		if (i >= len || (buf[i] != 'e' && buf[i] != 'E')) {
+			return -1;
+		}
+		i++;
+		if (i < len && (buf[i] == '+' || buf[i] == '-')) {
+			i++;
+		}
+		int digits = i;
+		while (i < len && isDigit(buf[i])) {
+			i++;
+		}
+		return i > digits ? i : -1;
+	}
+
+	/*
+	 * ?1<int> :name<sql> 这类带类型的参数由JavaCC解析
+	 */
+	private void checkParamType(int i) {
+		char[] buf = this.buf;
+		while (i < buf.length && (buf[i] == ' ' || buf[i] == '\t' || buf[i] == '\r' || buf[i] == '\n')) {
+			i++;
+		}
+		if (i < buf.length && buf[i] == '<') {
+			throw Unsupported.INSTANCE;
+		}
+	}
+
+	private int indexOf(char c, int from) {
+		for (int i = from; i < buf.length; i++) {
+			if (buf[i] == c) {
+				return i;
+			}
+		}
+		throw Unsupported.INSTANCE;
+	}
+
+	private static boolean isJpqlParamKeyword(String kw) {
+		for (String s : JPQL_PARAM_KEYWORDS) {
+			if (s == kw) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isLetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+}
@@ -3,7 +3,9 @@ package jef.database.meta;
 import java.sql.SQLException;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.persistence.PersistenceException;
 
@@ -20,13 +22,73 @@ import jef.tools.StringUtils;
 
 /**
  * Sequence实现的抽象类
+ * <p>
+ * 从数据库取到的值以号段[from,to]的形式缓存，{@link #next()}在当前号段上原子递增分配，不加锁也不为每个值创建对象。
+ * 号段用完时只有一个线程去数据库获取，其他线程等待其结果；当前号段剩余的值低于{@link DbCfg#SEQUENCE_PREFETCH_PERCENT}时，
+ * 在后台线程中预取下一批，使插入操作一般不必等待数据库。
+ * <p>
+ * 开启{@link DbCfg#SEQUENCE_ADAPTIVE}时，每次获取的数量按两次获取的间隔在上下限之间加倍或减半，使每批值大约能用
+ * {@link DbCfg#SEQUENCE_ADAPTIVE_INTERVAL}秒。该功能默认关闭，配置了{@link DbCfg#SEQUENCE_BATCH_SIZE}时也不生效。
  * 
  * @author jiyi
  * 
  */
 public abstract class AbstractSequence implements Sequence {
-	private int cacheSize;
-	protected final Queue<Long> cache = new ConcurrentLinkedQueue<Long>(); 
+	private static final int PREFETCH_PERCENT = JefConfiguration.getInt(DbCfg.SEQUENCE_PREFETCH_PERCENT, 20);
+	private static final boolean ADAPTIVE = JefConfiguration.getBoolean(DbCfg.SEQUENCE_ADAPTIVE, false) && StringUtils.isEmpty(JefConfiguration.get(DbCfg.SEQUENCE_BATCH_SIZE));
+	private static final long ADAPTIVE_INTERVAL = JefConfiguration.getInt(DbCfg.SEQUENCE_ADAPTIVE_INTERVAL, 10) * 1000000000L;
+	private static final int MIN_SIZE = Math.max(1, JefConfiguration.getInt(DbCfg.SEQUENCE_BATCH_SIZE_MIN, 1));
+	private static final int MAX_SIZE = Math.max(MIN_SIZE, JefConfiguration.getInt(DbCfg.SEQUENCE_BATCH_SIZE_MAX, 5000));
+
+	private volatile int cacheSize;
+	/**
+	 * 是否按消耗速度调整每次获取的数量
+	 */
+	private volatile boolean adaptive = ADAPTIVE;
+	/**
+	 * 上次从数据库获取的时间(System.nanoTime)，0表示还未获取过
+	 */
+	private long lastFetch;
+	/**
+	 * 从数据库获取的次数
+	 */
+	private final AtomicLong fetchCount = new AtomicLong();
+	/**
+	 * 最近一次从数据库获取的耗时(纳秒)
+	 */
+	private volatile long fetchLatency;
+	/**
+	 * 正在分配的号段
+	 */
+	private volatile Range current;
+	/**
+	 * 已经取到、尚未开始分配的号段
+	 */
+	private final Queue<Range> ranges = new ConcurrentLinkedQueue<Range>();
+	/**
+	 * 通过{@link #pushBack(long)}归还的值，优先分配
+	 */
+	private final Queue<Long> returned = new ConcurrentLinkedQueue<Long>();
+	/**
+	 * 本次获取中正在合并的号段，持有锁时才能访问
+	 */
+	private Range building;
+	private final AtomicBoolean prefetching = new AtomicBoolean();
+	private final Runnable prefetchTask = new Runnable() {
+		public void run() {
+			try {
+				synchronized (AbstractSequence.this) {
+					if (ranges.isEmpty()) {
+						fetch();
+					}
+				}
+			} catch (Throwable e) {
+				LogUtil.warn("Sequence [" + getName() + "] prefetch error.", e);
+			} finally {
+				prefetching.set(false);
+			}
+		}
+	};
 
 	// 需要初始化
 	protected String dbKey;
@@ -51,6 +113,8 @@ public abstract class AbstractSequence implements Sequence {
 				initSuccess=doInit(session,dbKey);
 			}catch(SQLException e){
 				LogUtil.warn("Sequence Implementation creating error.", e);
+			}finally{
+				flushRange();
 			}
 		}
 	}
@@ -67,14 +131,53 @@ public abstract class AbstractSequence implements Sequence {
 	 * @param key
 	 */
 	public void pushBack(long key) {
-		cache.add(key);
+		returned.add(key);
 	}
 
 	public long next() {
-		Long value = cache.poll();
-		if (value != null){
-			return value;
+		if (!returned.isEmpty()) {
+			Long value = returned.poll();
+			if (value != null) {
+				return value;
+			}
+		}
+		while (true) {
+			Range range = current;
+			if (range != null) {
+				long value = range.next.getAndIncrement();
+				if (value <= range.to) {
+					if (value == range.prefetchAt) {
+						prefetch();
+					}
+					return value;
+				}
+			}
+			refill(range);
+		}
+	}
+
+	/*
+	 * 当前号段用完后切换到下一个号段，没有已取到的号段时同步获取。其他线程已经切换过时直接返回。
+	 */
+	private synchronized void refill(Range exhausted) {
+		if (current != exhausted) {
+			return;
+		}
+		Range range = ranges.poll();
+		if (range == null) {
+			fetch();
+			range = ranges.poll();
+			if (range == null) {
+				throw new PersistenceException("Sequence/Table [" + this.getName() + "] returns no value.");
+			}
 		}
+		current = range;
+	}
+
+	/*
+	 * 从数据库获取一批值放入号段队列，调用时必须持有锁
+	 */
+	private void fetch() {
 		try {
 			if(!initSuccess){
 				if(tryInitCount.get()<3){
@@ -86,35 +189,94 @@ public abstract class AbstractSequence implements Sequence {
 					throw new PersistenceException("Sequence/Table ["+this.getName()+"] is not exist, and there will be no attemp to create it.");	
 				}
 			}
-			return getFirstAndPushOthers(cacheSize, session, dbKey);
+			long start = System.nanoTime();
+			if (adaptive && lastFetch > 0) {
+				adjustCacheSize(start - lastFetch);
+			}
+			lastFetch = start;
+			fetchRanges(cacheSize, session, dbKey);
+			fetchLatency = System.nanoTime() - start;
+			fetchCount.incrementAndGet();
 		} catch (SQLException e) {
 			throw DbUtils.toRuntimeException(e);
+		} finally {
+			flushRange();
 		}
 	}
 
-	public void clear() {
-		cache.clear();
+	/*
+	 * 上一批值用完得太快时加倍，太慢时减半。上限按值的个数(获取数量×步长)计算
+	 */
+	private void adjustCacheSize(long elapsed) {
+		int size = cacheSize;
+		if (elapsed < ADAPTIVE_INTERVAL / 2) {
+			int max = Math.max(MIN_SIZE, MAX_SIZE / getFetchStep());
+			if (size < max) {
+				size = Math.min(max, size * 2);
+			}
+		} else if (elapsed > ADAPTIVE_INTERVAL * 2) {
+			size = Math.max(MIN_SIZE, size / 2);
+		}
+		cacheSize = size;
 	}
 
 	/**
+	 * 获取数量中的每一个单位对应多少个值。原生Sequence每查询一次得到步长个值，其他实现为1
 	 * 
-	 * @param size
-	 *            要生成的ID数量
-	 * @param conn
 	 * @return
+	 */
+	protected int getFetchStep() {
+		return 1;
+	}
+
+	private void prefetch() {
+		if (PREFETCH_PERCENT > 0 && ranges.isEmpty() && prefetching.compareAndSet(false, true)) {
+			DbUtils.es.execute(prefetchTask);
+		}
+	}
+
+	public synchronized void clear() {
+		current = null;
+		building = null;
+		ranges.clear();
+		returned.clear();
+	}
+
+	/**
+	 * 从数据库获取一批值，通过{@link #pushRange(long, long)}放入缓存。调用时已持有锁，同一时刻只有一个线程在获取。
+	 * 
+	 * @param size
+	 *            要获取的批数
+	 * @param client
+	 * @param dbKey
 	 * @throws SQLException
 	 */
-	protected abstract long getFirstAndPushOthers(int size, DbClient client, String dbKey) throws SQLException;
+	protected abstract void fetchRanges(int size, DbClient client, String dbKey) throws SQLException;
 
 	/**
-	 * 将从from 到 value的值全部加入缓存(含头含尾)
+	 * 将从from 到 value的值全部加入缓存(含头含尾)。和上一次加入的值连续时合并为一个号段。
 	 * 
 	 * @param from
 	 * @param value
 	 */
-	protected void pushRange(long from, long value) {
-		for (long i = from; i <= value; i++) {
-			cache.offer(i);
+	protected synchronized void pushRange(long from, long value) {
+		if (from > value) {
+			return;
+		}
+		if (building != null) {
+			if (building.to + 1 == from) {
+				building.to = value;
+				return;
+			}
+			ranges.offer(building.seal());
+		}
+		building = new Range(from, value);
+	}
+
+	private synchronized void flushRange() {
+		if (building != null) {
+			ranges.offer(building.seal());
+			building = null;
 		}
 	}
 
@@ -128,6 +290,52 @@ public abstract class AbstractSequence implements Sequence {
 		this.cacheSize = cacheSize;
 	}
 
+	/**
+	 * 是否按消耗速度自动调整每次获取的数量
+	 * 
+	 * @return
+	 * @see DbCfg#SEQUENCE_ADAPTIVE
+	 */
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
+	/**
+	 * 设置是否按消耗速度自动调整每次获取的数量
+	 * 
+	 * @param adaptive
+	 */
+	public void setAdaptive(boolean adaptive) {
+		this.adaptive = adaptive;
+	}
+
+	/**
+	 * 获得从数据库获取的次数
+	 * 
+	 * @return
+	 */
+	public long getFetchCount() {
+		return fetchCount.get();
+	}
+
+	/**
+	 * 获得最近一次从数据库获取的耗时
+	 * 
+	 * @return 毫秒
+	 */
+	public double getFetchLatency() {
+		return fetchLatency / 1000000d;
+	}
+
+	/**
+	 * 获得当前的获取数量和获取耗时，用于监控
+	 * 
+	 * @return
+	 */
+	public String getStatics() {
+		return String.format("size:%d fetch:%d latency:%.2fms", cacheSize, fetchCount.get(), getFetchLatency());
+	}
+
 	protected long caclStartValue(DbMetaData meta, String schema, String table, String column, int initValue, long max) throws SQLException {
 		long start = JefConfiguration.getInt(DbCfg.AUTO_SEQUENCE_OFFSET, -1);// 自动校准
 		if (start == -1) {
@@ -150,4 +358,27 @@ public abstract class AbstractSequence implements Sequence {
 		pushBack(next);
 		return maxInTable < next;
 	}
+
+	/**
+	 * 一段连续的值，在next上原子递增分配
+	 */
+	private static final class Range {
+		private final AtomicLong next;
+		private long to;
+		/**
+		 * 分配到这个值时开始预取下一批
+		 */
+		private long prefetchAt;
+
+		Range(long from, long to) {
+			this.next = new AtomicLong(from);
+			this.to = to;
+		}
+
+		Range seal() {
+			long size = to - next.get() + 1;
+			this.prefetchAt = to - size * PREFETCH_PERCENT / 100;
+			return this;
+		}
+	}
 }
@@ -21,6 +21,7 @@ import javax.persistence.TemporalType;
 
 import jef.database.DbUtils;
 import jef.database.annotation.Parameter;
+import jef.database.annotation.SnowflakeGeneration;
 import jef.database.dialect.ColumnType;
 import jef.database.dialect.TypeDefImpl;
 import jef.database.dialect.type.ColumnMapping;
@@ -123,6 +124,9 @@ public class ColumnTypeBuilder {
 
     private void init(Column col) {
         generatedValue = GenerateTypeDef.create(fieldProvider.getAnnotation(javax.persistence.GeneratedValue.class));
+        if (fieldProvider.getAnnotation(SnowflakeGeneration.class) != null && javaType != Long.class && javaType != Long.TYPE) {
+            throw new IllegalArgumentException("The @SnowflakeGeneration field " + fieldProvider.getDeclaringClass().getName() + "." + fieldProvider.getName() + " must be long/Long, but was " + javaType.getName());
+        }
         version = fieldProvider.getAnnotation(javax.persistence.Version.class) != null;
         lob = fieldProvider.getAnnotation(Lob.class) != null;
         if (col != null) {
@@ -86,7 +86,12 @@ public enum DbProperty {
 	/**
 	 * Drop Foreign key的语句模板
 	 */
-	DROP_FK_PATTERN
+	DROP_FK_PATTERN,
+	
+	/**
+	 * 单条语句中绑定变量的最大个数
+	 */
+	MAX_BIND_PARAMETERS
 	
 	//Derby支持一下函数来获得当前环境
 //	CURRENT ISOLATION
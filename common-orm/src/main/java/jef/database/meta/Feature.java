@@ -203,4 +203,12 @@ public enum Feature {
 	 * MYSQL语法，建表时语句在字段上直接加COMMENT语句
 	 */
 	SUPPORT_INLINE_COMMENT,
+	
+	/**
+	 * 支持一条insert语句插入多行 insert into t(a,b) values(?,?),(?,?)... 批量插入时可以改写为多行插入，减少语句执行次数。
+	 * 单条语句中的绑定变量数受{@link DbProperty#MAX_BIND_PARAMETERS}限制。
+	 * 多行插入时getGeneratedKeys()按插入顺序返回每一行的自增值。
+	 * (MySQL, Postgres)
+	 */
+	SUPPORT_MULTI_ROW_VALUES,
 }
@@ -8,4 +8,8 @@ package jef.database.query;
 public abstract class QueryHints {
 	public static final String START_LIMIT="start-limit";
 	public static final String FETCH_SIZE="fetch-size";
+	/**
+	 * 查询结果缓存的生存时间(秒)，需要启用二级缓存
+	 */
+	public static final String CACHE_EXPIRE="cache-expire";
 }
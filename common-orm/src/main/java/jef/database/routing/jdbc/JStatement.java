@@ -1,6 +1,5 @@
 package jef.database.routing.jdbc;
 
-import java.io.StringReader;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -13,8 +12,7 @@ import java.util.List;
 import jef.database.DbUtils;
 import jef.database.innerpool.JConnection;
 import jef.database.jdbc.GenerateKeyReturnOper;
-import jef.database.jsqlparser.parser.ParseException;
-import jef.database.jsqlparser.parser.StSqlParser;
+import jef.database.jdbc.JDBCTarget;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.slf4j.Logger;
@@ -314,13 +312,7 @@ public class JStatement implements java.sql.Statement {
 	 * 
 	 */
 	protected ResultSet executeQueryInternal(String sql, List<ParameterContext> params) throws SQLException {
-		jef.database.jsqlparser.visitor.Statement st = parse(sql);
-		SQLExecutor executor;
-		if (st == null) {
-			executor = new SimpleSQLExecutor(conn.get().selectTarget(null), sql);
-		} else {
-			executor = new RoutingSQLExecutor(conn.get(), st);
-		}
+		SQLExecutor executor = createExecutor(sql);
 		executor.setFetchSize(this.fetchSize);
 		executor.setMaxResults(this.maxRows);
 		executor.setQueryTimeout(this.queryTimeout);
@@ -329,13 +321,7 @@ public class JStatement implements java.sql.Statement {
 	}
 
 	protected int[] executeBatchInternal(String sql, GenerateKeyReturnOper oper, List<List<ParameterContext>> params) throws SQLException {
-		jef.database.jsqlparser.visitor.Statement st = parse(sql);
-		SQLExecutor se;
-		if (st == null) { // 无法解析，直接运行
-			se = new SimpleSQLExecutor(conn.get().selectTarget(null), sql);
-		} else {
-			se = new RoutingSQLExecutor(conn.get(), st);
-		}
+		SQLExecutor se = createExecutor(sql);
 		if (queryTimeout > 0)
 			se.setQueryTimeout(queryTimeout);
 		BatchReturn br = se.executeBatch(oper, params);
@@ -344,13 +330,7 @@ public class JStatement implements java.sql.Statement {
 	}
 
 	protected int executeUpdateInternal(String sql, GenerateKeyReturnOper oper, List<ParameterContext> params) throws SQLException {
-		jef.database.jsqlparser.visitor.Statement st = parse(sql);
-		SQLExecutor se;
-		if (st == null) { // 无法解析，直接运行
-			se = new SimpleSQLExecutor(conn.get().selectTarget(null), sql);
-		} else {
-			se = new RoutingSQLExecutor(conn.get(), st);
-		}
+		SQLExecutor se = createExecutor(sql);
 		if (queryTimeout > 0)
 			se.setQueryTimeout(queryTimeout);
 		this.updateReturn = se.executeUpdate(oper, params);
@@ -390,14 +370,16 @@ public class JStatement implements java.sql.Statement {
 		}
 	}
 
-	protected jef.database.jsqlparser.visitor.Statement parse(String sql) {
-		StSqlParser parser = new StSqlParser(new StringReader(sql));
-		try {
-			return parser.Statement();
-		} catch (ParseException e) {
-			log.error("Parse Error: {}", sql);
-			return null;
+	/*
+	 * 解析结果按SQL语句缓存，无法解析的语句直接运行
+	 */
+	protected SQLExecutor createExecutor(String sql) {
+		JDBCTarget target = conn.get().selectTarget(null);
+		ParsedSql parsed = ParsedSql.get(sql, target);
+		if (parsed.statement == null) {
+			return new SimpleSQLExecutor(target, sql);
 		}
+		return new RoutingSQLExecutor(target, parsed);
 	}
 
 	protected void checkClosed() throws SQLException {
@@ -0,0 +1,111 @@
+package jef.database.routing.jdbc;
+
+import java.util.Arrays;
+import java.util.List;
+
+import jef.database.DbCfg;
+import jef.database.DbUtils;
+import jef.database.jdbc.JDBCTarget;
+import jef.database.jsqlparser.RemovedDelayProcess;
+import jef.database.jsqlparser.SqlFunctionlocalization;
+import jef.database.jsqlparser.parser.ParseException;
+import jef.database.jsqlparser.visitor.Statement;
+import jef.database.routing.sql.SqlAnalyzer;
+import jef.database.routing.sql.TableMetaCollector;
+import jef.tools.JefConfiguration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * 路由JDBC层中解析并改写后的SQL语句。
+ * <p>
+ * 通过{@link JDataSource}执行的每条语句都要经过SQL解析、方言函数改写和表元数据查找才能确定路由。
+ * 同一条SQL在同一个数据库上得到的结果总是一样的，因此按SQL文本缓存这些结果，执行时只需按参数值计算路由。
+ * 语法树上与参数有关的状态都保存在线程变量中，同一个语法树可以被多个线程同时使用。
+ *
+ * @author jiyi
+ *
+ */
+final class ParsedSql {
+	private static final Logger log = LoggerFactory.getLogger(ParsedSql.class);
+
+	private static final Cache<List<Object>, ParsedSql> CACHE = CacheBuilder.newBuilder().maximumSize(JefConfiguration.getInt(DbCfg.DB_ROUTING_PARSE_CACHE_SIZE, 1000)).build();
+
+	/**
+	 * 改写后的语法树，无法解析时为null
+	 */
+	final Statement statement;
+	/**
+	 * 数据库不支持，需要在内存中处理的分页和递归查询
+	 */
+	final RemovedDelayProcess delays;
+	private volatile TableMetaCollector tables;
+
+	/**
+	 * 解析并按数据库方言改写语句
+	 *
+	 * @param st
+	 * @param db
+	 */
+	ParsedSql(Statement st, JDBCTarget db) {
+		this.statement = st;
+		if (st == null) {
+			this.delays = null;
+			return;
+		}
+		SqlFunctionlocalization l = new SqlFunctionlocalization(db.getProfile(), db);
+		st.accept(l);
+		if (l.delayLimit != null || l.delayStartWith != null) {
+			this.delays = new RemovedDelayProcess(l.delayLimit, l.delayStartWith);
+		} else {
+			this.delays = null;
+		}
+	}
+
+	/**
+	 * 得到解析后的语句
+	 *
+	 * @param sql
+	 * @param db
+	 * @return
+	 */
+	static ParsedSql get(String sql, JDBCTarget db) {
+		List<Object> key = Arrays.<Object> asList(sql, db.getProfile(), db.getDbkey());
+		ParsedSql result = CACHE.getIfPresent(key);
+		if (result == null) {
+			result = new ParsedSql(parse(sql), db);
+			CACHE.put(key, result);
+		}
+		return result;
+	}
+
+	private static Statement parse(String sql) {
+		try {
+			return DbUtils.parseNativeStatement(sql);
+		} catch (ParseException e) {
+			log.error("Parse Error: {}", sql);
+			return null;
+		}
+	}
+
+	/**
+	 * 得到语句中的表和对应的元数据。
+	 *
+	 * @return
+	 */
+	TableMetaCollector getTableMeta() {
+		TableMetaCollector collector = tables;
+		if (collector == null) {
+			collector = SqlAnalyzer.getTableMeta(statement);
+			// 对应的实体可能尚未注册，未找到元数据时下次重新查找
+			if (collector.get() != null) {
+				tables = collector;
+			}
+		}
+		return collector;
+	}
+}
@@ -11,8 +11,6 @@ import jef.database.ORMConfig;
 import jef.database.TransactionalSession;
 import jef.database.jdbc.GenerateKeyReturnOper;
 import jef.database.jdbc.JDBCTarget;
-import jef.database.jsqlparser.RemovedDelayProcess;
-import jef.database.jsqlparser.SqlFunctionlocalization;
 import jef.database.jsqlparser.expression.Table;
 import jef.database.jsqlparser.statement.select.Select;
 import jef.database.jsqlparser.visitor.Statement;
@@ -33,7 +31,7 @@ public class RoutingSQLExecutor implements SQLExecutor {
 	private int fetchSize = ORMConfig.getInstance().getGlobalFetchSize();
 	private int maxResult = 0;
 	private Statement st;
-	private SqlFunctionlocalization l;
+	private ParsedSql parsed;
 
 	/**
 	 * 从SQL语句加上返回类型构造
@@ -49,8 +47,19 @@ public class RoutingSQLExecutor implements SQLExecutor {
 
 		this.db = db.selectTarget(null);
 		this.st = sql;
-		l = new SqlFunctionlocalization(this.db.getProfile(), this.db);
-		sql.accept(l);
+		this.parsed = new ParsedSql(sql, this.db);
+	}
+
+	/**
+	 * 从缓存的解析结果构造
+	 * 
+	 * @param db
+	 * @param parsed
+	 */
+	RoutingSQLExecutor(JDBCTarget db, ParsedSql parsed) {
+		this.db = db;
+		this.st = parsed.statement;
+		this.parsed = parsed;
 	}
 
 	/**
@@ -80,16 +89,14 @@ public class RoutingSQLExecutor implements SQLExecutor {
 	 */
 	public ResultSet getResultSet(int type, int concurrency, int holder, List<ParameterContext> params) throws SQLException {
 		SqlAndParameter parse = getSqlAndParams(db, this, params);
-		QueryablePlan plan = SqlAnalyzer.getSelectExecutionPlan((Select) parse.statement, parse.getParamsMap(), parse.params, db);
+		QueryablePlan plan = SqlAnalyzer.getSelectExecutionPlan((Select) parse.statement, parsed.getTableMeta(), parse.getParamsMap(), parse.params, db);
 		return plan.getResultSet(parse, maxResult, fetchSize);
 	}
 
 	private SqlAndParameter getSqlAndParams(JDBCTarget db2, RoutingSQLExecutor jQuery, List<ParameterContext> params) {
 		ContextProvider cp = new ContextProvider(params);
 		SqlAndParameter sp = new SqlAndParameter(st, SqlAnalyzer.asValue(params), cp);
-		if (l.delayLimit != null || l.delayStartWith != null) {
-			sp.setInMemoryClause(new RemovedDelayProcess(l.delayLimit, l.delayStartWith));
-		}
+		sp.setInMemoryClause(parsed.delays);
 		return sp;
 	}
 
@@ -129,7 +136,7 @@ public class RoutingSQLExecutor implements SQLExecutor {
 		SqlAndParameter parse = getSqlAndParams(db, this, params);
 		Statement sql = parse.statement;
 
-		ExecuteablePlan plan = SqlAnalyzer.getExecutionPlan(sql, parse.getParamsMap(), parse.params, db);
+		ExecuteablePlan plan = SqlAnalyzer.getExecutionPlan(sql, parsed.getTableMeta(), parse.getParamsMap(), parse.params, db);
 		return plan.processUpdate(generateKeys);
 	}
 
@@ -161,7 +168,7 @@ public class RoutingSQLExecutor implements SQLExecutor {
 	// Batch的约束，每个语句必是单库单表查询
 	@Override
 	public BatchReturn executeBatch(GenerateKeyReturnOper generateKeys, List<List<ParameterContext>> params) throws SQLException {
-		TableMetaCollector collector = SqlAnalyzer.getTableMeta(st);
+		TableMetaCollector collector = parsed.getTableMeta();
 		if (collector.get() == null) {// 无需路由
 			return processBatch(null, null, params, collector, generateKeys);
 		}
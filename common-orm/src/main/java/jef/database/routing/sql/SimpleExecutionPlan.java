@@ -27,6 +27,7 @@ public class SimpleExecutionPlan implements ExecuteablePlan, QueryablePlan {
 	private List<Object> params;
 	private JDBCTarget db;
 	private String changeDataSource;
+	private String rawSql;
 
 	public String isChangeDatasource() {
 		return changeDataSource;
@@ -39,6 +40,17 @@ public class SimpleExecutionPlan implements ExecuteablePlan, QueryablePlan {
 		this.db = db;
 	}
 
+	/**
+	 * 直接执行已经应用了参数的语句
+	 * 
+	 * @param parse
+	 * @param db
+	 */
+	public SimpleExecutionPlan(SqlAndParameter parse, JDBCTarget db) {
+		this(parse.statement, parse.params, null, db);
+		this.rawSql = parse.getSql();
+	}
+
 	@Override
 	public String getSql(String table) {
 		return null;
@@ -50,7 +62,7 @@ public class SimpleExecutionPlan implements ExecuteablePlan, QueryablePlan {
 		if (changeDataSource != null) {
 			db = db.getTarget(changeDataSource);
 		}
-		return db.innerExecuteUpdate(sql.toString(), params, generateKeys);
+		return db.innerExecuteUpdate(rawSql == null ? sql.toString() : rawSql, params, generateKeys);
 	}
 
 	@Override
@@ -75,7 +87,7 @@ public class SimpleExecutionPlan implements ExecuteablePlan, QueryablePlan {
 			// Scenario 2: 普通查询 (变更数据源，垂直拆分场景)
 			db = db.getTarget(changeDataSource);
 		}
-		String s = processPage(parse, sql, sql.toString());
+		String s = processPage(parse, sql, parse.getSql());
 		return db.innerSelectBySql(s, AbstractResultSetTransformer.getRaw(fetchSize, maxRows), parse.params, parse);
 	}
 
@@ -86,7 +98,7 @@ public class SimpleExecutionPlan implements ExecuteablePlan, QueryablePlan {
 		if (changeDataSource != null) {
 			db = db.getTarget(changeDataSource);
 		}
-		String sql = paramHolder.statement.toString();
+		String sql = paramHolder.getSql();
 		long start = System.currentTimeMillis();
 		long total = db.innerSelectBySql(sql, ResultSetExtractor.COUNT_EXTRACTER, paramHolder.params, paramHolder);
 		total = (maxSize > 0 && maxSize < total) ? maxSize : total;
@@ -205,7 +217,7 @@ public class SimpleExecutionPlan implements ExecuteablePlan, QueryablePlan {
 		if (changeDataSource != null) {
 			db = db.getTarget(changeDataSource);
 		}
-		String rawSQL = sqlContext.statement.toString();
+		String rawSQL = sqlContext.getSql();
 		rawSQL = toPageSql(sqlContext, rawSQL, range);
 
 		return db.innerSelectBySql(rawSQL, extractor, sqlContext.params, sqlContext);
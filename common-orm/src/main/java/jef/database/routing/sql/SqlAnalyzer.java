@@ -6,6 +6,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -24,6 +25,7 @@ import jef.database.jsqlparser.expression.Column;
 import jef.database.jsqlparser.expression.JdbcParameter;
 import jef.database.jsqlparser.expression.JpqlParameter;
 import jef.database.jsqlparser.expression.Parenthesis;
+import jef.database.jsqlparser.expression.Table;
 import jef.database.jsqlparser.expression.operators.conditional.AndExpression;
 import jef.database.jsqlparser.expression.operators.conditional.OrExpression;
 import jef.database.jsqlparser.expression.operators.relational.Between;
@@ -79,8 +81,18 @@ public class SqlAnalyzer {
 	 * @return
 	 */
 	public static QueryablePlan getSelectExecutionPlan(Select sql,Map<Expression, Object>  params, List<Object> value, JDBCTarget db) {
-		TableMetaCollector collector = new TableMetaCollector();
-		sql.accept(collector);
+		return getSelectExecutionPlan(sql, getTableMeta(sql), params, value, db);
+	}
+
+	/**
+	 * 获得select语句的执行计划
+	 * @param sql AST of select
+	 * @param collector 语句中的表元数据，见{@link #getTableMeta(Statement)}
+	 * @param value 绑定变量值
+	 * @param db  数据库Session
+	 * @return
+	 */
+	public static QueryablePlan getSelectExecutionPlan(Select sql,TableMetaCollector collector,Map<Expression, Object>  params, List<Object> value, JDBCTarget db) {
 		if(collector.get()==null)return new SimpleExecutionPlan(sql, value, null, db);
 		
 		AbstractMetadata meta=collector.get();
@@ -115,6 +127,31 @@ public class SqlAnalyzer {
 		st.accept(collector);
 		return collector;
 	}
+
+	/**
+	 * 得到语句中引用的全部表名（大写，包括连接和子查询中的表）。
+	 * 带schema的表同时返回schema.表名和表名，和缓存的表空间一致。
+	 * @param st
+	 * @return
+	 */
+	public static List<String> getTableNames(Statement st){
+		final Set<String> tables = new LinkedHashSet<String>();
+		st.accept(new VisitorAdapter() {
+			@Override
+			public void visit(Table table) {
+				if (table.getName() == null)
+					return;
+				tables.add(toSpaceName(table.toWholeName()));
+				if (table.getSchemaName() != null)
+					tables.add(toSpaceName(table.getName()));
+			}
+		});
+		return new ArrayList<String>(tables);
+	}
+
+	private static String toSpaceName(String name) {
+		return StringUtils.upperCase(StringUtils.remove(StringUtils.remove(name, '"'), '`'));
+	}
 	
 	/**
 	 * 按每组参数计算路由结果，并按路由结果对Batch中的参数进行分组
@@ -144,8 +181,18 @@ public class SqlAnalyzer {
 	 * @return
 	 */
 	public static ExecuteablePlan getExecutionPlan(Statement sql,Map<Expression,Object> params, List<Object> value, JDBCTarget db) {
-		TableMetaCollector collector = new TableMetaCollector();
-		sql.accept(collector);
+		return getExecutionPlan(sql, getTableMeta(sql), params, value, db);
+	}
+
+	/**
+	 * 获得其他操作语句（Insert，Delete，Update语句的执行计划）
+	 * @param sql    AST of /Update/Delete/Insert
+	 * @param collector 语句中的表元数据，见{@link #getTableMeta(Statement)}
+	 * @param value  绑定变量值
+	 * @param db     数据库Session
+	 * @return
+	 */
+	public static ExecuteablePlan getExecutionPlan(Statement sql,TableMetaCollector collector,Map<Expression,Object> params, List<Object> value, JDBCTarget db) {
 		AbstractMetadata meta=collector.get();
 		if (meta == null) {
 			return new SimpleExecutionPlan(sql,value,null,db);
@@ -42,6 +42,7 @@ import com.alibaba.druid.proxy.jdbc.JdbcParameter;
 public class SqlAndParameter implements InMemoryOperateProvider {
 	public Statement statement;
 	public List<Object> params;
+	private String sql;
 	private ParameterProvider rawParams;
 	private Map<Expression, Object> paramsMap;
 	// 后处理
@@ -63,6 +64,37 @@ public class SqlAndParameter implements InMemoryOperateProvider {
 		paramsMap = SqlAnalyzer.reverse(st, params); // 参数对应关系还原
 	}
 
+	/**
+	 * 使用预先生成的SQL语句构造，此时语法树上没有应用参数，不能用于路由分析
+	 * 
+	 * @param st
+	 *            SQL Statement
+	 * @param sql
+	 *            应用参数后的SQL语句
+	 * @param params
+	 *            参数
+	 * @param paramsMap
+	 *            语法树中的参数节点和参数值的对应关系
+	 * @param rawParams
+	 *            参数
+	 */
+	public SqlAndParameter(Statement st, String sql, List<Object> params, Map<Expression, Object> paramsMap, ParameterProvider rawParams) {
+		this.statement = st;
+		this.sql = sql;
+		this.params = params;
+		this.paramsMap = paramsMap;
+		this.rawParams = rawParams;
+	}
+
+	/**
+	 * 得到应用参数后的SQL语句
+	 * 
+	 * @return
+	 */
+	public String getSql() {
+		return sql == null ? statement.toString() : sql;
+	}
+
 	public Map<Expression, Object> getParamsMap() {
 		return paramsMap;
 	}
@@ -0,0 +1,498 @@
+package jef.database.support;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import jef.common.log.LogUtil;
+import jef.database.DbCfg;
+import jef.database.jdbc.JDBCTarget;
+import jef.tools.JefConfiguration;
+
+/**
+ * 异步的SQL日志。
+ * <p>
+ * {@link SqlLog.LogImpl}在执行SQL的线程上拼接语句和每个绑定变量，生产环境打开日志时拼接和输出的开销很大。
+ * 本实现在执行线程上只记录SQL文本、参数值的引用和数字，{@link #output()}时将记录复制到预先分配的环形缓冲区中，
+ * 由后台线程按{@link LogFormat}格式化后输出。缓冲区写满时丢弃日志，不阻塞数据库操作。
+ * 记录用的数组每个线程一份，在多次操作间复用，同一线程上同时使用多个日志对象时才另行分配。
+ * <p>
+ * 通过{@link #newInstance()}获得实例，按{@link DbCfg#DB_LOG_SAMPLE_RATE}抽样、按{@link DbCfg#DB_LOG_MAX_PER_SECOND}限流，未选中的操作得到
+ * {@link SqlLog#DUMMY}。一次操作中会创建多个日志对象时（如{@link jef.database.Batch}），用{@link #beginOperation()}和
+ * {@link #endOperation()}包围，其间的日志对象共用一次抽样结果，日志要么完整记录，要么完全不记录。
+ * <p>
+ * 注意参数值只记录引用，输出时才转换为文本，如果执行后立刻修改了参数对象（如Date、数组），日志中可能是修改后的值。
+ *
+ * @author jiyi
+ *
+ */
+public final class AsyncSqlLog extends SqlLog {
+	private static final byte TEXT = 0;
+	private static final byte INT = 1;
+	private static final byte LONG = 2;
+	private static final byte CHAR = 3;
+	private static final byte DOUBLE = 4;
+	private static final byte PARAM = 5;
+	private static final byte DB = 6;
+
+	private static final int SAMPLE_RATE = Math.max(1, JefConfiguration.getInt(DbCfg.DB_LOG_SAMPLE_RATE, 1));
+	private static final int MAX_PER_SECOND = JefConfiguration.getInt(DbCfg.DB_LOG_MAX_PER_SECOND, 0);
+	private static final AtomicLong sampleCounter = new AtomicLong();
+	private static final AtomicLong rateCounter = new AtomicLong();
+	private static volatile long rateSecond;
+
+	private static final ThreadLocal<Local> LOCAL = new ThreadLocal<Local>() {
+		@Override
+		protected Local initialValue() {
+			return new Local();
+		}
+	};
+
+	private final Writer writer;
+	private final Local local;
+	/**
+	 * 从线程上借用的记录，output()后归还
+	 */
+	private Buffer buffer;
+
+	AsyncSqlLog(Writer writer) {
+		this.writer = writer;
+		this.local = LOCAL.get();
+	}
+
+	/**
+	 * 按抽样率和限流设置得到一个日志对象。在{@link #beginOperation()}和{@link #endOperation()}之间时使用该操作的抽样结果
+	 *
+	 * @return 本次不记录日志时返回{@link SqlLog#DUMMY}
+	 */
+	public static SqlLog newInstance() {
+		Local local = LOCAL.get();
+		boolean sampled = local.depth > 0 ? local.sampled : sample();
+		return sampled ? new AsyncSqlLog(WriterHolder.WRITER) : DUMMY;
+	}
+
+	/**
+	 * 开始一次数据库操作，之后当前线程上创建的日志对象共用本次的抽样结果。必须和{@link #endOperation()}成对调用，可以嵌套
+	 *
+	 * @return 本次操作是否记录日志，可传给{@link #beginOperation(boolean)}供其他线程使用
+	 */
+	public static boolean beginOperation() {
+		Local local = LOCAL.get();
+		if (local.depth++ == 0) {
+			local.sampled = sample();
+		}
+		return local.sampled;
+	}
+
+	/**
+	 * 在其他线程上继续一次已经开始的数据库操作，使用该操作的抽样结果。必须和{@link #endOperation()}成对调用
+	 *
+	 * @param sampled
+	 *            {@link #beginOperation()}的返回值
+	 */
+	public static void beginOperation(boolean sampled) {
+		Local local = LOCAL.get();
+		if (local.depth++ == 0) {
+			local.sampled = sampled;
+		}
+	}
+
+	/**
+	 * 结束一次数据库操作
+	 */
+	public static void endOperation() {
+		Local local = LOCAL.get();
+		if (local.depth > 0) {
+			local.depth--;
+		}
+	}
+
+	/*
+	 * 按抽样率和限流决定本次操作是否记录日志
+	 */
+	private static boolean sample() {
+		if (SAMPLE_RATE > 1 && sampleCounter.incrementAndGet() % SAMPLE_RATE != 0) {
+			return false;
+		}
+		if (MAX_PER_SECOND > 0) {
+			long second = System.currentTimeMillis() / 1000;
+			if (second != rateSecond) {
+				rateSecond = second;
+				rateCounter.set(0);
+			}
+			if (rateCounter.incrementAndGet() > MAX_PER_SECOND) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 得到因缓冲区满而丢弃的日志条数
+	 *
+	 * @return
+	 */
+	public static long getDropped() {
+		return WriterHolder.WRITER.getDropped();
+	}
+
+	private void add(byte kind, Object part, long num) {
+		Buffer buf = buffer;
+		if (buf == null) {
+			buf = buffer = local.borrow();
+		}
+		buf.add(kind, part, num);
+	}
+
+	/*
+	 * String之外的CharSequence可能在之后被修改，只能先转为String
+	 */
+	private static Object text(CharSequence csq) {
+		return csq == null || csq instanceof String ? csq : csq.toString();
+	}
+
+	@Override
+	public void append(int count, Object fieldName, Object value) {
+		add(PARAM, fieldName, count);
+		buffer.values[buffer.size - 1] = value;
+	}
+
+	@Override
+	public void append(JDBCTarget db) {
+		add(DB, db.getTransactionId(), 0);
+	}
+
+	@Override
+	public void output() {
+		Buffer buf = buffer;
+		if (buf != null) {
+			if (buf.size > 0) {
+				writer.publish(buf);
+			}
+			release();
+		}
+	}
+
+	@Override
+	public void clear() {
+		if (buffer != null) {
+			release();
+		}
+	}
+
+	/*
+	 * 清空记录并归还给线程。在其他线程上输出时不归还，由GC回收
+	 */
+	private void release() {
+		Buffer buf = buffer;
+		buffer = null;
+		buf.clear();
+		if (LOCAL.get() == local) {
+			local.giveBack(buf);
+		}
+	}
+
+	@Override
+	public SqlLog append(CharSequence csq) {
+		add(TEXT, text(csq), 0);
+		return this;
+	}
+
+	@Override
+	public SqlLog append(CharSequence csq, CharSequence csq2) {
+		add(TEXT, text(csq), 0);
+		add(TEXT, text(csq2), 0);
+		return this;
+	}
+
+	@Override
+	public SqlLog append(CharSequence csq, int csq2) {
+		add(TEXT, text(csq), 0);
+		add(INT, null, csq2);
+		return this;
+	}
+
+	@Override
+	public SqlLog append(CharSequence csq, long csq2) {
+		add(TEXT, text(csq), 0);
+		add(LONG, null, csq2);
+		return this;
+	}
+
+	@Override
+	public SqlLog append(int csq) {
+		add(INT, null, csq);
+		return this;
+	}
+
+	@Override
+	public SqlLog append(long csq) {
+		add(LONG, null, csq);
+		return this;
+	}
+
+	@Override
+	public SqlLog append(char csq) {
+		add(CHAR, null, csq);
+		return this;
+	}
+
+	@Override
+	public SqlLog append(double csq) {
+		add(DOUBLE, null, Double.doubleToRawLongBits(csq));
+		return this;
+	}
+
+	@Override
+	public boolean isDebug() {
+		return true;
+	}
+
+	@Override
+	public void directLog(String string) {
+		AsyncSqlLog log = new AsyncSqlLog(writer);
+		log.add(TEXT, string, 0);
+		log.output();
+	}
+
+	@Override
+	public void ensureCapacity(int size) {
+	}
+
+	/**
+	 * 每个线程上的状态：当前操作的抽样结果和可复用的记录
+	 */
+	private static final class Local {
+		private int depth;
+		private boolean sampled;
+		private Buffer spare = new Buffer();
+
+		Buffer borrow() {
+			Buffer buf = spare;
+			if (buf == null) {// 同一线程上有多个日志对象正在记录
+				return new Buffer();
+			}
+			spare = null;
+			return buf;
+		}
+
+		void giveBack(Buffer buf) {
+			if (spare == null) {
+				spare = buf;
+			}
+		}
+	}
+
+	/**
+	 * 一条日志的记录，在执行线程上写入
+	 */
+	static final class Buffer {
+		private byte[] kinds = new byte[16];
+		private Object[] parts = new Object[16];
+		private Object[] values = new Object[16];
+		private long[] nums = new long[16];
+		private int size;
+
+		void add(byte kind, Object part, long num) {
+			if (size == kinds.length) {
+				int len = size * 2;
+				kinds = Arrays.copyOf(kinds, len);
+				parts = Arrays.copyOf(parts, len);
+				values = Arrays.copyOf(values, len);
+				nums = Arrays.copyOf(nums, len);
+			}
+			kinds[size] = kind;
+			parts[size] = part;
+			nums[size] = num;
+			size++;
+		}
+
+		void clear() {
+			Arrays.fill(parts, 0, size, null);
+			Arrays.fill(values, 0, size, null);
+			size = 0;
+		}
+	}
+
+	/**
+	 * 环形缓冲区中的一个槽位，数组在多次使用间复用
+	 */
+	private static final class Slot {
+		private byte[] kinds = new byte[0];
+		private Object[] parts = new Object[0];
+		private Object[] values = new Object[0];
+		private long[] nums = new long[0];
+		private int size;
+
+		void copyFrom(Buffer log) {
+			int n = log.size;
+			if (kinds.length < n) {
+				kinds = new byte[n];
+				parts = new Object[n];
+				values = new Object[n];
+				nums = new long[n];
+			}
+			System.arraycopy(log.kinds, 0, kinds, 0, n);
+			System.arraycopy(log.parts, 0, parts, 0, n);
+			System.arraycopy(log.values, 0, values, 0, n);
+			System.arraycopy(log.nums, 0, nums, 0, n);
+			size = n;
+		}
+
+		void format(StringBuilder sb, LogFormat formatter) {
+			for (int i = 0; i < size; i++) {
+				switch (kinds[i]) {
+				case TEXT:
+					sb.append((CharSequence) parts[i]);
+					break;
+				case INT:
+					sb.append((int) nums[i]);
+					break;
+				case LONG:
+					sb.append(nums[i]);
+					break;
+				case CHAR:
+					sb.append((char) nums[i]);
+					break;
+				case DOUBLE:
+					sb.append(Double.longBitsToDouble(nums[i]));
+					break;
+				case PARAM:
+					formatter.log(sb, (int) nums[i], String.valueOf(parts[i]), values[i]);
+					break;
+				case DB:
+					sb.append(" | ").append(parts[i]);
+					break;
+				}
+			}
+			// 释放引用，避免缓冲区长期持有参数对象
+			Arrays.fill(parts, 0, size, null);
+			Arrays.fill(values, 0, size, null);
+			size = 0;
+		}
+	}
+
+	/**
+	 * 输出线程在第一次需要时才创建
+	 */
+	private static final class WriterHolder {
+		private static final Writer WRITER = new Writer(JefConfiguration.getInt(DbCfg.DB_LOG_ASYNC_BUFFER, 4096));
+
+		static {
+			WRITER.start();
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				@Override
+				public void run() {
+					WRITER.close(1000);
+				}
+			});
+		}
+	}
+
+	/**
+	 * 多生产者、单消费者的环形缓冲区和输出线程
+	 */
+	static class Writer extends Thread {
+		private final Slot[] slots;
+		private final int mask;
+		/**
+		 * 每个槽位上已写好的序号，消费者据此判断槽位是否可读
+		 */
+		private final AtomicLongArray published;
+		private final AtomicLong head = new AtomicLong();
+		private volatile long tail;
+		private final AtomicLong dropped = new AtomicLong();
+		private long reported;
+		private volatile boolean closing;
+
+		Writer(int capacity) {
+			super("SqlLogWriter");
+			int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+			this.slots = new Slot[size];
+			this.published = new AtomicLongArray(size);
+			for (int i = 0; i < size; i++) {
+				slots[i] = new Slot();
+				published.set(i, -1);
+			}
+			this.mask = size - 1;
+			setDaemon(true);
+		}
+
+		/**
+		 * 输出缓冲区中剩余的日志后结束线程
+		 *
+		 * @param timeout
+		 *            最长等待的毫秒数
+		 */
+		void close(long timeout) {
+			closing = true;
+			try {
+				join(timeout);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		long getDropped() {
+			return dropped.get();
+		}
+
+		/**
+		 * 输出一条格式化后的日志
+		 *
+		 * @param message
+		 */
+		protected void write(String message) {
+			LogUtil.info(message);
+		}
+
+		void publish(Buffer log) {
+			long seq;
+			do {
+				seq = head.get();
+				if (seq - tail >= slots.length) {
+					dropped.incrementAndGet();
+					return;
+				}
+			} while (!head.compareAndSet(seq, seq + 1));
+			int index = (int) seq & mask;
+			slots[index].copyFrom(log);
+			published.set(index, seq);
+		}
+
+		@Override
+		public void run() {
+			LogFormat formatter = LogImpl.formatter;
+			StringBuilder sb = new StringBuilder(256);
+			long next = 0;
+			while (true) {
+				int index = (int) next & mask;
+				if (published.get(index) == next) {
+					slots[index].format(sb, formatter);
+					tail = ++next;
+					try {
+						write(sb.toString());
+					} catch (Throwable e) {
+						// 输出失败不能影响后续日志
+					}
+					if (sb.capacity() > 65536) {
+						sb = new StringBuilder(256);
+					} else {
+						sb.setLength(0);
+					}
+					continue;
+				}
+				long d = dropped.get();
+				if (d > reported) {
+					LogUtil.warn("SqlLog buffer is full, " + (d - reported) + " log(s) were dropped.");
+					reported = d;
+				}
+				if (closing) {
+					return;
+				}
+				LockSupport.parkNanos(1000000L);
+			}
+		}
+	}
+}
@@ -46,7 +46,7 @@ public abstract class SqlLog {
 	public abstract void ensureCapacity(int size);
 
 	public final static class LogImpl extends SqlLog {
-		private static LogFormat formatter = getLogFormat();
+		static LogFormat formatter = getLogFormat();
 
 		private static LogFormat getLogFormat() {
 			if ("no_wrap".equalsIgnoreCase(JefConfiguration.get(DbCfg.DB_LOG_FORMAT))) {
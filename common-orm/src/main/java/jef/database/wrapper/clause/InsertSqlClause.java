@@ -29,7 +29,7 @@ public class InsertSqlClause{
 	private String columnsPart;
 	private String valuesPart;
 	private PartitionResult table;
-	private final InsertWrapper callback = new InsertWrapper();
+	private final InsertWrapper callback;
 	final List<ColumnMapping> fields;
 	private String insert="insert into ";
 	private String tailer="";
@@ -43,11 +43,34 @@ public class InsertSqlClause{
 	 */
 	public InsertSqlClause(){
 		fields=null;
+		callback=new InsertWrapper();
 	}
 	public InsertSqlClause(boolean extreme){
 		fields=new ArrayList<ColumnMapping>();
+		callback=new InsertWrapper();
 		this.extreme=extreme;
 	}
+	private InsertSqlClause(InsertSqlClause source){
+		this.fields=source.fields;
+		this.callback=source.callback;
+		this.columnsPart=source.columnsPart;
+		this.valuesPart=source.valuesPart;
+		this.table=source.table;
+		this.insert=source.insert;
+		this.tailer=source.tailer;
+		this.parent=source.parent;
+		this.profile=source.profile;
+		this.extreme=source.extreme;
+	}
+
+	/**
+	 * 复制一份SQL片段，绑定字段和回调与原对象共用。
+	 * 在副本上按目标数据库调整insert关键字等不会影响原对象，供多个线程分别针对不同数据库生成SQL
+	 * @return
+	 */
+	public InsertSqlClause copy() {
+		return new InsertSqlClause(this);
+	}
 
 	/**
 	 * 传入表名并返回SQL
@@ -63,6 +86,24 @@ public class InsertSqlClause{
 		return sb.toString();
 	}
 	
+	/**
+	 * 传入表名和行数，返回一次插入多行的SQL
+	 * @param tablename
+	 * @param rows
+	 * @return
+	 */
+	public String getMultiRowSql(String tablename, int rows) {
+		StringBuilder sb = new StringBuilder(columnsPart.length() + (valuesPart.length() + 3) * rows + 32);
+		sb.append(insert).append(DbUtils.escapeColumn(profile, tablename));
+		sb.append("(").append(columnsPart).append(") values(");
+		sb.append(valuesPart).append(")");
+		for (int i = 1; i < rows; i++) {
+			sb.append(",(").append(valuesPart).append(")");
+		}
+		sb.append(tailer);
+		return sb.toString();
+	}
+	
 	public String getSql() {
 		return getSql(table.getAsOneTable());
 	}
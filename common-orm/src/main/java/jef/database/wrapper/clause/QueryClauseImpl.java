@@ -67,6 +67,10 @@ public class QueryClauseImpl implements QueryClause {
 		this.profile = profile;
 	}
 
+	public DatabaseDialect getProfile() {
+		return profile;
+	}
+
 	private QueryClauseImpl(PartitionResult[] partitionResults) {
 		this.tables = partitionResults;
 	}
@@ -119,10 +123,34 @@ public class QueryClauseImpl implements QueryClause {
 		this.tableDefinition = tableDefinition;
 	}
 
+	public List<Variable> getBind() {
+		return bind;
+	}
+
 	public void setBind(List<Variable> bind) {
 		this.bind = bind;
 	}
 
+	/**
+	 * 复制一个SQL相同、绑定变量不同的查询语句。除绑定变量外的各部分都是共享的，翻页范围不复制。
+	 * 
+	 * @param bind
+	 *            新的绑定变量
+	 * @return
+	 */
+	public QueryClauseImpl copyWithBind(List<Variable> bind) {
+		QueryClauseImpl result = new QueryClauseImpl(profile);
+		result.tableDefinition = tableDefinition;
+		result.tables = tables;
+		result.baseTableName = baseTableName;
+		result.selectPart = selectPart;
+		result.wherePart = wherePart;
+		result.grouphavingPart = grouphavingPart;
+		result.orderbyPart = orderbyPart;
+		result.bind = bind;
+		return result;
+	}
+
 	public PartitionResult[] getTables() {
 		return tables;
 	}
@@ -228,7 +256,7 @@ public class QueryClauseImpl implements QueryClause {
 			return cacheKey;
 		try{
 			if(baseTableName == null) {
-				this.cacheKey=new SqlCacheKey(new KeyDimension(tableDefinition,wherePart, orderbyPart.getSql(),profile), CacheImpl.toParamList(this.bind));
+				this.cacheKey=new SqlCacheKey(KeyDimension.of(tableDefinition,wherePart, orderbyPart.getSql(),profile), CacheImpl.toParamList(this.bind));
 			}else {
 				this.cacheKey=new SqlCacheKey(KeyDimension.forSingleTable(baseTableName,wherePart, orderbyPart.getSql(),profile), CacheImpl.toParamList(this.bind));
 			}
@@ -12,13 +12,17 @@ public class UpdateClause {
 	
 	private List<Variable> variables = new ArrayList<Variable>();
 	
+	private String sql;
+	
 	public void addEntry(String column,String update){
 		entries.add(new PairSS(column,update));
+		sql=null;
 	}
 	
 	public void addEntry(String column,Variable field){
 		entries.add(new PairSS(column,"?"));
 		variables.add(field);
+		sql=null;
 	}
 
 	public void addField(Variable bindVariableField) {
@@ -26,6 +30,9 @@ public class UpdateClause {
 	}
 
 	public String getSql() {
+		if(sql!=null){
+			return sql;
+		}
 		StringBuilder sb=new StringBuilder(entries.size()*16);
 		Iterator<PairSS> iter = entries.iterator();
 		if(iter.hasNext()){
@@ -36,7 +43,20 @@ public class UpdateClause {
 			PairSS p=iter.next();
 			sb.append(", ").append(p.first).append(" = ").append(p.second);
 		}
-		return sb.toString();
+		sql=sb.toString();
+		return sql;
+	}
+
+	/**
+	 * 得到被更新的列名
+	 * @return
+	 */
+	public List<String> getColumns() {
+		List<String> columns = new ArrayList<String>(entries.size());
+		for (PairSS p : entries) {
+			columns.add(p.first);
+		}
+		return columns;
 	}
 
 	public List<Variable> getVariables() {
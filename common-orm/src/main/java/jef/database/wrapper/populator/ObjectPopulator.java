@@ -10,6 +10,7 @@ import jef.database.LazyLoadProcessor;
 import jef.database.dialect.type.ColumnMappings;
 import jef.database.innerpool.InstancePopulator;
 import jef.database.jdbc.result.IResultSet;
+import jef.database.meta.EntityType;
 import jef.database.meta.ITableMetadata;
 import jef.tools.reflect.BeanWrapper;
 
@@ -18,6 +19,15 @@ public final class ObjectPopulator implements InstancePopulator{
 	Map<String,ColumnDescription> data;
 	int bindRowidForColumn;
 	LazyLoadProcessor processor;
+	/**
+	 * ASM生成的拼装类，第一次拼装时创建。访问器在创建Populator之后仍可能被替换，因此不在构造时生成
+	 */
+	private RowMapper mapper;
+	/**
+	 * mapper对应的类，对象的实际类型与之不同时(如子类)仍按名称设值
+	 */
+	private Class<?> mapperClass;
+	private volatile boolean mapperResolved;
 
 	public ObjectPopulator(ITableMetadata meta,Map<String,ColumnDescription> data){
 		this.meta=meta;
@@ -31,7 +41,10 @@ public final class ObjectPopulator implements InstancePopulator{
 	 */
 	public boolean processOrNull(BeanWrapper wrapper, IResultSet rs) throws SQLException {
 		boolean flag=false;
-		for(Map.Entry<String,ColumnDescription> entry:data.entrySet()){
+		RowMapper mapper=getRowMapper(wrapper);
+		if(mapper!=null){
+			flag=mapper.populate(wrapper.getWrapped(), rs, false);
+		}else for(Map.Entry<String,ColumnDescription> entry:data.entrySet()){
 			String fieldName=entry.getKey();
 			ColumnDescription c=entry.getValue();
 			// Note: 使用getObject方法时，在Oracle 2008-2-2 10.2.4.0驱动下会变为getDate()，从而丢失时分秒。
@@ -56,7 +69,10 @@ public final class ObjectPopulator implements InstancePopulator{
 	}
 	
 	public void process(BeanWrapper wrapper, IResultSet rs) throws SQLException {
-		for(Map.Entry<String,ColumnDescription> entry:data.entrySet()){
+		RowMapper mapper=getRowMapper(wrapper);
+		if(mapper!=null){
+			mapper.populate(wrapper.getWrapped(), rs, true);
+		}else for(Map.Entry<String,ColumnDescription> entry:data.entrySet()){
 			String fieldName=entry.getKey();
 			ColumnDescription c=entry.getValue();
 			// Note: 使用getObject方法时，在Oracle 2008-2-2 10.2.4.0驱动下会变为getDate()，从而丢失时分秒。
@@ -73,6 +89,27 @@ public final class ObjectPopulator implements InstancePopulator{
 		}
 	}
 	
+	/*
+	 * 只对原生实体和普通Bean生成，动态表、Tuple等的属性由容器存放，仍按名称设值
+	 */
+	private RowMapper getRowMapper(BeanWrapper wrapper){
+		Class<?> beanClass=wrapper.getWrapped().getClass();
+		if(!mapperResolved){
+			if(RowMapperGenerator.ENABLE && (meta==null || meta.getType()==EntityType.NATIVE)){
+				String[] fields=new String[data.size()];
+				ColumnDescription[] columns=new ColumnDescription[data.size()];
+				int i=0;
+				for(Map.Entry<String,ColumnDescription> entry:data.entrySet()){
+					fields[i]=entry.getKey();
+					columns[i++]=entry.getValue();
+				}
+				mapper=RowMapperGenerator.getRowMapper(beanClass, fields, columns);
+			}
+			mapperClass=beanClass;
+			mapperResolved=true;
+		}
+		return beanClass==mapperClass?mapper:null;
+	}
 	
 	public void setProcessor(LazyLoadProcessor processor) {
 		this.processor = processor;
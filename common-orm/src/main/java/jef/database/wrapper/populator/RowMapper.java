@@ -0,0 +1,40 @@
+package jef.database.wrapper.populator;
+
+import java.sql.SQLException;
+
+import jef.database.dialect.type.ResultSetAccessor;
+import jef.database.jdbc.result.IResultSet;
+
+/**
+ * 由{@link RowMapperGenerator}为某个类和某种结果集列布局动态生成的拼装类。
+ * <p>
+ * 生成的代码按列的序号直接调用ResultSet的getXxx(int)方法和字段的setter方法，不再按字段名查找属性，基本类型不再装箱。
+ * 无法直接读取的列仍使用{@link #accessors}中对应的{@link ResultSetAccessor}获取值。
+ *
+ * @author jiyi
+ *
+ */
+public abstract class RowMapper {
+	/**
+	 * 各字段使用的结果集访问器，和生成时的字段顺序相同
+	 */
+	protected ResultSetAccessor[] accessors;
+
+	void init(ResultSetAccessor[] accessors) {
+		this.accessors = accessors;
+	}
+
+	/**
+	 * 将结果集的当前行拼装到对象中
+	 *
+	 * @param bean
+	 *            要拼装的对象
+	 * @param rs
+	 *            结果集
+	 * @param setNull
+	 *            值为null时是否也调用setter。基本类型的字段值为null时总是跳过。
+	 * @return 是否有任何一个值不为null
+	 * @throws SQLException
+	 */
+	public abstract boolean populate(Object bean, IResultSet rs, boolean setNull) throws SQLException;
+}
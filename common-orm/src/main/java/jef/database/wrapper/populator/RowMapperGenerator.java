@@ -0,0 +1,420 @@
+package jef.database.wrapper.populator;
+
+import static jef.accelerator.asm.ASMUtils.doUnwrap;
+import static jef.accelerator.asm.ASMUtils.doWrap;
+import static jef.accelerator.asm.ASMUtils.getDesc;
+import static jef.accelerator.asm.ASMUtils.getMethodDesc;
+import static jef.accelerator.asm.ASMUtils.getType;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jef.accelerator.asm.ClassWriter;
+import jef.accelerator.asm.Label;
+import jef.accelerator.asm.MethodVisitor;
+import jef.accelerator.asm.Opcodes;
+import jef.common.log.LogUtil;
+import jef.database.DbCfg;
+import jef.database.dialect.type.AutoIntMapping;
+import jef.database.dialect.type.AutoLongMapping;
+import jef.database.dialect.type.CharStringMapping;
+import jef.database.dialect.type.ColumnMappings;
+import jef.database.dialect.type.NumBigDecimalMapping;
+import jef.database.dialect.type.NumBigLongMapping;
+import jef.database.dialect.type.NumDoubleDoubleMapping;
+import jef.database.dialect.type.NumFloatMapping;
+import jef.database.dialect.type.NumIntIntMapping;
+import jef.database.dialect.type.NumIntLongMapping;
+import jef.database.dialect.type.ResultSetAccessor;
+import jef.database.dialect.type.TimestampDateMapping;
+import jef.database.dialect.type.TimestampTsMapping;
+import jef.database.dialect.type.VarcharStringMapping;
+import jef.database.jdbc.result.IResultSet;
+import jef.tools.JefConfiguration;
+import jef.tools.reflect.BeanUtils;
+import jef.tools.reflect.FieldEx;
+import jef.tools.reflect.MethodEx;
+import jef.tools.reflect.UnsafeUtils;
+
+/**
+ * 用ASM为(类、结果集列布局)生成{@link RowMapper}。
+ * <p>
+ * 生成的类只和类型、字段名、列序号以及访问器的类型有关，与具体的访问器对象无关，因此按这些信息缓存，同一布局的查询复用同一个类。
+ * 缓存以类为弱引用的键，不会阻止应用的ClassLoader被回收。
+ * 对于已知取值方式就是ResultSet.getXxx(int)的访问器，生成的代码直接调用该方法(基本类型用wasNull()判断空值)；其他访问器仍调用
+ * {@link ResultSetAccessor#jdbcGet(IResultSet, int)}，但直接调用setter而不是按名称查找属性。
+ * <p>
+ * 有任何一个字段找不到public的setter时不生成，仍使用原有的拼装方式。可以用{@link DbCfg#DB_ASM_ROW_MAPPER}关闭。
+ *
+ * @author jiyi
+ *
+ */
+final class RowMapperGenerator implements Opcodes {
+	static final boolean ENABLE = JefConfiguration.getBoolean(DbCfg.DB_ASM_ROW_MAPPER, true);
+
+	/**
+	 * 标记该布局无法生成
+	 */
+	private static final Object UNSUPPORTED = new Object();
+	/**
+	 * 按被拼装的类弱引用缓存，类被卸载后随之回收。生成的类由被拼装类的ClassLoader持有，这里也只弱引用，避免值反过来引用键
+	 */
+	private static final Map<Class<?>, ConcurrentHashMap<List<Object>, Object>> CACHE = new WeakHashMap<Class<?>, ConcurrentHashMap<List<Object>, Object>>();
+	private static final AtomicInteger SEQ = new AtomicInteger();
+
+	private static final String MAPPER_TYPE = getType(RowMapper.class);
+	private static final String RS_TYPE = getType(ResultSet.class);
+	private static final String ACCESSOR_TYPE = getType(ResultSetAccessor.class);
+
+	/**
+	 * 取值方式就是ResultSet.getXxx(int)的访问器
+	 */
+	private static final Map<Class<?>, Direct> DIRECT = new IdentityHashMap<Class<?>, Direct>();
+	static {
+		try {
+			// 以下映射在值为null时返回null
+			direct(new Direct("getInt", true), NumIntIntMapping.class, AutoIntMapping.class);
+			direct(new Direct("getLong", true), NumBigLongMapping.class, NumIntLongMapping.class, AutoLongMapping.class);
+			direct(new Direct("getDouble", true), NumDoubleDoubleMapping.class);
+			direct(new Direct("getFloat", true), NumFloatMapping.class);
+			direct(new Direct("getString", false), VarcharStringMapping.class, CharStringMapping.class, ColumnMappings.STRING.getClass());
+			direct(new Direct("getBigDecimal", false), NumBigDecimalMapping.class, ColumnMappings.BIGDECIMAL.getClass());
+			direct(new Direct("getTimestamp", false), TimestampTsMapping.class, TimestampDateMapping.class);
+			// 以下为基本类型的访问器，值为null时也返回0/false
+			direct(new Direct("getInt", false), ColumnMappings.I.getClass());
+			direct(new Direct("getLong", false), ColumnMappings.J.getClass());
+			direct(new Direct("getShort", false), ColumnMappings.S.getClass());
+			direct(new Direct("getFloat", false), ColumnMappings.F.getClass());
+			direct(new Direct("getDouble", false), ColumnMappings.D.getClass());
+			direct(new Direct("getBoolean", false), ColumnMappings.Z.getClass());
+			direct(new Direct("getByte", false), ColumnMappings.B.getClass());
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void direct(Direct d, Class<?>... accessorTypes) {
+		for (Class<?> c : accessorTypes) {
+			DIRECT.put(c, d);
+		}
+	}
+
+	private RowMapperGenerator() {
+	}
+
+	/**
+	 * 得到指定类型和列布局的拼装类
+	 *
+	 * @param beanClass
+	 * @param fields
+	 *            字段名
+	 * @param columns
+	 *            字段对应的列
+	 * @return 无法生成时返回null
+	 */
+	static RowMapper getRowMapper(Class<?> beanClass, String[] fields, ColumnDescription[] columns) {
+		ResultSetAccessor[] accessors = new ResultSetAccessor[fields.length];
+		List<Object> key = new ArrayList<Object>(fields.length * 3);
+		for (int i = 0; i < fields.length; i++) {
+			accessors[i] = columns[i].getAccessor();
+			key.add(fields[i]);
+			key.add(columns[i].getN());
+			key.add(accessors[i].getClass().getName());// 不持有访问器的类，以免自定义的访问器引用到应用的ClassLoader
+		}
+		ConcurrentHashMap<List<Object>, Object> cache = cacheOf(beanClass);
+		Object cached = cache.get(key);
+		if (cached == null) {
+			cached = generate(beanClass, fields, columns, accessors);
+			if (cached != UNSUPPORTED) {
+				cached = new WeakReference<Class<?>>((Class<?>) cached);
+			}
+			Object old = cache.putIfAbsent(key, cached);
+			if (old != null) {
+				cached = old;
+			}
+		}
+		if (cached == UNSUPPORTED) {
+			return null;
+		}
+		@SuppressWarnings("unchecked")
+		Class<?> clz = ((WeakReference<Class<?>>) cached).get();
+		if (clz == null) {
+			return null;
+		}
+		try {
+			RowMapper mapper = (RowMapper) clz.newInstance();
+			mapper.init(accessors);
+			return mapper;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static ConcurrentHashMap<List<Object>, Object> cacheOf(Class<?> beanClass) {
+		synchronized (CACHE) {
+			ConcurrentHashMap<List<Object>, Object> cache = CACHE.get(beanClass);
+			if (cache == null) {
+				cache = new ConcurrentHashMap<List<Object>, Object>();
+				CACHE.put(beanClass, cache);
+			}
+			return cache;
+		}
+	}
+
+	private static Object generate(Class<?> beanClass, String[] fields, ColumnDescription[] columns, ResultSetAccessor[] accessors) {
+		Method[] setters = new Method[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			setters[i] = getSetter(beanClass, fields[i]);
+			if (setters[i] == null) {
+				return UNSUPPORTED;
+			}
+		}
+		ClassLoader cl = beanClass.getClassLoader();
+		if (cl == null) {
+			return UNSUPPORTED;
+		}
+		// 与被拼装的类位于同一个包和ClassLoader中
+		String name = beanClass.getName() + "$RowMapper" + SEQ.incrementAndGet();
+		try {
+			byte[] data = generate(name.replace('.', '/'), beanClass, setters, columns, accessors);
+			Class<?> clz = UnsafeUtils.defineClass(name, data, 0, data.length, cl);
+			// 类在第一次创建实例时才校验，生成的代码有问题时在此处就退回原有方式
+			clz.newInstance();
+			return clz;
+		} catch (Throwable e) {
+			LogUtil.warn("Generating row mapper for " + beanClass.getName() + " error, the default populator will be used.", e);
+			return UNSUPPORTED;
+		}
+	}
+
+	private static Method getSetter(Class<?> beanClass, String name) {
+		FieldEx field = BeanUtils.getField(beanClass, name);
+		if (field == null) {
+			return null;
+		}
+		MethodEx setter = BeanUtils.getSetter(field);
+		if (setter == null) {
+			return null;
+		}
+		Method m = setter.getJavaMethod();
+		if (!Modifier.isPublic(m.getModifiers()) || m.getParameterTypes().length != 1) {
+			return null;
+		}
+		return m;
+	}
+
+	/*
+	 * 局部变量: 0 this, 1 bean, 2 rs, 3 setNull, 4 是否有非null值, 5 转型后的bean, 6-7 读出的值
+	 */
+	private static byte[] generate(String type, Class<?> beanClass, Method[] setters, ColumnDescription[] columns, ResultSetAccessor[] accessors) {
+		String beanType = getType(beanClass);
+		ClassWriter cw = new ClassWriter(0);
+		cw.visit(V1_5, ACC_PUBLIC + ACC_SUPER + ACC_FINAL, type, null, MAPPER_TYPE, new String[] {});
+		{
+			MethodVisitor mw = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+			mw.visitVarInsn(ALOAD, 0);
+			mw.visitMethodInsn(INVOKESPECIAL, MAPPER_TYPE, "<init>", "()V");
+			mw.visitInsn(RETURN);
+			mw.visitMaxs(1, 1);
+			mw.visitEnd();
+		}
+		MethodVisitor mw = cw.visitMethod(ACC_PUBLIC, "populate", getMethodDesc(Boolean.TYPE, Object.class, IResultSet.class, Boolean.TYPE), null, new String[] { getType(SQLException.class) });
+		mw.visitInsn(ICONST_0);
+		mw.visitVarInsn(ISTORE, 4);
+		mw.visitVarInsn(ALOAD, 1);
+		mw.visitTypeInsn(CHECKCAST, beanType);
+		mw.visitVarInsn(ASTORE, 5);
+		for (int i = 0; i < setters.length; i++) {
+			Method setter = setters[i];
+			Class<?> fieldType = setter.getParameterTypes()[0];
+			Direct d = DIRECT.get(accessors[i].getClass());
+			if (d != null && !d.applyFor(fieldType)) {
+				d = null;
+			}
+			if (d != null && d.getter.getReturnType().isPrimitive()) {
+				generatePrimitive(mw, beanType, setter, fieldType, d, columns[i].getN());
+			} else {
+				if (d != null) {
+					mw.visitVarInsn(ALOAD, 2);
+					push(mw, columns[i].getN());
+					mw.visitMethodInsn(INVOKEINTERFACE, RS_TYPE, d.getter.getName(), getDesc(d.getter));
+				} else {
+					mw.visitVarInsn(ALOAD, 0);
+					mw.visitFieldInsn(GETFIELD, MAPPER_TYPE, "accessors", getDesc(ResultSetAccessor[].class));
+					push(mw, i);
+					mw.visitInsn(AALOAD);
+					mw.visitVarInsn(ALOAD, 2);
+					push(mw, columns[i].getN());
+					mw.visitMethodInsn(INVOKEINTERFACE, ACCESSOR_TYPE, "jdbcGet", getMethodDesc(Object.class, IResultSet.class, Integer.TYPE));
+				}
+				mw.visitVarInsn(ASTORE, 6);
+				generateObject(mw, beanType, setter, fieldType);
+			}
+		}
+		mw.visitVarInsn(ILOAD, 4);
+		mw.visitInsn(IRETURN);
+		mw.visitMaxs(5, 8);
+		mw.visitEnd();
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/*
+	 * 用getXxx(int)读取基本类型的值
+	 */
+	private static void generatePrimitive(MethodVisitor mw, String beanType, Method setter, Class<?> fieldType, Direct d, int n) {
+		Class<?> primitive = d.getter.getReturnType();
+		Label isNull = new Label();
+		Label end = new Label();
+		mw.visitVarInsn(ALOAD, 2);
+		push(mw, n);
+		mw.visitMethodInsn(INVOKEINTERFACE, RS_TYPE, d.getter.getName(), getDesc(d.getter));
+		mw.visitVarInsn(storeIns(primitive), 6);
+		if (d.checkNull) {
+			mw.visitVarInsn(ALOAD, 2);
+			mw.visitMethodInsn(INVOKEINTERFACE, RS_TYPE, "wasNull", "()Z");
+			mw.visitJumpInsn(IFNE, isNull);
+		}
+		mw.visitInsn(ICONST_1);
+		mw.visitVarInsn(ISTORE, 4);
+		mw.visitVarInsn(ALOAD, 5);
+		mw.visitVarInsn(loadIns(primitive), 6);
+		if (!fieldType.isPrimitive()) {
+			doWrap(mw, primitive);
+		}
+		invokeSetter(mw, beanType, setter);
+		if (d.checkNull) {
+			mw.visitJumpInsn(GOTO, end);
+			mw.visitLabel(isNull);
+			if (!fieldType.isPrimitive()) {
+				mw.visitVarInsn(ILOAD, 3);
+				mw.visitJumpInsn(IFEQ, end);
+				mw.visitVarInsn(ALOAD, 5);
+				mw.visitInsn(ACONST_NULL);
+				invokeSetter(mw, beanType, setter);
+			}
+			mw.visitLabel(end);
+		}
+	}
+
+	/*
+	 * 将局部变量6中的对象设置到字段。基本类型的字段值为null时跳过，其他字段按setNull决定
+	 */
+	private static void generateObject(MethodVisitor mw, String beanType, Method setter, Class<?> fieldType) {
+		Label end = new Label();
+		if (fieldType.isPrimitive()) {
+			mw.visitVarInsn(ALOAD, 6);
+			mw.visitJumpInsn(IFNULL, end);
+			mw.visitInsn(ICONST_1);
+			mw.visitVarInsn(ISTORE, 4);
+			mw.visitVarInsn(ALOAD, 5);
+			mw.visitVarInsn(ALOAD, 6);
+			Class<?> wrapped = BeanUtils.toWrapperClass(fieldType);
+			mw.visitTypeInsn(CHECKCAST, getType(wrapped));
+			doUnwrap(mw, fieldType, wrapped);
+		} else {
+			Label isNull = new Label();
+			Label set = new Label();
+			mw.visitVarInsn(ALOAD, 6);
+			mw.visitJumpInsn(IFNULL, isNull);
+			mw.visitInsn(ICONST_1);
+			mw.visitVarInsn(ISTORE, 4);
+			mw.visitJumpInsn(GOTO, set);
+			mw.visitLabel(isNull);
+			mw.visitVarInsn(ILOAD, 3);
+			mw.visitJumpInsn(IFEQ, end);
+			mw.visitLabel(set);
+			mw.visitVarInsn(ALOAD, 5);
+			mw.visitVarInsn(ALOAD, 6);
+			if (fieldType != Object.class) {
+				mw.visitTypeInsn(CHECKCAST, getType(fieldType));
+			}
+		}
+		invokeSetter(mw, beanType, setter);
+		mw.visitLabel(end);
+	}
+
+	private static void invokeSetter(MethodVisitor mw, String beanType, Method setter) {
+		mw.visitMethodInsn(INVOKEVIRTUAL, beanType, setter.getName(), getDesc(setter));
+		Class<?> r = setter.getReturnType();
+		if (r == Long.TYPE || r == Double.TYPE) {
+			mw.visitInsn(POP2);
+		} else if (r != Void.TYPE) {
+			mw.visitInsn(POP);
+		}
+	}
+
+	/*
+	 * ASMUtils.iconst只支持到127，列序号可能更大
+	 */
+	private static void push(MethodVisitor mw, int value) {
+		if (value >= -1 && value <= 5) {
+			mw.visitInsn(ICONST_0 + value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			mw.visitIntInsn(BIPUSH, value);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			mw.visitIntInsn(SIPUSH, value);
+		} else {
+			mw.visitLdcInsn(value);
+		}
+	}
+
+	private static int loadIns(Class<?> primitive) {
+		if (primitive == Long.TYPE) {
+			return LLOAD;
+		} else if (primitive == Double.TYPE) {
+			return DLOAD;
+		} else if (primitive == Float.TYPE) {
+			return FLOAD;
+		}
+		return ILOAD;
+	}
+
+	private static int storeIns(Class<?> primitive) {
+		if (primitive == Long.TYPE) {
+			return LSTORE;
+		} else if (primitive == Double.TYPE) {
+			return DSTORE;
+		} else if (primitive == Float.TYPE) {
+			return FSTORE;
+		}
+		return ISTORE;
+	}
+
+	/**
+	 * 直接调用的ResultSet方法
+	 */
+	private static final class Direct {
+		final Method getter;
+		/**
+		 * 是否要用wasNull()判断空值
+		 */
+		final boolean checkNull;
+
+		Direct(String getter, boolean checkNull) throws NoSuchMethodException {
+			this.getter = ResultSet.class.getMethod(getter, Integer.TYPE);
+			this.checkNull = checkNull;
+		}
+
+		/*
+		 * 读出的值能否直接设置到该类型的字段
+		 */
+		boolean applyFor(Class<?> fieldType) {
+			Class<?> r = getter.getReturnType();
+			if (r.isPrimitive()) {
+				return fieldType == r || fieldType == BeanUtils.toWrapperClass(r);
+			}
+			return fieldType.isAssignableFrom(r);
+		}
+	}
+}
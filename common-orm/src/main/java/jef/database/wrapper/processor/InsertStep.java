@@ -27,6 +27,7 @@ import jef.database.DbUtils;
 import jef.database.IQueryableEntity;
 import jef.database.OperateTarget;
 import jef.database.Sequence;
+import jef.database.SnowflakeIdGenerator;
 import jef.database.dialect.DatabaseDialect;
 import jef.database.meta.DbProperty;
 import jef.database.meta.Feature;
@@ -142,6 +143,36 @@ public interface InsertStep {
 		}
 	}
 
+	/**
+	 * 对批量的Entity对象在本地用Snowflake算法生成主键，并赋值
+	 * 这个回调方法要求在插入到数据库之前运行，不需要访问数据库。
+	 * 
+	 * @author Administrator
+	 */
+	final static class SnowflakeGenerateCallback implements InsertStep {
+		private Property field;
+		private SnowflakeIdGenerator generator;
+
+		public SnowflakeGenerateCallback(Property fieldName, SnowflakeIdGenerator generator) {
+			Assert.notNull(generator);
+			this.field = fieldName;
+			this.generator = generator;
+		}
+
+		public void callBefore(List<? extends IQueryableEntity> data) throws SQLException {
+			for (IQueryableEntity o : data) {
+				field.set(o, generator.next());
+			}
+		}
+
+		public void callAfterBatch(List<? extends IQueryableEntity> data) throws SQLException {
+		}
+
+		@Override
+		public void callAfter(IQueryableEntity data) throws SQLException {
+		}
+	}
+
 	/**
 	 * 对批量的DO对象生成Sequence的主键，并赋值
 	 * 这个回调方法要求在插入到数据库之前运行，直接更新Bean中的值。然后再用更新后的Bean插入数据库
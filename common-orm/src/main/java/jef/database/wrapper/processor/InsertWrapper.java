@@ -60,4 +60,7 @@ public class InsertWrapper implements StatementPreparer, InsertStep {
 		}
 	}
 
+	public List<InsertStep> getProcessors() {
+		return processors;
+	}
 }
@@ -160,7 +160,20 @@ public final class BindVariableContext {
 	 * @throws SQLException
 	 */
 	public void setInsertVariables(IQueryableEntity obj, List<ColumnMapping> fields) throws SQLException {
-		int count = 0;
+		setInsertVariables(obj, fields, 0);
+	}
+
+	/**
+	 * 从指定位置之后开始绑定插入的字段，用于一条语句插入多行的场合
+	 * 
+	 * @param obj
+	 * @param fields
+	 * @param offset
+	 *            已经绑定的参数个数
+	 * @throws SQLException
+	 */
+	public void setInsertVariables(IQueryableEntity obj, List<ColumnMapping> fields, int offset) throws SQLException {
+		int count = offset;
 		for (ColumnMapping field : fields) {
 			count++;
 			Object value = field.getFieldAccessor().get(obj);
@@ -34,6 +34,16 @@ public class ConstantVariable extends Variable {
 		}
 	}
 
+	/**
+	 * 得到一个字段和类型相同，值不同的绑定变量
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public ConstantVariable copyWithValue(Object value) {
+		return new ConstantVariable(field, value, column);
+	}
+
 	@Override
 	public Object getConstantValue() {
 		return value;
@@ -0,0 +1,16 @@
+package org.easyframe.enterprise.spring;
+
+/**
+ * 用于生成按时间有序的唯一标识，与{@link UniqueIdManager}分开定义，已有的UniqueIdManager实现无需改动
+ * @author jiyi
+ *
+ */
+public interface SnowflakeIdManager {
+
+	/**
+	 * 获取一个按时间有序的64位键值，在本地用Snowflake算法生成，无需访问数据库
+	 * @return 集群中各节点的节点号不同时，值不会重复
+	 * @see jef.database.SnowflakeIdGenerator
+	 */
+	long nextSnowflakeId();
+}
@@ -19,7 +19,7 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 
 
-public class UniqueIdManagerImpl implements UniqueIdManager,InitializingBean{
+public class UniqueIdManagerImpl implements UniqueIdManager,SnowflakeIdManager,InitializingBean{
 	private JefEntityManagerFactory entityManagerFactory;
 	
 	/**
@@ -62,6 +62,14 @@ public class UniqueIdManagerImpl implements UniqueIdManager,InitializingBean{
 		return UUID.randomUUID().toString();
 	}
 
+	public long nextSnowflakeId() {
+		try {
+			return getDbClient().getSnowflakeGenerator().next();
+		} catch (SQLException e) {
+			throw new PersistenceException(e.getMessage()+" "+e.getSQLState(),e);
+		}
+	}
+
 	/*
 	 *
 	 */
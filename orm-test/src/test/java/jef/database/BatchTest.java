@@ -0,0 +1,265 @@
+package jef.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import jef.database.dialect.DatabaseDialect;
+import jef.database.dialect.MySqlDialect;
+import jef.database.dialect.OracleDialect;
+import jef.database.meta.MetaHolder;
+import jef.database.routing.PartitionResult;
+import jef.database.wrapper.clause.InsertSqlClause;
+import jef.orm.onetable.model.TestEntity;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchTest {
+	private DbClient db;
+
+	@Before
+	public void setUp() throws SQLException {
+		db = new DbClient(DbUtils.createSimpleDataSource("jdbc:hsqldb:mem:batchtest", "sa", ""));
+		for (int i = 0; i < 3; i++) {
+			execute("create table batch_t" + i + "(id bigint primary key, name varchar(20))");
+		}
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		for (int i = 0; i < 4; i++) {
+			execute("drop table batch_t" + i + " if exists");
+		}
+		db.close();
+	}
+
+	/**
+	 * 按intFiled分到batch_t0~batch_t(n-1)几张表中的批量插入
+	 */
+	static class RoutedInsert extends Batch<TestEntity> {
+		private final int tables;
+
+		RoutedInsert(Session parent, int tables) throws SQLException {
+			super(parent, MetaHolder.getMeta(TestEntity.class));
+			this.tables = tables;
+			setGroupForPartitionTable(true);
+			setParallel(true);
+		}
+
+		@Override
+		protected PartitionResult getTableName(TestEntity obj) {
+			return new PartitionResult("batch_t" + obj.getIntFiled() % tables);
+		}
+
+		@Override
+		protected String toSql(String tablename) {
+			return "insert into " + tablename + "(id,name) values(?,?)";
+		}
+
+		@Override
+		protected void processJdbcParams(PreparedStatement psmt, List<TestEntity> listValue, OperateTarget db) throws SQLException {
+			for (TestEntity t : listValue) {
+				psmt.setLong(1, t.getLongField());
+				psmt.setString(2, t.getField1());
+				psmt.addBatch();
+			}
+		}
+
+		@Override
+		protected void callVeryBefore(List<TestEntity> objs) throws SQLException {
+		}
+
+		@Override
+		protected void callEventListenerBefore(List<TestEntity> listValue) throws SQLException {
+		}
+
+		@Override
+		protected void callEventListenerAfter(List<TestEntity> listValue) throws SQLException {
+		}
+	}
+
+	/**
+	 * 记录每次绑定参数的记录数和是否为第一段
+	 */
+	static class RecordingInsert extends RoutedInsert {
+		final List<String> chunks = new ArrayList<String>();
+
+		RecordingInsert(Session parent) throws SQLException {
+			super(parent, 1);
+		}
+
+		@Override
+		protected void processJdbcParams(PreparedStatement psmt, List<TestEntity> listValue, OperateTarget db, boolean first) throws SQLException {
+			chunks.add(listValue.size() + (first ? "F" : ""));
+			super.processJdbcParams(psmt, listValue, db, first);
+		}
+	}
+
+	@Test
+	public void testChunked() throws SQLException {
+		RecordingInsert batch = new RecordingInsert(db);
+		batch.setChunkSize(7);
+		Assert.assertEquals(20, batch.execute(entities(0, 20)));
+		Assert.assertEquals(Arrays.asList("7F", "7", "6"), batch.chunks);
+		Assert.assertEquals(20, count("batch_t0"));
+
+		// 记录数恰好是chunkSize的整数倍
+		batch.chunks.clear();
+		Assert.assertEquals(14, batch.execute(entities(20, 14)));
+		Assert.assertEquals(Arrays.asList("7F", "7"), batch.chunks);
+
+		// 不分段时一次提交
+		batch.chunks.clear();
+		batch.setChunkSize(0);
+		Assert.assertEquals(10, batch.execute(entities(40, 10)));
+		Assert.assertEquals(Arrays.asList("10F"), batch.chunks);
+		Assert.assertEquals(44, count("batch_t0"));
+	}
+
+	@Test
+	public void testStreaming() throws SQLException {
+		RecordingInsert batch = new RecordingInsert(db);
+		batch.setChunkSize(8);
+		// 每读取8个对象执行一次
+		Assert.assertEquals(20, batch.execute(entities(0, 20).iterator()));
+		Assert.assertEquals(Arrays.asList("8F", "8F", "4F"), batch.chunks);
+		Assert.assertEquals(20, count("batch_t0"));
+
+		batch.chunks.clear();
+		Assert.assertEquals(0, batch.execute(entities(0, 0).iterator()));
+		Assert.assertTrue(batch.chunks.isEmpty());
+	}
+
+	@Test
+	public void testAddCount() {
+		Assert.assertEquals(7, Batch.addCount(3, 4));
+		// 某一段返回SUCCESS_NO_INFO后，总数一直保持负值
+		int total = Batch.addCount(3, Statement.SUCCESS_NO_INFO);
+		Assert.assertEquals(Statement.SUCCESS_NO_INFO, total);
+		Assert.assertEquals(Statement.SUCCESS_NO_INFO, Batch.addCount(total, 5));
+		Assert.assertEquals(Statement.SUCCESS_NO_INFO, Batch.addCount(total, Statement.SUCCESS_NO_INFO));
+	}
+
+	@Test
+	public void testParallelRowCount() throws SQLException {
+		RoutedInsert batch = new RoutedInsert(db, 3);
+		Assert.assertEquals(100, batch.execute(entities(0, 100)));
+		Assert.assertEquals(34, count("batch_t0"));
+		Assert.assertEquals(33, count("batch_t1"));
+		Assert.assertEquals(33, count("batch_t2"));
+
+		// 每个数据源只用一个任务时，依次执行全部分组
+		batch.setMaxParallelPerDatasource(1);
+		Assert.assertEquals(50, batch.execute(entities(100, 50)));
+		Assert.assertEquals(50, count("batch_t0"));
+		Assert.assertEquals(50, count("batch_t1"));
+		Assert.assertEquals(50, count("batch_t2"));
+	}
+
+	@Test
+	public void testParallelPartialFailure() throws SQLException {
+		// batch_t3不存在，这一组失败
+		RoutedInsert batch = new RoutedInsert(db, 4);
+		for (int workers : new int[] { 4, 1 }) {
+			batch.setMaxParallelPerDatasource(workers);
+			int[] before = { count("batch_t0"), count("batch_t1"), count("batch_t2") };
+			try {
+				batch.execute(entities(workers * 1000, 40));
+				Assert.fail("Expected failure on the missing table.");
+			} catch (SQLException e) {
+				Assert.assertNull(e.getNextException());
+			}
+			// 其他各组不受影响，照常提交
+			Assert.assertEquals(before[0] + 10, count("batch_t0"));
+			Assert.assertEquals(before[1] + 10, count("batch_t1"));
+			Assert.assertEquals(before[2] + 10, count("batch_t2"));
+		}
+
+		// 多个分组失败时，全部异常都被抛出
+		RoutedInsert duplicated = new RoutedInsert(db, 3);
+		Assert.assertEquals(6, duplicated.execute(entities(9000, 6)));
+		int rows = count("batch_t0") + count("batch_t1") + count("batch_t2");
+		try {
+			duplicated.execute(entities(9000, 6));
+			Assert.fail("Expected primary key violation.");
+		} catch (SQLException e) {
+			int failures = 0;
+			for (SQLException ex = e; ex != null; ex = ex.getNextException()) {
+				failures++;
+			}
+			Assert.assertTrue(String.valueOf(failures), failures >= 3);
+		}
+		Assert.assertEquals(rows, count("batch_t0") + count("batch_t1") + count("batch_t2"));
+	}
+
+	@Test
+	public void testMultiRows() throws SQLException {
+		Batch.Insert<TestEntity> batch = new Batch.Insert<TestEntity>(db, MetaHolder.getMeta(TestEntity.class));
+		InsertSqlClause clause = new InsertSqlClause(false);
+		clause.addField(null);
+		clause.addField(null);
+		batch.setInsertPart(clause);
+		DatabaseDialect mysql = new MySqlDialect();
+		// 默认不改写
+		Assert.assertFalse(batch.isMultiRowValues());
+		Assert.assertEquals(0, batch.getMultiRows(mysql, 1000));
+
+		batch.setMultiRowValues(true);
+		Assert.assertEquals(500, batch.getMultiRows(mysql, 1000));
+		Assert.assertEquals(30, batch.getMultiRows(mysql, 30));
+		Assert.assertEquals(0, batch.getMultiRows(mysql, 1));
+		Assert.assertEquals(0, batch.getMultiRows(new OracleDialect(), 1000));
+		batch.setMultiRowSize(100);
+		Assert.assertEquals(100, batch.getMultiRows(mysql, 1000));
+
+		// 受单条语句绑定变量个数上限的限制
+		batch.setMultiRowSize(1000);
+		for (int i = 2; i < 200; i++) {
+			clause.addField(null);
+		}
+		Assert.assertEquals(65535 / 200, batch.getMultiRows(mysql, 1000));
+		Assert.assertTrue(batch.getMultiRows(mysql, 1000) * 200 <= 65535);
+
+		// 没有要插入的列
+		batch.setInsertPart(new InsertSqlClause(false));
+		Assert.assertEquals(0, batch.getMultiRows(mysql, 1000));
+	}
+
+	@Test
+	public void testMergeColumns() throws SQLException {
+		Batch.Merge<TestEntity> batch = new Batch.Merge<TestEntity>(db, MetaHolder.getMeta(TestEntity.class), new MySqlDialect());
+		String sql = batch.toSql("T").toLowerCase();
+		int split = sql.indexOf(" on duplicate key update ");
+		Assert.assertTrue(sql, split > 0);
+		// 自动维护的创建时间只在插入时写入，记录已存在时不更新
+		Assert.assertTrue(sql, sql.substring(0, split).contains("create_time"));
+		Assert.assertFalse(sql, sql.substring(split).contains("create_time"));
+		Assert.assertTrue(sql, sql.substring(split).contains("field_1=values(field_1)"));
+	}
+
+	private static List<TestEntity> entities(int start, int count) {
+		List<TestEntity> result = new ArrayList<TestEntity>(count);
+		for (int i = start; i < start + count; i++) {
+			TestEntity t = new TestEntity();
+			t.setLongField(i);
+			t.setIntFiled(i);
+			t.setField1("name" + i);
+			result.add(t);
+		}
+		return result;
+	}
+
+	private void execute(String sql) throws SQLException {
+		db.executeSql(sql);
+	}
+
+	private int count(String table) throws SQLException {
+		return db.loadBySql("select count(*) from " + table, Integer.class);
+	}
+}
@@ -0,0 +1,69 @@
+package jef.database;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import jef.database.cache.CacheImpl;
+import jef.database.cache.ClusterCache;
+import jef.database.cache.InvalidationBus;
+import jef.database.cache.InvalidationEvent;
+import jef.database.cache.LocalInvalidationBus;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClusterCacheTest {
+
+	@Test
+	public void testClusterCacheTransaction() {
+		LocalInvalidationBus bus1 = new LocalInvalidationBus("tx");
+		LocalInvalidationBus bus2 = new LocalInvalidationBus("tx");
+		final BlockingQueue<InvalidationEvent> received = new ArrayBlockingQueue<InvalidationEvent>(10);
+		bus2.subscribe(new InvalidationBus.Listener() {
+			public void onEvent(InvalidationEvent event) {
+				received.add(event);
+			}
+		});
+		ClusterCache cache = new ClusterCache(newLocalCache(), bus1);
+		try {
+			// 提交时多次修改合并为一个事件
+			ClusterCache tx = cache.newTransaction();
+			for (int i = 0; i < 3; i++) {
+				tx.onUpdate("foo", " where ID=?", Arrays.<Object> asList(i));
+			}
+			tx.onDelete("bar", " where ID=?", Arrays.<Object> asList(1));
+			Assert.assertTrue(received.isEmpty());
+			tx.commit();
+			Assert.assertEquals(1, received.size());
+			InvalidationEvent event = received.poll();
+			Assert.assertEquals(3, event.getEntries().get("FOO").size());
+			Assert.assertEquals(1, event.getEntries().get("BAR").size());
+
+			// 超过上限时合并为清除表空间
+			for (int i = 0; i < 20; i++) {
+				tx.onUpdate("foo", " where ID=?", Arrays.<Object> asList(i));
+			}
+			tx.commit();
+			event = received.poll();
+			Assert.assertEquals(InvalidationEvent.CLEAR_SPACE, event.getEntries().get("FOO").get(0).getType());
+
+			// 回滚时丢弃，之后关闭事务也不发布
+			tx.onUpdate("foo", " where ID=?", Arrays.<Object> asList(1));
+			tx.rollback();
+			tx.evictAll();
+			Assert.assertTrue(received.isEmpty());
+
+			// 非事务的修改立即发布
+			cache.onDelete("foo", " where ID=?", Arrays.<Object> asList(1));
+			Assert.assertEquals(1, received.size());
+		} finally {
+			cache.close();
+			bus2.close();
+		}
+	}
+
+	private static CacheImpl newLocalCache() {
+		return new CacheImpl(new SqlProcessor.PrepareImpl(null, null), null, 0, -1, "TEST");
+	}
+}
@@ -0,0 +1,114 @@
+package jef.database;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import jef.database.annotation.EasyEntity;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 按主键加载的对象缓存，传入的主键类型和实体字段类型不一致时也能正确命中和清除
+ */
+public class IdentityLoadTest {
+	private DbClient db;
+	private int cacheLevel2;
+
+	@Before
+	public void setUp() throws SQLException {
+		cacheLevel2 = ORMConfig.getInstance().getCacheLevel2();
+		ORMConfig.getInstance().setCacheLevel2(60);
+		db = new DbClient(DbUtils.createSimpleDataSource("jdbc:hsqldb:mem:identityload", "sa", ""));
+		db.createTable(Item.class);
+		Item item = new Item();
+		item.setId(1L);
+		item.setName("a");
+		db.insert(item);
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		try {
+			db.dropTable(Item.class);
+			db.shutdown();
+		} finally {
+			ORMConfig.getInstance().setCacheLevel2(cacheLevel2);
+		}
+	}
+
+	@Test
+	public void testLoadAfterUpdate() throws SQLException {
+		Item item = db.load(Item.class, 1);
+		Assert.assertEquals("a", item.getName());
+
+		update("b");
+		item = db.load(Item.class, 1);
+		Assert.assertEquals("b", item.getName());
+		item = db.load(Item.class, 1L);
+		Assert.assertEquals("b", item.getName());
+	}
+
+	@Test
+	public void testBatchLoadAfterUpdate() throws SQLException {
+		List<Item> items = db.batchLoad(Item.class, Arrays.asList(1, 1));
+		Assert.assertEquals(2, items.size());
+		Assert.assertEquals("a", items.get(0).getName());
+
+		update("b");
+		items = db.batchLoad(Item.class, Arrays.asList(1));
+		Assert.assertEquals(1, items.size());
+		Assert.assertEquals("b", items.get(0).getName());
+		Assert.assertEquals("b", db.load(Item.class, 1).getName());
+	}
+
+	private void update(String name) throws SQLException {
+		Item item = new Item();
+		item.setId(1L);
+		item.prepareUpdate(Item.Field.name, name);
+		Assert.assertEquals(1, db.update(item));
+	}
+
+	@Entity
+	@Cacheable
+	@EasyEntity(checkEnhanced = false)
+	@Table(name = "IDENTITY_ITEM")
+	public static class Item extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private Long id;
+
+		@Column(length = 32)
+		private String name;
+
+		public Long getId() {
+			return id;
+		}
+
+		public void setId(Long id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, name
+		}
+	}
+}
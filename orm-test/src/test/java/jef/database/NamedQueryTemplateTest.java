@@ -0,0 +1,120 @@
+package jef.database;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jef.database.jsqlparser.expression.JpqlParameter;
+import jef.database.query.ParameterProvider.MapProvider;
+import jef.database.routing.sql.SqlAndParameter;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NamedQueryTemplateTest {
+	private DbClient db;
+
+	@Before
+	public void setUp() throws SQLException {
+		db = new DbClient(DbUtils.createSimpleDataSource("jdbc:hsqldb:mem:namedtemplate", "sa", ""));
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		db.shutdown();
+	}
+
+	@Test
+	public void testApply() {
+		JpqlParameter name = new JpqlParameter("name", false, null);
+		JpqlParameter ids = new JpqlParameter("ids", false, null);
+		List<JpqlParameter> params = Arrays.asList(name, ids);
+		// 输出顺序与编译时的访问顺序不同
+		String sql = "select * from t where id in (" + NamedQueryTemplate.marker(1) + ") and name=" + NamedQueryTemplate.marker(0);
+		NamedQueryTemplate template = NamedQueryTemplate.parse(sql, params);
+
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("name", "jiyi");
+		values.put("ids", new int[] { 1, 2, 3 });
+		SqlAndParameter result = template.apply(null, new MapProvider(values));
+		Assert.assertEquals("select * from t where id in (?,?,?) and name=?", result.getSql());
+		Assert.assertEquals(Arrays.<Object> asList(1, 2, 3, "jiyi"), result.params);
+		Assert.assertEquals("jiyi", result.getParamsMap().get(name));
+
+		values.put("ids", Arrays.asList(5));
+		result = template.apply(null, new MapProvider(values));
+		Assert.assertEquals("select * from t where id in (?) and name=?", result.getSql());
+		Assert.assertEquals(Arrays.<Object> asList(5, "jiyi"), result.params);
+	}
+
+	@Test
+	public void testMismatch() {
+		JpqlParameter p = new JpqlParameter("1", true, null);
+		// 标记重复或缺失时不能生成模板
+		Assert.assertNull(NamedQueryTemplate.parse("select * from t where a=" + NamedQueryTemplate.marker(0) + " or b=" + NamedQueryTemplate.marker(0), Arrays.asList(p)));
+		Assert.assertNull(NamedQueryTemplate.parse("select * from t", Arrays.asList(p)));
+	}
+
+	/**
+	 * 未传入的参数所在的条件被省略，与在语法树上应用参数的结果一致
+	 */
+	@Test
+	public void testOptionalCondition() throws SQLException {
+		NamedQueryConfig config = new NamedQueryConfig("optional", "select * from t where a = :a and b > :b and c like :c", false, 0);
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("a", 1);
+		values.put("c", "x%");
+		SqlAndParameter result = assertSameAsTree(config, values);
+		Assert.assertFalse(result.getSql().contains("b >"));
+		Assert.assertEquals(Arrays.<Object> asList(1, "x%"), result.params);
+
+		values.remove("a");
+		values.put("b", 2);
+		result = assertSameAsTree(config, values);
+		Assert.assertFalse(result.getSql().contains("a ="));
+		Assert.assertEquals(Arrays.<Object> asList(2, "x%"), result.params);
+	}
+
+	/**
+	 * IN条件按集合或数组的长度展开占位符，与在语法树上应用参数的结果一致
+	 */
+	@Test
+	public void testInListExpansion() throws SQLException {
+		NamedQueryConfig config = new NamedQueryConfig("inlist", "select * from t where id in (:ids) and name = :name", false, 0);
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("ids", Arrays.asList(1, 2, 3));
+		values.put("name", "jiyi");
+		SqlAndParameter result = assertSameAsTree(config, values);
+		Assert.assertTrue(result.getSql().contains("(?,?,?)"));
+		Assert.assertEquals(Arrays.<Object> asList(1, 2, 3, "jiyi"), result.params);
+
+		// 同一个模板，不同的列表长度
+		values.put("ids", new int[] { 7 });
+		result = assertSameAsTree(config, values);
+		Assert.assertEquals(Arrays.<Object> asList(7, "jiyi"), result.params);
+
+		// 省略IN条件
+		values.remove("ids");
+		result = assertSameAsTree(config, values);
+		Assert.assertEquals(Arrays.<Object> asList("jiyi"), result.params);
+	}
+
+	/*
+	 * 分别用模板和语法树生成SQL，两者必须一致。编译模板不能在共享的语法树上留下标记
+	 */
+	private SqlAndParameter assertSameAsTree(NamedQueryConfig config, Map<String, Object> values) throws SQLException {
+		OperateTarget target = new OperateTarget(db, null);
+		SqlAndParameter template = config.getSqlAndParams(target, new MapProvider(values), false);
+		String sql = template.getSql();
+		Assert.assertEquals(-1, config.toString().indexOf('\u0001'));
+
+		SqlAndParameter tree = config.getSqlAndParams(target, new MapProvider(values), true);
+		Assert.assertEquals(tree.getSql(), sql);
+		Assert.assertEquals(tree.params, template.params);
+		return template;
+	}
+}
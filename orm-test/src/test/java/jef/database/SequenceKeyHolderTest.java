@@ -3,7 +3,6 @@ package jef.database;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Queue;
 
 import jef.database.DbMetaData.ObjectType;
 import jef.database.innerpool.IConnection;
@@ -13,9 +12,7 @@ import jef.database.test.DataSourceContext;
 import jef.database.test.DatabaseInit;
 import jef.database.test.JefJUnit4DatabaseTestRunner;
 import jef.tools.JefConfiguration;
-import jef.tools.reflect.BeanUtils;
 
-import org.apache.commons.lang.ArrayUtils;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -141,18 +138,15 @@ public class SequenceKeyHolderTest {
 			Assert.assertEquals(SEQ_START + i, next);
 		}
 
-		// 再次通过查询DB获取下一个序列值，该值与cache后的一致(即不会出现主键冲突问题)
+		// 再次通过查询DB获取下一个序列值，该值大于cache中已分配的值(即不会出现主键冲突问题)。后台预取可能已经取走了下一批
 		long nextFromDb = getNextSequenceValueFromDb();
 		System.out.println("next value of ".concat(SEQ_NAME).concat("(from db)=") + nextFromDb);
-		Assert.assertEquals(next + 1, nextFromDb);
+		Assert.assertTrue(nextFromDb > next);
 	}
 
-	@SuppressWarnings("rawtypes")
 	private long getNextSequenceValue(Sequence holder) throws SQLException {
 		long next = holder.next();
 		System.out.println("next value of ".concat(SEQ_NAME).concat("=") + next);
-		Queue cacheQueue = (Queue) BeanUtils.getFieldValue(holder, "cache");
-		System.out.println("cache: " + ArrayUtils.toString(cacheQueue.toArray()));
 		return next;
 	}
 
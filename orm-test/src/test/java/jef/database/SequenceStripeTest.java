@@ -0,0 +1,187 @@
+package jef.database;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jef.database.SequenceManager.StripedSeqTableImpl;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SequenceStripeTest {
+	private DbClient db;
+
+	@Before
+	public void setUp() throws SQLException {
+		db = new DbClient(DbUtils.createSimpleDataSource("jdbc:hsqldb:mem:stripetest", "sa", ""));
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		db.executeSql("drop table JEF_SEQUENCES if exists");
+		db.close();
+	}
+
+	@Test
+	public void testFirstBlock() {
+		Assert.assertEquals(0, SequenceManager.firstBlock(0, 20, 4, 0));
+		Assert.assertEquals(3, SequenceManager.firstBlock(0, 20, 4, 3));
+		// 已用到105，块大小20，第5块(101~120)已部分使用，从第6块(121~140)开始
+		Assert.assertEquals(6, SequenceManager.firstBlock(105, 20, 4, 2));
+		Assert.assertEquals(7, SequenceManager.firstBlock(105, 20, 4, 3));
+		Assert.assertEquals(8, SequenceManager.firstBlock(105, 20, 4, 0));
+		Assert.assertEquals(5, SequenceManager.firstBlock(100, 20, 4, 1));
+	}
+
+	/**
+	 * 各号段行按 块号+块数*行数 推进，分配出的值不重复且都大于起始值
+	 */
+	@Test
+	public void testDisjoint() {
+		int block = 20, stripes = 3;
+		long start = 1234;
+		Set<Long> values = new HashSet<Long>();
+		for (int i = 0; i < stripes; i++) {
+			long b = SequenceManager.firstBlock(start, block, stripes, i);
+			for (int fetch = 0; fetch < 10; fetch++) {
+				int blocks = fetch % 3 + 1;
+				long nb = b + (long) blocks * stripes;
+				for (long x = b; x < nb; x += stripes) {
+					for (long v = x * block + 1; v <= (x + 1) * block; v++) {
+						Assert.assertTrue(v > start);
+						Assert.assertTrue(values.add(v));
+					}
+				}
+				b = nb;
+			}
+		}
+	}
+
+	@Test
+	public void testFetchRanges() throws SQLException {
+		StripedSeqTableImpl seq = create("S_STRIPE_FETCH");
+		int block = seq.getCacheSize();
+		seq.fetchRanges(block * 2, db, null);
+		// 只更新了本节点优先使用的一行，块号推进 块数*行数
+		int home = onlyRow("S_STRIPE_FETCH");
+		Assert.assertEquals(Long.valueOf(home + 2 * 3), row("S_STRIPE_FETCH", home));
+		seq.fetchRanges(block, db, null);
+		Assert.assertEquals(Long.valueOf(home + 3 * 3), row("S_STRIPE_FETCH", home));
+
+		// 依次分配该行的各块：home、home+3、home+6
+		Assert.assertEquals((long) home * block + 1, seq.next());
+		for (int i = 1; i < block; i++) {
+			seq.next();
+		}
+		Assert.assertEquals((long) (home + 3) * block + 1, seq.next());
+	}
+
+	/**
+	 * 两个实例使用同一行，缓存的块号过期后CAS失败，换下一行获取
+	 */
+	@Test
+	public void testContention() throws SQLException {
+		StripedSeqTableImpl a = create("S_STRIPE_CAS");
+		StripedSeqTableImpl b = create("S_STRIPE_CAS");
+		int block = a.getCacheSize();
+		a.fetchRanges(block, db, null);
+		int home = onlyRow("S_STRIPE_CAS");
+		b.fetchRanges(block, db, null);
+		Assert.assertEquals(Long.valueOf(home + 6), row("S_STRIPE_CAS", home));
+
+		a.fetchRanges(block, db, null);
+		int other = (home + 1) % 3;
+		Assert.assertEquals(Long.valueOf(home + 6), row("S_STRIPE_CAS", home));
+		Assert.assertEquals(Long.valueOf(other + 3), row("S_STRIPE_CAS", other));
+		Assert.assertNull(row("S_STRIPE_CAS", (home + 2) % 3));
+
+		Assert.assertEquals((long) home * block + 1, a.next());
+		Assert.assertEquals((long) (home + 3) * block + 1, b.next());
+	}
+
+	@Test
+	public void testConcurrent() throws InterruptedException {
+		final StripedSeqTableImpl[] seqs = { create("S_STRIPE_CONC"), create("S_STRIPE_CONC") };
+		final int threads = 4, count = 2000;
+		final ConcurrentHashMap<Long, Boolean> values = new ConcurrentHashMap<Long, Boolean>();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch finish = new CountDownLatch(threads);
+		final Queue<Throwable> failures = new ConcurrentLinkedQueue<Throwable>();
+		for (int i = 0; i < threads; i++) {
+			final StripedSeqTableImpl seq = seqs[i % 2];
+			new Thread() {
+				public void run() {
+					try {
+						start.await();
+						for (int j = 0; j < count; j++) {
+							long v = seq.next();
+							if (v <= 0 || values.put(v, Boolean.TRUE) != null) {
+								failures.add(new IllegalStateException("Duplicate or invalid value " + v));
+								return;
+							}
+						}
+					} catch (Throwable e) {
+						failures.add(e);
+					} finally {
+						finish.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		Assert.assertTrue(finish.await(60, TimeUnit.SECONDS));
+		Assert.assertTrue(failures.toString(), failures.isEmpty());
+		Assert.assertEquals(threads * count, values.size());
+	}
+
+	/**
+	 * 从不分段的记录切换过来时，跳过已经分配过的值
+	 */
+	@Test
+	public void testSwitchFromLegacy() throws SQLException {
+		StripedSeqTableImpl seq = create("S_STRIPE_LEGACY");
+		int block = seq.getCacheSize();
+		long legacy = block * 2 + 5;
+		db.executeSql("insert into JEF_SEQUENCES(V,T) values(?,?)", legacy, "S_STRIPE_LEGACY");
+		seq.fetchRanges(block, db, null);
+		int home = onlyRow("S_STRIPE_LEGACY");
+		long first = SequenceManager.firstBlock(legacy, block, 3, home);
+		Assert.assertEquals(Long.valueOf(first + 3), row("S_STRIPE_LEGACY", home));
+		long v = seq.next();
+		Assert.assertEquals(first * block + 1, v);
+		Assert.assertTrue(v > legacy);
+		// 原记录保持不变
+		Assert.assertEquals(Long.valueOf(legacy), db.loadBySql("select V from JEF_SEQUENCES where T=?", Long.class, "S_STRIPE_LEGACY"));
+	}
+
+	private StripedSeqTableImpl create(String key) {
+		return new StripedSeqTableImpl(new OperateTarget(db, null), key, null, null, null, db.getSequenceManager(), 3);
+	}
+
+	private Long row(String key, int index) throws SQLException {
+		return db.loadBySql("select V from JEF_SEQUENCES where T=?", Long.class, StripedSeqTableImpl.segment(key, index));
+	}
+
+	/*
+	 * 返回唯一存在的号段行的序号
+	 */
+	private int onlyRow(String key) throws SQLException {
+		int found = -1;
+		for (int i = 0; i < 3; i++) {
+			if (row(key, i) != null) {
+				Assert.assertEquals(-1, found);
+				found = i;
+			}
+		}
+		Assert.assertTrue(found >= 0);
+		return found;
+	}
+}
@@ -0,0 +1,230 @@
+package jef.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.PersistenceException;
+import javax.persistence.Table;
+
+import jef.database.annotation.SnowflakeGeneration;
+import jef.database.meta.MetaHolder;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnowflakeIdGeneratorTest {
+	private DbClient db;
+
+	@Before
+	public void setUp() throws SQLException {
+		db = new DbClient(DbUtils.createSimpleDataSource("jdbc:hsqldb:mem:snowflaketest", "sa", ""));
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		db.executeSql("drop table SF_NODES if exists");
+		db.executeSql("drop table SF_POJO if exists");
+		db.shutdown();
+	}
+
+	@Table(name = "SF_POJO")
+	public static class SnowflakePojo {
+		@Id
+		@GeneratedValue
+		@SnowflakeGeneration
+		private Long id;
+		private String name;
+
+		public Long getId() {
+			return id;
+		}
+
+		public void setId(Long id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+
+	public static class IntSnowflakePojo {
+		@Id
+		@GeneratedValue
+		@SnowflakeGeneration
+		private int id;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+	}
+
+	@Test
+	public void testMonotonic() {
+		SnowflakeIdGenerator g = new SnowflakeIdGenerator(5);
+		long last = 0;
+		// 超过单毫秒4096个时借用之后的时间戳
+		for (int i = 0; i < 100000; i++) {
+			long id = g.next();
+			Assert.assertTrue(id > last);
+			Assert.assertEquals(5, SnowflakeIdGenerator.getNodeId(id));
+			last = id;
+		}
+		long ts = SnowflakeIdGenerator.getTimestamp(g.next());
+		Assert.assertTrue(Math.abs(ts - System.currentTimeMillis()) < 60000);
+	}
+
+	@Test
+	public void testConcurrent() throws InterruptedException {
+		final SnowflakeIdGenerator g = new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE);
+		final ConcurrentHashMap<Long, Boolean> ids = new ConcurrentHashMap<Long, Boolean>();
+		final int threads = 8, count = 20000;
+		final CountDownLatch latch = new CountDownLatch(threads);
+		for (int i = 0; i < threads; i++) {
+			new Thread() {
+				public void run() {
+					long last = 0;
+					for (int j = 0; j < count; j++) {
+						long id = g.next();
+						if (id <= last || ids.put(id, Boolean.TRUE) != null) {
+							ids.put(-1L, Boolean.TRUE);
+						}
+						last = id;
+					}
+					latch.countDown();
+				}
+			}.start();
+		}
+		latch.await();
+		Assert.assertFalse(ids.containsKey(-1L));
+		Assert.assertEquals(threads * count, ids.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidNode() {
+		new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE + 1);
+	}
+
+	@Test
+	public void testLeaseAndRelease() throws SQLException {
+		DbMetaData meta = db.getMetaData(null);
+		SnowflakeIdGenerator g1 = SnowflakeIdGenerator.lease(meta, "SF_NODES", 60000);
+		SnowflakeIdGenerator g2 = SnowflakeIdGenerator.lease(meta, "SF_NODES", 60000);
+		Assert.assertEquals(0, g1.getNodeId());
+		Assert.assertEquals(1, g2.getNodeId());
+		long last = 0;
+		for (int i = 0; i < 10000; i++) {
+			last = g1.next();
+		}
+		Assert.assertTrue(g1.renew());
+
+		// 归还后保留记录，并写入最后生成的时间戳
+		g1.release();
+		Assert.assertEquals(2, count("SF_NODES"));
+		Assert.assertNull(db.loadBySql("select OWNER from SF_NODES where N=0", String.class));
+		Assert.assertTrue(db.loadBySql("select LAST_TS from SF_NODES where N=0", Long.class) >= SnowflakeIdGenerator.getTimestamp(last));
+		try {
+			g1.next();
+			Assert.fail("Expected failure after release.");
+		} catch (IllegalStateException e) {
+		}
+
+		// 新的租用者从记录的时间戳之后开始生成
+		long lastTs = System.currentTimeMillis() + 100000;
+		db.executeSql("update SF_NODES set LAST_TS=? where N=0", lastTs);
+		SnowflakeIdGenerator g3 = SnowflakeIdGenerator.lease(meta, "SF_NODES", 60000);
+		Assert.assertEquals(0, g3.getNodeId());
+		Assert.assertTrue(SnowflakeIdGenerator.getTimestamp(g3.next()) > lastTs);
+		g2.release();
+		g3.release();
+	}
+
+	@Test
+	public void testReclaimExpired() throws SQLException {
+		DbMetaData meta = db.getMetaData(null);
+		SnowflakeIdGenerator g1 = SnowflakeIdGenerator.lease(meta, "SF_NODES", 60000);
+		Assert.assertEquals(0, g1.getNodeId());
+		long now = System.currentTimeMillis();
+		// 节点1的租用者已经停止续期，租约已到期。它最后记录的时间戳借用了之后的时间
+		db.executeSql("insert into SF_NODES(N,OWNER,LAST_TS,EXPIRE_TIME) values(1,'dead',?,?)", now + 50000, now - 1000);
+		// 节点2仍在租约期内
+		db.executeSql("insert into SF_NODES(N,OWNER,LAST_TS,EXPIRE_TIME) values(2,'alive',?,?)", now, now + 60000);
+
+		SnowflakeIdGenerator g2 = SnowflakeIdGenerator.lease(meta, "SF_NODES", 60000);
+		Assert.assertEquals(1, g2.getNodeId());
+		// 从原租用者记录的时间戳和租约到期时间中较大者之后开始生成
+		Assert.assertTrue(SnowflakeIdGenerator.getTimestamp(g2.next()) > now + 50000);
+		Assert.assertFalse("dead".equals(db.loadBySql("select OWNER from SF_NODES where N=1", String.class)));
+		SnowflakeIdGenerator g3 = SnowflakeIdGenerator.lease(meta, "SF_NODES", 60000);
+		Assert.assertEquals(3, g3.getNodeId());
+
+		// 租约被他人回收后，原租用者续期失败，不再生成ID
+		db.executeSql("update SF_NODES set OWNER='other' where N=0");
+		Assert.assertFalse(g1.renew());
+		try {
+			g1.next();
+			Assert.fail("Expected failure after the lease was taken.");
+		} catch (IllegalStateException e) {
+		}
+		g1.release();
+		Assert.assertEquals("other", db.loadBySql("select OWNER from SF_NODES where N=0", String.class));
+		g2.release();
+		g3.release();
+	}
+
+	@Test
+	public void testInsert() throws SQLException {
+		db.executeSql("create table SF_POJO(ID bigint primary key, NAME varchar(20))");
+		SnowflakePojo p = new SnowflakePojo();
+		p.setName("first");
+		db.insert(p);
+		Assert.assertNotNull(p.getId());
+		int node = db.getSnowflakeGenerator().getNodeId();
+		Assert.assertEquals(node, SnowflakeIdGenerator.getNodeId(p.getId()));
+
+		List<SnowflakePojo> list = new ArrayList<SnowflakePojo>();
+		for (int i = 0; i < 5; i++) {
+			SnowflakePojo b = new SnowflakePojo();
+			b.setName("batch" + i);
+			list.add(b);
+		}
+		db.batchInsert(list);
+		long last = p.getId();
+		for (SnowflakePojo b : list) {
+			Assert.assertTrue(b.getId() > last);
+			Assert.assertEquals(node, SnowflakeIdGenerator.getNodeId(b.getId()));
+			last = b.getId();
+		}
+		Assert.assertEquals(6, count("SF_POJO"));
+		Assert.assertEquals("batch4", db.loadBySql("select NAME from SF_POJO where ID=?", String.class, last));
+	}
+
+	@Test
+	public void testMappingOnIntField() {
+		try {
+			MetaHolder.getMeta(IntSnowflakePojo.class);
+			Assert.fail("Expected the int field to be rejected.");
+		} catch (PersistenceException e) {
+			Assert.assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof IllegalArgumentException);
+		}
+	}
+
+	private int count(String table) throws SQLException {
+		return db.loadBySql("select count(*) from " + table, Integer.class);
+	}
+}
@@ -0,0 +1,102 @@
+package jef.database;
+
+import java.util.Arrays;
+import java.util.List;
+
+import jef.database.dialect.DatabaseDialect;
+import jef.database.dialect.MySqlDialect;
+import jef.database.dialect.OracleDialect;
+import jef.database.wrapper.clause.QueryClauseImpl;
+import jef.database.wrapper.variable.ConstantVariable;
+import jef.database.wrapper.variable.Variable;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SqlPlanCacheTest {
+	private static final DatabaseDialect MYSQL = new MySqlDialect();
+	private static final DatabaseDialect ORACLE = new OracleDialect();
+
+	private static SqlPlanCache.Shape shape(Object... values) {
+		return shape(MYSQL, values);
+	}
+
+	private static SqlPlanCache.Shape shape(DatabaseDialect profile, Object... values) {
+		SqlPlanCache.Shape shape = new SqlPlanCache.Shape();
+		shape.key.add(profile);
+		shape.key.add("foo");
+		shape.key.add(values.length);
+		shape.values.addAll(Arrays.asList(values));
+		return shape;
+	}
+
+	private static QueryClauseImpl clause(Object... bindValues) {
+		return clause(MYSQL, bindValues);
+	}
+
+	private static QueryClauseImpl clause(DatabaseDialect profile, Object... bindValues) {
+		QueryClauseImpl clause = new QueryClauseImpl(profile);
+		clause.setWherePart(" where t.B=? and t.A=?");
+		Variable[] bind = new Variable[bindValues.length];
+		for (int i = 0; i < bindValues.length; i++) {
+			bind[i] = new ConstantVariable("f" + i, bindValues[i], null);
+		}
+		clause.setBind(Arrays.asList(bind));
+		return clause;
+	}
+
+	@Test
+	public void testRebind() {
+		SqlPlanCache cache = new SqlPlanCache(10);
+		String a = new String("a");
+		String b = new String("b");
+		Assert.assertNull(cache.get(shape(a, b)));
+		// 绑定变量的顺序与条件中值的顺序不一定相同
+		cache.put(shape(a, b), clause(b, a));
+
+		QueryClauseImpl hit = cache.get(shape("x", "y"));
+		Assert.assertEquals(" where t.B=? and t.A=?", hit.getWherePart());
+		List<Variable> bind = hit.getBind();
+		Assert.assertEquals(2, bind.size());
+		Assert.assertEquals("y", bind.get(0).getConstantValue());
+		Assert.assertEquals("x", bind.get(1).getConstantValue());
+	}
+
+	@Test
+	public void testConvertedValue() {
+		SqlPlanCache cache = new SqlPlanCache(10);
+		// 值在生成SQL时被转换过，无法按位置替换，该形状不再缓存
+		cache.put(shape(new String("a")), clause("%a%"));
+		String a = new String("a");
+		cache.put(shape(a), clause(a));
+		Assert.assertNull(cache.get(shape("b")));
+	}
+
+	@Test
+	public void testAmbiguousValue() {
+		SqlPlanCache cache = new SqlPlanCache(10);
+		// 同一个对象出现两次时本次不缓存，下次再试
+		String a = new String("a");
+		cache.put(shape(a, a), clause(a, a));
+		Assert.assertNull(cache.get(shape("x", "y")));
+		String b = new String("b");
+		cache.put(shape(a, b), clause(a, b));
+		QueryClauseImpl hit = cache.get(shape("x", "y"));
+		Assert.assertEquals("x", hit.getBind().get(0).getConstantValue());
+	}
+
+	@Test
+	public void testDialect() {
+		SqlPlanCache cache = new SqlPlanCache(10);
+		String a = new String("a");
+		cache.put(shape(MYSQL, a), clause(MYSQL, a));
+		// 相同形状的查询在不同方言下生成的SQL不同，不能共用
+		Assert.assertNull(cache.get(shape(ORACLE, "b")));
+		Assert.assertSame(MYSQL, cache.get(shape(MYSQL, "b")).getProfile());
+
+		// 表被路由到其他数据库，生成SQL的方言与形状不符时不缓存
+		String b = new String("b");
+		cache.put(shape(ORACLE, b), clause(MYSQL, b));
+		Assert.assertNull(cache.get(shape(ORACLE, "c")));
+	}
+}
@@ -0,0 +1,76 @@
+package jef.database;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import jef.database.wrapper.clause.InsertSqlClause;
+import jef.database.wrapper.clause.UpdateClause;
+import jef.database.wrapper.processor.InsertStep;
+import jef.database.wrapper.variable.ConstantVariable;
+import jef.database.wrapper.variable.UpdateVairable;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WriteSqlCacheTest {
+	private static final InsertStep STEP = new InsertStep() {
+		public void callBefore(List<? extends IQueryableEntity> data) throws SQLException {
+		}
+
+		public void callAfterBatch(List<? extends IQueryableEntity> data) throws SQLException {
+		}
+
+		public void callAfter(IQueryableEntity data) throws SQLException {
+		}
+	};
+
+	@Test
+	public void testInsert() {
+		WriteSqlCache cache = new WriteSqlCache(10);
+		List<Object> key = Arrays.<Object> asList("foo", 1);
+		Assert.assertFalse(cache.applyInsert(key, new InsertSqlClause(false)));
+
+		InsertSqlClause clause = new InsertSqlClause(false);
+		clause.setColumnsPart("ID,NAME");
+		clause.setValuesPart("?,?");
+		clause.addField(null);
+		clause.addField(null);
+		clause.getCallback().addProcessor(STEP);
+		cache.putInsert(key, clause);
+
+		// 每次得到新的InsertSqlClause，只复用SQL片段、绑定字段和回调
+		InsertSqlClause hit = new InsertSqlClause(false);
+		Assert.assertTrue(cache.applyInsert(Arrays.<Object> asList("foo", 1), hit));
+		Assert.assertEquals("ID,NAME", hit.getColumnsPart());
+		Assert.assertEquals("?,?", hit.getValuesPart());
+		Assert.assertEquals(2, hit.getFields().size());
+		Assert.assertEquals(Arrays.asList(STEP), hit.getCallback().getProcessors());
+		Assert.assertNotSame(clause.getCallback(), hit.getCallback());
+	}
+
+	@Test
+	public void testUpdate() {
+		WriteSqlCache cache = new WriteSqlCache(10);
+		List<Object> key = Arrays.<Object> asList("foo", "NAME");
+		UpdateClause clause = new UpdateClause();
+		clause.addEntry("NAME", new UpdateVairable(null));
+		clause.addEntry("VER", "VER+1");
+		cache.putUpdate(key, clause);
+		UpdateClause hit = cache.getUpdate(Arrays.<Object> asList("foo", "NAME"));
+		Assert.assertSame(clause, hit);
+		Assert.assertEquals("NAME = ?, VER = VER+1", hit.getSql());
+	}
+
+	@Test
+	public void testConstantNotCached() {
+		WriteSqlCache cache = new WriteSqlCache(10);
+		List<Object> key = Arrays.<Object> asList("foo", "NAME");
+		// Java端生成的更新时间每次都不同，不能缓存
+		UpdateClause clause = new UpdateClause();
+		clause.addEntry("MODIFIED", new ConstantVariable(new java.util.Date()));
+		clause.addEntry("NAME", new UpdateVairable(null));
+		cache.putUpdate(key, clause);
+		Assert.assertNull(cache.getUpdate(key));
+	}
+}
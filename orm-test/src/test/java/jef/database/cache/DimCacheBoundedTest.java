@@ -0,0 +1,66 @@
+package jef.database.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DimCacheBoundedTest {
+
+	@Test
+	public void testSpaceLimit() {
+		CacheSpaceQuota quota = new CacheSpaceQuota(4096, 0, false);
+		DimCacheBoundedImpl dc = new DimCacheBoundedImpl(quota, KeyDimension.forSingleTable("foo", null, null, null));
+		for (int i = 0; i < 1000; i++) {
+			dc.put(Arrays.asList(i), Arrays.asList("a", "b", "c"));
+		}
+		Assert.assertTrue(quota.getUsedBytes() <= 4096);
+		Assert.assertTrue(quota.getUsedBytes() > 0);
+	}
+
+	@Test
+	public void testFrequentEntryKept() {
+		CacheSpaceQuota quota = new CacheSpaceQuota(2048, 0, false);
+		DimCacheBoundedImpl dc = new DimCacheBoundedImpl(quota, KeyDimension.forSingleTable("foo", null, null, null));
+		List<?> hot = Arrays.asList(-1);
+		dc.put(hot, Arrays.asList("hot"));
+		for (int i = 0; i < 20; i++) {
+			dc.load(hot);
+		}
+		for (int i = 0; i < 1000; i++) {
+			dc.put(Arrays.asList(i), Arrays.asList("cold"));
+		}
+		Assert.assertNotNull(dc.load(hot));
+	}
+
+	@Test
+	public void testClearReleaseSpace() {
+		CacheSpaceQuota quota = new CacheSpaceQuota(0, 0, false);
+		DimCacheBoundedImpl dc = new DimCacheBoundedImpl(quota, KeyDimension.forSingleTable("foo", null, null, null));
+		dc.put(Arrays.asList(1), Arrays.asList("a"));
+		dc.put(Arrays.asList(1), Arrays.asList("b"));
+		dc.put(Arrays.asList(2), Arrays.asList("c"));
+		Assert.assertEquals(Arrays.asList("b"), dc.load(Arrays.asList(1)));
+		dc.clear();
+		Assert.assertEquals(0, quota.getUsedBytes());
+		Assert.assertNull(dc.load(Arrays.asList(2)));
+	}
+
+	@Test
+	public void testRejectedKeepsOld() {
+		CacheSpaceQuota quota = new CacheSpaceQuota(2048, 0, false);
+		DimCacheBoundedImpl dc = new DimCacheBoundedImpl(quota, KeyDimension.forSingleTable("foo", null, null, null));
+		dc.put(Arrays.asList(1), Arrays.asList("a"));
+		long used = quota.getUsedBytes();
+		List<String> large = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			large.add("v" + i);
+		}
+		// 超过整个表空间的新值不被接纳，原有的值仍然有效
+		dc.put(Arrays.asList(1), large);
+		Assert.assertEquals(Arrays.asList("a"), dc.load(Arrays.asList(1)));
+		Assert.assertEquals(used, quota.getUsedBytes());
+	}
+}
@@ -0,0 +1,77 @@
+package jef.database.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IdentityCacheTest {
+
+	@Test
+	public void testExactInvalidation() {
+		KeyDimension pkDim = KeyDimension.forSingleTable("foo", null, null, null);
+		IdentityCache ic = new IdentityCache(100, 0);
+		List<?> pk1 = Arrays.asList(1);
+		List<?> pk2 = Arrays.asList(2);
+		ic.put(pkDim, pk1, "r1", ic.version("FOO"));
+		ic.put(pkDim, pk2, "r2", ic.version("FOO"));
+		Assert.assertEquals("r1", ic.get("FOO", pk1));
+
+		// 按主键修改，只清除对应的对象
+		ic.invalidate(new SqlCacheKey(pkDim, pk1));
+		Assert.assertNull(ic.get("FOO", pk1));
+		Assert.assertEquals("r2", ic.get("FOO", pk2));
+
+		// 按其他条件修改，清除整个表空间
+		KeyDimension other = KeyDimension.forSingleTable("foo", null, " ORDER BY NAME", null);
+		ic.invalidate(new SqlCacheKey(other, Collections.emptyList()));
+		Assert.assertNull(ic.get("FOO", pk2));
+	}
+
+	@Test
+	public void testBounded() {
+		KeyDimension pkDim = KeyDimension.forSingleTable("bar", null, null, null);
+		IdentityCache ic = new IdentityCache(10, 0);
+		for (int i = 0; i < 100; i++) {
+			ic.put(pkDim, Arrays.asList(i), i, ic.version("BAR"));
+		}
+		int count = 0;
+		for (int i = 0; i < 100; i++) {
+			if (ic.get("BAR", Arrays.asList(i)) != null)
+				count++;
+		}
+		Assert.assertTrue(count <= 10);
+	}
+
+	@Test
+	public void testStaleReadThrough() {
+		KeyDimension pkDim = KeyDimension.forSingleTable("baz", null, null, null);
+		IdentityCache ic = new IdentityCache(100, 0);
+		List<?> pk1 = Arrays.asList(1);
+		// 查询数据库之前取得版本号，查询期间记录被修改
+		long version = ic.version("BAZ");
+		ic.invalidate(new SqlCacheKey(pkDim, pk1));
+		ic.put(pkDim, pk1, "stale", version);
+		Assert.assertNull(ic.get("BAZ", pk1));
+
+		ic.put(pkDim, pk1, "fresh", ic.version("BAZ"));
+		Assert.assertEquals("fresh", ic.get("BAZ", pk1));
+
+		version = ic.version("BAZ");
+		ic.invalidateAll();
+		ic.put(pkDim, pk1, "stale", version);
+		Assert.assertNull(ic.get("BAZ", pk1));
+	}
+
+	@Test
+	public void testDimensionWithoutWhere() {
+		KeyDimension d1 = KeyDimension.forSingleTable("foo", null, null, null);
+		KeyDimension d2 = KeyDimension.forSingleTable("foo", "", null, null);
+		Assert.assertTrue(d1.equals(d1));
+		Assert.assertFalse(d1.equals(d2));
+		Assert.assertFalse(d2.equals(d1));
+		d1.hashCode();
+	}
+}
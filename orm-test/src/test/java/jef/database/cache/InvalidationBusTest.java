@@ -0,0 +1,147 @@
+package jef.database.cache;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InvalidationBusTest {
+
+	@Test
+	public void testCoalesce() {
+		InvalidationEvent event = new InvalidationEvent("node1");
+		for (int i = 0; i < InvalidationEvent.MAX_ENTRIES_PER_SPACE + 1; i++) {
+			event.add(new InvalidationEvent.Entry(InvalidationEvent.UPDATE, "FOO", " where ID=?", Arrays.<Object> asList(i), null));
+		}
+		event.add(new InvalidationEvent.Entry(InvalidationEvent.DELETE, "BAR", " where ID=?", Arrays.<Object> asList(1), null));
+		Assert.assertEquals(1, event.getEntries().get("FOO").size());
+		Assert.assertEquals(InvalidationEvent.CLEAR_SPACE, event.getEntries().get("FOO").get(0).getType());
+		Assert.assertEquals(InvalidationEvent.DELETE, event.getEntries().get("BAR").get(0).getType());
+	}
+
+	@Test
+	public void testLocalBus() {
+		LocalInvalidationBus node1 = new LocalInvalidationBus("test");
+		LocalInvalidationBus node2 = new LocalInvalidationBus("test");
+		final BlockingQueue<InvalidationEvent> received = new ArrayBlockingQueue<InvalidationEvent>(10);
+		node2.subscribe(new InvalidationBus.Listener() {
+			public void onEvent(InvalidationEvent event) {
+				received.add(event);
+			}
+		});
+		InvalidationEvent event = new InvalidationEvent("node1");
+		event.clearSpace("FOO");
+		node1.publish(event);
+		node2.publish(new InvalidationEvent("node2"));
+		Assert.assertEquals(1, received.size());
+		node1.close();
+		node2.close();
+	}
+
+	@Test
+	public void testDatagramBus() throws Exception {
+		DatagramInvalidationBus node1 = new DatagramInvalidationBus(0, DatagramInvalidationBus.parsePeers(""));
+		DatagramInvalidationBus node2 = new DatagramInvalidationBus(0, DatagramInvalidationBus.parsePeers(""));
+		node1.addPeer(DatagramInvalidationBus.loopback(node2.getLocalPort()));
+		node2.addPeer(DatagramInvalidationBus.loopback(node1.getLocalPort()));
+		final BlockingQueue<InvalidationEvent> received = new ArrayBlockingQueue<InvalidationEvent>(10);
+		node2.subscribe(new InvalidationBus.Listener() {
+			public void onEvent(InvalidationEvent event) {
+				received.add(event);
+			}
+		});
+		try {
+			InvalidationEvent event = new InvalidationEvent("node1");
+			event.add(new InvalidationEvent.Entry(InvalidationEvent.UPDATE, "FOO", " where ID=?", Arrays.<Object> asList(1L), Arrays.asList("NAME")));
+			node1.publish(event);
+			InvalidationEvent got = received.poll(5, TimeUnit.SECONDS);
+			Assert.assertNotNull(got);
+			Assert.assertEquals("node1", got.getOrigin());
+			Assert.assertEquals(InvalidationEvent.UPDATE, got.getEntries().get("FOO").get(0).getType());
+		} finally {
+			node1.close();
+			node2.close();
+		}
+	}
+
+	@Test
+	public void testDropUnknownPeer() throws Exception {
+		DatagramInvalidationBus node1 = new DatagramInvalidationBus(0, DatagramInvalidationBus.parsePeers(""));
+		DatagramInvalidationBus node2 = new DatagramInvalidationBus(0, DatagramInvalidationBus.parsePeers(""));
+		DatagramInvalidationBus node3 = new DatagramInvalidationBus(0, DatagramInvalidationBus.parsePeers(""));
+		node1.addPeer(DatagramInvalidationBus.loopback(node2.getLocalPort()));
+		node3.addPeer(DatagramInvalidationBus.loopback(node2.getLocalPort()));
+		node2.addPeer(DatagramInvalidationBus.loopback(node1.getLocalPort()));
+		final BlockingQueue<InvalidationEvent> received = new ArrayBlockingQueue<InvalidationEvent>(10);
+		node2.subscribe(new InvalidationBus.Listener() {
+			public void onEvent(InvalidationEvent event) {
+				received.add(event);
+			}
+		});
+		try {
+			InvalidationEvent event = new InvalidationEvent("node3");
+			event.clearSpace("FOO");
+			node3.publish(event);
+			event = new InvalidationEvent("node1");
+			event.clearSpace("BAR");
+			node1.publish(event);
+			// node3不是node2的节点，只收到node1的事件
+			InvalidationEvent got = received.poll(5, TimeUnit.SECONDS);
+			Assert.assertEquals("node1", got.getOrigin());
+			Assert.assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+		} finally {
+			node1.close();
+			node2.close();
+			node3.close();
+		}
+	}
+
+	@Test
+	public void testEncoding() throws Exception {
+		InvalidationEvent event = new InvalidationEvent("node1");
+		Timestamp ts = new Timestamp(1234567890123L);
+		ts.setNanos(123456789);
+		event.add(new InvalidationEvent.Entry(InvalidationEvent.UPDATE, "FOO", " where ID=? and NAME=?", Arrays.<Object> asList(1L, "a", null, 2, new BigDecimal("1.50"), ts, true), Arrays.asList("NAME", "AGE")));
+		event.add(new InvalidationEvent.Entry(InvalidationEvent.DELETE, "FOO", " where ID=?", Arrays.<Object> asList(3), null));
+		event.clearSpace("BAR");
+		byte[] data = event.toBytes();
+		InvalidationEvent got = InvalidationEvent.fromBytes(data, 0, data.length);
+		Assert.assertEquals("node1", got.getOrigin());
+		Assert.assertFalse(got.isAll());
+		List<InvalidationEvent.Entry> foo = got.getEntries().get("FOO");
+		Assert.assertEquals(2, foo.size());
+		Assert.assertEquals(InvalidationEvent.UPDATE, foo.get(0).getType());
+		Assert.assertEquals(" where ID=? and NAME=?", foo.get(0).where);
+		Assert.assertEquals(Arrays.<Object> asList(1L, "a", null, 2, new BigDecimal("1.50"), ts, true), foo.get(0).params);
+		Assert.assertEquals(Arrays.asList("NAME", "AGE"), foo.get(0).columns);
+		Assert.assertEquals(InvalidationEvent.DELETE, foo.get(1).getType());
+		Assert.assertNull(foo.get(1).columns);
+		Assert.assertEquals(InvalidationEvent.CLEAR_SPACE, got.getEntries().get("BAR").get(0).getType());
+
+		InvalidationEvent all = new InvalidationEvent("node2");
+		all.clearAll();
+		data = all.toBytes();
+		Assert.assertTrue(InvalidationEvent.fromBytes(data, 0, data.length).isAll());
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnsupportedParam() throws Exception {
+		InvalidationEvent event = new InvalidationEvent("node1");
+		event.add(new InvalidationEvent.Entry(InvalidationEvent.DELETE, "FOO", " where ID=?", Arrays.<Object> asList(new Object()), null));
+		event.toBytes();
+	}
+
+	@Test(expected = IOException.class)
+	public void testRejectForeignFormat() throws Exception {
+		// 例如Java序列化的数据
+		byte[] data = new byte[] { (byte) 0xAC, (byte) 0xED, 0, 5 };
+		InvalidationEvent.fromBytes(data, 0, data.length);
+	}
+}
@@ -0,0 +1,35 @@
+package jef.database.cache;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NativeQueryCacheKeyTest {
+
+	@Test
+	public void testKey() {
+		List<String> tables = Arrays.asList("PERSON", "SCHOOL");
+		String sql = "select * from person t1, school t2 where t1.school_id=t2.id and t1.name=?";
+		CacheKey k1 = new NativeQueryCacheKey(sql, tables, Arrays.asList("a"), 60);
+		CacheKey k2 = new NativeQueryCacheKey(sql, tables, Arrays.asList("a"), 60);
+		CacheKey k3 = new NativeQueryCacheKey(sql, tables, Arrays.asList("b"), 60);
+
+		Assert.assertEquals(k1, k2);
+		Assert.assertEquals(k1.getDimension(), k3.getDimension());
+		Assert.assertFalse(k1.equals(k3));
+		// 所有语句共用一个空间，所引用的表作为关联空间
+		Assert.assertEquals(tables, k1.getAffectedKey());
+		Assert.assertEquals(KeyDimension.NATIVE_QUERY_SPACE, k1.getStoreSpace());
+
+		// 引用相同表的不同语句共用一个维度，以语句区分
+		String sql2 = "select t1.* from school t2, person t1 where t1.school_id=t2.id";
+		CacheKey k4 = new NativeQueryCacheKey(sql2, Arrays.asList("SCHOOL", "PERSON"), Arrays.asList("a"), 60);
+		Assert.assertEquals(k1.getDimension(), k4.getDimension());
+		Assert.assertEquals(k1.getStoreSpace(), k4.getStoreSpace());
+		Assert.assertFalse(k1.equals(k4));
+		CacheKey k5 = new NativeQueryCacheKey(sql, Arrays.asList("PERSON"), Arrays.asList("a"), 60);
+		Assert.assertFalse(k1.getDimension().equals(k5.getDimension()));
+	}
+}
@@ -0,0 +1,92 @@
+package jef.database.cache;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import jef.orm.onetable.model.TestEntity;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RowCodecTest {
+
+	@Test
+	public void testRoundTrip() {
+		TestEntity e1 = new TestEntity();
+		e1.setLongField(1L);
+		e1.setField1("中文");
+		e1.setDateField(new Date(1234567890000L));
+		Timestamp ts = new Timestamp(1234567890123L);
+		ts.setNanos(123456789);
+		e1.setCreateTime(ts);
+		e1.setBinaryData(new byte[] { 1, 2, 3, 0, -1 });
+		e1.setBoolField(true);
+		e1.setIntFiled(-7);
+		e1.setIntField2(Integer.MAX_VALUE);
+		e1.setDoubleField(3.25);
+		e1.setFloatField(1.5f);
+
+		// 全部为空值的行
+		TestEntity e2 = new TestEntity();
+		e2.setLongField(2L);
+
+		List<TestEntity> rows = Arrays.asList(e1, e2);
+		RowCodec codec = RowCodec.of(rows);
+		Assert.assertNotNull(codec);
+		ByteBuffer data = codec.encode(rows);
+		Assert.assertNotNull(data);
+		Assert.assertTrue(data.isDirect());
+
+		List<?> result = codec.decode(data);
+		Assert.assertEquals(2, result.size());
+		TestEntity r1 = (TestEntity) result.get(0);
+		Assert.assertEquals(1L, r1.getLongField());
+		Assert.assertEquals("中文", r1.getField1());
+		Assert.assertEquals(e1.getDateField(), r1.getDateField());
+		Assert.assertEquals(ts, r1.getCreateTime());
+		Assert.assertArrayEquals(e1.getBinaryData(), r1.getBinaryData());
+		Assert.assertTrue(r1.isBoolField());
+		Assert.assertEquals(-7, r1.getIntFiled());
+		Assert.assertEquals(Integer.valueOf(Integer.MAX_VALUE), r1.getIntField2());
+		Assert.assertEquals(3.25, r1.getDoubleField(), 0);
+		Assert.assertEquals(1.5f, r1.getFloatField(), 0);
+		Assert.assertNull(r1.getLongField2());
+
+		TestEntity r2 = (TestEntity) result.get(1);
+		Assert.assertEquals(2L, r2.getLongField());
+		Assert.assertNull(r2.getField1());
+		Assert.assertNull(r2.getDateField());
+		Assert.assertNull(r2.getBinaryData());
+		Assert.assertNull(r2.getIntField2());
+		codec.free(data);
+	}
+
+	@Test
+	public void testUnsupported() {
+		Assert.assertNull(RowCodec.of(Arrays.asList("a", "b")));
+		TestEntity e = new TestEntity();
+		e.setJoda1(java.time.LocalDate.now());
+		List<TestEntity> rows = Arrays.asList(e);
+		Assert.assertNull(RowCodec.of(rows).encode(rows));
+	}
+
+	@Test
+	public void testPoolReuse() {
+		OffHeapPool pool = new OffHeapPool();
+		ByteBuffer b1 = pool.allocate(100);
+		Assert.assertEquals(100, b1.limit());
+		Assert.assertEquals(128, b1.capacity());
+		long reserved = pool.getReservedBytes();
+		// 反复分配和归还，不会申请新的堆外内存
+		for (int i = 0; i < 100000; i++) {
+			ByteBuffer b = pool.allocate(100 + i % 20);
+			pool.release(b);
+		}
+		Assert.assertEquals(reserved, pool.getReservedBytes());
+		pool.release(b1);
+		Assert.assertNull(pool.allocate((1 << 16) + 1));
+	}
+}
@@ -0,0 +1,33 @@
+package jef.database.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RowInvalidationTest {
+
+	@Test
+	public void testEvictContaining() {
+		DimCache dc = new DimCacheImpl();
+		List<?> pk1 = Arrays.asList(1);
+		List<?> pk2 = Arrays.asList(2);
+		dc.put(Arrays.asList("a"), new CachedResultList<String>(Arrays.asList("r1"), Collections.singletonList(pk1)));
+		dc.put(Arrays.asList("b"), new CachedResultList<String>(Arrays.asList("r2"), Collections.singletonList(pk2)));
+		dc.put(Arrays.asList("c"), Arrays.asList("untracked"));
+
+		dc.evictContaining(Collections.singletonList(pk1));
+		Assert.assertNull(dc.load(Arrays.asList("a")));
+		Assert.assertNotNull(dc.load(Arrays.asList("b")));
+		Assert.assertNull(dc.load(Arrays.asList("c")));
+	}
+
+	@Test
+	public void testAffectedColumns() {
+		KeyDimension dim = KeyDimension.forSingleTable("foo", null, " ORDER BY CREATED", null);
+		Assert.assertTrue(dim.isAffectedBy(Arrays.asList("CREATED")));
+		Assert.assertFalse(dim.isAffectedBy(Arrays.asList("NAME")));
+	}
+}
@@ -0,0 +1,45 @@
+package jef.database.dialect;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UpsertSqlTest {
+	private static final List<String> COLUMNS = Arrays.asList("ID", "NAME", "AGE");
+	private static final List<String> KEYS = Arrays.asList("ID");
+	private static final List<String> UPDATES = Arrays.asList("NAME", "AGE");
+
+	@Test
+	public void testMySql() {
+		MySqlDialect dialect = new MySqlDialect();
+		Assert.assertEquals("insert into T(ID,NAME,AGE) values(?,?,?) on duplicate key update NAME=values(NAME),AGE=values(AGE)", dialect.toUpsertSql("T", COLUMNS, KEYS, UPDATES));
+		Assert.assertEquals("insert into T(ID) values(?) on duplicate key update ID=ID", dialect.toUpsertSql("T", KEYS, KEYS, Collections.<String> emptyList()));
+	}
+
+	@Test
+	public void testPostgres() {
+		PostgreSqlDialect dialect = new PostgreSqlDialect();
+		Assert.assertEquals("insert into T(ID,NAME,AGE) values(?,?,?) on conflict(ID) do update set NAME=excluded.NAME,AGE=excluded.AGE", dialect.toUpsertSql("T", COLUMNS, KEYS, UPDATES));
+		Assert.assertEquals("insert into T(ID) values(?) on conflict(ID) do nothing", dialect.toUpsertSql("T", KEYS, KEYS, Collections.<String> emptyList()));
+
+		// on conflict从9.5开始支持，按各数据源的版本判断
+		Assert.assertFalse(dialect.supportsUpsert("9.4.26"));
+		Assert.assertTrue(dialect.supportsUpsert("9.5.0"));
+		Assert.assertTrue(dialect.supportsUpsert("10.3"));
+		Assert.assertTrue(dialect.supportsUpsert("12.1 (Debian 12.1-1.pgdg100+1)"));
+		Assert.assertFalse(dialect.supportsUpsert("unknown"));
+		Assert.assertTrue(new MySqlDialect().supportsUpsert("5.1.73"));
+	}
+
+	@Test
+	public void testMerge() {
+		Assert.assertEquals("merge into T t using (select ? ID, ? NAME, ? AGE from dual) s on (t.ID = s.ID) when matched then update set NAME = s.NAME, AGE = s.AGE"
+				+ " when not matched then insert (ID,NAME,AGE) values (s.ID,s.NAME,s.AGE)", new OracleDialect().toUpsertSql("T", COLUMNS, KEYS, UPDATES));
+		Assert.assertEquals("merge into T t using (values(?,?,?)) as s(ID,NAME,AGE) on (t.ID = s.ID) when matched then update set NAME = s.NAME, AGE = s.AGE"
+				+ " when not matched then insert (ID,NAME,AGE) values (s.ID,s.NAME,s.AGE);", new SQLServer2008Dialect().toUpsertSql("T", COLUMNS, KEYS, UPDATES));
+		Assert.assertNull(new DerbyDialect().toUpsertSql("T", COLUMNS, KEYS, UPDATES));
+	}
+}
@@ -0,0 +1,94 @@
+package jef.database.innerpool;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentBagTest {
+
+	static final class Item implements ConcurrentBag.Entry {
+		final AtomicInteger state = new AtomicInteger();
+		final AtomicInteger owners = new AtomicInteger();
+
+		public int getState() {
+			return state.get();
+		}
+
+		public void setState(int s) {
+			state.set(s);
+		}
+
+		public boolean compareAndSetState(int expect, int update) {
+			return state.compareAndSet(expect, update);
+		}
+	}
+
+	@Test
+	public void testAffinity() throws InterruptedException {
+		ConcurrentBag<Item> bag = new ConcurrentBag<Item>();
+		Item a = new Item();
+		Item b = new Item();
+		bag.add(a);
+		bag.add(b);
+		bag.requite(b);
+		bag.requite(a);
+		// 最后归还的优先被同一线程拿到
+		Assert.assertSame(a, bag.borrow(0, TimeUnit.MILLISECONDS));
+		Assert.assertSame(b, bag.borrow(0, TimeUnit.MILLISECONDS));
+		Assert.assertNull(bag.borrow(0, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testReserve() throws InterruptedException {
+		ConcurrentBag<Item> bag = new ConcurrentBag<Item>();
+		Item a = new Item();
+		bag.add(a);
+		bag.requite(a);
+		Assert.assertEquals(1, bag.reserveFree().size());
+		Assert.assertNull(bag.borrow(0, TimeUnit.MILLISECONDS));
+		bag.unreserve(a);
+		Assert.assertSame(a, bag.borrow(0, TimeUnit.MILLISECONDS));
+		Assert.assertTrue(bag.remove(a));
+		Assert.assertEquals(0, bag.size());
+	}
+
+	@Test
+	public void testExclusiveUnderContention() throws InterruptedException {
+		final ConcurrentBag<Item> bag = new ConcurrentBag<Item>();
+		for (int i = 0; i < 4; i++) {
+			Item item = new Item();
+			bag.add(item);
+			bag.requite(item);
+		}
+		final AtomicInteger errors = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(16);
+		for (int t = 0; t < 16; t++) {
+			new Thread() {
+				public void run() {
+					try {
+						for (int i = 0; i < 2000; i++) {
+							Item item = bag.borrow(5, TimeUnit.SECONDS);
+							if (item == null || item.owners.incrementAndGet() != 1) {
+								errors.incrementAndGet();
+							}
+							if (item != null) {
+								item.owners.decrementAndGet();
+								bag.requite(item);
+							}
+						}
+					} catch (InterruptedException e) {
+						errors.incrementAndGet();
+					} finally {
+						latch.countDown();
+					}
+				}
+			}.start();
+		}
+		Assert.assertTrue(latch.await(60, TimeUnit.SECONDS));
+		Assert.assertEquals(0, errors.get());
+		Assert.assertEquals(4, bag.getCount(ConcurrentBag.STATE_FREE));
+	}
+}
@@ -0,0 +1,283 @@
+package jef.database.innerpool;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import jef.database.DbUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SingleManagedConnectionPoolTest {
+
+	@Test
+	public void testDiscardBrokenConnection() throws SQLException {
+		FlakyDataSource ds = new FlakyDataSource("jdbc:hsqldb:mem:pooltest1");
+		SingleManagedConnectionPool pool = new SingleManagedConnectionPool(ds, 0, 2);
+		try {
+			pool.offer(pool.poll());
+			int count = pool.getConnectionCount();
+			Assert.assertTrue(count > 0);
+
+			// 物理连接断开，且无法重连
+			ds.closeAll();
+			ds.fail = true;
+			try {
+				pool.poll();
+				Assert.fail("The broken connection should not be returned.");
+			} catch (SQLException e) {
+				// expected
+			}
+			// 无法打开的连接被移出连接池，而不是放回
+			Assert.assertEquals(count - 1, pool.getConnectionCount());
+
+			ds.fail = false;
+			ReentrantConnection conn = pool.poll();
+			Assert.assertNotNull(conn);
+			pool.offer(conn);
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	public void testWarmUpAndEviction() throws Exception {
+		FlakyDataSource ds = new FlakyDataSource("jdbc:hsqldb:mem:pooltest2");
+		SingleManagedConnectionPool pool = warmUpPool(ds, 3, 5);
+		try {
+			// 创建后在后台预热到最小连接数
+			waitForCount(pool, 3);
+
+			// 每个使用者各自占用一个连接，超出最小连接数的部分按需建立
+			List<Object> users = new ArrayList<Object>();
+			List<ReentrantConnection> used = new ArrayList<ReentrantConnection>();
+			for (int i = 0; i < 5; i++) {
+				Object user = new Object();
+				users.add(user);
+				used.add(pool.getConnection(user));
+			}
+			Assert.assertEquals(5, pool.getConnectionCount());
+			for (ReentrantConnection conn : used) {
+				pool.offer(conn);
+			}
+			// 空闲连接回收到最小连接数
+			pool.closeConnectionTillMin();
+			Assert.assertEquals(3, pool.getConnectionCount());
+			Assert.assertEquals(3, pool.getStatus().getFree());
+		} finally {
+			pool.close();
+		}
+		Assert.assertEquals(0, pool.getConnectionCount());
+	}
+
+	@Test
+	public void testReturnToOtherPool() throws SQLException {
+		SingleManagedConnectionPool pool1 = new SingleManagedConnectionPool(new FlakyDataSource("jdbc:hsqldb:mem:pooltest6"), 0, 2);
+		SingleManagedConnectionPool pool2 = new SingleManagedConnectionPool(new FlakyDataSource("jdbc:hsqldb:mem:pooltest7"), 0, 2);
+		try {
+			ReentrantConnection conn = pool2.poll();
+			try {
+				pool1.offer(conn);
+				Assert.fail("A connection of another pool should not be accepted.");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+			// 仍然可以归还到它自己的连接池
+			pool2.offer(conn);
+			Assert.assertFalse(((SingleConnection) conn).isUsed());
+		} finally {
+			pool1.close();
+			pool2.close();
+		}
+	}
+
+	@Test
+	public void testNoWarmUpByDefault() throws Exception {
+		FlakyDataSource ds = new FlakyDataSource("jdbc:hsqldb:mem:pooltest5");
+		SingleManagedConnectionPool pool = new SingleManagedConnectionPool(ds, 2, 4);
+		try {
+			// 未开启预热时不会在后台补足最小连接数
+			int count = pool.getConnectionCount();
+			Thread.sleep(200);
+			Assert.assertEquals(count, pool.getConnectionCount());
+			Assert.assertTrue(count < 2);
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	public void testMaintenance() throws Exception {
+		FlakyDataSource ds = new FlakyDataSource("jdbc:hsqldb:mem:pooltest3");
+		SingleManagedConnectionPool pool = warmUpPool(ds, 2, 4);
+		try {
+			waitForCount(pool, 2);
+			int opened = ds.getOpenedCount();
+
+			// 物理连接全部断开，检查时在后台重连
+			ds.closeAll();
+			pool.doCheck();
+			Assert.assertEquals(2, pool.getConnectionCount());
+			Assert.assertEquals(opened + 2, ds.getOpenedCount());
+			ReentrantConnection conn = pool.poll();
+			Assert.assertFalse(conn.isClosed());
+			Assert.assertEquals(opened + 2, ds.getOpenedCount());
+			pool.offer(conn);
+
+			// 无法重连时失效的连接移出连接池，恢复后补足最小连接数
+			ds.closeAll();
+			ds.fail = true;
+			pool.doCheck();
+			Assert.assertEquals(0, pool.getConnectionCount());
+			ds.fail = false;
+			pool.doCheck();
+			Assert.assertEquals(2, pool.getConnectionCount());
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	public void testConnectTimeout() throws Exception {
+		FlakyDataSource ds = new FlakyDataSource("jdbc:hsqldb:mem:pooltest4");
+		ds.delay = 2000;
+		PoolMaintainer maintainer = new PoolMaintainer(new CheckablePool() {
+			public void doCheck() {
+			}
+		}, 2, 1);
+		try {
+			long start = System.currentTimeMillis();
+			List<Connection> conns = maintainer.connect(ds, 2);
+			long cost = System.currentTimeMillis() - start;
+			// 两个连接并行建立，超时后放弃等待
+			Assert.assertTrue(conns.isEmpty());
+			Assert.assertTrue("cost " + cost, cost < 1900);
+
+			// 超时后才建立完成的连接被关闭
+			Thread.sleep(2000);
+			Assert.assertEquals(2, ds.getOpenedCount());
+			for (Connection conn : ds.opened) {
+				Assert.assertTrue(conn.isClosed());
+			}
+
+			ds.delay = 0;
+			conns = maintainer.connect(ds, 2);
+			Assert.assertEquals(2, conns.size());
+			for (Connection conn : conns) {
+				conn.close();
+			}
+		} finally {
+			maintainer.shutdown();
+		}
+	}
+
+	/*
+	 * 开启预热创建连接池，预热开关只在构造时读取
+	 */
+	private static SingleManagedConnectionPool warmUpPool(DataSource ds, int min, int max) {
+		System.setProperty("db.pool.warm.up", "true");
+		try {
+			return new SingleManagedConnectionPool(ds, min, max);
+		} finally {
+			System.clearProperty("db.pool.warm.up");
+		}
+	}
+
+	private static void waitForCount(SingleManagedConnectionPool pool, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (pool.getConnectionCount() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		Assert.assertEquals(count, pool.getConnectionCount());
+	}
+
+	/**
+	 * 可以模拟数据库断开的数据源
+	 */
+	static class FlakyDataSource implements DataSource {
+		private final DataSource ds;
+		private final List<Connection> opened = new CopyOnWriteArrayList<Connection>();
+		private final AtomicInteger openedCount = new AtomicInteger();
+		volatile boolean fail;
+		/**
+		 * 模拟建立连接的耗时（毫秒）
+		 */
+		volatile long delay;
+
+		FlakyDataSource(String url) {
+			this.ds = DbUtils.createSimpleDataSource(url, "sa", "");
+		}
+
+		void closeAll() throws SQLException {
+			for (Connection conn : opened) {
+				conn.close();
+			}
+			opened.clear();
+		}
+
+		int getOpenedCount() {
+			return openedCount.get();
+		}
+
+		public Connection getConnection() throws SQLException {
+			if (fail) {
+				throw new SQLException("Database is down.");
+			}
+			if (delay > 0) {
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException e) {
+					throw new SQLException(e);
+				}
+			}
+			Connection conn = ds.getConnection();
+			opened.add(conn);
+			openedCount.incrementAndGet();
+			return conn;
+		}
+
+		public Connection getConnection(String username, String password) throws SQLException {
+			return getConnection();
+		}
+
+		public PrintWriter getLogWriter() throws SQLException {
+			return null;
+		}
+
+		public void setLogWriter(PrintWriter out) throws SQLException {
+		}
+
+		public void setLoginTimeout(int seconds) throws SQLException {
+		}
+
+		public int getLoginTimeout() throws SQLException {
+			return 0;
+		}
+
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+
+		public <T> T unwrap(Class<T> iface) throws SQLException {
+			throw new SQLException("Not a wrapper.");
+		}
+
+		public boolean isWrapperFor(Class<?> iface) throws SQLException {
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return ds.toString();
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package jef.database.innerpool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StatementCacheTest {
+	private final Set<Object> closed = new HashSet<Object>();
+
+	private PreparedStatement mock() {
+		return (PreparedStatement) mock(PreparedStatement.class);
+	}
+
+	private Object mock(Class<?> type) {
+		return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if ("close".equals(method.getName())) {
+					closed.add(proxy);
+				} else if ("hashCode".equals(method.getName())) {
+					return System.identityHashCode(proxy);
+				} else if ("equals".equals(method.getName())) {
+					return proxy == args[0];
+				} else if (method.getReturnType() == int.class) {
+					return 0;
+				} else if (method.getReturnType() == ResultSet.class) {
+					return mock(ResultSet.class);
+				}
+				return null;
+			}
+		});
+	}
+
+	private static StatementCache.Key key(String sql) {
+		return new StatementCache.Key(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, -1, Statement.NO_GENERATED_KEYS, null, null);
+	}
+
+	@Test
+	public void testReuse() throws Exception {
+		AtomicLong hits = new AtomicLong();
+		AtomicLong misses = new AtomicLong();
+		StatementCache cache = new StatementCache(10, hits, misses);
+		Assert.assertNull(cache.take(key("select 1")));
+
+		PreparedStatement raw = mock();
+		new CachedPreparedStatement(raw, cache, key("select 1")).close();
+		Assert.assertFalse(closed.contains(raw));
+
+		// 生成主键的方式不同，不能复用
+		Assert.assertNull(cache.take(new StatementCache.Key("select 1", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, -1, Statement.RETURN_GENERATED_KEYS, null, null)));
+		Assert.assertSame(raw, cache.take(key("select 1")));
+		Assert.assertNull(cache.take(key("select 1")));
+		Assert.assertEquals(1, hits.get());
+		Assert.assertEquals(3, misses.get());
+	}
+
+	@Test
+	public void testLru() throws Exception {
+		StatementCache cache = new StatementCache(2, new AtomicLong(), new AtomicLong());
+		PreparedStatement a = mock();
+		PreparedStatement b = mock();
+		PreparedStatement c = mock();
+		new CachedPreparedStatement(a, cache, key("a")).close();
+		new CachedPreparedStatement(b, cache, key("b")).close();
+		// 访问a之后，b成为最久未使用的
+		new CachedPreparedStatement(cache.take(key("a")), cache, key("a")).close();
+		new CachedPreparedStatement(c, cache, key("c")).close();
+		Assert.assertTrue(closed.contains(b));
+		Assert.assertFalse(closed.contains(a));
+		Assert.assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testClearWhileInUse() throws Exception {
+		StatementCache cache = new StatementCache(10, new AtomicLong(), new AtomicLong());
+		PreparedStatement idle = mock();
+		new CachedPreparedStatement(idle, cache, key("a")).close();
+		PreparedStatement inUse = mock();
+		CachedPreparedStatement st = new CachedPreparedStatement(inUse, cache, key("a"));
+		cache.clear();
+		Assert.assertTrue(closed.contains(idle));
+		// 物理连接重建后，旧连接上的Statement不能回到缓存
+		st.close();
+		Assert.assertTrue(closed.contains(inUse));
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testCloseReleasesResources() throws Exception {
+		StatementCache cache = new StatementCache(10, new AtomicLong(), new AtomicLong());
+		PreparedStatement raw = mock();
+		CachedPreparedStatement st = new CachedPreparedStatement(raw, cache, key("a"));
+		ResultSet rs = st.getResultSet();
+		ResultSet keys = st.getGeneratedKeys();
+		st.close();
+		Assert.assertTrue(closed.contains(rs));
+		Assert.assertTrue(closed.contains(keys));
+		Assert.assertFalse(closed.contains(raw));
+		Assert.assertTrue(st.isClosed());
+
+		// 归还后Statement可能已被别人取走，不能再通过旧的对象操作
+		Assert.assertSame(raw, cache.take(key("a")));
+		try {
+			st.setInt(1, 1);
+			Assert.fail();
+		} catch (SQLException e) {
+		}
+	}
+
+	@Test
+	public void testNotReusable() throws Exception {
+		StatementCache cache = new StatementCache(10, new AtomicLong(), new AtomicLong());
+		PreparedStatement raw = mock();
+		CachedPreparedStatement st = new CachedPreparedStatement(raw, cache, key("a"));
+		st.setCursorName("C1");
+		st.close();
+		Assert.assertTrue(closed.contains(raw));
+		Assert.assertNull(cache.take(key("a")));
+	}
+}
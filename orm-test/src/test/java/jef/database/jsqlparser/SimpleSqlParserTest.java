@@ -0,0 +1,189 @@
+package jef.database.jsqlparser;
+
+import java.io.StringReader;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jef.database.jsqlparser.expression.JpqlParameter;
+import jef.database.jsqlparser.expression.operators.conditional.AndExpression;
+import jef.database.jsqlparser.expression.operators.relational.ExpressionList;
+import jef.database.jsqlparser.expression.operators.relational.InExpression;
+import jef.database.jsqlparser.parser.JpqlParser;
+import jef.database.jsqlparser.parser.ParseException;
+import jef.database.jsqlparser.parser.SimpleSqlParser;
+import jef.database.jsqlparser.parser.StSqlParser;
+import jef.database.jsqlparser.statement.select.PlainSelect;
+import jef.database.jsqlparser.statement.select.Select;
+import jef.database.jsqlparser.visitor.Expression;
+import jef.database.jsqlparser.visitor.Statement;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class SimpleSqlParserTest {
+	private static final String[] SIMPLE_SQLS = {
+			"select * from t",
+			"SELECT * FROM T WHERE ID = ?",
+			"select a, b as bb, c cc, t.d from schema1.tab t where t.a = ? and (b > 1 or c <= -2.5) order by a desc, b",
+			"select distinct t.* from t where a in (?, ?, ?) and b not in ('x','y') and c between ? and ? and d not between 1 and 2",
+			"select s.t.*, x.y.z from s.t where name like ? and n not like 'a%' escape '\\' and z is null and w is not null",
+			"select \"a\", `b` from \"T\" where \"a\" <> 1 and b != 2 and c >= 3 and d < 4 and e > 5;",
+			"select a from t where not a = 1 and not (b = 2 or c = 3)",
+			"select a from t where ((a = 1 and b = 2)) or (c = 3) order by a",
+			"select sysdate from dual",
+			"select 'it''s', 1.5, .5, 1e10, 2.5E-3, null from dual",
+			"insert into t (a, b, c) values (?, 'x', null)",
+			"INSERT t values (1, -2, +3)",
+			"update s.t x set x.a = ?, b = 'x' where id = ?",
+			"delete from t a where a.id in (1)",
+			"delete t where id = 1",
+			"delete x from t where id = 1" };
+
+	private static final String[] COMPLEX_SQLS = {
+			"select count(*) from t",
+			"select a + 1 from t",
+			"select * from t a join u b on a.id = b.id",
+			"select * from t group by a",
+			"select * from t limit 10",
+			"select /*+ index(t) */ * from t",
+			"select * from t where a in (select b from u)",
+			"select * from t union select * from u",
+			"select * from t where (a) = 1",
+			"insert into t values (1), (2)",
+			"update t set a = a + 1",
+			"select * from t where a = {d '2010-01-01'}",
+			"select * from t where a = 99999999999999999999" };
+
+	@Test
+	public void testSameAsJavaCC() throws Exception {
+		for (String sql : SIMPLE_SQLS) {
+			Statement fast = SimpleSqlParser.parse(sql, false);
+			Assert.assertNotNull(sql, fast);
+			Statement st = new StSqlParser(new StringReader(sql)).Statement();
+			Assert.assertEquals(st.toString(), fast.toString());
+			assertSameTree(sql, st, fast, new IdentityHashMap<Object, Object>());
+		}
+	}
+
+	@Test
+	public void testJpqlParams() throws Exception {
+		String sql = "select * from t where id = ?1 and name like :name and type in (:types)";
+		Statement fast = SimpleSqlParser.parse(sql, true);
+		Statement st = new JpqlParser(new StringReader(sql)).Statement();
+		Assert.assertEquals(st.toString(), fast.toString());
+		assertSameTree(sql, st, fast, new IdentityHashMap<Object, Object>());
+		AndExpression where = (AndExpression) ((PlainSelect) ((Select) fast).getSelectBody()).getWhere();
+		Assert.assertEquals("types", ((JpqlParameter) ((ExpressionList) ((InExpression) where.getRightExpression()).getItemsList()).getExpressions().get(0)).getName());
+
+		// 带类型的参数、SQL片段、关键字作参数名由JavaCC解析
+		Assert.assertNull(SimpleSqlParser.parse("select * from t where id in (:ids<int>)", true));
+		Assert.assertNull(SimpleSqlParser.parse("select * from t where :cond<sql>", true));
+		Assert.assertNull(SimpleSqlParser.parse("select * from t where id=:top", true));
+		Assert.assertNull(SimpleSqlParser.parse("select * from t where id=:id", false));
+	}
+
+	@Test
+	public void testFallback() {
+		for (String sql : COMPLEX_SQLS) {
+			Assert.assertNull(sql, SimpleSqlParser.parse(sql, false));
+		}
+	}
+
+	@Test
+	public void testWhereClause() throws Exception {
+		String where = "where t.a = 1 and (t.b like 'x%' or t.c is not null)";
+		Expression st = new StSqlParser(new StringReader(where)).WhereClause();
+		Expression fast = SimpleSqlParser.parseWhereClause(where);
+		Assert.assertEquals(st.toString(), fast.toString());
+		assertSameTree(where, st, fast, new IdentityHashMap<Object, Object>());
+		Assert.assertNull(SimpleSqlParser.parseWhereClause("where a = b + 1"));
+	}
+
+	/**
+	 * 与JavaCC解析器的解析速度对比。只输出结果不做断言，耗时较长，需要时手工运行
+	 */
+	@Ignore
+	@Test
+	public void testParsePerformance() throws ParseException {
+		String[] sqls = { "select * from t_person t where t.id = ? and t.name like ? order by t.created desc",
+				"insert into t_person (id, name, age, created) values (?, ?, ?, ?)",
+				"update t_person set name = ?, age = ? where id = ?",
+				"delete from t_person where id in (?, ?, ?)" };
+		int count = 100000;
+		for (int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				new StSqlParser(new StringReader(sqls[i % sqls.length])).Statement();
+			}
+			long javacc = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				SimpleSqlParser.parse(sqls[i % sqls.length], false);
+			}
+			long fast = System.nanoTime() - start;
+			System.out.println("JavaCC: " + count * 1000000000L / javacc + "/s, SimpleSqlParser: " + count * 1000000000L / fast + "/s");
+		}
+	}
+
+	/*
+	 * 逐个字段比较两棵语法树，节点的类型、结构和取值都必须一致。
+	 * 线程变量保存的是执行时的状态，不参与比较；null和空集合输出的SQL相同，视为一致
+	 */
+	private static void assertSameTree(String path, Object expected, Object actual, Map<Object, Object> visited) throws IllegalAccessException {
+		if (isEmpty(expected) && isEmpty(actual)) {
+			return;
+		}
+		Assert.assertNotNull(path, expected);
+		Assert.assertNotNull(path, actual);
+		Assert.assertEquals(path, expected.getClass(), actual.getClass());
+		if (expected instanceof CharSequence || expected instanceof Number || expected instanceof Boolean || expected instanceof Character || expected instanceof Enum) {
+			Assert.assertEquals(path, expected, actual);
+			return;
+		}
+		if (expected instanceof ThreadLocal) {
+			return;
+		}
+		if (visited.put(expected, actual) != null) {
+			return;
+		}
+		if (expected instanceof List) {
+			List<?> l1 = (List<?>) expected;
+			List<?> l2 = (List<?>) actual;
+			Assert.assertEquals(path, l1.size(), l2.size());
+			for (int i = 0; i < l1.size(); i++) {
+				assertSameTree(path + "[" + i + "]", l1.get(i), l2.get(i), visited);
+			}
+			return;
+		}
+		if (expected.getClass().isArray()) {
+			Assert.assertEquals(path, Array.getLength(expected), Array.getLength(actual));
+			for (int i = 0; i < Array.getLength(expected); i++) {
+				assertSameTree(path + "[" + i + "]", Array.get(expected, i), Array.get(actual, i), visited);
+			}
+			return;
+		}
+		if (expected.getClass().getName().startsWith("java.")) {
+			Assert.assertEquals(path, expected, actual);
+			return;
+		}
+		for (Class<?> c = expected.getClass(); c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers())) {
+					continue;
+				}
+				field.setAccessible(true);
+				assertSameTree(path + "." + field.getName(), field.get(expected), field.get(actual), visited);
+			}
+		}
+	}
+
+	private static boolean isEmpty(Object obj) {
+		return obj == null || (obj instanceof Collection && ((Collection<?>) obj).isEmpty());
+	}
+}
@@ -0,0 +1,135 @@
+package jef.database.meta;
+
+import java.sql.SQLException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jef.database.DbClient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SequenceAllocatorTest {
+	/**
+	 * 模拟步长为10的数据库Sequence
+	 */
+	static final class MockSequence extends AbstractSequence {
+		private long value;
+		final AtomicInteger fetches = new AtomicInteger();
+
+		MockSequence(int cacheSize) {
+			super(null, null);
+			setCacheSize(cacheSize);
+		}
+
+		@Override
+		protected boolean doInit(DbClient session, String dbKey) throws SQLException {
+			return true;
+		}
+
+		@Override
+		protected void fetchRanges(int size, DbClient client, String dbKey) throws SQLException {
+			fetches.incrementAndGet();
+			for (int i = 0; i < size; i++) {
+				pushRange(value + 1, value + 10);
+				value += 10;
+			}
+		}
+
+		public boolean isTable() {
+			return false;
+		}
+
+		public boolean isRawNative() {
+			return false;
+		}
+
+		public String getName() {
+			return "MOCK";
+		}
+
+		@Override
+		protected int getFetchStep() {
+			return 10;
+		}
+	}
+
+	@Test
+	public void testSequential() {
+		MockSequence seq = new MockSequence(5);
+		for (int i = 1; i <= 200; i++) {
+			Assert.assertEquals(i, seq.next());
+		}
+		seq.pushBack(100);
+		Assert.assertEquals(100, seq.next());
+		Assert.assertEquals(201, seq.next());
+	}
+
+	@Test
+	public void testAdaptive() {
+		MockSequence seq = new MockSequence(2);
+		// 默认不调整
+		Assert.assertFalse(seq.isAdaptive());
+		for (int i = 0; i < 5000; i++) {
+			seq.next();
+		}
+		Assert.assertEquals(2, seq.getCacheSize());
+
+		seq.setAdaptive(true);
+		for (int i = 0; i < 5000; i++) {
+			seq.next();
+		}
+		// 连续快速消耗时，每次获取的数量逐步加倍
+		Assert.assertTrue(seq.getCacheSize() > 2);
+		Assert.assertTrue(seq.getStatics().startsWith("size:" + seq.getCacheSize()));
+
+		// 上限按值的个数计算，每个单位10个值，最多获取500个单位
+		for (int i = 0; i < 200000; i++) {
+			seq.next();
+		}
+		Assert.assertTrue(String.valueOf(seq.getCacheSize()), seq.getCacheSize() <= 500);
+		Assert.assertTrue(String.valueOf(seq.getCacheSize()), seq.getCacheSize() >= 256);
+	}
+
+	@Test
+	public void testConcurrent() throws InterruptedException {
+		final MockSequence seq = new MockSequence(2);
+		final int threads = 8;
+		final int count = 20000;
+		final ConcurrentHashMap<Long, Boolean> values = new ConcurrentHashMap<Long, Boolean>();
+		final Queue<String> failures = new ConcurrentLinkedQueue<String>();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch finish = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			new Thread() {
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < count; i++) {
+							long value = seq.next();
+							if (values.put(value, Boolean.TRUE) != null) {
+								failures.add("Duplicate value " + value);
+								return;
+							}
+						}
+					} catch (Throwable e) {
+						failures.add(e.toString());
+					} finally {
+						finish.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		Assert.assertTrue("Threads did not finish in time.", finish.await(60, TimeUnit.SECONDS));
+		Assert.assertTrue(failures.toString(), failures.isEmpty());
+		Assert.assertEquals(threads * count, values.size());
+		Assert.assertEquals(seq.getFetchCount(), seq.fetches.get());
+		// 每次获取20个值，单飞获取时不会多取
+		Assert.assertTrue(String.valueOf(seq.fetches.get()), seq.fetches.get() <= threads * count / 20 + 2);
+	}
+}
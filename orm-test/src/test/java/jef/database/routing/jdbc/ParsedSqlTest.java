@@ -0,0 +1,120 @@
+package jef.database.routing.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jef.database.dialect.DatabaseDialect;
+import jef.database.dialect.MySqlDialect;
+import jef.database.dialect.OracleDialect;
+import jef.database.jdbc.JDBCTarget;
+import jef.database.jsqlparser.expression.Table;
+import jef.database.jsqlparser.statement.select.PlainSelect;
+import jef.database.jsqlparser.statement.select.Select;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParsedSqlTest {
+	private static final DatabaseDialect MYSQL = new MySqlDialect();
+	private static final DatabaseDialect ORACLE = new OracleDialect();
+
+	/*
+	 * 只提供方言和数据源名称的JDBCTarget
+	 */
+	private static JDBCTarget target(final DatabaseDialect profile, final String dbkey) {
+		return (JDBCTarget) Proxy.newProxyInstance(ParsedSqlTest.class.getClassLoader(), new Class<?>[] { JDBCTarget.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if ("getProfile".equals(name)) {
+					return profile;
+				} else if ("getDbkey".equals(name)) {
+					return dbkey;
+				} else if ("toString".equals(name)) {
+					return dbkey;
+				} else if ("hashCode".equals(name)) {
+					return System.identityHashCode(proxy);
+				} else if ("equals".equals(name)) {
+					return proxy == args[0];
+				}
+				throw new UnsupportedOperationException(name);
+			}
+		});
+	}
+
+	@Test
+	public void testCacheHitAndMiss() {
+		String sql = "select * from t_parsed_a where id = ? and name = ?";
+		JDBCTarget db1 = target(MYSQL, "db1");
+		ParsedSql parsed = ParsedSql.get(sql, db1);
+		Assert.assertNotNull(parsed.statement);
+		Assert.assertNull(parsed.delays);
+
+		// 相同的SQL文本、方言和数据源，命中缓存
+		Assert.assertSame(parsed, ParsedSql.get(sql, db1));
+		Assert.assertSame(parsed, ParsedSql.get(new String(sql), target(MYSQL, "db1")));
+
+		// 任何一项不同都重新解析
+		Assert.assertNotSame(parsed, ParsedSql.get(sql, target(MYSQL, "db2")));
+		Assert.assertNotSame(parsed, ParsedSql.get(sql, target(ORACLE, "db1")));
+		Assert.assertNotSame(parsed, ParsedSql.get(sql + " ", db1));
+	}
+
+	@Test
+	public void testUnparseable() {
+		String sql = "this is not a sql statement";
+		JDBCTarget db1 = target(MYSQL, "db1");
+		ParsedSql parsed = ParsedSql.get(sql, db1);
+		Assert.assertNull(parsed.statement);
+		// 无法解析的语句也缓存，不会每次重新解析
+		Assert.assertSame(parsed, ParsedSql.get(sql, db1));
+	}
+
+	@Test
+	public void testConcurrentUse() throws InterruptedException {
+		final ParsedSql parsed = ParsedSql.get("select * from t_parsed_b where id = ?", target(MYSQL, "db1"));
+		final Table table = (Table) ((PlainSelect) ((Select) parsed.statement).getSelectBody()).getFromItem();
+		final String origin = parsed.statement.toString();
+		Assert.assertTrue(origin, origin.contains(" t_parsed_b "));
+		final int threads = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch finish = new CountDownLatch(threads);
+		final Queue<String> failures = new ConcurrentLinkedQueue<String>();
+		for (int i = 0; i < threads; i++) {
+			final String tableName = "t_parsed_b_" + i;
+			final String expected = origin.replace(" t_parsed_b ", " " + tableName + " ");
+			new Thread() {
+				public void run() {
+					try {
+						start.await();
+						// 同一个语法树被多个线程同时改写表名，各线程只能看到自己的表名
+						for (int j = 0; j < 2000; j++) {
+							table.setReplace(tableName);
+							String sql = parsed.statement.toString();
+							table.removeReplace();
+							if (!sql.equals(expected)) {
+								failures.add(sql);
+								return;
+							}
+						}
+						String sql = parsed.statement.toString();
+						if (!sql.equals(origin)) {
+							failures.add(sql);
+						}
+					} catch (Throwable e) {
+						failures.add(e.toString());
+					} finally {
+						finish.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		Assert.assertTrue("Threads did not finish in time.", finish.await(30, TimeUnit.SECONDS));
+		Assert.assertTrue(failures.toString(), failures.isEmpty());
+	}
+}
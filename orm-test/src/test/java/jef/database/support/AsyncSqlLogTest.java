@@ -0,0 +1,134 @@
+package jef.database.support;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AsyncSqlLogTest {
+
+	/**
+	 * 记录输出内容的Writer
+	 */
+	static class CollectingWriter extends AsyncSqlLog.Writer {
+		final List<String> lines = new CopyOnWriteArrayList<String>();
+
+		CollectingWriter(int capacity) {
+			super(capacity);
+		}
+
+		@Override
+		protected void write(String message) {
+			lines.add(message);
+		}
+	}
+
+	@Test
+	public void testMultiProducerOrdering() throws InterruptedException {
+		final CollectingWriter writer = new CollectingWriter(8192);
+		writer.start();
+		final int producers = 4;
+		final int count = 1000;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch finish = new CountDownLatch(producers);
+		final Queue<Throwable> failures = new ConcurrentLinkedQueue<Throwable>();
+		for (int p = 0; p < producers; p++) {
+			final int id = p;
+			new Thread() {
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < count; i++) {
+							new AsyncSqlLog(writer).append("p" + id, " #").append(i).output();
+						}
+					} catch (Throwable e) {
+						failures.add(e);
+					} finally {
+						finish.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		Assert.assertTrue(finish.await(30, TimeUnit.SECONDS));
+		Assert.assertTrue(failures.toString(), failures.isEmpty());
+		writer.close(10000);
+		Assert.assertFalse(writer.isAlive());
+
+		// 每个生产者的日志都完整输出，且保持各自的先后顺序
+		Assert.assertEquals(0, writer.getDropped());
+		Assert.assertEquals(producers * count, writer.lines.size());
+		int[] next = new int[producers];
+		for (String line : writer.lines) {
+			int id = line.charAt(1) - '0';
+			Assert.assertEquals(line, "p" + id + " #" + next[id], line);
+			next[id]++;
+		}
+		for (int p = 0; p < producers; p++) {
+			Assert.assertEquals(count, next[p]);
+		}
+	}
+
+	@Test
+	public void testOverflowAndDrain() {
+		CollectingWriter writer = new CollectingWriter(4);
+		// 输出线程未启动，缓冲区写满后丢弃，不阻塞调用者
+		for (int i = 0; i < 10; i++) {
+			new AsyncSqlLog(writer).append("log ", i).output();
+		}
+		Assert.assertEquals(6, writer.getDropped());
+
+		// 关闭时输出缓冲区中剩余的日志
+		writer.start();
+		writer.close(10000);
+		Assert.assertFalse(writer.isAlive());
+		Assert.assertEquals(4, writer.lines.size());
+		for (int i = 0; i < 4; i++) {
+			Assert.assertEquals("log " + i, writer.lines.get(i));
+		}
+	}
+
+	@Test
+	public void testBufferReuse() {
+		CollectingWriter writer = new CollectingWriter(16);
+		writer.start();
+		AsyncSqlLog log1 = new AsyncSqlLog(writer);
+		log1.append("a");
+		// 同一线程上同时记录的两个日志对象互不干扰
+		AsyncSqlLog log2 = new AsyncSqlLog(writer);
+		log2.append("b");
+		log1.append("c").output();
+		log2.append("d").output();
+		// 输出后记录被清空，同一个对象可以继续使用
+		log1.append("e");
+		log1.clear();
+		log1.append("f").output();
+		log1.output();
+		writer.close(10000);
+		Assert.assertEquals(3, writer.lines.size());
+		Assert.assertEquals("ac", writer.lines.get(0));
+		Assert.assertEquals("bd", writer.lines.get(1));
+		Assert.assertEquals("f", writer.lines.get(2));
+	}
+
+	@Test
+	public void testOperationScope() {
+		boolean sampled = AsyncSqlLog.beginOperation();
+		try {
+			// 同一操作内的日志对象共用一次抽样结果
+			for (int i = 0; i < 10; i++) {
+				Assert.assertEquals(sampled, AsyncSqlLog.newInstance().isDebug());
+			}
+			// 嵌套的操作使用外层的结果
+			Assert.assertEquals(sampled, AsyncSqlLog.beginOperation());
+			AsyncSqlLog.endOperation();
+		} finally {
+			AsyncSqlLog.endOperation();
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package jef.database.wrapper;
+
+import jef.database.dialect.MySqlDialect;
+import jef.database.dialect.OracleDialect;
+import jef.database.meta.DbProperty;
+import jef.database.meta.Feature;
+import jef.database.wrapper.clause.InsertSqlClause;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InsertSqlClauseTest {
+	@Test
+	public void testMultiRowSql() {
+		MySqlDialect profile = new MySqlDialect();
+		Assert.assertTrue(profile.has(Feature.SUPPORT_MULTI_ROW_VALUES));
+		Assert.assertEquals(65535, profile.getPropertyInt(DbProperty.MAX_BIND_PARAMETERS));
+
+		InsertSqlClause clause = new InsertSqlClause(false);
+		clause.profile = profile;
+		clause.setColumnsPart("ID,NAME");
+		clause.setValuesPart("?,?");
+		Assert.assertEquals(clause.getSql("T_FOO"), clause.getMultiRowSql("T_FOO", 1));
+		Assert.assertEquals("insert into T_FOO(ID,NAME) values(?,?),(?,?),(?,?)", clause.getMultiRowSql("T_FOO", 3));
+	}
+
+	@Test
+	public void testCopy() {
+		InsertSqlClause clause = new InsertSqlClause(true);
+		clause.profile = new MySqlDialect();
+		clause.setColumnsPart("ID,NAME");
+		clause.setValuesPart("?,?");
+
+		// 在副本上按Oracle调整，原对象不受影响
+		OracleDialect oracle = new OracleDialect();
+		InsertSqlClause copy = clause.copy();
+		copy.profile = oracle;
+		oracle.toExtremeInsert(copy);
+		Assert.assertEquals("insert /*+ APPEND */ into T_FOO(ID,NAME) values(?,?)", copy.getSql("T_FOO"));
+		Assert.assertEquals("insert into T_FOO(ID,NAME) values(?,?)", clause.getSql("T_FOO"));
+		Assert.assertSame(clause.getFields(), copy.getFields());
+		Assert.assertSame(clause.getCallback(), copy.getCallback());
+		Assert.assertTrue(copy.isExtreme());
+	}
+}
@@ -0,0 +1,231 @@
+package jef.database.wrapper.populator;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import jef.database.dialect.type.ColumnMappings;
+import jef.database.dialect.type.NumIntIntMapping;
+import jef.database.dialect.type.ResultSetAccessor;
+import jef.database.dialect.type.VarcharStringMapping;
+import jef.database.jdbc.result.IResultSet;
+import jef.tools.reflect.BeanWrapper;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RowMapperTest {
+
+	public static class Foo {
+		private int id;
+		private Integer age;
+		private long count;
+		private String name;
+		private Object extra;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public Integer getAge() {
+			return age;
+		}
+
+		public void setAge(Integer age) {
+			this.age = age;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public void setCount(long count) {
+			this.count = count;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public Object getExtra() {
+			return extra;
+		}
+
+		public void setExtra(Object extra) {
+			this.extra = extra;
+		}
+	}
+
+	/**
+	 * 与Foo同名属性的另一个类
+	 */
+	public static class Bar {
+		private int id;
+		private Integer age;
+		private long count;
+		private String name;
+		private Object extra;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public Integer getAge() {
+			return age;
+		}
+
+		public void setAge(Integer age) {
+			this.age = age;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public void setCount(long count) {
+			this.count = count;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public Object getExtra() {
+			return extra;
+		}
+
+		public void setExtra(Object extra) {
+			this.extra = extra;
+		}
+	}
+
+	/**
+	 * 按列序号取值的结果集，序号超过127以检查生成的常量指令
+	 */
+	private static IResultSet rs(final Object... row) {
+		final Object[] last = new Object[1];
+		return (IResultSet) Proxy.newProxyInstance(RowMapperTest.class.getClassLoader(), new Class[] { IResultSet.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if (name.equals("wasNull")) {
+					return last[0] == null;
+				}
+				Object v = row[(Integer) args[0] - 1];
+				last[0] = v;
+				if (name.equals("getInt")) {
+					return v == null ? 0 : ((Number) v).intValue();
+				} else if (name.equals("getLong")) {
+					return v == null ? 0L : ((Number) v).longValue();
+				}
+				return v;
+			}
+		});
+	}
+
+	private static ColumnDescription column(int n, ResultSetAccessor accessor) {
+		ColumnDescription c = new ColumnDescription(n, 0, "C" + n, null, null);
+		c.setAccessor(accessor);
+		return c;
+	}
+
+	private static ObjectPopulator populator() {
+		Map<String, ColumnDescription> data = new LinkedHashMap<String, ColumnDescription>();
+		data.put("id", column(1, new NumIntIntMapping()));
+		data.put("age", column(2, new NumIntIntMapping()));
+		data.put("count", column(3, ColumnMappings.J));
+		data.put("name", column(4, new VarcharStringMapping()));
+		data.put("extra", column(200, ColumnMappings.RAW));
+		return new ObjectPopulator(null, data);
+	}
+
+	@Test
+	public void testProcess() throws SQLException {
+		Object[] row = new Object[200];
+		row[0] = 7;
+		row[2] = 99L;
+		row[3] = "abc";
+		row[199] = "x";
+		Foo foo = new Foo();
+		foo.setAge(3);
+		populator().process(BeanWrapper.wrap(foo), rs(row));
+		Assert.assertEquals(7, foo.getId());
+		Assert.assertNull(foo.getAge());
+		Assert.assertEquals(99L, foo.getCount());
+		Assert.assertEquals("abc", foo.getName());
+		Assert.assertEquals("x", foo.getExtra());
+	}
+
+	@Test
+	public void testProcessOrNull() throws SQLException {
+		ObjectPopulator op = populator();
+		Object[] row = new Object[200];
+		Foo foo = new Foo();
+		foo.setAge(3);
+		foo.setName("keep");
+		// 基本类型的访问器对null也返回0
+		Assert.assertTrue(op.processOrNull(BeanWrapper.wrap(foo), rs(row)));
+		Assert.assertEquals(Integer.valueOf(3), foo.getAge());
+		Assert.assertEquals("keep", foo.getName());
+
+		row[1] = 5;
+		Assert.assertTrue(op.processOrNull(BeanWrapper.wrap(foo), rs(row)));
+		Assert.assertEquals(Integer.valueOf(5), foo.getAge());
+	}
+
+	@Test
+	public void testOtherClass() throws SQLException {
+		ObjectPopulator op = populator();
+		Object[] row = new Object[200];
+		row[0] = 7;
+		row[3] = "abc";
+		Foo foo = new Foo();
+		op.process(BeanWrapper.wrap(foo), rs(row));
+		Assert.assertEquals(7, foo.getId());
+
+		// 对象的类型与生成拼装类时不同，按名称设值
+		Bar bar = new Bar();
+		row[0] = 8;
+		op.process(BeanWrapper.wrap(bar), rs(row));
+		Assert.assertEquals(8, bar.getId());
+		Assert.assertEquals("abc", bar.getName());
+
+		row[0] = 9;
+		op.process(BeanWrapper.wrap(foo), rs(row));
+		Assert.assertEquals(9, foo.getId());
+	}
+
+	@Test
+	public void testCache() {
+		ColumnDescription[] columns = { column(1, new NumIntIntMapping()), column(2, new VarcharStringMapping()) };
+		String[] fields = { "id", "name" };
+		RowMapper m1 = RowMapperGenerator.getRowMapper(Foo.class, fields, columns);
+		RowMapper m2 = RowMapperGenerator.getRowMapper(Foo.class, fields, columns);
+		Assert.assertNotNull(m1);
+		Assert.assertNotSame(m1, m2);
+		Assert.assertSame(m1.getClass(), m2.getClass());
+		// 列序号不同时生成另一个类
+		columns[1] = column(3, new VarcharStringMapping());
+		Assert.assertNotSame(m1.getClass(), RowMapperGenerator.getRowMapper(Foo.class, fields, columns).getClass());
+		// 找不到setter时不生成
+		Assert.assertNull(RowMapperGenerator.getRowMapper(Foo.class, new String[] { "none" }, new ColumnDescription[] { column(1, ColumnMappings.RAW) }));
+	}
+}
@@ -0,0 +1,72 @@
+package jef.database.wrapper.variable;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jef.database.dialect.MySqlDialect;
+import jef.database.dialect.type.ColumnMapping;
+import jef.database.meta.ITableMetadata;
+import jef.database.meta.MetaHolder;
+import jef.database.support.SqlLog;
+import jef.orm.onetable.model.TestEntity;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BindVariableContextTest {
+
+	/*
+	 * 记录每个位置上绑定的参数值
+	 */
+	private static PreparedStatement recorder(final Map<Integer, Object> params) {
+		return (PreparedStatement) Proxy.newProxyInstance(BindVariableContextTest.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+					params.put((Integer) args[0], method.getName().equals("setNull") ? null : args[1]);
+					return null;
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	@Test
+	public void testInsertVariablesWithOffset() throws SQLException {
+		ITableMetadata meta = MetaHolder.getMeta(TestEntity.class);
+		List<ColumnMapping> fields = Arrays.asList(meta.findField("longField"), meta.findField("field1"));
+		Map<Integer, Object> params = new TreeMap<Integer, Object>();
+		BindVariableContext context = new BindVariableContext(recorder(params), new MySqlDialect(), SqlLog.DUMMY);
+
+		// 多行values中的三行，每行从前面各行的参数之后开始绑定
+		for (int i = 0; i < 3; i++) {
+			TestEntity t = new TestEntity();
+			t.setLongField(10 + i);
+			t.setField1(i == 1 ? null : "name" + i);
+			context.setInsertVariables(t, fields, i * fields.size());
+		}
+		Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), Arrays.asList(params.keySet().toArray()));
+		Assert.assertEquals(10L, ((Number) params.get(1)).longValue());
+		Assert.assertEquals("name0", params.get(2));
+		Assert.assertEquals(11L, ((Number) params.get(3)).longValue());
+		Assert.assertNull(params.get(4));
+		Assert.assertEquals(12L, ((Number) params.get(5)).longValue());
+		Assert.assertEquals("name2", params.get(6));
+
+		// 不带偏移量时从第一个参数开始
+		params.clear();
+		TestEntity t = new TestEntity();
+		t.setLongField(99);
+		t.setField1("x");
+		context.setInsertVariables(t, fields);
+		Assert.assertEquals(2, params.size());
+		Assert.assertEquals(99L, ((Number) params.get(1)).longValue());
+		Assert.assertEquals("x", params.get(2));
+	}
+}